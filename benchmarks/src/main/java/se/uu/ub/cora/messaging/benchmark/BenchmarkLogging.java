@@ -0,0 +1,41 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.benchmark;
+
+import java.lang.reflect.Proxy;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+/**
+ * BenchmarkLogging sets a LoggerFactory whose loggers discard everything, so that benchmarks do not
+ * need a logger implementation and do not measure logging.
+ */
+final class BenchmarkLogging {
+	private static final Logger NO_OP_LOGGER = (Logger) Proxy.newProxyInstance(
+			Logger.class.getClassLoader(), new Class<?>[] { Logger.class },
+			(proxy, method, args) -> null);
+
+	private BenchmarkLogging() {
+	}
+
+	static void useNoOpLogger() {
+		LoggerProvider.setLoggerFactory(javaClass -> NO_OP_LOGGER);
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageSender;
+
+/**
+ * HeaderAndBodyBenchmark measures the per message cost of building header maps and
+ * {@link MessageHeaders}, converting header values to strings as receivers get them, and encoding
+ * and decoding message bodies as UTF-8, as done by the default binary methods of
+ * {@link MessageSender}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class HeaderAndBodyBenchmark {
+	@Param({ "2", "8" })
+	public int numberOfHeaders;
+
+	@Param({ "64", "1024", "65536" })
+	public int bodySize;
+
+	private String[] headerNames;
+	private Map<String, Object> headers;
+	private MessageHeaders messageHeaders;
+	private String body;
+	private ByteBuffer encodedBody;
+	private MessageSender sender;
+	private String sentMessage;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		headerNames = new String[numberOfHeaders];
+		for (int i = 0; i < numberOfHeaders; i++) {
+			headerNames[i] = "header" + i;
+		}
+		headers = createHeaders();
+		messageHeaders = createMessageHeaders();
+		body = createBody();
+		encodedBody = ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+		sender = (messageHeaders, message) -> sentMessage = message;
+	}
+
+	private String createBody() {
+		StringBuilder builder = new StringBuilder(bodySize);
+		String pattern = "{\"name\":\"åäö\",\"value\":\"place\"}";
+		while (builder.length() < bodySize) {
+			builder.append(pattern);
+		}
+		builder.setLength(bodySize);
+		return builder.toString();
+	}
+
+	@Benchmark
+	public Map<String, Object> createHeaders() {
+		Map<String, Object> created = new HashMap<>();
+		for (int i = 0; i < headerNames.length; i++) {
+			created.put(headerNames[i], i);
+		}
+		return created;
+	}
+
+	@Benchmark
+	public MessageHeaders createMessageHeaders() {
+		MessageHeaders.Builder builder = MessageHeaders.builder();
+		for (int i = 0; i < headerNames.length; i++) {
+			builder.put(headerNames[i], i);
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	public long readTypedValueFromMessageHeaders() {
+		return messageHeaders.getLong(headerNames[headerNames.length - 1], 0);
+	}
+
+	@Benchmark
+	public String readStringValueFromMessageHeaders() {
+		return messageHeaders.asStringMap().get(headerNames[headerNames.length - 1]);
+	}
+
+	@Benchmark
+	public Map<String, String> convertHeadersToStrings() {
+		Map<String, String> converted = new HashMap<>(headers.size() * 2);
+		for (Entry<String, Object> header : headers.entrySet()) {
+			converted.put(header.getKey(), String.valueOf(header.getValue()));
+		}
+		return converted;
+	}
+
+	@Benchmark
+	public byte[] encodeBody() {
+		return body.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public String sendBinaryUsingDefaultDecoding() {
+		sender.sendBinaryMessage(headers, encodedBody);
+		return sentMessage;
+	}
+}
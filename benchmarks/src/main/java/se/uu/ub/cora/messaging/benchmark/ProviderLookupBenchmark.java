@@ -0,0 +1,103 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingProvider;
+
+/**
+ * ProviderLookupBenchmark measures {@link MessagingProvider#getTopicMessageSender} for already
+ * started providers, with one thread and with as many threads as there are processors. Each
+ * thread cycles through numberOfRoutingInfos equal but not identical routing infos, so that both
+ * the provider start check and the handler cache lookup are measured.
+ * <p>
+ * Other thread counts can be measured by running with the jmh option -t.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ProviderLookupBenchmark {
+	@Param({ "1", "64" })
+	public int numberOfRoutingInfos;
+
+	private AmqpMessageSenderRoutingInfo[] routingInfos;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkLogging.useNoOpLogger();
+		MessagingProvider.setMessagingFactory(new StandInMessagingFactory());
+		routingInfos = new AmqpMessageSenderRoutingInfo[numberOfRoutingInfos];
+		for (int i = 0; i < numberOfRoutingInfos; i++) {
+			routingInfos[i] = new AmqpMessageSenderRoutingInfo("localhost", 5672, "benchmark",
+					"index", "routingKey" + i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		MessagingProvider.setMessagingFactory(null);
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadPosition {
+		int next;
+	}
+
+	@Benchmark
+	@Threads(1)
+	public MessageSender lookupSenderSingleThread(ThreadPosition position) {
+		return lookupNextSender(position);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public MessageSender lookupSenderContended(ThreadPosition position) {
+		return lookupNextSender(position);
+	}
+
+	private MessageSender lookupNextSender(ThreadPosition position) {
+		AmqpMessageSenderRoutingInfo original = routingInfos[position.next++
+				% numberOfRoutingInfos];
+		AmqpMessageSenderRoutingInfo routingInfo = new AmqpMessageSenderRoutingInfo(
+				original.hostname, original.port, original.virtualHost, original.exchange,
+				original.routingKey);
+		return MessagingProvider.getTopicMessageSender(routingInfo);
+	}
+}
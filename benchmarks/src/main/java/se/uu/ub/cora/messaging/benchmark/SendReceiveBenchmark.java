@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.uu.ub.cora.messaging.AmqpMessageListenerRoutingInfo;
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.memory.InMemoryMessagingFactory;
+import se.uu.ub.cora.messaging.memory.WaitStrategy;
+
+/**
+ * SendReceiveBenchmark measures sending and receiving messages without network, giving a baseline
+ * that broker implementations can be compared against.
+ * <p>
+ * sendToStandIn measures the cost of the sender API alone. sendThroughInMemory measures
+ * throughput from the sending threads through the {@link InMemoryMessagingFactory} to a listener,
+ * senders are held back when the listener can not keep up. roundTripThroughInMemory measures the
+ * latency from sending a message until it has been received.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SendReceiveBenchmark {
+	private static final String EXCHANGE = "index";
+	private static final String ROUTING_KEY = "benchmark.message";
+	private static final Map<String, Object> HEADERS = Map.of("action", "UPDATE", "recordType",
+			"place", "recordId", "place:0001");
+	private static final String MESSAGE = "{\"name\":\"place\",\"children\":[]}";
+
+	@Param({ "PARK", "YIELD", "SPIN" })
+	public WaitStrategy waitStrategy;
+
+	@Param({ "1024" })
+	public int capacity;
+
+	private MessageSender standInSender;
+	private MessageSender inMemorySender;
+	private MessageListener inMemoryListener;
+	private final CountingReceiver receiver = new CountingReceiver();
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		BenchmarkLogging.useNoOpLogger();
+		AmqpMessageSenderRoutingInfo senderRoutingInfo = new AmqpMessageSenderRoutingInfo(
+				"localhost", 5672, "benchmark", EXCHANGE, ROUTING_KEY);
+		standInSender = new StandInMessagingFactory().factorTopicMessageSender(senderRoutingInfo);
+
+		InMemoryMessagingFactory inMemoryFactory = new InMemoryMessagingFactory(capacity,
+				waitStrategy);
+		inMemorySender = inMemoryFactory.factorTopicMessageSender(senderRoutingInfo);
+		inMemoryListener = inMemoryFactory.factorTopicMessageListener(
+				new AmqpMessageListenerRoutingInfo("localhost", 5672, "benchmark", EXCHANGE,
+						"benchmark.#"));
+		inMemoryListener.listen(receiver);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		inMemoryListener.close();
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Threads(1)
+	public void sendToStandIn() {
+		standInSender.sendMessage(HEADERS, MESSAGE);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@Threads(4)
+	public void sendThroughInMemory() {
+		inMemorySender.sendMessage(HEADERS, MESSAGE);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@Threads(1)
+	public long roundTripThroughInMemory() {
+		long expected = receiver.received.get() + 1;
+		inMemorySender.sendMessage(HEADERS, MESSAGE);
+		long received;
+		while ((received = receiver.received.get()) < expected) {
+			Thread.onSpinWait();
+		}
+		return received;
+	}
+
+	private static final class CountingReceiver implements MessageReceiver {
+		final AtomicLong received = new AtomicLong();
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			received.incrementAndGet();
+		}
+
+		@Override
+		public void topicClosed() {
+			// the in memory topic is only closed at tear down
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingFactory;
+
+/**
+ * StandInMessagingFactory factors senders that only count the messages sent to them and listeners
+ * that never deliver any messages. It is used to measure the cost of the messaging API itself,
+ * without any transport.
+ */
+final class StandInMessagingFactory implements MessagingFactory {
+	final LongAdder sentMessages = new LongAdder();
+
+	@Override
+	public MessageSender factorTopicMessageSender(MessageRoutingInfo routingInfo) {
+		return new CountingMessageSender();
+	}
+
+	@Override
+	public MessageListener factorTopicMessageListener(MessageRoutingInfo routingInfo) {
+		return new IdleMessageListener();
+	}
+
+	private final class CountingMessageSender implements MessageSender {
+		@Override
+		public void sendMessage(Map<String, Object> headers, String message) {
+			sentMessages.increment();
+		}
+	}
+
+	private static final class IdleMessageListener implements MessageListener {
+		@Override
+		public void listen(MessageReceiver messageReceiver) {
+			// never delivers any messages
+		}
+	}
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * JMH benchmarks for the messaging module. The benchmarks cover lookup of message handlers through
+ * {@link se.uu.ub.cora.messaging.MessagingProvider}, sending and receiving through the built in
+ * in memory factory and a stand in factory, and the cost of handling headers and bodies.
+ * <p>
+ * The benchmarks are built and run from the benchmarks directory, see its pom.xml. Results are
+ * written as json so that they can be compared between releases.
+ */
+package se.uu.ub.cora.messaging.benchmark;
@@ -5,6 +5,12 @@ module se.uu.ub.cora.messaging {
 	requires transitive se.uu.ub.cora.logger;
 
 	exports se.uu.ub.cora.messaging;
+	exports se.uu.ub.cora.messaging.codec;
+	exports se.uu.ub.cora.messaging.memory;
+	exports se.uu.ub.cora.messaging.metrics;
+	exports se.uu.ub.cora.messaging.pool;
+	exports se.uu.ub.cora.messaging.receiver;
+	exports se.uu.ub.cora.messaging.sender;
 
 	uses se.uu.ub.cora.messaging.MessagingFactory;
 }
\ No newline at end of file
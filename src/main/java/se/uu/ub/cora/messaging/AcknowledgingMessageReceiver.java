@@ -0,0 +1,51 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.Map;
+
+/**
+ * AcknowledgingMessageReceiver is a {@link MessageReceiver} that acknowledges messages itself.
+ * <p>
+ * {@link MessageListener} implementations detect AcknowledgingMessageReceivers and deliver messages
+ * through {@link #receiveMessage(ReceivedMessage)}, with a {@link MessageAcknowledger} attached to
+ * each {@link ReceivedMessage}. Such messages are not acknowledged automatically, the receiver MUST
+ * acknowledge or reject each of them, for instance using {@link ReceivedMessage#acknowledge()}. To
+ * avoid a round-trip to the messaging server per message, acknowledgements can be collected and
+ * sent cumulatively using a {@link se.uu.ub.cora.messaging.receiver.BatchingAcknowledger}.
+ */
+public interface AcknowledgingMessageReceiver extends MessageReceiver {
+	/**
+	 * receiveMessage gets a call for each message recieved by the {@link MessageListener} it is
+	 * connected to.
+	 * 
+	 * @param receivedMessage
+	 *            The {@link ReceivedMessage}, with an attached MessageAcknowledger
+	 */
+	void receiveMessage(ReceivedMessage receivedMessage);
+
+	/**
+	 * receiveMessage is called by MessageListeners not supporting explicit acknowledgement, the
+	 * message is then delivered without a MessageAcknowledger, and acknowledging it has no effect.
+	 */
+	@Override
+	default void receiveMessage(Map<String, String> headers, String message) {
+		receiveMessage(new ReceivedMessage(headers, message, 0));
+	}
+}
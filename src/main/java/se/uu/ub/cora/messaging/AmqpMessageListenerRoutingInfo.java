@@ -1,5 +1,5 @@
 /*
- * Copyright 2023, 2025 Uppsala University Library
+ * Copyright 2023, 2025, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -18,17 +18,36 @@
  */
 package se.uu.ub.cora.messaging;
 
+import java.util.Objects;
+
 /**
  * AmqpMessageListenerRoutingInfo holds listening info for connecting to an AmqpMessageBroker, there
  * are two different constructors that can be used if you want to connect to an existing queue or
  * have a queue autocreated.
+ * <p>
+ * The consumer settings, prefetchCount, consumerConcurrency and dispatchQueueCapacity, can be set
+ * using {@link #withConsumerSettings(int, int, int)}, they control how many messages the listener
+ * may hold and how many threads deliver them to the {@link MessageReceiver}.
+ * {@link MessageListener} implementations MUST respect them:
+ * <ul>
+ * <li><b>prefetchCount</b> is the maximum number of delivered but not yet acknowledged messages the
+ * messaging server may send to the listener, 0 means no limit. Default is 0.</li>
+ * <li><b>consumerConcurrency</b> is the maximum number of simultaneous calls made to the
+ * MessageReceiver. Default is 1.</li>
+ * <li><b>dispatchQueueCapacity</b> is the maximum number of received messages waiting for a free
+ * consumer thread, when the queue is full the listener stops taking messages from the connection.
+ * 0 means no queue, a message is handed directly to a free consumer thread. Default is 0.</li>
+ * </ul>
  */
 public class AmqpMessageListenerRoutingInfo extends MessageRoutingInfo {
 
 	public final String virtualHost;
-	public String queueName;
-	public String exchange;
-	public String routingKey;
+	public final String queueName;
+	public final String exchange;
+	public final String routingKey;
+	public final int prefetchCount;
+	public final int consumerConcurrency;
+	public final int dispatchQueueCapacity;
 
 	/**
 	 * This constructor should be used when connecting to an existing queue.
@@ -47,6 +66,11 @@ public class AmqpMessageListenerRoutingInfo extends MessageRoutingInfo {
 		super(hostname, port);
 		this.virtualHost = virtualHost;
 		this.queueName = queueName;
+		this.exchange = null;
+		this.routingKey = null;
+		this.prefetchCount = 0;
+		this.consumerConcurrency = 1;
+		this.dispatchQueueCapacity = 0;
 	}
 
 	/**
@@ -70,7 +94,84 @@ public class AmqpMessageListenerRoutingInfo extends MessageRoutingInfo {
 			String routingKey) {
 		super(hostname, port);
 		this.virtualHost = vhost;
+		this.queueName = null;
 		this.exchange = exchange;
 		this.routingKey = routingKey;
+		this.prefetchCount = 0;
+		this.consumerConcurrency = 1;
+		this.dispatchQueueCapacity = 0;
+	}
+
+	private AmqpMessageListenerRoutingInfo(AmqpMessageListenerRoutingInfo routingInfo,
+			int prefetchCount, int consumerConcurrency, int dispatchQueueCapacity) {
+		super(routingInfo.hostname, routingInfo.port);
+		this.virtualHost = routingInfo.virtualHost;
+		this.queueName = routingInfo.queueName;
+		this.exchange = routingInfo.exchange;
+		this.routingKey = routingInfo.routingKey;
+		this.prefetchCount = prefetchCount;
+		this.consumerConcurrency = consumerConcurrency;
+		this.dispatchQueueCapacity = dispatchQueueCapacity;
+	}
+
+	/**
+	 * withConsumerSettings returns a copy of this routing info with the entered consumer settings.
+	 * 
+	 * @param prefetchCount
+	 *            An int with the maximum number of unacknowledged messages, 0 for no limit
+	 * @param consumerConcurrency
+	 *            An int with the maximum number of simultaneous calls to the MessageReceiver, at
+	 *            least 1
+	 * @param dispatchQueueCapacity
+	 *            An int with the maximum number of messages waiting for a consumer thread, 0 for
+	 *            no queue
+	 * @return A new AmqpMessageListenerRoutingInfo with the consumer settings
+	 * @throws IllegalArgumentException
+	 *             if a setting is out of range
+	 */
+	public AmqpMessageListenerRoutingInfo withConsumerSettings(int prefetchCount,
+			int consumerConcurrency, int dispatchQueueCapacity) {
+		throwErrorIfLessThan("prefetchCount", prefetchCount, 0);
+		throwErrorIfLessThan("consumerConcurrency", consumerConcurrency, 1);
+		throwErrorIfLessThan("dispatchQueueCapacity", dispatchQueueCapacity, 0);
+		return new AmqpMessageListenerRoutingInfo(this, prefetchCount, consumerConcurrency,
+				dispatchQueueCapacity);
+	}
+
+	private static void throwErrorIfLessThan(String name, int value, int minimum) {
+		if (value < minimum) {
+			throw new IllegalArgumentException(
+					name + " must be at least " + minimum + ", was " + value);
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + Objects.hash(virtualHost, queueName, exchange, routingKey,
+				prefetchCount, consumerConcurrency, dispatchQueueCapacity);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!super.equals(obj)) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		AmqpMessageListenerRoutingInfo other = (AmqpMessageListenerRoutingInfo) obj;
+		return Objects.equals(virtualHost, other.virtualHost)
+				&& Objects.equals(queueName, other.queueName)
+				&& Objects.equals(exchange, other.exchange)
+				&& Objects.equals(routingKey, other.routingKey)
+				&& prefetchCount == other.prefetchCount
+				&& consumerConcurrency == other.consumerConcurrency
+				&& dispatchQueueCapacity == other.dispatchQueueCapacity;
 	}
 }
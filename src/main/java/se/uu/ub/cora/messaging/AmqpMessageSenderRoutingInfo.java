@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -18,18 +18,82 @@
  */
 package se.uu.ub.cora.messaging;
 
+import java.util.Objects;
+
+/**
+ * AmqpMessageSenderRoutingInfo holds info for sending messages to an exchange on an
+ * AmqpMessageBroker.
+ * <p>
+ * A priority can be set using {@link #withPriority(int)}, messages sent without a
+ * {@link MessageHeaders#PRIORITY} header of their own are then sent with that priority.
+ * {@link MessageSender} implementations MUST respect it. Default is 0, the lowest priority.
+ */
 public class AmqpMessageSenderRoutingInfo extends MessageRoutingInfo {
+	/**
+	 * The highest priority a message can have, as defined by AMQP 0-9-1.
+	 */
+	public static final int MAX_PRIORITY = 255;
 
 	public final String virtualHost;
 	public final String exchange;
 	public final String routingKey;
+	public final int priority;
 
 	public AmqpMessageSenderRoutingInfo(String hostname, int port, String virtualHost,
 			String exchange, String routingKey) {
+		this(hostname, port, virtualHost, exchange, routingKey, 0);
+	}
+
+	private AmqpMessageSenderRoutingInfo(String hostname, int port, String virtualHost,
+			String exchange, String routingKey, int priority) {
 		super(hostname, port);
 		this.routingKey = routingKey;
 		this.virtualHost = virtualHost;
 		this.exchange = exchange;
+		this.priority = priority;
 	}
 
+	/**
+	 * withPriority returns a copy of this routing info with the entered priority.
+	 * 
+	 * @param priority
+	 *            An int with the priority of messages sent without a priority header, between 0
+	 *            and {@link #MAX_PRIORITY}
+	 * @return A new AmqpMessageSenderRoutingInfo with the priority
+	 * @throws IllegalArgumentException
+	 *             if priority is out of range
+	 */
+	public AmqpMessageSenderRoutingInfo withPriority(int priority) {
+		if (priority < 0 || priority > MAX_PRIORITY) {
+			throw new IllegalArgumentException(
+					"priority must be between 0 and " + MAX_PRIORITY + ", was " + priority);
+		}
+		return new AmqpMessageSenderRoutingInfo(hostname, port, virtualHost, exchange,
+				routingKey, priority);
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + Objects.hash(virtualHost, exchange, routingKey, priority);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!super.equals(obj)) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		AmqpMessageSenderRoutingInfo other = (AmqpMessageSenderRoutingInfo) obj;
+		return Objects.equals(virtualHost, other.virtualHost)
+				&& Objects.equals(exchange, other.exchange)
+				&& Objects.equals(routingKey, other.routingKey) && priority == other.priority;
+	}
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AsyncMessageSender is used to send messages to a messaging system without waiting for the
+ * messaging server. Implementations are normally created through
+ * {@link MessagingFactory#factorTopicAsyncMessageSender(MessageRoutingInfo, int)}.
+ * <p>
+ * Implementations limit the number of sent but not yet confirmed messages, when that limit is
+ * reached calls to sendMessageAsync block until an earlier message is confirmed.
+ */
+public interface AsyncMessageSender {
+	/**
+	 * sendMessageAsync sends a message to a messaging server, the server details, such as
+	 * hostname, port etc. are specified when creating an instance of the implementing class.
+	 * 
+	 * @param headers
+	 *            A Map<String, Object> that are sent as headers in the message
+	 * @param message
+	 *            A String with the body of the message
+	 * @return A CompletableFuture that is completed when the messaging server has confirmed the
+	 *         message, or completed exceptionally if sending the message failed
+	 */
+	CompletableFuture<Void> sendMessageAsync(Map<String, Object> headers, String message);
+
+	/**
+	 * close waits for already sent messages to be confirmed and then releases the resources held
+	 * by this AsyncMessageSender. After close has been called the AsyncMessageSender MUST NOT be
+	 * used again.
+	 */
+	void close();
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * AsyncMessageSenderAdapter makes a synchronous {@link MessageSender} usable as an
+ * {@link AsyncMessageSender}. It is used by the default implementation of
+ * {@link MessagingFactory#factorTopicAsyncMessageSender(MessageRoutingInfo, int)} so that
+ * MessagingFactory implementations without native asynchronous sending can still be used through
+ * the asynchronous API.
+ * <p>
+ * Messages are sent one at a time, in the order sendMessageAsync was called, from a thread owned by
+ * the adapter. A message is regarded as confirmed when sendMessage on the decorated MessageSender
+ * has returned.
+ */
+public final class AsyncMessageSenderAdapter implements AsyncMessageSender {
+	private final MessageSender messageSender;
+	private final InFlightWindow inFlightWindow;
+	private final ExecutorService sendingThread = Executors.newSingleThreadExecutor(
+			Thread.ofPlatform().name("cora-async-sender").daemon().factory());
+
+	/**
+	 * @param messageSender
+	 *            The synchronous MessageSender to send messages through
+	 * @param maxInFlight
+	 *            An int with the maximum number of messages waiting to be sent
+	 */
+	public AsyncMessageSenderAdapter(MessageSender messageSender, int maxInFlight) {
+		this.messageSender = messageSender;
+		inFlightWindow = new InFlightWindow(maxInFlight);
+	}
+
+	@Override
+	public CompletableFuture<Void> sendMessageAsync(Map<String, Object> headers, String message) {
+		CompletableFuture<Void> confirmation = new CompletableFuture<>();
+		try {
+			inFlightWindow.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			confirmation.completeExceptionally(e);
+			return confirmation;
+		}
+		submitSend(headers, message, confirmation);
+		return confirmation;
+	}
+
+	private void submitSend(Map<String, Object> headers, String message,
+			CompletableFuture<Void> confirmation) {
+		try {
+			sendingThread.execute(() -> send(headers, message, confirmation));
+		} catch (RejectedExecutionException e) {
+			inFlightWindow.release();
+			confirmation.completeExceptionally(e);
+		}
+	}
+
+	private void send(Map<String, Object> headers, String message,
+			CompletableFuture<Void> confirmation) {
+		try {
+			messageSender.sendMessage(headers, message);
+			inFlightWindow.release();
+			confirmation.complete(null);
+		} catch (RuntimeException e) {
+			inFlightWindow.release();
+			confirmation.completeExceptionally(e);
+		}
+	}
+
+	int getNumberInFlight() {
+		return inFlightWindow.getNumberInFlight();
+	}
+
+	@Override
+	public void close() {
+		sendingThread.close();
+		messageSender.close();
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BatchMessageReceiver is a {@link MessageReceiver} that handles incoming messages in batches,
+ * for instance to write them to a database or index in one bulk operation.
+ * <p>
+ * {@link MessageListener} implementations detect BatchMessageReceivers and deliver messages
+ * through {@link #receiveMessages(List)}, collecting at most {@link #getMaxBatchSize()} messages
+ * and waiting at most {@link #getMaxBatchWait()} for a batch to fill up. A MessageListener not
+ * aware of batches calls receiveMessage, which delivers a batch of one message.
+ * <p>
+ * Messages are acknowledged per batch, a batch is acknowledged when receiveMessages returns
+ * normally. If receiveMessages throws an exception, none of the messages in the batch are
+ * acknowledged.
+ * <p>
+ * Implementations of BatchMessageReceiver MUST be threadsafe.
+ */
+public interface BatchMessageReceiver extends MessageReceiver {
+	/**
+	 * receiveMessages gets a call with a batch of messages recieved by the
+	 * {@link MessageListener} it is connected to, in the order they were received.
+	 * 
+	 * @param messages
+	 *            A List of {@link ReceivedMessage}, with at most maxBatchSize messages
+	 */
+	void receiveMessages(List<ReceivedMessage> messages);
+
+	/**
+	 * @return An int with the maximum number of messages to deliver in one batch, default 100
+	 */
+	default int getMaxBatchSize() {
+		return 100;
+	}
+
+	/**
+	 * @return A Duration with the maximum time to wait for a batch to fill up before delivering
+	 *         it, default 100 milliseconds
+	 */
+	default Duration getMaxBatchWait() {
+		return Duration.ofMillis(100);
+	}
+
+	/**
+	 * receiveMessage delivers the message as a batch of one message to
+	 * {@link #receiveMessages(List)}.
+	 */
+	@Override
+	default void receiveMessage(Map<String, String> headers, String message) {
+		receiveMessages(List.of(new ReceivedMessage(headers, message, 0)));
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+/**
+ * CreditBasedMessageListener is implemented by {@link MessageListener}s whose messaging system
+ * lets the consumer control how many messages the server may send, such as AMQP 1.0 link credit
+ * or an adjustable AMQP 0-9-1 prefetch.
+ * <p>
+ * {@link se.uu.ub.cora.messaging.receiver.MessageListenerPublisher} passes the demand of its
+ * subscriber on to listeners implementing this interface, so that the server only sends messages
+ * that have been asked for.
+ */
+public interface CreditBasedMessageListener extends MessageListener {
+	/**
+	 * addCredit allows the messaging server to send numberOfMessages more messages to this
+	 * listener.
+	 * 
+	 * @param numberOfMessages
+	 *            A long with the number of additional messages that may be sent
+	 */
+	void addCredit(long numberOfMessages);
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * InFlightWindow limits the number of messages that have been sent but not yet confirmed by the
+ * messaging server. It is intended to be used by implementations of {@link AsyncMessageSender},
+ * which call {@link #acquire()} before sending a message and {@link #release()} when the message
+ * is confirmed or has failed.
+ */
+public final class InFlightWindow {
+	private final int maxInFlight;
+	private final Semaphore permits;
+
+	/**
+	 * @param maxInFlight
+	 *            An int with the maximum number of messages in flight at the same time
+	 */
+	public InFlightWindow(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+		permits = new Semaphore(maxInFlight);
+	}
+
+	/**
+	 * acquire reserves room for one message, blocking until there is room in the window.
+	 * 
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		permits.acquire();
+	}
+
+	/**
+	 * release frees the room reserved for one message
+	 */
+	public void release() {
+		permits.release();
+	}
+
+	/**
+	 * @return An int with the number of messages currently in flight
+	 */
+	public int getNumberInFlight() {
+		return maxInFlight - permits.availablePermits();
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -18,6 +18,8 @@
  */
 package se.uu.ub.cora.messaging;
 
+import java.util.Objects;
+
 public class JmsMessageRoutingInfo extends MessageRoutingInfo {
 
 	public final String username;
@@ -31,4 +33,29 @@ public class JmsMessageRoutingInfo extends MessageRoutingInfo {
 		this.username = username;
 		this.password = password;
 	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + Objects.hash(routingKey, username, password);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!super.equals(obj)) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		JmsMessageRoutingInfo other = (JmsMessageRoutingInfo) obj;
+		return Objects.equals(routingKey, other.routingKey)
+				&& Objects.equals(username, other.username)
+				&& Objects.equals(password, other.password);
+	}
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LeasedMessageSender is the {@link MessageSender} handed out by {@link MessagingProvider} for a
+ * cached MessageSender. It sends through the cached MessageSender, and closing it releases the
+ * lease on the cached MessageSender instead of closing it, the cached MessageSender is closed when
+ * it has been evicted from the cache and all its leases are released.
+ */
+final class LeasedMessageSender implements MessageSender {
+	private final MessageHandlerCache<MessageSender>.Lease lease;
+	private final MessageSender messageSender;
+
+	LeasedMessageSender(MessageHandlerCache<MessageSender>.Lease lease) {
+		this.lease = lease;
+		this.messageSender = lease.getHandler();
+	}
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		messageSender.sendMessage(headers, message);
+	}
+
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		messageSender.sendBinaryMessage(headers, message);
+	}
+
+	@Override
+	public boolean supportsBinaryMessages() {
+		return messageSender.supportsBinaryMessages();
+	}
+
+	@Override
+	public void sendMessages(List<OutgoingMessage> messages) {
+		messageSender.sendMessages(messages);
+	}
+
+	/**
+	 * close releases the lease on the cached MessageSender, calling close more than once has no
+	 * further effect
+	 */
+	@Override
+	public void close() {
+		lease.release();
+	}
+}
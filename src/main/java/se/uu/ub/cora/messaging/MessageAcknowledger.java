@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+/**
+ * MessageAcknowledger is implemented by {@link MessageListener} implementations to let receivers
+ * settle received messages explicitly. Messages are identified by the deliveryTag of their
+ * {@link ReceivedMessage}.
+ * <p>
+ * A message that is neither acknowledged nor rejected is redelivered by the messaging server when
+ * the connection it was delivered on is closed, which gives at-least-once delivery.
+ * <p>
+ * Implementations of MessageAcknowledger MUST be threadsafe.
+ */
+public interface MessageAcknowledger {
+	/**
+	 * acknowledge tells the messaging server that the message with the entered deliveryTag has
+	 * been handled and can be removed.
+	 * 
+	 * @param deliveryTag
+	 *            A long with the deliveryTag of the message
+	 */
+	void acknowledge(long deliveryTag);
+
+	/**
+	 * acknowledgeUpTo acknowledges, in one call to the messaging server, all messages delivered on
+	 * the same connection with a deliveryTag up to and including the entered deliveryTag.
+	 * 
+	 * @param deliveryTag
+	 *            A long with the highest deliveryTag to acknowledge
+	 */
+	void acknowledgeUpTo(long deliveryTag);
+
+	/**
+	 * reject tells the messaging server that the message with the entered deliveryTag could not be
+	 * handled.
+	 * 
+	 * @param deliveryTag
+	 *            A long with the deliveryTag of the message
+	 * @param requeue
+	 *            A boolean, true if the message should be delivered again, false if it should be
+	 *            discarded or dead-lettered
+	 */
+	void reject(long deliveryTag, boolean requeue);
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+
+/**
+ * MessageHandlerCache keeps created message handlers, such as {@link MessageSender}s, keyed by
+ * their {@link MessageRoutingInfo}, so that repeated lookups for equal routing infos share the
+ * same handler and its connection.
+ * <p>
+ * Each lookup returns a {@link Lease} on the handler, that the caller releases when it no longer
+ * uses the handler. A handler is closed when it has been evicted from the cache and all its leases
+ * are released, so a handler is never closed while a caller still uses it, and an evicted handler
+ * is never left open.
+ * <p>
+ * Lookups of already cached handlers take no lock. A missing handler is created outside the map,
+ * so that connecting does not block lookups of other routing infos. If two threads create a
+ * handler for the same routing info at the same time, the one not stored is closed.
+ * <p>
+ * The cache holds at most maximumSize handlers, when more are added the least recently used
+ * handler is evicted. Handlers that have not been looked up for maximumIdleTime are evicted when
+ * the cache is next used. {@link #retire()} evicts all handlers and stops caching, it is used when
+ * the cache is replaced.
+ */
+class MessageHandlerCache<T> {
+	private static final long NO_IDLE_EVICTION = 0;
+	private Logger log = LoggerProvider.getLoggerForClass(MessageHandlerCache.class);
+	private final ConcurrentHashMap<MessageRoutingInfo, CachedHandler<T>> handlers =
+			new ConcurrentHashMap<>();
+	private final Consumer<T> closer;
+	private final int maximumSize;
+	private final long maximumIdleNanos;
+	private final LongSupplier nanoClock;
+	private final AtomicLong nextIdleSweep;
+	private volatile boolean retired = false;
+
+	/**
+	 * Creates a cache that never evicts handlers, other than by {@link #retire()}
+	 */
+	MessageHandlerCache(Consumer<T> closer) {
+		this(closer, Integer.MAX_VALUE, NO_IDLE_EVICTION);
+	}
+
+	MessageHandlerCache(Consumer<T> closer, int maximumSize, long maximumIdleNanos) {
+		this(closer, maximumSize, maximumIdleNanos, System::nanoTime);
+	}
+
+	MessageHandlerCache(Consumer<T> closer, int maximumSize, long maximumIdleNanos,
+			LongSupplier nanoClock) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException(
+					"maximumSize must be at least 1, was " + maximumSize);
+		}
+		this.closer = closer;
+		this.maximumSize = maximumSize;
+		this.maximumIdleNanos = maximumIdleNanos;
+		this.nanoClock = nanoClock;
+		this.nextIdleSweep = new AtomicLong(nanoClock.getAsLong() + maximumIdleNanos);
+	}
+
+	/**
+	 * getOrCreate returns a Lease on the handler cached for the routing info, creating and caching
+	 * the handler using creator if none is cached. The Lease MUST be released when the handler is
+	 * no longer used.
+	 */
+	Lease getOrCreate(MessageRoutingInfo routingInfo, Function<MessageRoutingInfo, T> creator) {
+		long now = nanoClock.getAsLong();
+		Lease lease = null;
+		while (null == lease) {
+			lease = tryToLease(routingInfo, creator, now);
+		}
+		evictIdleHandlersIfSweepIsDue(now);
+		return lease;
+	}
+
+	/**
+	 * tryToLease returns null if the handler found was closed before it could be leased, the
+	 * lookup is then made again.
+	 */
+	private Lease tryToLease(MessageRoutingInfo routingInfo,
+			Function<MessageRoutingInfo, T> creator, long now) {
+		CachedHandler<T> cachedHandler = handlers.get(routingInfo);
+		if (null == cachedHandler) {
+			cachedHandler = createAndCache(routingInfo, creator, now);
+		}
+		if (!cachedHandler.tryToLease(now)) {
+			return null;
+		}
+		if (retired) {
+			evict(routingInfo, cachedHandler);
+		}
+		evictLeastRecentlyUsedWhileTooLarge();
+		return new Lease(cachedHandler);
+	}
+
+	private CachedHandler<T> createAndCache(MessageRoutingInfo routingInfo,
+			Function<MessageRoutingInfo, T> creator, long now) {
+		CachedHandler<T> created = new CachedHandler<>(creator.apply(routingInfo), now);
+		CachedHandler<T> alreadyCached = handlers.putIfAbsent(routingInfo, created);
+		if (null == alreadyCached) {
+			return created;
+		}
+		close(created.handler);
+		return alreadyCached;
+	}
+
+	private void evictLeastRecentlyUsedWhileTooLarge() {
+		while (handlers.size() > maximumSize) {
+			Entry<MessageRoutingInfo, CachedHandler<T>> leastRecentlyUsed = findLeastRecentlyUsed();
+			evict(leastRecentlyUsed.getKey(), leastRecentlyUsed.getValue());
+		}
+	}
+
+	private Entry<MessageRoutingInfo, CachedHandler<T>> findLeastRecentlyUsed() {
+		Entry<MessageRoutingInfo, CachedHandler<T>> leastRecentlyUsed = null;
+		for (Entry<MessageRoutingInfo, CachedHandler<T>> entry : handlers.entrySet()) {
+			if (null == leastRecentlyUsed
+					|| entry.getValue().lastUsed - leastRecentlyUsed.getValue().lastUsed < 0) {
+				leastRecentlyUsed = entry;
+			}
+		}
+		return leastRecentlyUsed;
+	}
+
+	private void evictIdleHandlersIfSweepIsDue(long now) {
+		if (maximumIdleNanos == NO_IDLE_EVICTION) {
+			return;
+		}
+		long sweepAt = nextIdleSweep.get();
+		if (now - sweepAt >= 0 && nextIdleSweep.compareAndSet(sweepAt, now + maximumIdleNanos)) {
+			evictHandlersIdleSince(now - maximumIdleNanos);
+		}
+	}
+
+	private void evictHandlersIdleSince(long idleLimit) {
+		handlers.forEach((routingInfo, cachedHandler) -> {
+			if (cachedHandler.lastUsed - idleLimit < 0) {
+				evict(routingInfo, cachedHandler);
+			}
+		});
+	}
+
+	private void evict(MessageRoutingInfo routingInfo, CachedHandler<T> cachedHandler) {
+		if (handlers.remove(routingInfo, cachedHandler) && cachedHandler.evict()) {
+			close(cachedHandler.handler);
+		}
+	}
+
+	private void close(T handler) {
+		try {
+			closer.accept(handler);
+		} catch (RuntimeException e) {
+			log.logWarnUsingMessageAndException("Failed to close message handler", e);
+		}
+	}
+
+	/**
+	 * retire evicts all cached handlers and makes handlers created by later lookups be evicted as
+	 * soon as they are leased, so that no handler is left open in a cache that is no longer used.
+	 * Handlers are closed when their leases are released.
+	 */
+	void retire() {
+		retired = true;
+		handlers.forEach(this::evict);
+	}
+
+	int size() {
+		return handlers.size();
+	}
+
+	/**
+	 * Lease gives access to a cached handler until it is released. Releasing a Lease more than once
+	 * has no further effect.
+	 */
+	final class Lease {
+		private final CachedHandler<T> cachedHandler;
+		private final AtomicBoolean released = new AtomicBoolean(false);
+
+		private Lease(CachedHandler<T> cachedHandler) {
+			this.cachedHandler = cachedHandler;
+		}
+
+		T getHandler() {
+			return cachedHandler.handler;
+		}
+
+		void release() {
+			if (released.compareAndSet(false, true) && cachedHandler.release()) {
+				close(cachedHandler.handler);
+			}
+		}
+	}
+
+	/**
+	 * CachedHandler counts the leases of a handler without locking. A lease count of
+	 * {@value #CLOSED} marks a handler that is closed and can not be leased any more.
+	 */
+	private static final class CachedHandler<T> {
+		private static final int CLOSED = -1;
+		private static final long MARK_RESOLUTION_NANOS = 1_000_000;
+		private final T handler;
+		private final AtomicInteger leases = new AtomicInteger(0);
+		private volatile boolean evicted = false;
+		private volatile long lastUsed;
+
+		CachedHandler(T handler, long lastUsed) {
+			this.handler = handler;
+			this.lastUsed = lastUsed;
+		}
+
+		boolean tryToLease(long now) {
+			int currentLeases = leases.get();
+			while (currentLeases != CLOSED) {
+				if (leases.compareAndSet(currentLeases, currentLeases + 1)) {
+					markUsed(now);
+					return true;
+				}
+				currentLeases = leases.get();
+			}
+			return false;
+		}
+
+		/**
+		 * markUsed only writes lastUsed when it has changed noticeably, so that threads sharing a
+		 * handler do not all write to the same field on every lookup.
+		 */
+		private void markUsed(long now) {
+			if (now - lastUsed > MARK_RESOLUTION_NANOS) {
+				lastUsed = now;
+			}
+		}
+
+		/**
+		 * evict returns true if the handler is to be closed by the caller, as it has no leases
+		 */
+		boolean evict() {
+			evicted = true;
+			return leases.compareAndSet(0, CLOSED);
+		}
+
+		/**
+		 * release returns true if the handler is to be closed by the caller, as it is evicted and
+		 * this was its last lease
+		 */
+		boolean release() {
+			return leases.decrementAndGet() == 0 && evicted && leases.compareAndSet(0, CLOSED);
+		}
+	}
+}
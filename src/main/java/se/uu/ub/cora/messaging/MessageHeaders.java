@@ -0,0 +1,394 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * MessageHeaders is a compact, immutable set of message headers. Names and values are kept in two
+ * flat arrays instead of a hash table, which for the handful of headers a message usually has
+ * takes less memory and is as fast to search. Well known header names are interned, so that
+ * headers created for each message share the same name instances.
+ * <p>
+ * MessageHeaders is a Map&lt;String, Object&gt; and can be given to
+ * {@link MessageSender#sendMessage(Map, String)} as it is, {@link #asStringMap()} gives the
+ * Map&lt;String, String&gt; view used by {@link MessageReceiver#receiveMessage(Map, String)}. The
+ * typed accessors read numeric and boolean values without converting them to and from strings.
+ * <p>
+ * Header names and values must not be null. Trying to modify MessageHeaders throws an
+ * UnsupportedOperationException.
+ */
+public final class MessageHeaders extends AbstractMap<String, Object> {
+	public static final String ACTION = "action";
+	public static final String TYPE = "type";
+	public static final String ID = "id";
+	public static final String RECORD_TYPE = "recordType";
+	public static final String RECORD_ID = "recordId";
+	public static final String DATA_DIVIDER = "dataDivider";
+	public static final String MESSAGE_ID = "messageId";
+	public static final String CORRELATION_ID = "correlationId";
+	public static final String CONTENT_TYPE = "contentType";
+	public static final String CONTENT_ENCODING = "contentEncoding";
+	public static final String TIMESTAMP = "timestamp";
+	public static final String ORIGIN = "origin";
+	public static final String SEQUENCE_NUMBER = "sequenceNumber";
+	public static final String PRIORITY = "priority";
+	public static final String RETRY_ATTEMPT = "retryAttempt";
+	public static final String RETRY_DELAY = "retryDelay";
+	public static final String LAST_ERROR = "lastError";
+	public static final String DEAD_LETTER_REASON = "deadLetterReason";
+
+	private static final Map<String, String> WELL_KNOWN_NAMES = createInternTable(ACTION, TYPE,
+			ID, RECORD_TYPE, RECORD_ID, DATA_DIVIDER, MESSAGE_ID, CORRELATION_ID, CONTENT_TYPE,
+			CONTENT_ENCODING, TIMESTAMP, ORIGIN, SEQUENCE_NUMBER, PRIORITY, RETRY_ATTEMPT,
+			RETRY_DELAY, LAST_ERROR, DEAD_LETTER_REASON);
+	private static final MessageHeaders EMPTY = new MessageHeaders(new String[0], new Object[0],
+			0);
+
+	private final String[] names;
+	private final Object[] values;
+	private final int size;
+	private Set<Entry<String, Object>> entrySet;
+	private Map<String, String> stringMap;
+
+	private MessageHeaders(String[] names, Object[] values, int size) {
+		this.names = names;
+		this.values = values;
+		this.size = size;
+	}
+
+	private static Map<String, String> createInternTable(String... names) {
+		Map<String, String> internTable = new HashMap<>();
+		for (String name : names) {
+			internTable.put(name, name);
+		}
+		return Map.copyOf(internTable);
+	}
+
+	public static MessageHeaders empty() {
+		return EMPTY;
+	}
+
+	public static Builder builder() {
+		return new Builder(8);
+	}
+
+	/**
+	 * copyOf returns MessageHeaders with the same headers as the entered map. If the map already is
+	 * a MessageHeaders, it is returned as it is.
+	 * 
+	 * @param headers
+	 *            A Map with the headers to copy, null gives empty MessageHeaders
+	 * @return MessageHeaders with the same headers
+	 */
+	public static MessageHeaders copyOf(Map<String, ?> headers) {
+		if (headers instanceof MessageHeaders messageHeaders) {
+			return messageHeaders;
+		}
+		if (null == headers || headers.isEmpty()) {
+			return EMPTY;
+		}
+		Builder builder = new Builder(headers.size());
+		for (Entry<String, ?> header : headers.entrySet()) {
+			builder.put(header.getKey(), header.getValue());
+		}
+		return builder.build();
+	}
+
+	/**
+	 * internName returns the shared instance of a well known header name, or the entered name if it
+	 * is not well known
+	 */
+	public static String internName(String name) {
+		String wellKnownName = WELL_KNOWN_NAMES.get(name);
+		return null == wellKnownName ? name : wellKnownName;
+	}
+
+	private int indexOf(Object name) {
+		for (int i = 0; i < size; i++) {
+			if (names[i] == name) {
+				return i;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object name) {
+		return indexOf(name) >= 0;
+	}
+
+	@Override
+	public Object get(Object name) {
+		int index = indexOf(name);
+		return index < 0 ? null : values[index];
+	}
+
+	/**
+	 * getString returns the value of a header as a String
+	 * 
+	 * @return A String with the value, or null if there is no header with the name
+	 */
+	public String getString(String name) {
+		int index = indexOf(name);
+		return index < 0 ? null : String.valueOf(values[index]);
+	}
+
+	/**
+	 * getLong returns the value of a numeric header, or of a header with a String value holding a
+	 * number
+	 * 
+	 * @return A long with the value, or defaultValue if there is no header with the name
+	 * @throws NumberFormatException
+	 *             if the value is not a number
+	 */
+	public long getLong(String name, long defaultValue) {
+		int index = indexOf(name);
+		if (index < 0) {
+			return defaultValue;
+		}
+		Object value = values[index];
+		if (value instanceof Number number) {
+			return number.longValue();
+		}
+		return Long.parseLong(value.toString());
+	}
+
+	/**
+	 * getInt returns the value of a numeric header as an int, see {@link #getLong(String, long)}
+	 */
+	public int getInt(String name, int defaultValue) {
+		return Math.toIntExact(getLong(name, defaultValue));
+	}
+
+	/**
+	 * getBoolean returns the value of a Boolean header, or of a header with a String value of
+	 * "true" or "false", ignoring case
+	 * 
+	 * @return A boolean with the value, or defaultValue if there is no header with the name
+	 */
+	public boolean getBoolean(String name, boolean defaultValue) {
+		int index = indexOf(name);
+		if (index < 0) {
+			return defaultValue;
+		}
+		Object value = values[index];
+		if (value instanceof Boolean booleanValue) {
+			return booleanValue;
+		}
+		return Boolean.parseBoolean(value.toString());
+	}
+
+	/**
+	 * with returns new MessageHeaders with the entered header added, or replacing an existing
+	 * header with the same name. This MessageHeaders is not changed.
+	 */
+	public MessageHeaders with(String name, Object value) {
+		Builder.throwErrorIfNull(name, value);
+		String internedName = internName(name);
+		int index = indexOf(internedName);
+		int newSize = index < 0 ? size + 1 : size;
+		String[] newNames = Arrays.copyOf(names, newSize);
+		Object[] newValues = Arrays.copyOf(values, newSize);
+		int changedIndex = index < 0 ? size : index;
+		newNames[changedIndex] = internedName;
+		newValues[changedIndex] = value;
+		return new MessageHeaders(newNames, newValues, newSize);
+	}
+
+	/**
+	 * asStringMap returns a read only view of these headers with the values converted to Strings
+	 * when they are read, as given to {@link MessageReceiver#receiveMessage(Map, String)}.
+	 */
+	public Map<String, String> asStringMap() {
+		if (null == stringMap) {
+			stringMap = new StringView();
+		}
+		return stringMap;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		if (null == entrySet) {
+			entrySet = new EntrySet<>(false);
+		}
+		return entrySet;
+	}
+
+	private final class EntrySet<V> extends AbstractSet<Entry<String, V>> {
+		private final boolean valuesAsStrings;
+
+		EntrySet(boolean valuesAsStrings) {
+			this.valuesAsStrings = valuesAsStrings;
+		}
+
+		@Override
+		public Iterator<Entry<String, V>> iterator() {
+			return new Iterator<>() {
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				@SuppressWarnings("unchecked")
+				public Entry<String, V> next() {
+					if (next >= size) {
+						throw new NoSuchElementException();
+					}
+					Object value = valuesAsStrings ? String.valueOf(values[next]) : values[next];
+					Entry<String, V> entry = new SimpleImmutableEntry<>(names[next], (V) value);
+					next++;
+					return entry;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	private final class StringView extends AbstractMap<String, String> {
+		private final Set<Entry<String, String>> stringEntrySet = new EntrySet<>(true);
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean containsKey(Object name) {
+			return indexOf(name) >= 0;
+		}
+
+		@Override
+		public String get(Object name) {
+			int index = indexOf(name);
+			return index < 0 ? null : String.valueOf(values[index]);
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return stringEntrySet;
+		}
+	}
+
+	/**
+	 * Builder collects headers for new MessageHeaders. A Builder is not thread safe and can not be
+	 * used after build has been called, as the built MessageHeaders use its arrays.
+	 */
+	public static final class Builder {
+		private String[] names;
+		private Object[] values;
+		private int size = 0;
+		private boolean built = false;
+
+		private Builder(int expectedSize) {
+			names = new String[Math.max(1, expectedSize)];
+			values = new Object[names.length];
+		}
+
+		/**
+		 * put adds a header, replacing an earlier header with the same name
+		 * 
+		 * @throws IllegalStateException
+		 *             if build has been called
+		 */
+		public Builder put(String name, Object value) {
+			if (built) {
+				throw new IllegalStateException("Builder can not be used after build");
+			}
+			throwErrorIfNull(name, value);
+			String internedName = internName(name);
+			int index = indexOf(internedName);
+			if (index >= 0) {
+				values[index] = value;
+				return this;
+			}
+			growIfFull();
+			names[size] = internedName;
+			values[size] = value;
+			size++;
+			return this;
+		}
+
+		private static void throwErrorIfNull(String name, Object value) {
+			if (null == name) {
+				throw new IllegalArgumentException("Header name must not be null");
+			}
+			if (null == value) {
+				throw new IllegalArgumentException(
+						"Header value must not be null, for header " + name);
+			}
+		}
+
+		private int indexOf(String name) {
+			for (int i = 0; i < size; i++) {
+				if (names[i].equals(name)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private void growIfFull() {
+			if (size == names.length) {
+				names = Arrays.copyOf(names, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+		}
+
+		public Builder putAll(Map<String, ?> headers) {
+			for (Entry<String, ?> header : headers.entrySet()) {
+				put(header.getKey(), header.getValue());
+			}
+			return this;
+		}
+
+		public MessageHeaders build() {
+			built = true;
+			if (size == 0) {
+				return EMPTY;
+			}
+			return new MessageHeaders(names, values, size);
+		}
+	}
+}
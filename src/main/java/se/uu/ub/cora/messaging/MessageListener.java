@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -19,15 +19,56 @@
 
 package se.uu.ub.cora.messaging;
 
+import se.uu.ub.cora.messaging.receiver.VirtualThreadMessageDispatcher;
+
 /**
- * 
- *
+ * MessageListener is used to listen for messages from a messaging system such as AMQP or JMS.
+ * Implementations are normally created through a factory in an implementing package.
  */
 public interface MessageListener {
 	/**
+	 * listen starts delivering messages from the messaging server to the entered messageReceiver.
+	 * <p>
+	 * If the messageReceiver is a {@link BatchMessageReceiver}, implementations MUST deliver the
+	 * messages in batches through {@link BatchMessageReceiver#receiveMessages(java.util.List)}
+	 * and acknowledge them per batch. A
+	 * {@link se.uu.ub.cora.messaging.receiver.ReceivedMessageBatcher} can be used to collect the
+	 * batches.
+	 * <p>
+	 * If the messageReceiver is an {@link AcknowledgingMessageReceiver}, implementations MUST
+	 * deliver the messages through
+	 * {@link AcknowledgingMessageReceiver#receiveMessage(ReceivedMessage)} with a
+	 * {@link MessageAcknowledger} attached, and MUST NOT acknowledge them automatically.
 	 * 
 	 * @param messageReceiver
+	 *            The {@link MessageReceiver} to deliver messages to
 	 */
 	void listen(MessageReceiver messageReceiver);
 
+	/**
+	 * listenUsingVirtualThreads starts delivering messages to the entered messageReceiver, handling
+	 * each message on its own virtual thread, with at most maxConcurrentHandlers messages handled
+	 * at the same time. See {@link VirtualThreadMessageDispatcher}.
+	 * 
+	 * @param messageReceiver
+	 *            The {@link MessageReceiver} to deliver messages to
+	 * @param maxConcurrentHandlers
+	 *            An int with the maximum number of messages handled at the same time
+	 */
+	default void listenUsingVirtualThreads(MessageReceiver messageReceiver,
+			int maxConcurrentHandlers) {
+		listen(new VirtualThreadMessageDispatcher(messageReceiver, maxConcurrentHandlers));
+	}
+
+	/**
+	 * close stops listening and releases the resources, such as connections and channels, held by
+	 * this MessageListener. After close has been called the MessageListener MUST NOT be used again.
+	 * <p>
+	 * The default implementation does nothing, implementations holding resources should override
+	 * this method.
+	 */
+	default void close() {
+		// nothing to release by default
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -18,6 +18,8 @@
  */
 package se.uu.ub.cora.messaging;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 /**
@@ -33,7 +35,9 @@ public interface MessageReceiver {
 	 * Implementing classes use this method to handle incoming messages.
 	 * 
 	 * <p>
-	 * <em>Note, that multiple calls can be made simultaniously to this method</em>
+	 * <em>Note, that multiple calls can be made simultaniously to this method</em>, the maximum
+	 * number of simultaneous calls is set by the listener's routing info, see
+	 * {@link AmqpMessageListenerRoutingInfo#consumerConcurrency}.
 	 * 
 	 * @param headers
 	 *            Map with the JMS message headers.
@@ -42,6 +46,45 @@ public interface MessageReceiver {
 	 */
 	void receiveMessage(Map<String, String> headers, String message);
 
+	/**
+	 * receiveBinaryMessage is called instead of receiveMessage by {@link MessageListener}
+	 * implementations able to deliver the message body without converting it to a String.
+	 * <p>
+	 * The default implementation decodes the body as UTF-8 and calls receiveMessage, so that
+	 * existing implementations keep working. Implementations that can handle binary bodies should
+	 * override this method, to avoid the copy and charset conversion.
+	 * <p>
+	 * <em>The buffer is only valid during the call, the MessageListener may reuse it after this
+	 * method returns. Implementations needing the body later must copy it.</em>
+	 * 
+	 * @param headers
+	 *            Map with the JMS message headers.
+	 * @param message
+	 *            A read-only ByteBuffer, possibly direct, with the message body from its position
+	 *            to its limit.
+	 */
+	default void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+		receiveMessage(headers, StandardCharsets.UTF_8.decode(message.duplicate()).toString());
+	}
+
+	/**
+	 * receiveMessageUsingHeaders is called instead of receiveMessage by {@link MessageListener}
+	 * implementations that create {@link MessageHeaders} for received messages, avoiding a
+	 * HashMap per message and the conversion of header values to Strings.
+	 * <p>
+	 * The default implementation calls receiveMessage with {@link MessageHeaders#asStringMap()},
+	 * so that existing implementations keep working. Implementations reading typed header values
+	 * should override this method and use the typed accessors of MessageHeaders.
+	 * 
+	 * @param headers
+	 *            MessageHeaders with the message headers
+	 * @param message
+	 *            String with the message body
+	 */
+	default void receiveMessageUsingHeaders(MessageHeaders headers, String message) {
+		receiveMessage(headers.asStringMap(), message);
+	}
+
 	/**
 	 * topicClosed might be called by implementing messaging systems when a connection to the
 	 * specified message queue is closed
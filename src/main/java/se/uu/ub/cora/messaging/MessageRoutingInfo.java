@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -19,10 +19,14 @@
 
 package se.uu.ub.cora.messaging;
 
+import java.util.Objects;
+
 /**
  * Parent Container with information of where to route messages. This container holds only the
  * parameters which are shared on the diferent MessageRoutingInfo Subclasses.
- *
+ * <p>
+ * MessageRoutingInfos are value objects, two instances of the same class holding the same values
+ * are equal. This makes it possible to use them as keys when caching message handlers.
  */
 
 public abstract class MessageRoutingInfo {
@@ -36,4 +40,24 @@ public abstract class MessageRoutingInfo {
 		this.port = port;
 	}
 
+	@Override
+	public int hashCode() {
+		return Objects.hash(hostname, port);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		MessageRoutingInfo other = (MessageRoutingInfo) obj;
+		return Objects.equals(hostname, other.hostname) && port == other.port;
+	}
+
 }
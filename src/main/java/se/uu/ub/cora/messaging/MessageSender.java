@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -19,6 +19,9 @@
 
 package se.uu.ub.cora.messaging;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -36,4 +39,63 @@ public interface MessageSender {
 	 *            A String with the body of the message
 	 */
 	void sendMessage(Map<String, Object> headers, String message);
+
+	/**
+	 * sendBinaryMessage sends a message with a binary body to the same messaging server as
+	 * {@link #sendMessage(Map, String)}, without first converting the body to a String.
+	 * <p>
+	 * The default implementation decodes the body as UTF-8 and calls sendMessage, so that existing
+	 * implementations keep working. Implementations able to send binary bodies should override
+	 * this method, to avoid the copy and charset conversion.
+	 * 
+	 * @param headers
+	 *            A Map<String, Object> that are sent as headers in the message
+	 * @param message
+	 *            A ByteBuffer with the body of the message, from its position to its limit. The
+	 *            buffer can be read-only and direct, and is not modified by this method.
+	 */
+	default void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		sendMessage(headers, StandardCharsets.UTF_8.decode(message.duplicate()).toString());
+	}
+
+	/**
+	 * supportsBinaryMessages tells if {@link #sendBinaryMessage(Map, ByteBuffer)} sends binary
+	 * bodies as they are, and not as UTF-8 decoded text as the default implementation does.
+	 * <p>
+	 * Implementations overriding sendBinaryMessage to send binary bodies unchanged should also
+	 * override this method to return true. Decorators should return what the MessageSender they
+	 * send through returns.
+	 * 
+	 * @return A boolean, true if binary bodies are sent unchanged, the default is false
+	 */
+	default boolean supportsBinaryMessages() {
+		return false;
+	}
+
+	/**
+	 * sendMessages sends a batch of messages, in the order they are listed, to the same messaging
+	 * server as {@link #sendMessage(Map, String)}.
+	 * <p>
+	 * The default implementation calls sendMessage once for each message. Implementations that can
+	 * send several messages in one round-trip to the server, should override this method.
+	 * 
+	 * @param messages
+	 *            A List of {@link OutgoingMessage} to send
+	 */
+	default void sendMessages(List<OutgoingMessage> messages) {
+		for (OutgoingMessage outgoingMessage : messages) {
+			sendMessage(outgoingMessage.headers, outgoingMessage.message);
+		}
+	}
+
+	/**
+	 * close releases the resources, such as connections and channels, held by this MessageSender.
+	 * After close has been called the MessageSender MUST NOT be used again.
+	 * <p>
+	 * The default implementation does nothing, implementations holding resources should override
+	 * this method.
+	 */
+	default void close() {
+		// nothing to release by default
+	}
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -23,6 +23,10 @@ package se.uu.ub.cora.messaging;
  * MessagingFactory is an interface to provide access to implementing factory classes found in other
  * modules. These implementing classes are intended to be loaded through javas ServiceLoader
  * mechanism
+ * <p>
+ * More than one implementation can be used at the same time, see {@link MessagingFactoryRegistry}.
+ * The registry uses {@link #getTransportName()}, {@link #getPriority()} and
+ * {@link #supportsRoutingInfoType(Class)} to choose which implementation to use for a routing info.
  */
 public interface MessagingFactory {
 	/**
@@ -38,4 +42,64 @@ public interface MessagingFactory {
 
 	MessageListener factorTopicMessageListener(MessageRoutingInfo messagingRoutingInfo);
 
+	/**
+	 * factorTopicAsyncMessageSender returns an {@link AsyncMessageSender} sending messages to the
+	 * host, port, etc specified in {@link MessageRoutingInfo}, with at most maxInFlight messages
+	 * sent but not yet confirmed by the messaging server.
+	 * <p>
+	 * The default implementation adapts the MessageSender from
+	 * {@link #factorTopicMessageSender(MessageRoutingInfo)} using an
+	 * {@link AsyncMessageSenderAdapter}. Implementations that can send messages asynchronously
+	 * and get confirmations from the server should override this method.
+	 * 
+	 * @param messagingRoutingInfo
+	 *            {@link MessageRoutingInfo}
+	 * @param maxInFlight
+	 *            An int with the maximum number of unconfirmed messages
+	 * @return {@link AsyncMessageSender}
+	 */
+	default AsyncMessageSender factorTopicAsyncMessageSender(
+			MessageRoutingInfo messagingRoutingInfo, int maxInFlight) {
+		return new AsyncMessageSenderAdapter(factorTopicMessageSender(messagingRoutingInfo),
+				maxInFlight);
+	}
+
+	/**
+	 * getTransportName returns the name used to select this implementation explicitly using a
+	 * {@link TransportSelector}. Names must be unique among the implementations in use.
+	 * <p>
+	 * The default implementation returns the simple name of the implementing class.
+	 * 
+	 * @return A String with the name of the transport
+	 */
+	default String getTransportName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * getPriority returns the priority of this implementation. When more than one implementation
+	 * supports a routing info type, and no transport is selected explicitly, the one with the
+	 * highest priority is used.
+	 * <p>
+	 * The default implementation returns 0.
+	 * 
+	 * @return An int with the priority
+	 */
+	default int getPriority() {
+		return 0;
+	}
+
+	/**
+	 * supportsRoutingInfoType returns if this implementation can create senders and listeners for
+	 * routing infos of the given type.
+	 * <p>
+	 * The default implementation supports all routing info types.
+	 * 
+	 * @param routingInfoType
+	 *            The concrete class of a {@link MessageRoutingInfo}
+	 * @return A boolean, true if the type is supported
+	 */
+	default boolean supportsRoutingInfoType(Class<? extends MessageRoutingInfo> routingInfoType) {
+		return true;
+	}
 }
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MessagingFactoryRegistry is a {@link MessagingFactory} that lets more than one implementation be
+ * used at the same time, for instance a broker for traffic between nodes and the built in
+ * {@link se.uu.ub.cora.messaging.memory.InMemoryMessagingFactory} for traffic within a node.
+ * <p>
+ * For each routing info the registry first asks its {@link TransportSelector}, if one is set, for
+ * a transport name. If the selector returns null, the implementation with the highest
+ * {@link MessagingFactory#getPriority()} that supports the concrete type of the routing info is
+ * used. Implementations with equal priority are ordered by transport name, so the choice does not
+ * depend on the order implementations are found in. The choice per routing info type is cached,
+ * so dispatching takes no lock.
+ */
+public final class MessagingFactoryRegistry implements MessagingFactory {
+	private final List<MessagingFactory> factoriesInPriorityOrder;
+	private final Map<String, MessagingFactory> factoriesByTransportName;
+	private final Map<Class<? extends MessageRoutingInfo>, MessagingFactory> factoriesByType =
+			new ConcurrentHashMap<>();
+	private volatile TransportSelector transportSelector;
+
+	/**
+	 * Creates a registry using the given implementations, without a {@link TransportSelector}.
+	 * 
+	 * @param factories
+	 *            The MessagingFactory implementations to use
+	 */
+	public MessagingFactoryRegistry(List<MessagingFactory> factories) {
+		this(factories, null);
+	}
+
+	/**
+	 * Creates a registry using the given implementations and transport selector.
+	 * 
+	 * @param factories
+	 *            The MessagingFactory implementations to use, each with a unique transport name
+	 * @param transportSelector
+	 *            A {@link TransportSelector} asked first for each routing info, or null to always
+	 *            choose by routing info type and priority
+	 */
+	public MessagingFactoryRegistry(List<MessagingFactory> factories,
+			TransportSelector transportSelector) {
+		if (factories.isEmpty()) {
+			throw new IllegalArgumentException("factories must not be empty");
+		}
+		factoriesInPriorityOrder = sortInPriorityOrder(factories);
+		factoriesByTransportName = mapByTransportName(factoriesInPriorityOrder);
+		this.transportSelector = transportSelector;
+	}
+
+	private static List<MessagingFactory> sortInPriorityOrder(List<MessagingFactory> factories) {
+		List<MessagingFactory> sorted = new ArrayList<>(factories);
+		sorted.sort(Comparator.comparingInt(MessagingFactory::getPriority).reversed()
+				.thenComparing(MessagingFactory::getTransportName));
+		return List.copyOf(sorted);
+	}
+
+	private static Map<String, MessagingFactory> mapByTransportName(
+			List<MessagingFactory> factories) {
+		Map<String, MessagingFactory> byTransportName = new HashMap<>();
+		for (MessagingFactory factory : factories) {
+			String transportName = factory.getTransportName();
+			if (null != byTransportName.putIfAbsent(transportName, factory)) {
+				throw new MessagingInitializationException(
+						"More than one implementations found for MessagingFactory with transport "
+								+ "name " + transportName);
+			}
+		}
+		return Map.copyOf(byTransportName);
+	}
+
+	@Override
+	public MessageSender factorTopicMessageSender(MessageRoutingInfo messagingRoutingInfo) {
+		return getFactoryForRoutingInfo(messagingRoutingInfo)
+				.factorTopicMessageSender(messagingRoutingInfo);
+	}
+
+	@Override
+	public MessageListener factorTopicMessageListener(MessageRoutingInfo messagingRoutingInfo) {
+		return getFactoryForRoutingInfo(messagingRoutingInfo)
+				.factorTopicMessageListener(messagingRoutingInfo);
+	}
+
+	@Override
+	public AsyncMessageSender factorTopicAsyncMessageSender(
+			MessageRoutingInfo messagingRoutingInfo, int maxInFlight) {
+		return getFactoryForRoutingInfo(messagingRoutingInfo)
+				.factorTopicAsyncMessageSender(messagingRoutingInfo, maxInFlight);
+	}
+
+	@Override
+	public boolean supportsRoutingInfoType(Class<? extends MessageRoutingInfo> routingInfoType) {
+		return findFactoryForType(routingInfoType) != null;
+	}
+
+	/**
+	 * getFactoryForRoutingInfo returns the MessagingFactory used for the routing info.
+	 * 
+	 * @param routingInfo
+	 *            A {@link MessageRoutingInfo}
+	 * @return The MessagingFactory to use, the one with the highest priority if routingInfo is
+	 *         null
+	 * @throws MessagingException
+	 *             if the selected transport is unknown or no implementation supports the type of
+	 *             the routing info
+	 */
+	public MessagingFactory getFactoryForRoutingInfo(MessageRoutingInfo routingInfo) {
+		if (null == routingInfo) {
+			return factoriesInPriorityOrder.get(0);
+		}
+		MessagingFactory selectedFactory = getSelectedFactory(routingInfo);
+		if (null != selectedFactory) {
+			return selectedFactory;
+		}
+		return getFactoryForType(routingInfo.getClass());
+	}
+
+	private MessagingFactory getSelectedFactory(MessageRoutingInfo routingInfo) {
+		TransportSelector selector = transportSelector;
+		if (null == selector) {
+			return null;
+		}
+		String transportName = selector.selectTransport(routingInfo);
+		if (null == transportName) {
+			return null;
+		}
+		MessagingFactory factory = factoriesByTransportName.get(transportName);
+		if (null == factory) {
+			throw new MessagingException(
+					"No MessagingFactory found for selected transport " + transportName);
+		}
+		return factory;
+	}
+
+	private MessagingFactory getFactoryForType(Class<? extends MessageRoutingInfo> type) {
+		MessagingFactory factory = factoriesByType.get(type);
+		if (null == factory) {
+			factory = findFactoryForType(type);
+			if (null == factory) {
+				throw new MessagingException(
+						"No MessagingFactory supports routing info " + type.getSimpleName());
+			}
+			factoriesByType.putIfAbsent(type, factory);
+		}
+		return factory;
+	}
+
+	private MessagingFactory findFactoryForType(Class<? extends MessageRoutingInfo> type) {
+		for (MessagingFactory factory : factoriesInPriorityOrder) {
+			if (factory.supportsRoutingInfoType(type)) {
+				return factory;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the {@link TransportSelector} asked first for each routing info, null to always choose
+	 * by routing info type and priority.
+	 * 
+	 * @param transportSelector
+	 *            A TransportSelector or null
+	 */
+	public void setTransportSelector(TransportSelector transportSelector) {
+		this.transportSelector = transportSelector;
+	}
+
+	/**
+	 * Returns the implementations used by this registry, in priority order.
+	 * 
+	 * @return An unmodifiable List of MessagingFactory
+	 */
+	public List<MessagingFactory> getFactories() {
+		return factoriesInPriorityOrder;
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2025 Uppsala University Library
+ * Copyright 2019, 2025, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -21,23 +21,61 @@ package se.uu.ub.cora.messaging;
 
 import static java.util.UUID.randomUUID;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import se.uu.ub.cora.logger.Logger;
 import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.metrics.InstrumentedMessagingFactory;
+import se.uu.ub.cora.messaging.metrics.MessagingMetrics;
+import se.uu.ub.cora.messaging.metrics.RoutingKeyMetricsSnapshot;
+import se.uu.ub.cora.messaging.receiver.ReconnectEvent;
+import se.uu.ub.cora.messaging.receiver.SupervisedMessageListener;
 import se.uu.ub.cora.messaging.starter.MessagingModuleStarter;
 import se.uu.ub.cora.messaging.starter.MessagingModuleStarterImp;
 
 /**
  * MessagingProvider provides access to implementing classes that can send and recieve messages. The
  * implementing classes are intended to be provided by other java modules.
+ * <p>
+ * Created MessageSenders are cached by their MessageRoutingInfo, so that repeated calls with equal
+ * routing infos share the same MessageSender, and with it the same connection. Each call returns
+ * its own lease on the shared MessageSender, that is released by closing it. A cached
+ * MessageSender is closed when it has been removed from the cache and all its leases are released.
+ * The number of cached MessageSenders and how long unused ones are kept can be set using
+ * {@link #setInstanceCacheLimits(int, Duration)}. MessageListeners are not shared, each call
+ * returns a MessageListener of its own.
+ * <p>
+ * The MessagingFactory is found and started on first use, {@link #warmUp(MessageRoutingInfo...)}
+ * can be used to do that, and to create MessageSenders and MessageListeners, in the background
+ * when the application starts.
+ * <p>
+ * When more than one MessagingFactory implementation is found they are used together through a
+ * {@link MessagingFactoryRegistry}, which implementation is used for a routing info can then be
+ * chosen using {@link #setTransportSelector(TransportSelector)}.
+ * <p>
+ * Metrics for all created instances can be turned on using {@link #setMetricsEnabled(boolean)}
+ * and read using {@link #getMetricsSnapshot()}.
  */
 public class MessagingProvider {
+	private static final int DEFAULT_CACHE_MAXIMUM_SIZE = 256;
+	private static final Duration DEFAULT_CACHE_MAXIMUM_IDLE_TIME = Duration.ofMinutes(10);
 
-	private static MessagingFactory messagingFactory;
+	private static volatile MessagingFactory messagingFactory;
 	private static MessagingModuleStarter starter = new MessagingModuleStarterImp();
 	private static Logger log = LoggerProvider.getLoggerForClass(MessagingProvider.class);
 	private static String messagingId = randomUUID().toString();
+	private static final Map<MessageRoutingInfo, MessageListener> warmedUpListeners =
+			new ConcurrentHashMap<>();
+	private static int cacheMaximumSize = DEFAULT_CACHE_MAXIMUM_SIZE;
+	private static Duration cacheMaximumIdleTime = DEFAULT_CACHE_MAXIMUM_IDLE_TIME;
+	private static volatile MessageHandlerCache<MessageSender> senderCache = createSenderCache();
+	private static volatile MessagingMetrics metrics;
 
 	private MessagingProvider() {
 		// prevent constructor from ever being called even by reflection
@@ -48,6 +86,10 @@ public class MessagingProvider {
 	 * Returns a MessageSender for the topic described in the entered messagingRoutingInfo using an
 	 * implementation of MessagingFactory, that will be loaded through javas ServiceLoader load
 	 * method.
+	 * <p>
+	 * The returned MessageSender is a lease on a cached MessageSender, that is shared with later
+	 * calls with an equal messagingRoutingInfo. Callers MUST close the returned MessageSender when
+	 * it is no longer needed, which releases the lease without closing the shared MessageSender.
 	 * 
 	 * @param messagingRoutingInfo
 	 *            A messagingRoutingInfo that should contain information about how to reach the
@@ -56,10 +98,29 @@ public class MessagingProvider {
 	 */
 	public static MessageSender getTopicMessageSender(MessageRoutingInfo messagingRoutingInfo) {
 		ensureMessagingFactoryIsSet();
-		return messagingFactory.factorTopicMessageSender(messagingRoutingInfo);
+		if (null == messagingRoutingInfo) {
+			return getFactoryToUse().factorTopicMessageSender(messagingRoutingInfo);
+		}
+		return new LeasedMessageSender(leaseCachedMessageSender(messagingRoutingInfo));
+	}
+
+	private static MessageHandlerCache<MessageSender>.Lease leaseCachedMessageSender(
+			MessageRoutingInfo messagingRoutingInfo) {
+		return senderCache.getOrCreate(messagingRoutingInfo,
+				routingInfo -> getFactoryToUse().factorTopicMessageSender(routingInfo));
 	}
 
-	private static synchronized void ensureMessagingFactoryIsSet() {
+	/**
+	 * ensureMessagingFactoryIsSet takes no lock once a MessagingFactory is set, only threads
+	 * arriving before that wait for the one thread starting it.
+	 */
+	private static void ensureMessagingFactoryIsSet() {
+		if (null == messagingFactory) {
+			startMessagingFactoryIfNotStarted();
+		}
+	}
+
+	private static synchronized void startMessagingFactoryIfNotStarted() {
 		if (null == messagingFactory) {
 			log.logInfoUsingMessage("MessagingProvider starting...");
 			getMessagingFactoryImpUsingModuleStarter();
@@ -67,6 +128,14 @@ public class MessagingProvider {
 		}
 	}
 
+	private static MessagingFactory getFactoryToUse() {
+		MessagingMetrics currentMetrics = metrics;
+		if (null == currentMetrics) {
+			return messagingFactory;
+		}
+		return new InstrumentedMessagingFactory(messagingFactory, currentMetrics);
+	}
+
 	private static void getMessagingFactoryImpUsingModuleStarter() {
 		Iterable<MessagingFactory> messagingFactoryImplementations = ServiceLoader
 				.load(MessagingFactory.class);
@@ -79,12 +148,133 @@ public class MessagingProvider {
 	 * a MessagingFactory is provided to enable testing of message handling in other classes and is
 	 * not intented to be used in production. The MessagingFactory to use should be provided through
 	 * an implementation of MessagingFactory in a seperate java module.
+	 * <p>
+	 * The built in {@link se.uu.ub.cora.messaging.memory.InMemoryMessagingFactory} is not loaded
+	 * through ServiceLoader, setting it here, alone or together with other implementations in a
+	 * {@link MessagingFactoryRegistry}, is the way to use it.
+	 * <p>
+	 * Setting a MessagingFactory replaces the cache of MessageSenders, see
+	 * {@link #setInstanceCacheLimits(int, Duration)}, and closes warmed up MessageListeners not yet
+	 * handed out.
 	 * 
 	 * @param messagingFactory
 	 *            A MessagingFactory to use to create messag handlers for testing
 	 */
-	public static void setMessagingFactory(MessagingFactory messagingFactory) {
+	public static synchronized void setMessagingFactory(MessagingFactory messagingFactory) {
 		MessagingProvider.messagingFactory = messagingFactory;
+		replaceCachedInstances();
+	}
+
+	/**
+	 * replaceCachedInstances swaps in a new sender cache before retiring the old one, so that a
+	 * MessageSender created in the old cache by a concurrent call is closed when released.
+	 */
+	private static void replaceCachedInstances() {
+		MessageHandlerCache<MessageSender> oldSenderCache = senderCache;
+		senderCache = createSenderCache();
+		oldSenderCache.retire();
+		closeWarmedUpListeners();
+	}
+
+	private static MessageHandlerCache<MessageSender> createSenderCache() {
+		return new MessageHandlerCache<>(MessageSender::close, cacheMaximumSize,
+				cacheMaximumIdleTime.toNanos());
+	}
+
+	private static void closeWarmedUpListeners() {
+		warmedUpListeners.forEach((routingInfo, listener) -> {
+			if (warmedUpListeners.remove(routingInfo, listener)) {
+				closeWarmedUpListener(listener);
+			}
+		});
+	}
+
+	private static void closeWarmedUpListener(MessageListener listener) {
+		try {
+			listener.close();
+		} catch (RuntimeException e) {
+			log.logWarnUsingMessageAndException("Failed to close warmed up MessageListener", e);
+		}
+	}
+
+	/**
+	 * Sets the {@link TransportSelector} used to choose which MessagingFactory implementation to
+	 * use for each routing info, see {@link MessagingFactoryRegistry}. The cache of MessageSenders
+	 * is replaced, so that later calls use the selected transports.
+	 * 
+	 * @param transportSelector
+	 *            A TransportSelector, or null to choose by routing info type and priority
+	 * @throws MessagingException
+	 *             if only one MessagingFactory implementation is in use
+	 */
+	public static synchronized void setTransportSelector(TransportSelector transportSelector) {
+		ensureMessagingFactoryIsSet();
+		if (!(messagingFactory instanceof MessagingFactoryRegistry registry)) {
+			throw new MessagingException("A TransportSelector can only be used when more than "
+					+ "one MessagingFactory implementation is in use");
+		}
+		registry.setTransportSelector(transportSelector);
+		replaceCachedInstances();
+	}
+
+	/**
+	 * Sets the limits for the cache of MessageSenders. The cache is replaced by a new one, the
+	 * currently cached MessageSenders are removed and closed when their leases are released.
+	 * <p>
+	 * MessageSenders removed because of the limits are also closed when their leases are released,
+	 * as they might still be used by callers that got them earlier.
+	 * 
+	 * @param maximumSize
+	 *            An int with the maximum number of MessageSenders to keep, at least 1. When more
+	 *            are created the least recently used one is removed.
+	 * @param maximumIdleTime
+	 *            A Duration after which an unused MessageSender is removed
+	 */
+	public static synchronized void setInstanceCacheLimits(int maximumSize,
+			Duration maximumIdleTime) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException(
+					"maximumSize must be at least 1, was " + maximumSize);
+		}
+		cacheMaximumSize = maximumSize;
+		cacheMaximumIdleTime = maximumIdleTime;
+		replaceCachedInstances();
+	}
+
+	/**
+	 * Turns recording of metrics on or off. When on, all MessageSenders, AsyncMessageSenders and
+	 * MessageListeners created by this provider, and the MessageReceivers given to the listeners,
+	 * record latency, size, error and in flight metrics per routing key, see
+	 * {@link InstrumentedMessagingFactory}. Metrics are off by default.
+	 * <p>
+	 * Changing the setting replaces the cache of MessageSenders, so that later calls return
+	 * instances with or without metrics. Turning metrics on when already
+	 * on keeps the metrics recorded so far.
+	 * 
+	 * @param enabled
+	 *            A boolean, true to record metrics
+	 */
+	public static synchronized void setMetricsEnabled(boolean enabled) {
+		if (enabled == (null != metrics)) {
+			return;
+		}
+		metrics = enabled ? new MessagingMetrics() : null;
+		replaceCachedInstances();
+	}
+
+	/**
+	 * Returns the metrics recorded since metrics were turned on using
+	 * {@link #setMetricsEnabled(boolean)}.
+	 * 
+	 * @return An unmodifiable Map with a {@link RoutingKeyMetricsSnapshot} for each routing key, an
+	 *         empty Map if metrics are off
+	 */
+	public static Map<String, RoutingKeyMetricsSnapshot> getMetricsSnapshot() {
+		MessagingMetrics currentMetrics = metrics;
+		if (null == currentMetrics) {
+			return Map.of();
+		}
+		return currentMetrics.getSnapshot();
 	}
 
 	static void setStarter(MessagingModuleStarter starter) {
@@ -95,9 +285,155 @@ public class MessagingProvider {
 		return starter;
 	}
 
+	/**
+	 * Returns a new AsyncMessageSender for the topic described in the entered
+	 * messagingRoutingInfo, using the same MessagingFactory as
+	 * {@link #getTopicMessageSender(MessageRoutingInfo)}.
+	 * <p>
+	 * AsyncMessageSenders are not cached, the caller is responsible for closing the returned
+	 * AsyncMessageSender when it is no longer needed.
+	 * 
+	 * @param messagingRoutingInfo
+	 *            A messagingRoutingInfo that should contain information about how to reach the
+	 *            channel to send messages to
+	 * @param maxInFlight
+	 *            An int with the maximum number of sent messages not yet confirmed by the messaging
+	 *            server
+	 * @return An AsyncMessageSender for the topic described in messagingRoutingInfo
+	 */
+	public static AsyncMessageSender getTopicAsyncMessageSender(
+			MessageRoutingInfo messagingRoutingInfo, int maxInFlight) {
+		ensureMessagingFactoryIsSet();
+		return getFactoryToUse().factorTopicAsyncMessageSender(messagingRoutingInfo,
+				maxInFlight);
+	}
+
+	/**
+	 * Returns a MessageListener for the topic described in the entered messagingRoutingInfo, using
+	 * the same MessagingFactory as {@link #getTopicMessageSender(MessageRoutingInfo)}.
+	 * <p>
+	 * MessageListeners are not shared, each call returns a MessageListener of its own, that the
+	 * caller is responsible for closing. A MessageListener created by
+	 * {@link #warmUp(MessageRoutingInfo...)} is returned by the first call with an equal
+	 * messagingRoutingInfo.
+	 * 
+	 * @param messagingRoutingInfo
+	 *            A messagingRoutingInfo that should contain information about how to reach the
+	 *            channel to listen to
+	 * @return A MessageListener for the topic described in messagingRoutingInfo
+	 */
 	public static MessageListener getTopicMessageListener(MessageRoutingInfo messagingRoutingInfo) {
 		ensureMessagingFactoryIsSet();
-		return messagingFactory.factorTopicMessageListener(messagingRoutingInfo);
+		if (null == messagingRoutingInfo) {
+			return getFactoryToUse().factorTopicMessageListener(messagingRoutingInfo);
+		}
+		MessageListener warmedUpListener = warmedUpListeners.remove(messagingRoutingInfo);
+		if (null != warmedUpListener) {
+			return warmedUpListener;
+		}
+		return getFactoryToUse().factorTopicMessageListener(messagingRoutingInfo);
+	}
+
+	/**
+	 * Returns a new {@link SupervisedMessageListener} for the topic described in the entered
+	 * messagingRoutingInfo, that creates a new MessageListener using the same MessagingFactory as
+	 * {@link #getTopicMessageListener(MessageRoutingInfo)} each time the connection is lost.
+	 * <p>
+	 * SupervisedMessageListeners are not cached, the caller is responsible for closing the
+	 * returned listener when it is no longer needed.
+	 * 
+	 * @param messagingRoutingInfo
+	 *            A messagingRoutingInfo that should contain information about how to reach the
+	 *            channel to listen to
+	 * @param initialDelay
+	 *            A Duration with the delay before the first reconnect attempt
+	 * @param maxDelay
+	 *            A Duration with the longest delay between reconnect attempts
+	 * @param eventListener
+	 *            A Consumer of the {@link ReconnectEvent}s of the listener
+	 * @return A SupervisedMessageListener for the topic described in messagingRoutingInfo
+	 */
+	public static SupervisedMessageListener getSupervisedTopicMessageListener(
+			MessageRoutingInfo messagingRoutingInfo, Duration initialDelay, Duration maxDelay,
+			Consumer<ReconnectEvent> eventListener) {
+		ensureMessagingFactoryIsSet();
+		return new SupervisedMessageListener(
+				() -> getFactoryToUse().factorTopicMessageListener(messagingRoutingInfo),
+				initialDelay, maxDelay, eventListener);
+	}
+
+	/**
+	 * warmUp starts the MessagingFactory, if not already started, and creates a MessageListener for
+	 * each {@link AmqpMessageListenerRoutingInfo} and a cached MessageSender for each other routing
+	 * info. A warmed up MessageListener is handed out by the first call to
+	 * {@link #getTopicMessageListener(MessageRoutingInfo)} with an equal routing info, and a warmed
+	 * up MessageSender is shared as by {@link #getTopicMessageSender(MessageRoutingInfo)}. This is
+	 * done in a background thread, so that the cost of finding the factory and connecting is not
+	 * paid by the first requests.
+	 * <p>
+	 * Failing to create one instance does not stop the creation of the others, each failure is
+	 * logged.
+	 * 
+	 * @param routingInfos
+	 *            The MessageRoutingInfos to create MessageSenders and MessageListeners for
+	 * @return A CompletableFuture that completes when all instances are created, or completes
+	 *         exceptionally with a {@link MessagingException} if the factory could not be started
+	 *         or any instance could not be created
+	 */
+	public static CompletableFuture<Void> warmUp(MessageRoutingInfo... routingInfos) {
+		CompletableFuture<Void> warmedUp = new CompletableFuture<>();
+		List<MessageRoutingInfo> routingInfosToWarmUp = List.of(routingInfos);
+		Thread.ofPlatform().name("cora-messaging-warm-up").daemon()
+				.start(() -> warmUpAndComplete(routingInfosToWarmUp, warmedUp));
+		return warmedUp;
+	}
+
+	private static void warmUpAndComplete(List<MessageRoutingInfo> routingInfos,
+			CompletableFuture<Void> warmedUp) {
+		try {
+			ensureMessagingFactoryIsSet();
+		} catch (RuntimeException e) {
+			warmedUp.completeExceptionally(
+					new MessagingException("Warm up failed to start MessagingFactory", e));
+			return;
+		}
+		RuntimeException firstFailure = null;
+		int numberOfFailures = 0;
+		for (MessageRoutingInfo routingInfo : routingInfos) {
+			try {
+				createAndCache(routingInfo);
+			} catch (RuntimeException e) {
+				log.logWarnUsingMessageAndException("Warm up failed for "
+						+ routingInfo.getClass().getSimpleName() + " to " + routingInfo.hostname
+						+ ":" + routingInfo.port, e);
+				firstFailure = null == firstFailure ? e : firstFailure;
+				numberOfFailures++;
+			}
+		}
+		completeWarmUp(warmedUp, routingInfos.size(), numberOfFailures, firstFailure);
+	}
+
+	private static void createAndCache(MessageRoutingInfo routingInfo) {
+		if (routingInfo instanceof AmqpMessageListenerRoutingInfo) {
+			MessageListener listener = getFactoryToUse().factorTopicMessageListener(routingInfo);
+			MessageListener replaced = warmedUpListeners.put(routingInfo, listener);
+			if (null != replaced) {
+				closeWarmedUpListener(replaced);
+			}
+		} else {
+			leaseCachedMessageSender(routingInfo).release();
+		}
+	}
+
+	private static void completeWarmUp(CompletableFuture<Void> warmedUp, int numberOfRoutingInfos,
+			int numberOfFailures, RuntimeException firstFailure) {
+		if (numberOfFailures == 0) {
+			warmedUp.complete(null);
+		} else {
+			warmedUp.completeExceptionally(new MessagingException("Warm up failed for "
+					+ numberOfFailures + " of " + numberOfRoutingInfos + " routing infos",
+					firstFailure));
+		}
 	}
 
 	/**
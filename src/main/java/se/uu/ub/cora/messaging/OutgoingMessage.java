@@ -0,0 +1,42 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.Map;
+
+/**
+ * OutgoingMessage holds one message to send, it is used when several messages are sent together
+ * using {@link MessageSender#sendMessages(java.util.List)}.
+ */
+public final class OutgoingMessage {
+
+	public final Map<String, Object> headers;
+	public final String message;
+
+	/**
+	 * @param headers
+	 *            A Map<String, Object> that are sent as headers in the message
+	 * @param message
+	 *            A String with the body of the message
+	 */
+	public OutgoingMessage(Map<String, Object> headers, String message) {
+		this.headers = headers;
+		this.message = message;
+	}
+}
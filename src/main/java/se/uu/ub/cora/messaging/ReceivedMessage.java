@@ -0,0 +1,110 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import java.util.Map;
+
+/**
+ * ReceivedMessage holds one message received by a {@link MessageListener}, it is used when
+ * messages are delivered in batches to a {@link BatchMessageReceiver} or with an acknowledgement
+ * handle to an {@link AcknowledgingMessageReceiver}.
+ */
+public final class ReceivedMessage {
+	private static final MessageAcknowledger ALREADY_ACKNOWLEDGED = new AlreadyAcknowledged();
+
+	public final Map<String, String> headers;
+	public final String message;
+	public final long deliveryTag;
+	private final MessageAcknowledger acknowledger;
+
+	/**
+	 * @param headers
+	 *            Map with the JMS message headers.
+	 * @param message
+	 *            String with the JMS message body.
+	 * @param deliveryTag
+	 *            A long identifying the delivery of the message on its connection, as given by the
+	 *            messaging server. Delivery tags increase with each delivered message.
+	 */
+	public ReceivedMessage(Map<String, String> headers, String message, long deliveryTag) {
+		this(headers, message, deliveryTag, ALREADY_ACKNOWLEDGED);
+	}
+
+	/**
+	 * Creates a ReceivedMessage that is settled through the entered acknowledger.
+	 * 
+	 * @param headers
+	 *            Map with the JMS message headers.
+	 * @param message
+	 *            String with the JMS message body.
+	 * @param deliveryTag
+	 *            A long identifying the delivery of the message on its connection
+	 * @param acknowledger
+	 *            The {@link MessageAcknowledger} for the connection the message was delivered on
+	 */
+	public ReceivedMessage(Map<String, String> headers, String message, long deliveryTag,
+			MessageAcknowledger acknowledger) {
+		this.headers = headers;
+		this.message = message;
+		this.deliveryTag = deliveryTag;
+		this.acknowledger = acknowledger;
+	}
+
+	/**
+	 * acknowledge acknowledges this message
+	 */
+	public void acknowledge() {
+		acknowledger.acknowledge(deliveryTag);
+	}
+
+	/**
+	 * acknowledgeUpToThis acknowledges this message and all earlier messages delivered on the same
+	 * connection
+	 */
+	public void acknowledgeUpToThis() {
+		acknowledger.acknowledgeUpTo(deliveryTag);
+	}
+
+	/**
+	 * reject rejects this message
+	 * 
+	 * @param requeue
+	 *            A boolean, true if the message should be delivered again
+	 */
+	public void reject(boolean requeue) {
+		acknowledger.reject(deliveryTag, requeue);
+	}
+
+	private static final class AlreadyAcknowledged implements MessageAcknowledger {
+		@Override
+		public void acknowledge(long deliveryTag) {
+			// acknowledged by the listener on delivery
+		}
+
+		@Override
+		public void acknowledgeUpTo(long deliveryTag) {
+			// acknowledged by the listener on delivery
+		}
+
+		@Override
+		public void reject(long deliveryTag, boolean requeue) {
+			// acknowledged by the listener on delivery
+		}
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+/**
+ * TransportSelector selects which {@link MessagingFactory} a {@link MessagingFactoryRegistry} uses
+ * for a routing info, for instance the in memory transport for routing infos pointing to the local
+ * node and a broker for all others.
+ */
+@FunctionalInterface
+public interface TransportSelector {
+	/**
+	 * selectTransport returns the transport name of the MessagingFactory to use for the routing
+	 * info, see {@link MessagingFactory#getTransportName()}.
+	 * 
+	 * @param routingInfo
+	 *            The {@link MessageRoutingInfo} to select a transport for
+	 * @return A String with a transport name, or null to use the MessagingFactory with the
+	 *         highest priority supporting the type of the routing info
+	 */
+	String selectTransport(MessageRoutingInfo routingInfo);
+}
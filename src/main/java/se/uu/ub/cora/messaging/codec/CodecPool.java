@@ -0,0 +1,59 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.codec;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * CodecPool keeps up to maximumSize idle instances of an expensive object, such as a Deflater, for
+ * reuse. Borrowing from an empty pool creates a new instance, returning to a full pool discards
+ * the instance. Neither borrowing nor returning allocates.
+ */
+final class CodecPool<T> {
+	private final ArrayBlockingQueue<T> idle;
+	private final Supplier<T> creator;
+	private final Consumer<T> resetter;
+	private final Consumer<T> discarder;
+
+	CodecPool(int maximumSize, Supplier<T> creator, Consumer<T> resetter,
+			Consumer<T> discarder) {
+		idle = new ArrayBlockingQueue<>(maximumSize);
+		this.creator = creator;
+		this.resetter = resetter;
+		this.discarder = discarder;
+	}
+
+	T borrow() {
+		T instance = idle.poll();
+		return null == instance ? creator.get() : instance;
+	}
+
+	void giveBack(T instance) {
+		resetter.accept(instance);
+		if (!idle.offer(instance)) {
+			discarder.accept(instance);
+		}
+	}
+
+	int getNumberOfIdle() {
+		return idle.size();
+	}
+}
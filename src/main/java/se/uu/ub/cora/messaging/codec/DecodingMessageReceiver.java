@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.codec;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.MessagingException;
+
+/**
+ * DecodingMessageReceiver is a {@link MessageReceiver} that decodes message bodies encoded by an
+ * {@link EncodingMessageSender} before handing them to the decorated MessageReceiver. The codec
+ * is chosen by the {@link MessageHeaders#CONTENT_ENCODING} header, which is removed from the
+ * headers handed on. Messages without the header are handed on unchanged.
+ * <p>
+ * Encoded bodies must be delivered using
+ * {@link MessageReceiver#receiveBinaryMessage(Map, ByteBuffer)}, and the decoded body is handed
+ * on the same way, so that binary bodies are kept intact. MessageReceivers not overriding
+ * receiveBinaryMessage get the body as UTF-8 decoded text. An encoded message delivered as
+ * text, or encoded with an unknown content encoding, causes a {@link MessagingException}.
+ */
+public class DecodingMessageReceiver implements MessageReceiver {
+	private final MessageReceiver messageReceiver;
+	private final Map<String, PayloadCodec> codecs = new HashMap<>();
+
+	/**
+	 * @param messageReceiver
+	 *            The MessageReceiver to hand decoded messages to
+	 * @param codecs
+	 *            The PayloadCodecs that received bodies can be encoded with
+	 */
+	public DecodingMessageReceiver(MessageReceiver messageReceiver, PayloadCodec... codecs) {
+		this.messageReceiver = messageReceiver;
+		for (PayloadCodec codec : codecs) {
+			this.codecs.put(codec.getContentEncoding(), codec);
+		}
+	}
+
+	@Override
+	public void receiveMessage(Map<String, String> headers, String message) {
+		throwErrorIfEncoded(headers.get(MessageHeaders.CONTENT_ENCODING));
+		messageReceiver.receiveMessage(headers, message);
+	}
+
+	private static void throwErrorIfEncoded(Object contentEncoding) {
+		if (null != contentEncoding) {
+			throw new MessagingException("Message encoded using " + contentEncoding
+					+ " was delivered as text, it must be delivered as binary");
+		}
+	}
+
+	@Override
+	public void receiveMessageUsingHeaders(MessageHeaders headers, String message) {
+		throwErrorIfEncoded(headers.get(MessageHeaders.CONTENT_ENCODING));
+		messageReceiver.receiveMessageUsingHeaders(headers, message);
+	}
+
+	@Override
+	public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+		String contentEncoding = headers.get(MessageHeaders.CONTENT_ENCODING);
+		if (null == contentEncoding) {
+			messageReceiver.receiveBinaryMessage(headers, message);
+			return;
+		}
+		byte[] decoded = getCodec(contentEncoding).decode(message);
+		messageReceiver.receiveBinaryMessage(removeContentEncoding(headers),
+				ByteBuffer.wrap(decoded).asReadOnlyBuffer());
+	}
+
+	private PayloadCodec getCodec(String contentEncoding) {
+		PayloadCodec codec = codecs.get(contentEncoding);
+		if (null == codec) {
+			throw new MessagingException(
+					"No codec found for content encoding " + contentEncoding);
+		}
+		return codec;
+	}
+
+	private static Map<String, String> removeContentEncoding(Map<String, String> headers) {
+		Map<String, String> decodedHeaders = new HashMap<>(headers);
+		decodedHeaders.remove(MessageHeaders.CONTENT_ENCODING);
+		return decodedHeaders;
+	}
+
+	@Override
+	public void topicClosed() {
+		messageReceiver.topicClosed();
+	}
+}
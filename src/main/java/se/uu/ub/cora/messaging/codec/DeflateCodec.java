@@ -0,0 +1,300 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import se.uu.ub.cora.messaging.MessagingException;
+
+/**
+ * DeflateCodec is a {@link PayloadCodec} compressing message bodies using the JDK {@link Deflater}
+ * and {@link Inflater}, in zlib format.
+ * <p>
+ * Deflaters and Inflaters, with their working buffers, are pooled and reused, so encoding and
+ * decoding only allocate the returned byte array. Up to poolSize idle instances of each are kept.
+ * <p>
+ * An optional preset dictionary improves compression of small and medium sized bodies that share
+ * content with it, such as records of the same type. Bodies encoded with a dictionary can only be
+ * decoded using the same dictionary, the content encoding is therefore "deflate" without a
+ * dictionary and "deflate-" followed by the Adler-32 checksum of the dictionary, in hex, with one.
+ * A dictionary can be built from sample bodies using {@link #buildDictionary(List, int)}.
+ * <p>
+ * Decoded bodies are limited to maximumDecodedSize bytes, so that a small body inflating to a huge
+ * one can not exhaust memory. Decoding a larger body fails with a {@link MessagingException}.
+ */
+public final class DeflateCodec implements PayloadCodec {
+	private static final String CONTENT_ENCODING = "deflate";
+	private static final int MAXIMUM_DICTIONARY_SIZE = 32 * 1024;
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	private static final int MAXIMUM_RETAINED_BUFFER_SIZE = 1024 * 1024;
+	private static final int DEFAULT_POOL_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+	private static final int DEFAULT_MAXIMUM_DECODED_SIZE = 64 * 1024 * 1024;
+	private static final int MAXIMUM_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private final byte[] dictionary;
+	private final int maximumDecodedSize;
+	private final String contentEncoding;
+	private final CodecPool<Compressor> compressors;
+	private final CodecPool<Decompressor> decompressors;
+
+	/**
+	 * Creates a DeflateCodec using the default compression level and no dictionary
+	 */
+	public DeflateCodec() {
+		this(Deflater.DEFAULT_COMPRESSION, null, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * @param level
+	 *            An int with the compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param dictionary
+	 *            A byte array with a preset dictionary, or null to not use one
+	 * @param poolSize
+	 *            An int with the maximum number of idle Deflaters, and separately Inflaters, to
+	 *            keep for reuse
+	 */
+	public DeflateCodec(int level, byte[] dictionary, int poolSize) {
+		this(level, dictionary, poolSize, DEFAULT_MAXIMUM_DECODED_SIZE);
+	}
+
+	/**
+	 * @param level
+	 *            An int with the compression level, 0-9 or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param dictionary
+	 *            A byte array with a preset dictionary, or null to not use one
+	 * @param poolSize
+	 *            An int with the maximum number of idle Deflaters, and separately Inflaters, to
+	 *            keep for reuse
+	 * @param maximumDecodedSize
+	 *            An int with the maximum size, in bytes, of a decoded body, 64 MiB when not given
+	 */
+	public DeflateCodec(int level, byte[] dictionary, int poolSize, int maximumDecodedSize) {
+		throwErrorIfInvalid(level, poolSize);
+		if (maximumDecodedSize < 1) {
+			throw new IllegalArgumentException(
+					"maximumDecodedSize must be at least 1, was " + maximumDecodedSize);
+		}
+		this.maximumDecodedSize = maximumDecodedSize;
+		this.dictionary = null == dictionary ? null : dictionary.clone();
+		contentEncoding = createContentEncoding(this.dictionary);
+		compressors = new CodecPool<>(poolSize, () -> new Compressor(level), Compressor::reset,
+				Compressor::end);
+		decompressors = new CodecPool<>(poolSize, Decompressor::new, Decompressor::reset,
+				Decompressor::end);
+	}
+
+	private static void throwErrorIfInvalid(int level, int poolSize) {
+		if (level != Deflater.DEFAULT_COMPRESSION
+				&& (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("level must be between 0 and 9, was " + level);
+		}
+		if (poolSize < 1) {
+			throw new IllegalArgumentException("poolSize must be at least 1, was " + poolSize);
+		}
+	}
+
+	private static String createContentEncoding(byte[] dictionary) {
+		if (null == dictionary) {
+			return CONTENT_ENCODING;
+		}
+		Adler32 checksum = new Adler32();
+		checksum.update(dictionary);
+		return CONTENT_ENCODING + "-" + Long.toHexString(checksum.getValue());
+	}
+
+	/**
+	 * buildDictionary builds a preset dictionary from sample message bodies. Deflate only refers
+	 * back 32 KiB and uses shorter codes for nearer matches, the samples are therefore
+	 * concatenated in the order given, so that the most representative samples should be last, and
+	 * only the last maxSize bytes are kept.
+	 * 
+	 * @param samplePayloads
+	 *            A List of Strings with typical message bodies
+	 * @param maxSize
+	 *            An int with the maximum size of the dictionary, at most 32768
+	 * @return A byte array with the dictionary
+	 */
+	public static byte[] buildDictionary(List<String> samplePayloads, int maxSize) {
+		if (maxSize < 1 || maxSize > MAXIMUM_DICTIONARY_SIZE) {
+			throw new IllegalArgumentException(
+					"maxSize must be between 1 and 32768, was " + maxSize);
+		}
+		StringBuilder concatenated = new StringBuilder();
+		for (String samplePayload : samplePayloads) {
+			concatenated.append(samplePayload);
+		}
+		byte[] allSamples = concatenated.toString().getBytes(StandardCharsets.UTF_8);
+		int start = Math.max(0, allSamples.length - maxSize);
+		return Arrays.copyOfRange(allSamples, start, allSamples.length);
+	}
+
+	@Override
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+
+	@Override
+	public byte[] encode(ByteBuffer payload) {
+		Compressor compressor = compressors.borrow();
+		try {
+			return compressor.compress(payload.duplicate());
+		} finally {
+			compressors.giveBack(compressor);
+		}
+	}
+
+	@Override
+	public byte[] decode(ByteBuffer encodedPayload) {
+		Decompressor decompressor = decompressors.borrow();
+		try {
+			return decompressor.decompress(encodedPayload.duplicate());
+		} catch (DataFormatException e) {
+			throw new MessagingException(
+					"Message body could not be decoded using " + contentEncoding, e);
+		} finally {
+			decompressors.giveBack(decompressor);
+		}
+	}
+
+	int getNumberOfIdleCompressors() {
+		return compressors.getNumberOfIdle();
+	}
+
+	private static byte[] grow(byte[] buffer) {
+		return growUpTo(buffer, MAXIMUM_ARRAY_SIZE);
+	}
+
+	private static byte[] growUpTo(byte[] buffer, int limit) {
+		return Arrays.copyOf(buffer, (int) Math.min(2L * buffer.length, limit));
+	}
+
+	private final class Compressor {
+		private final Deflater deflater;
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+		Compressor(int level) {
+			deflater = new Deflater(level);
+			setDictionaryIfUsed();
+		}
+
+		private void setDictionaryIfUsed() {
+			if (null != dictionary) {
+				deflater.setDictionary(dictionary);
+			}
+		}
+
+		byte[] compress(ByteBuffer payload) {
+			deflater.setInput(payload);
+			deflater.finish();
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					buffer = grow(buffer);
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			return Arrays.copyOf(buffer, length);
+		}
+
+		void reset() {
+			deflater.reset();
+			setDictionaryIfUsed();
+			if (buffer.length > MAXIMUM_RETAINED_BUFFER_SIZE) {
+				buffer = new byte[INITIAL_BUFFER_SIZE];
+			}
+		}
+
+		void end() {
+			deflater.end();
+		}
+	}
+
+	private final class Decompressor {
+		private final Inflater inflater = new Inflater();
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+		byte[] decompress(ByteBuffer encodedPayload) throws DataFormatException {
+			inflater.setInput(encodedPayload);
+			int length = 0;
+			while (!inflater.finished()) {
+				if (length == buffer.length) {
+					buffer = growUpTo(buffer, getBufferLimit());
+				}
+				int inflated = inflater.inflate(buffer, length, buffer.length - length);
+				length += inflated;
+				throwErrorIfTooLarge(length);
+				if (inflated == 0) {
+					handleNoProgress();
+				}
+			}
+			return Arrays.copyOf(buffer, length);
+		}
+
+		/**
+		 * getBufferLimit gives room for one byte more than maximumDecodedSize, so that a body of
+		 * exactly maximumDecodedSize bytes can be inflated to its end, and a larger one is noticed.
+		 */
+		private int getBufferLimit() {
+			return (int) Math.min(maximumDecodedSize + 1L, MAXIMUM_ARRAY_SIZE);
+		}
+
+		private void throwErrorIfTooLarge(int length) {
+			if (length > maximumDecodedSize) {
+				throw new MessagingException("Message body decoded using " + contentEncoding
+						+ " is larger than the maximum of " + maximumDecodedSize + " bytes");
+			}
+		}
+
+		private void handleNoProgress() throws DataFormatException {
+			if (inflater.needsDictionary()) {
+				setDictionaryOrThrowError();
+			} else if (inflater.needsInput()) {
+				throw new DataFormatException("Unexpected end of encoded body");
+			}
+		}
+
+		private void setDictionaryOrThrowError() throws DataFormatException {
+			if (null == dictionary) {
+				throw new DataFormatException("Body is encoded using an unknown dictionary");
+			}
+			try {
+				inflater.setDictionary(dictionary);
+			} catch (IllegalArgumentException e) {
+				throw new DataFormatException("Body is encoded using another dictionary");
+			}
+		}
+
+		void reset() {
+			inflater.reset();
+			if (buffer.length > MAXIMUM_RETAINED_BUFFER_SIZE) {
+				buffer = new byte[INITIAL_BUFFER_SIZE];
+			}
+		}
+
+		void end() {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageSender;
+
+/**
+ * EncodingMessageSender is a {@link MessageSender} that encodes message bodies of at least
+ * thresholdSize, using a {@link PayloadCodec}, before sending them through the decorated
+ * MessageSender. Encoded bodies are sent using
+ * {@link MessageSender#sendBinaryMessage(Map, java.nio.ByteBuffer)} with the content encoding of
+ * the codec in the {@link MessageHeaders#CONTENT_ENCODING} header. Smaller bodies, and bodies that
+ * do not get smaller when encoded, are sent unchanged.
+ * <p>
+ * The decorated MessageSender must send binary bodies as they are, the default implementation of
+ * sendBinaryMessage decodes the body as UTF-8 which destroys encoded bodies. A MessageSender not
+ * declaring this using {@link MessageSender#supportsBinaryMessages()} is therefore refused when
+ * the EncodingMessageSender is created. Receivers are expected to use a
+ * {@link DecodingMessageReceiver} with a matching codec.
+ */
+public class EncodingMessageSender implements MessageSender {
+	private final MessageSender messageSender;
+	private final PayloadCodec codec;
+	private final int thresholdSize;
+
+	/**
+	 * @param messageSender
+	 *            The MessageSender to send messages through, able to send binary bodies
+	 * @param codec
+	 *            The PayloadCodec to encode bodies with
+	 * @param thresholdSize
+	 *            An int with the smallest body to encode, in characters for text bodies and in
+	 *            bytes for binary bodies
+	 * @throws IllegalArgumentException
+	 *             if messageSender does not support binary messages
+	 */
+	public EncodingMessageSender(MessageSender messageSender, PayloadCodec codec,
+			int thresholdSize) {
+		if (thresholdSize < 0) {
+			throw new IllegalArgumentException(
+					"thresholdSize must be at least 0, was " + thresholdSize);
+		}
+		if (!messageSender.supportsBinaryMessages()) {
+			throw new IllegalArgumentException("messageSender must support binary messages, "
+					+ messageSender.getClass().getSimpleName() + " does not");
+		}
+		this.messageSender = messageSender;
+		this.codec = codec;
+		this.thresholdSize = thresholdSize;
+	}
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		if (message.length() < thresholdSize) {
+			messageSender.sendMessage(headers, message);
+			return;
+		}
+		ByteBuffer body = ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+		byte[] encoded = codec.encode(body);
+		if (encoded.length >= body.remaining()) {
+			messageSender.sendMessage(headers, message);
+			return;
+		}
+		sendEncoded(headers, encoded);
+	}
+
+	private void sendEncoded(Map<String, Object> headers, byte[] encoded) {
+		MessageHeaders encodedHeaders = MessageHeaders.copyOf(headers)
+				.with(MessageHeaders.CONTENT_ENCODING, codec.getContentEncoding());
+		messageSender.sendBinaryMessage(encodedHeaders, ByteBuffer.wrap(encoded));
+	}
+
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		if (message.remaining() < thresholdSize) {
+			messageSender.sendBinaryMessage(headers, message);
+			return;
+		}
+		byte[] encoded = codec.encode(message);
+		if (encoded.length >= message.remaining()) {
+			messageSender.sendBinaryMessage(headers, message);
+			return;
+		}
+		sendEncoded(headers, encoded);
+	}
+
+	@Override
+	public boolean supportsBinaryMessages() {
+		return messageSender.supportsBinaryMessages();
+	}
+
+	@Override
+	public void close() {
+		messageSender.close();
+	}
+}
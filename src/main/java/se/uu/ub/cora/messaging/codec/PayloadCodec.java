@@ -0,0 +1,61 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PayloadCodec encodes and decodes message bodies, for instance by compressing them.
+ * <p>
+ * Implementations MUST be threadsafe, one PayloadCodec is shared by all senders and receivers
+ * using it.
+ */
+public interface PayloadCodec {
+	/**
+	 * getContentEncoding returns the name of the encoding, sent in the
+	 * {@link se.uu.ub.cora.messaging.MessageHeaders#CONTENT_ENCODING} header of encoded messages.
+	 * The name MUST differ between codecs, or codec settings, that can not decode each others
+	 * bodies.
+	 * 
+	 * @return A String with the name of the encoding
+	 */
+	String getContentEncoding();
+
+	/**
+	 * encode encodes a message body.
+	 * 
+	 * @param payload
+	 *            A ByteBuffer with the body to encode, from its position to its limit. The buffer
+	 *            is not modified.
+	 * @return A byte array with the encoded body
+	 */
+	byte[] encode(ByteBuffer payload);
+
+	/**
+	 * decode decodes a message body encoded by a codec with the same content encoding.
+	 * 
+	 * @param encodedPayload
+	 *            A ByteBuffer with the encoded body, from its position to its limit. The buffer is
+	 *            not modified.
+	 * @return A byte array with the decoded body
+	 * @throws se.uu.ub.cora.messaging.MessagingException
+	 *             if the body can not be decoded
+	 */
+	byte[] decode(ByteBuffer encodedPayload);
+}
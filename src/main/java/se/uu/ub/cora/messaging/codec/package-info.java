@@ -0,0 +1,24 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+/**
+ * Codecs for message bodies, and sender and receiver decorators that encode large bodies and
+ * transparently decode them again, see {@link se.uu.ub.cora.messaging.codec.EncodingMessageSender}
+ * and {@link se.uu.ub.cora.messaging.codec.DecodingMessageReceiver}.
+ */
+package se.uu.ub.cora.messaging.codec;
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * InMemoryBroker routes published messages to the ring buffers of all subscriptions whose exchange
+ * and binding pattern match the message.
+ * <p>
+ * Publishing does not take any lock, the list of subscriptions is copied when it changes. When a
+ * subscription's buffer is full the publishing thread waits, using the WaitStrategy, until there is
+ * room or the subscription is closed.
+ */
+final class InMemoryBroker {
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final WaitStrategy waitStrategy;
+
+	InMemoryBroker(WaitStrategy waitStrategy) {
+		this.waitStrategy = waitStrategy;
+	}
+
+	void publish(String exchange, String routingKey, InMemoryMessage inMemoryMessage) {
+		String[] routingKeyWords = TopicPattern.splitIntoWords(routingKey);
+		for (Subscription subscription : subscriptions) {
+			if (subscription.matches(exchange, routingKeyWords)) {
+				offerWaitingForRoom(subscription, inMemoryMessage);
+			}
+		}
+	}
+
+	private void offerWaitingForRoom(Subscription subscription, InMemoryMessage message) {
+		while (!subscription.buffer.offer(message) && !subscription.closed) {
+			waitStrategy.idle();
+		}
+	}
+
+	Subscription subscribe(String exchange, TopicPattern bindingPattern, int capacity) {
+		Subscription subscription = new Subscription(exchange, bindingPattern, capacity);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	void unsubscribe(Subscription subscription) {
+		subscription.closed = true;
+		subscriptions.remove(subscription);
+	}
+
+	int getNumberOfSubscriptions() {
+		return subscriptions.size();
+	}
+
+	static final class Subscription {
+		private final String exchange;
+		private final TopicPattern bindingPattern;
+		final RingBuffer<InMemoryMessage> buffer;
+		volatile boolean closed = false;
+
+		Subscription(String exchange, TopicPattern bindingPattern, int capacity) {
+			this.exchange = exchange;
+			this.bindingPattern = bindingPattern;
+			buffer = new RingBuffer<>(capacity);
+		}
+
+		boolean matches(String messageExchange, String[] routingKeyWords) {
+			return exchange.equals(messageExchange) && bindingPattern.matches(routingKeyWords);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+
+/**
+ * InMemoryMessage is a published message, shared by all subscriptions it is routed to. The body is
+ * either text or binary, binary bodies are copied when published and only read after that.
+ */
+final class InMemoryMessage {
+	final MessageHeaders headers;
+	private final String message;
+	private final byte[] binaryMessage;
+
+	private InMemoryMessage(MessageHeaders headers, String message, byte[] binaryMessage) {
+		this.headers = headers;
+		this.message = message;
+		this.binaryMessage = binaryMessage;
+	}
+
+	static InMemoryMessage text(MessageHeaders headers, String message) {
+		return new InMemoryMessage(headers, message, null);
+	}
+
+	static InMemoryMessage binary(MessageHeaders headers, ByteBuffer message) {
+		byte[] copy = new byte[message.remaining()];
+		message.duplicate().get(copy);
+		return new InMemoryMessage(headers, null, copy);
+	}
+
+	boolean isBinary() {
+		return null != binaryMessage;
+	}
+
+	String getText() {
+		return isBinary() ? new String(binaryMessage, StandardCharsets.UTF_8) : message;
+	}
+
+	ByteBuffer getBinary() {
+		return ByteBuffer.wrap(binaryMessage).asReadOnlyBuffer();
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AcknowledgingMessageReceiver;
+import se.uu.ub.cora.messaging.BatchMessageReceiver;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.memory.InMemoryBroker.Subscription;
+import se.uu.ub.cora.messaging.receiver.BatchAcknowledger;
+import se.uu.ub.cora.messaging.receiver.ReceivedMessageBatcher;
+
+/**
+ * InMemoryMessageListener subscribes to an {@link InMemoryBroker} and delivers messages to a
+ * {@link MessageReceiver} from consumerConcurrency dispatch threads.
+ * <p>
+ * Messages are settled when they are taken from the buffer, there is no redelivery. A
+ * {@link BatchMessageReceiver} gets its messages in batches and an
+ * {@link AcknowledgingMessageReceiver} gets them as {@link ReceivedMessage}s, where acknowledging
+ * has no effect. Binary bodies are delivered using receiveBinaryMessage, except to batch and
+ * acknowledging receivers which get them decoded as UTF-8.
+ */
+final class InMemoryMessageListener implements MessageListener {
+	private Logger log = LoggerProvider.getLoggerForClass(InMemoryMessageListener.class);
+	private final InMemoryBroker broker;
+	private final WaitStrategy waitStrategy;
+	private final String exchange;
+	private final TopicPattern bindingPattern;
+	private final int capacity;
+	private final int consumerConcurrency;
+	private final List<Subscription> subscriptions = new ArrayList<>();
+	private final List<ReceivedMessageBatcher> batchers = new ArrayList<>();
+
+	InMemoryMessageListener(InMemoryBroker broker, WaitStrategy waitStrategy, String exchange,
+			TopicPattern bindingPattern, int capacity, int consumerConcurrency) {
+		this.broker = broker;
+		this.waitStrategy = waitStrategy;
+		this.exchange = exchange;
+		this.bindingPattern = bindingPattern;
+		this.capacity = capacity;
+		this.consumerConcurrency = consumerConcurrency;
+	}
+
+	@Override
+	public synchronized void listen(MessageReceiver messageReceiver) {
+		Subscription subscription = broker.subscribe(exchange, bindingPattern, capacity);
+		subscriptions.add(subscription);
+		MessageDelivery delivery = createDelivery(messageReceiver);
+		for (int i = 0; i < consumerConcurrency; i++) {
+			Thread.ofPlatform().name("cora-in-memory-listener").daemon()
+					.start(() -> dispatchUntilClosed(subscription, delivery));
+		}
+	}
+
+	private MessageDelivery createDelivery(MessageReceiver messageReceiver) {
+		if (messageReceiver instanceof BatchMessageReceiver batchReceiver) {
+			ReceivedMessageBatcher batcher = new ReceivedMessageBatcher(batchReceiver,
+					new LoggingBatchAcknowledger());
+			batchers.add(batcher);
+			return (message, deliveryTag) -> batcher.add(new ReceivedMessage(
+					message.headers.asStringMap(), message.getText(), deliveryTag));
+		}
+		if (messageReceiver instanceof AcknowledgingMessageReceiver acknowledgingReceiver) {
+			return (message, deliveryTag) -> acknowledgingReceiver
+					.receiveMessage(new ReceivedMessage(message.headers.asStringMap(),
+							message.getText(), deliveryTag));
+		}
+		return (message, deliveryTag) -> deliverTextOrBinary(messageReceiver, message);
+	}
+
+	private static void deliverTextOrBinary(MessageReceiver messageReceiver,
+			InMemoryMessage message) {
+		if (message.isBinary()) {
+			messageReceiver.receiveBinaryMessage(message.headers.asStringMap(),
+					message.getBinary());
+		} else {
+			messageReceiver.receiveMessageUsingHeaders(message.headers, message.getText());
+		}
+	}
+
+	private void dispatchUntilClosed(Subscription subscription, MessageDelivery delivery) {
+		long deliveryTag = 0;
+		while (!subscription.closed) {
+			InMemoryMessage message = subscription.buffer.poll();
+			if (null == message) {
+				waitStrategy.idle();
+			} else {
+				deliveryTag++;
+				deliver(delivery, message, deliveryTag);
+			}
+		}
+	}
+
+	private void deliver(MessageDelivery delivery, InMemoryMessage message, long deliveryTag) {
+		try {
+			delivery.deliver(message, deliveryTag);
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("MessageReceiver failed to handle message", e);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		for (Subscription subscription : subscriptions) {
+			broker.unsubscribe(subscription);
+		}
+		subscriptions.clear();
+		for (ReceivedMessageBatcher batcher : batchers) {
+			batcher.close();
+		}
+		batchers.clear();
+	}
+
+	private interface MessageDelivery {
+		void deliver(InMemoryMessage message, long deliveryTag);
+	}
+
+	private final class LoggingBatchAcknowledger implements BatchAcknowledger {
+		@Override
+		public void acknowledge(List<ReceivedMessage> batch) {
+			// messages are settled when taken from the buffer
+		}
+
+		@Override
+		public void reject(List<ReceivedMessage> batch, RuntimeException error) {
+			log.logErrorUsingMessageAndException(
+					"BatchMessageReceiver failed to handle " + batch.size() + " messages", error);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageSender;
+
+/**
+ * InMemoryMessageSender publishes messages to an {@link InMemoryBroker} using a fixed exchange and
+ * routing key. Binary bodies are sent as they are. Messages without a priority header get the
+ * priority of the sender, if it is above 0.
+ */
+final class InMemoryMessageSender implements MessageSender {
+	private final InMemoryBroker broker;
+	private final String exchange;
+	private final String routingKey;
+	private final int priority;
+
+	InMemoryMessageSender(InMemoryBroker broker, String exchange, String routingKey,
+			int priority) {
+		this.broker = broker;
+		this.exchange = exchange;
+		this.routingKey = routingKey;
+		this.priority = priority;
+	}
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		broker.publish(exchange, routingKey,
+				InMemoryMessage.text(copyWithPriority(headers), message));
+	}
+
+	private MessageHeaders copyWithPriority(Map<String, Object> headers) {
+		MessageHeaders copy = MessageHeaders.copyOf(headers);
+		if (priority > 0 && !copy.containsKey(MessageHeaders.PRIORITY)) {
+			return copy.with(MessageHeaders.PRIORITY, priority);
+		}
+		return copy;
+	}
+
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		broker.publish(exchange, routingKey,
+				InMemoryMessage.binary(copyWithPriority(headers), message));
+	}
+
+	@Override
+	public boolean supportsBinaryMessages() {
+		return true;
+	}
+}
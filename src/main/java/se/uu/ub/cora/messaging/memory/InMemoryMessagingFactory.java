@@ -0,0 +1,170 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import se.uu.ub.cora.messaging.AmqpMessageListenerRoutingInfo;
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
+import se.uu.ub.cora.messaging.JmsMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingFactory;
+
+/**
+ * InMemoryMessagingFactory is a {@link MessagingFactory} that passes messages between senders and
+ * listeners in the same JVM, without any broker or network. It is intended for single node
+ * installations, for tests and as a baseline when comparing broker implementations.
+ * <p>
+ * Messages are routed using topic exchange rules. A sender using
+ * {@link AmqpMessageSenderRoutingInfo} publishes to its exchange with its routing key, a sender
+ * using {@link JmsMessageRoutingInfo} publishes to the default exchange "" with its routing key. A
+ * listener using {@link AmqpMessageListenerRoutingInfo} with a queueName gets messages sent to the
+ * default exchange with that exact routing key, otherwise it gets messages sent to its exchange
+ * whose routing key matches its routingKey pattern, where "*" matches one word and "#" any number
+ * of words. A listener using {@link JmsMessageRoutingInfo} gets messages sent to the default
+ * exchange matching its routingKey pattern. All matching listeners get a copy of each message.
+ * <p>
+ * Each listener has a bounded lock free ring buffer, when it is full senders wait using the
+ * configured {@link WaitStrategy} until there is room. Messages are only held in memory and are
+ * lost if the JVM stops.
+ * <p>
+ * The factory is not registered with ServiceLoader, so a missing broker implementation is still
+ * reported at startup instead of messages silently staying in memory. It is used when set
+ * explicitly using
+ * {@link se.uu.ub.cora.messaging.MessagingProvider#setMessagingFactory(MessagingFactory)}, either
+ * alone or in a {@link se.uu.ub.cora.messaging.MessagingFactoryRegistry} together with other
+ * implementations. In a registry it is used for routing infos no other implementation supports,
+ * or when selected by its transport name {@value #TRANSPORT_NAME} using a
+ * {@link se.uu.ub.cora.messaging.TransportSelector}. Senders and listeners from the same factory
+ * instance share messages.
+ */
+public final class InMemoryMessagingFactory implements MessagingFactory {
+	/**
+	 * The transport name of the built in factory, used to select it using a
+	 * {@link se.uu.ub.cora.messaging.TransportSelector}.
+	 */
+	public static final String TRANSPORT_NAME = "in-memory";
+	private static final int BUILT_IN_PRIORITY = -1000;
+	private static final int DEFAULT_CAPACITY = 1024;
+	private static final String DEFAULT_EXCHANGE = "";
+	private final InMemoryBroker broker;
+	private final WaitStrategy waitStrategy;
+	private final int capacity;
+
+	/**
+	 * Creates a factory where each listener buffers up to 1024 messages, using
+	 * {@link WaitStrategy#PARK}.
+	 */
+	public InMemoryMessagingFactory() {
+		this(DEFAULT_CAPACITY, WaitStrategy.PARK);
+	}
+
+	/**
+	 * Creates a factory using the given buffer capacity and wait strategy.
+	 * 
+	 * @param capacity
+	 *            An int with the number of messages each listener buffers, rounded up to a power
+	 *            of two. A listener using {@link AmqpMessageListenerRoutingInfo} with a
+	 *            dispatchQueueCapacity above zero uses that instead.
+	 * @param waitStrategy
+	 *            A {@link WaitStrategy} used by senders waiting for room and by listeners waiting
+	 *            for messages
+	 */
+	public InMemoryMessagingFactory(int capacity, WaitStrategy waitStrategy) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1, was " + capacity);
+		}
+		if (null == waitStrategy) {
+			throw new IllegalArgumentException("waitStrategy must not be null");
+		}
+		this.capacity = capacity;
+		this.waitStrategy = waitStrategy;
+		broker = new InMemoryBroker(waitStrategy);
+	}
+
+	@Override
+	public MessageSender factorTopicMessageSender(MessageRoutingInfo routingInfo) {
+		if (routingInfo instanceof AmqpMessageSenderRoutingInfo amqpRoutingInfo) {
+			return new InMemoryMessageSender(broker, amqpRoutingInfo.exchange,
+					amqpRoutingInfo.routingKey, amqpRoutingInfo.priority);
+		}
+		if (routingInfo instanceof JmsMessageRoutingInfo jmsRoutingInfo) {
+			return new InMemoryMessageSender(broker, DEFAULT_EXCHANGE, jmsRoutingInfo.routingKey,
+					0);
+		}
+		throw createUnsupportedRoutingInfoException(routingInfo);
+	}
+
+	@Override
+	public MessageListener factorTopicMessageListener(MessageRoutingInfo routingInfo) {
+		if (routingInfo instanceof AmqpMessageListenerRoutingInfo amqpRoutingInfo) {
+			return createAmqpListener(amqpRoutingInfo);
+		}
+		if (routingInfo instanceof JmsMessageRoutingInfo jmsRoutingInfo) {
+			return new InMemoryMessageListener(broker, waitStrategy, DEFAULT_EXCHANGE,
+					TopicPattern.compile(jmsRoutingInfo.routingKey), capacity, 1);
+		}
+		throw createUnsupportedRoutingInfoException(routingInfo);
+	}
+
+	private MessageListener createAmqpListener(AmqpMessageListenerRoutingInfo routingInfo) {
+		int listenerCapacity = routingInfo.dispatchQueueCapacity > 0
+				? routingInfo.dispatchQueueCapacity
+				: capacity;
+		if (null != routingInfo.queueName && !routingInfo.queueName.isEmpty()) {
+			return new InMemoryMessageListener(broker, waitStrategy, DEFAULT_EXCHANGE,
+					TopicPattern.literal(routingInfo.queueName), listenerCapacity,
+					routingInfo.consumerConcurrency);
+		}
+		return new InMemoryMessageListener(broker, waitStrategy, routingInfo.exchange,
+				TopicPattern.compile(routingInfo.routingKey), listenerCapacity,
+				routingInfo.consumerConcurrency);
+	}
+
+	@Override
+	public String getTransportName() {
+		return TRANSPORT_NAME;
+	}
+
+	/**
+	 * The built in factory has a lower priority than other implementations, so that it is only
+	 * used for routing infos no other implementation supports, or when selected explicitly.
+	 */
+	@Override
+	public int getPriority() {
+		return BUILT_IN_PRIORITY;
+	}
+
+	@Override
+	public boolean supportsRoutingInfoType(Class<? extends MessageRoutingInfo> routingInfoType) {
+		return AmqpMessageSenderRoutingInfo.class == routingInfoType
+				|| AmqpMessageListenerRoutingInfo.class == routingInfoType
+				|| JmsMessageRoutingInfo.class == routingInfoType;
+	}
+
+	int getNumberOfSubscriptions() {
+		return broker.getNumberOfSubscriptions();
+	}
+
+	private IllegalArgumentException createUnsupportedRoutingInfoException(
+			MessageRoutingInfo routingInfo) {
+		return new IllegalArgumentException("Unsupported routing info for in memory messaging: "
+				+ (null == routingInfo ? "null" : routingInfo.getClass().getSimpleName()));
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * RingBuffer is a bounded, lock-free queue that can be used by several producing and several
+ * consuming threads at the same time.
+ * <p>
+ * Each slot has a sequence number telling whether it is free for the producer at a given position
+ * or holds an element for the consumer at that position. Producers and consumers claim positions
+ * by compare-and-set on the tail and head counters, and publish a slot by advancing its sequence.
+ * The capacity is rounded up to the nearest power of two.
+ */
+final class RingBuffer<T> {
+	private final int mask;
+	private final AtomicReferenceArray<T> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	RingBuffer(int requestedCapacity) {
+		int capacity = roundUpToPowerOfTwo(requestedCapacity);
+		mask = capacity - 1;
+		elements = new AtomicReferenceArray<>(capacity);
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	private static int roundUpToPowerOfTwo(int requestedCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(1, requestedCapacity));
+		return capacity < requestedCapacity ? capacity << 1 : capacity;
+	}
+
+	/**
+	 * offer adds an element if there is room
+	 * 
+	 * @return true if the element was added, false if the buffer is full
+	 */
+	boolean offer(T element) {
+		long position = tail.get();
+		while (true) {
+			int index = (int) (position & mask);
+			long sequence = sequences.getAcquire(index);
+			long difference = sequence - position;
+			if (difference == 0 && tail.compareAndSet(position, position + 1)) {
+				elements.setPlain(index, element);
+				sequences.setRelease(index, position + 1);
+				return true;
+			}
+			if (difference < 0) {
+				return false;
+			}
+			position = tail.get();
+		}
+	}
+
+	/**
+	 * poll removes and returns the oldest element
+	 * 
+	 * @return the oldest element, or null if the buffer is empty
+	 */
+	T poll() {
+		long position = head.get();
+		while (true) {
+			int index = (int) (position & mask);
+			long sequence = sequences.getAcquire(index);
+			long difference = sequence - (position + 1);
+			if (difference == 0 && head.compareAndSet(position, position + 1)) {
+				T element = elements.getPlain(index);
+				elements.setPlain(index, null);
+				sequences.setRelease(index, position + mask + 1);
+				return element;
+			}
+			if (difference < 0) {
+				return null;
+			}
+			position = head.get();
+		}
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+
+	int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import java.util.Arrays;
+
+/**
+ * TopicPattern matches routing keys against a binding pattern using AMQP topic exchange rules.
+ * Routing keys and patterns are dot separated words, in the pattern "*" matches exactly one word
+ * and "#" matches zero or more words. The JMS wildcard "&gt;" is treated as "#".
+ */
+final class TopicPattern {
+	private static final String ONE_WORD = "*";
+	private static final String ANY_WORDS = "#";
+	private static final String JMS_ANY_WORDS = ">";
+	private final String[] patternWords;
+	private final boolean literal;
+
+	private TopicPattern(String[] patternWords, boolean literal) {
+		this.patternWords = patternWords;
+		this.literal = literal;
+	}
+
+	static TopicPattern compile(String pattern) {
+		String[] words = splitIntoWords(pattern);
+		for (int i = 0; i < words.length; i++) {
+			if (JMS_ANY_WORDS.equals(words[i])) {
+				words[i] = ANY_WORDS;
+			}
+		}
+		return new TopicPattern(words, false);
+	}
+
+	static TopicPattern literal(String routingKey) {
+		return new TopicPattern(splitIntoWords(routingKey), true);
+	}
+
+	static String[] splitIntoWords(String routingKey) {
+		if (null == routingKey || routingKey.isEmpty()) {
+			return new String[0];
+		}
+		return routingKey.split("\\.", -1);
+	}
+
+	boolean matches(String[] routingKeyWords) {
+		if (literal) {
+			return Arrays.equals(patternWords, routingKeyWords);
+		}
+		return matchesFrom(0, routingKeyWords, 0);
+	}
+
+	private boolean matchesFrom(int patternIndex, String[] routingKeyWords, int keyIndex) {
+		if (patternIndex == patternWords.length) {
+			return keyIndex == routingKeyWords.length;
+		}
+		String patternWord = patternWords[patternIndex];
+		if (ANY_WORDS.equals(patternWord)) {
+			return matchesAnyNumberOfWords(patternIndex, routingKeyWords, keyIndex);
+		}
+		if (keyIndex == routingKeyWords.length) {
+			return false;
+		}
+		return (ONE_WORD.equals(patternWord) || patternWord.equals(routingKeyWords[keyIndex]))
+				&& matchesFrom(patternIndex + 1, routingKeyWords, keyIndex + 1);
+	}
+
+	private boolean matchesAnyNumberOfWords(int patternIndex, String[] routingKeyWords,
+			int keyIndex) {
+		for (int skipTo = keyIndex; skipTo <= routingKeyWords.length; skipTo++) {
+			if (matchesFrom(patternIndex + 1, routingKeyWords, skipTo)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
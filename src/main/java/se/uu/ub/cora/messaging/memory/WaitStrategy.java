@@ -0,0 +1,64 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * WaitStrategy decides what a thread does while it waits for a message to arrive in, or for room
+ * to become available in, a bounded queue. The strategies trade CPU use for latency.
+ */
+public enum WaitStrategy {
+	/**
+	 * SPIN busy-waits, giving the lowest latency but keeping a CPU core busy while waiting.
+	 */
+	SPIN {
+		@Override
+		public void idle() {
+			Thread.onSpinWait();
+		}
+	},
+	/**
+	 * YIELD lets other threads run between checks, giving low latency with less CPU use than SPIN
+	 * as long as there are free cores.
+	 */
+	YIELD {
+		@Override
+		public void idle() {
+			Thread.yield();
+		}
+	},
+	/**
+	 * PARK sleeps a short while between checks, using almost no CPU while idle at the cost of up
+	 * to a tenth of a millisecond extra latency.
+	 */
+	PARK {
+		@Override
+		public void idle() {
+			LockSupport.parkNanos(PARK_NANOS);
+		}
+	};
+
+	private static final long PARK_NANOS = 100_000;
+
+	/**
+	 * idle is called each time a waiting thread finds that it has to keep waiting.
+	 */
+	public abstract void idle();
+}
@@ -0,0 +1,7 @@
+/**
+ * The memory package contains {@link se.uu.ub.cora.messaging.memory.InMemoryMessagingFactory}, a
+ * MessagingFactory delivering messages between senders and listeners in the same JVM, without a
+ * messaging server. It is intended for single node installations, for tests and as a baseline
+ * when measuring other MessagingFactory implementations.
+ */
+package se.uu.ub.cora.messaging.memory;
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import se.uu.ub.cora.messaging.AcknowledgingMessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+
+/**
+ * InstrumentedAcknowledgingMessageReceiver records metrics for messages delivered to the wrapped
+ * {@link AcknowledgingMessageReceiver}, keeping it recognisable as acknowledging by listeners.
+ */
+final class InstrumentedAcknowledgingMessageReceiver extends InstrumentedMessageReceiver
+		implements AcknowledgingMessageReceiver {
+	private final AcknowledgingMessageReceiver receiver;
+
+	InstrumentedAcknowledgingMessageReceiver(AcknowledgingMessageReceiver receiver,
+			RoutingKeyMetrics metrics) {
+		super(receiver, metrics);
+		this.receiver = receiver;
+	}
+
+	@Override
+	public void receiveMessage(ReceivedMessage receivedMessage) {
+		metrics.recordReceivedMessageSize(
+				InstrumentedMessageSender.textSize(receivedMessage.message));
+		long start = metrics.startReceive();
+		int failed = 1;
+		try {
+			receiver.receiveMessage(receivedMessage);
+			failed = 0;
+		} finally {
+			metrics.endReceive(start, failed);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import se.uu.ub.cora.messaging.AsyncMessageSender;
+
+/**
+ * InstrumentedAsyncMessageSender records metrics for messages sent through the wrapped
+ * {@link AsyncMessageSender}. The latency is measured until the send completes, and is recorded
+ * before the returned future completes.
+ */
+final class InstrumentedAsyncMessageSender implements AsyncMessageSender {
+	private final AsyncMessageSender sender;
+	private final RoutingKeyMetrics metrics;
+
+	InstrumentedAsyncMessageSender(AsyncMessageSender sender, RoutingKeyMetrics metrics) {
+		this.sender = sender;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public CompletableFuture<Void> sendMessageAsync(Map<String, Object> headers, String message) {
+		metrics.recordSentMessageSize(InstrumentedMessageSender.textSize(message));
+		long start = metrics.startSend();
+		CompletableFuture<Void> sent;
+		try {
+			sent = sender.sendMessageAsync(headers, message);
+		} catch (RuntimeException e) {
+			metrics.endSend(start, 1);
+			throw e;
+		}
+		return sent.whenComplete((result, error) -> metrics.endSend(start, null == error ? 0 : 1));
+	}
+
+	@Override
+	public void close() {
+		sender.close();
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import java.time.Duration;
+import java.util.List;
+
+import se.uu.ub.cora.messaging.BatchMessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+
+/**
+ * InstrumentedBatchMessageReceiver records metrics for batches delivered to the wrapped
+ * {@link BatchMessageReceiver}, keeping it recognisable as batching by listeners. Latency is
+ * recorded once per batch.
+ */
+final class InstrumentedBatchMessageReceiver extends InstrumentedMessageReceiver
+		implements BatchMessageReceiver {
+	private final BatchMessageReceiver receiver;
+
+	InstrumentedBatchMessageReceiver(BatchMessageReceiver receiver, RoutingKeyMetrics metrics) {
+		super(receiver, metrics);
+		this.receiver = receiver;
+	}
+
+	@Override
+	public void receiveMessages(List<ReceivedMessage> messages) {
+		for (ReceivedMessage receivedMessage : messages) {
+			metrics.recordReceivedMessageSize(
+					InstrumentedMessageSender.textSize(receivedMessage.message));
+		}
+		long start = metrics.startReceive();
+		int failed = messages.size();
+		try {
+			receiver.receiveMessages(messages);
+			failed = 0;
+		} finally {
+			metrics.endReceive(start, failed);
+		}
+	}
+
+	@Override
+	public int getMaxBatchSize() {
+		return receiver.getMaxBatchSize();
+	}
+
+	@Override
+	public Duration getMaxBatchWait() {
+		return receiver.getMaxBatchWait();
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import se.uu.ub.cora.messaging.CreditBasedMessageListener;
+
+/**
+ * InstrumentedCreditBasedMessageListener is an {@link InstrumentedMessageListener} that keeps
+ * credit based flow control of the wrapped listener available.
+ */
+final class InstrumentedCreditBasedMessageListener extends InstrumentedMessageListener
+		implements CreditBasedMessageListener {
+	private final CreditBasedMessageListener listener;
+
+	InstrumentedCreditBasedMessageListener(CreditBasedMessageListener listener,
+			RoutingKeyMetrics metrics) {
+		super(listener, metrics);
+		this.listener = listener;
+	}
+
+	@Override
+	public void addCredit(long numberOfMessages) {
+		listener.addCredit(numberOfMessages);
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import se.uu.ub.cora.messaging.AcknowledgingMessageReceiver;
+import se.uu.ub.cora.messaging.BatchMessageReceiver;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+
+/**
+ * InstrumentedMessageListener wraps the {@link MessageReceiver} given to the wrapped
+ * {@link MessageListener} so that metrics are recorded for all delivered messages.
+ */
+class InstrumentedMessageListener implements MessageListener {
+	private final MessageListener listener;
+	private final RoutingKeyMetrics metrics;
+
+	InstrumentedMessageListener(MessageListener listener, RoutingKeyMetrics metrics) {
+		this.listener = listener;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void listen(MessageReceiver messageReceiver) {
+		listener.listen(instrument(messageReceiver));
+	}
+
+	private MessageReceiver instrument(MessageReceiver messageReceiver) {
+		if (messageReceiver instanceof BatchMessageReceiver batchReceiver) {
+			return new InstrumentedBatchMessageReceiver(batchReceiver, metrics);
+		}
+		if (messageReceiver instanceof AcknowledgingMessageReceiver acknowledgingReceiver) {
+			return new InstrumentedAcknowledgingMessageReceiver(acknowledgingReceiver, metrics);
+		}
+		return new InstrumentedMessageReceiver(messageReceiver, metrics);
+	}
+
+	@Override
+	public void close() {
+		listener.close();
+	}
+}
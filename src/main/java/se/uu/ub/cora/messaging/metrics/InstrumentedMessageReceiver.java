@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+
+/**
+ * InstrumentedMessageReceiver records size, handler latency, in flight and error metrics for
+ * messages delivered to the wrapped {@link MessageReceiver}.
+ */
+class InstrumentedMessageReceiver implements MessageReceiver {
+	private final MessageReceiver receiver;
+	protected final RoutingKeyMetrics metrics;
+
+	InstrumentedMessageReceiver(MessageReceiver receiver, RoutingKeyMetrics metrics) {
+		this.receiver = receiver;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void receiveMessage(Map<String, String> headers, String message) {
+		metrics.recordReceivedMessageSize(InstrumentedMessageSender.textSize(message));
+		long start = metrics.startReceive();
+		int failed = 1;
+		try {
+			receiver.receiveMessage(headers, message);
+			failed = 0;
+		} finally {
+			metrics.endReceive(start, failed);
+		}
+	}
+
+	@Override
+	public void receiveMessageUsingHeaders(MessageHeaders headers, String message) {
+		metrics.recordReceivedMessageSize(InstrumentedMessageSender.textSize(message));
+		long start = metrics.startReceive();
+		int failed = 1;
+		try {
+			receiver.receiveMessageUsingHeaders(headers, message);
+			failed = 0;
+		} finally {
+			metrics.endReceive(start, failed);
+		}
+	}
+
+	@Override
+	public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+		metrics.recordReceivedMessageSize(message.remaining());
+		long start = metrics.startReceive();
+		int failed = 1;
+		try {
+			receiver.receiveBinaryMessage(headers, message);
+			failed = 0;
+		} finally {
+			metrics.endReceive(start, failed);
+		}
+	}
+
+	@Override
+	public void topicClosed() {
+		receiver.topicClosed();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+
+/**
+ * InstrumentedMessageSender records size, latency, in flight and error metrics for messages sent
+ * through the wrapped {@link MessageSender}. Binary message sizes are recorded in bytes and text
+ * message sizes as the number of characters, which is read without scanning the message.
+ */
+final class InstrumentedMessageSender implements MessageSender {
+	private final MessageSender sender;
+	private final RoutingKeyMetrics metrics;
+
+	InstrumentedMessageSender(MessageSender sender, RoutingKeyMetrics metrics) {
+		this.sender = sender;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		metrics.recordSentMessageSize(textSize(message));
+		long start = metrics.startSend();
+		int failed = 1;
+		try {
+			sender.sendMessage(headers, message);
+			failed = 0;
+		} finally {
+			metrics.endSend(start, failed);
+		}
+	}
+
+	static long textSize(String message) {
+		return null == message ? 0 : message.length();
+	}
+
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		metrics.recordSentMessageSize(message.remaining());
+		long start = metrics.startSend();
+		int failed = 1;
+		try {
+			sender.sendBinaryMessage(headers, message);
+			failed = 0;
+		} finally {
+			metrics.endSend(start, failed);
+		}
+	}
+
+	@Override
+	public boolean supportsBinaryMessages() {
+		return sender.supportsBinaryMessages();
+	}
+
+	@Override
+	public void sendMessages(List<OutgoingMessage> messages) {
+		for (OutgoingMessage outgoingMessage : messages) {
+			metrics.recordSentMessageSize(textSize(outgoingMessage.message));
+		}
+		long start = metrics.startSend();
+		int failed = messages.size();
+		try {
+			sender.sendMessages(messages);
+			failed = 0;
+		} finally {
+			metrics.endSend(start, failed);
+		}
+	}
+
+	@Override
+	public void close() {
+		sender.close();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import se.uu.ub.cora.messaging.AsyncMessageSender;
+import se.uu.ub.cora.messaging.CreditBasedMessageListener;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingFactory;
+
+/**
+ * InstrumentedMessagingFactory decorates another {@link MessagingFactory} so that all
+ * {@link MessageSender}s, {@link AsyncMessageSender}s and {@link MessageListener}s it factors, and
+ * the receivers given to the listeners, record metrics into a {@link MessagingMetrics}.
+ * <p>
+ * Send latency, handler latency and message sizes are recorded in {@link LogBucketHistogram}s,
+ * together with error and in flight counts, per routing key. The metrics for a routing key are
+ * looked up when a handler is factored, recording adds two reads of the nano clock and a few
+ * uncontended atomic updates to each message and does not allocate.
+ * <p>
+ * Receivers implementing {@link se.uu.ub.cora.messaging.BatchMessageReceiver} or
+ * {@link se.uu.ub.cora.messaging.AcknowledgingMessageReceiver} and listeners implementing
+ * {@link CreditBasedMessageListener} keep those capabilities when wrapped.
+ */
+public final class InstrumentedMessagingFactory implements MessagingFactory {
+	private final MessagingFactory messagingFactory;
+	private final MessagingMetrics metrics;
+
+	public InstrumentedMessagingFactory(MessagingFactory messagingFactory,
+			MessagingMetrics metrics) {
+		this.messagingFactory = messagingFactory;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public MessageSender factorTopicMessageSender(MessageRoutingInfo messagingRoutingInfo) {
+		MessageSender sender = messagingFactory.factorTopicMessageSender(messagingRoutingInfo);
+		return new InstrumentedMessageSender(sender,
+				metrics.getMetricsForRoutingInfo(messagingRoutingInfo));
+	}
+
+	@Override
+	public MessageListener factorTopicMessageListener(MessageRoutingInfo messagingRoutingInfo) {
+		MessageListener listener = messagingFactory
+				.factorTopicMessageListener(messagingRoutingInfo);
+		RoutingKeyMetrics routingKeyMetrics = metrics
+				.getMetricsForRoutingInfo(messagingRoutingInfo);
+		if (listener instanceof CreditBasedMessageListener creditBasedListener) {
+			return new InstrumentedCreditBasedMessageListener(creditBasedListener,
+					routingKeyMetrics);
+		}
+		return new InstrumentedMessageListener(listener, routingKeyMetrics);
+	}
+
+	@Override
+	public AsyncMessageSender factorTopicAsyncMessageSender(
+			MessageRoutingInfo messagingRoutingInfo, int maxInFlight) {
+		AsyncMessageSender sender = messagingFactory
+				.factorTopicAsyncMessageSender(messagingRoutingInfo, maxInFlight);
+		return new InstrumentedAsyncMessageSender(sender,
+				metrics.getMetricsForRoutingInfo(messagingRoutingInfo));
+	}
+
+	@Override
+	public String getTransportName() {
+		return messagingFactory.getTransportName();
+	}
+
+	@Override
+	public int getPriority() {
+		return messagingFactory.getPriority();
+	}
+
+	@Override
+	public boolean supportsRoutingInfoType(Class<? extends MessageRoutingInfo> routingInfoType) {
+		return messagingFactory.supportsRoutingInfoType(routingInfoType);
+	}
+
+	public MessagingMetrics getMetrics() {
+		return metrics;
+	}
+}
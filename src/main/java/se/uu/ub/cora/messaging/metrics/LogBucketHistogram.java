@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LogBucketHistogram records non negative long values, such as latencies in nanoseconds or message
+ * sizes, into logarithmic buckets. Each power of two range is divided into eight buckets, so a
+ * recorded value is reported with a relative error of at most 12.5%. Values below 16 are kept
+ * exactly.
+ * <p>
+ * Recording does not allocate or lock and can be done from many threads at the same time. A
+ * {@link HistogramSnapshot} taken while values are recorded is not guaranteed to include all of
+ * them.
+ */
+public final class LogBucketHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int EXACT_LIMIT = 2 * SUB_BUCKETS;
+	private static final int NUMBER_OF_BUCKETS = bucketIndex(Long.MAX_VALUE) + 1;
+	private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Creates an empty histogram
+	 */
+	public LogBucketHistogram() {
+		// no values recorded yet
+	}
+
+	public void record(long value) {
+		long recorded = Math.max(0, value);
+		counts.getAndIncrement(bucketIndex(recorded));
+		sum.add(recorded);
+		updateMax(recorded);
+	}
+
+	private void updateMax(long value) {
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+
+	static int bucketIndex(long value) {
+		if (value < EXACT_LIMIT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	static long highestValueInBucket(int index) {
+		if (index < EXACT_LIMIT) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	public HistogramSnapshot snapshot() {
+		long[] countsCopy = new long[NUMBER_OF_BUCKETS];
+		long count = 0;
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			countsCopy[i] = counts.get(i);
+			count += countsCopy[i];
+		}
+		return new HistogramSnapshot(countsCopy, count, sum.sum(), max.get());
+	}
+}
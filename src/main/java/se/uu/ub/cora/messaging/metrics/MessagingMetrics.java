@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import se.uu.ub.cora.messaging.AmqpMessageListenerRoutingInfo;
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
+import se.uu.ub.cora.messaging.JmsMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+
+/**
+ * MessagingMetrics holds metrics recorded by an {@link InstrumentedMessagingFactory}, grouped by
+ * routing key.
+ * <p>
+ * The routing key of {@link AmqpMessageSenderRoutingInfo} and {@link JmsMessageRoutingInfo} is
+ * their routingKey. For {@link AmqpMessageListenerRoutingInfo} it is the queueName when set,
+ * otherwise the routingKey. Other routing infos are grouped by their class name.
+ */
+public final class MessagingMetrics {
+	private final ConcurrentHashMap<String, RoutingKeyMetrics> metricsByRoutingKey =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Creates MessagingMetrics without any recorded metrics
+	 */
+	public MessagingMetrics() {
+		// metrics are added per routing key when first recorded
+	}
+
+	RoutingKeyMetrics getMetricsForRoutingInfo(MessageRoutingInfo routingInfo) {
+		return metricsByRoutingKey.computeIfAbsent(getRoutingKey(routingInfo),
+				routingKey -> new RoutingKeyMetrics());
+	}
+
+	private static String getRoutingKey(MessageRoutingInfo routingInfo) {
+		if (routingInfo instanceof AmqpMessageSenderRoutingInfo amqpRoutingInfo) {
+			return String.valueOf(amqpRoutingInfo.routingKey);
+		}
+		if (routingInfo instanceof AmqpMessageListenerRoutingInfo amqpRoutingInfo) {
+			return getQueueNameOrRoutingKey(amqpRoutingInfo);
+		}
+		if (routingInfo instanceof JmsMessageRoutingInfo jmsRoutingInfo) {
+			return String.valueOf(jmsRoutingInfo.routingKey);
+		}
+		return null == routingInfo ? "null" : routingInfo.getClass().getSimpleName();
+	}
+
+	private static String getQueueNameOrRoutingKey(AmqpMessageListenerRoutingInfo routingInfo) {
+		if (null != routingInfo.queueName && !routingInfo.queueName.isEmpty()) {
+			return routingInfo.queueName;
+		}
+		return String.valueOf(routingInfo.routingKey);
+	}
+
+	/**
+	 * getSnapshot returns the metrics recorded so far for each routing key
+	 * 
+	 * @return An unmodifiable Map with a {@link RoutingKeyMetricsSnapshot} for each routing key,
+	 *         sorted by routing key
+	 */
+	public Map<String, RoutingKeyMetricsSnapshot> getSnapshot() {
+		Map<String, RoutingKeyMetricsSnapshot> snapshot = new TreeMap<>();
+		metricsByRoutingKey.forEach(
+				(routingKey, metrics) -> snapshot.put(routingKey, metrics.snapshot()));
+		return Collections.unmodifiableMap(snapshot);
+	}
+}
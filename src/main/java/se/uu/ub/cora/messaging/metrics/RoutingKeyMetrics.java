@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RoutingKeyMetrics holds the recorded metrics for one routing key. Instances are looked up once
+ * when a sender or listener is wrapped, so that recording does not need any map lookup.
+ */
+final class RoutingKeyMetrics {
+	private final LogBucketHistogram sendLatency = new LogBucketHistogram();
+	private final LogBucketHistogram sentMessageSize = new LogBucketHistogram();
+	private final LongAdder sendErrors = new LongAdder();
+	private final LongAdder sendsInFlight = new LongAdder();
+	private final LogBucketHistogram receiveLatency = new LogBucketHistogram();
+	private final LogBucketHistogram receivedMessageSize = new LogBucketHistogram();
+	private final LongAdder receiveErrors = new LongAdder();
+	private final LongAdder receivesInFlight = new LongAdder();
+
+	void recordSentMessageSize(long messageSize) {
+		sentMessageSize.record(messageSize);
+	}
+
+	long startSend() {
+		sendsInFlight.increment();
+		return System.nanoTime();
+	}
+
+	void endSend(long startNanos, int numberOfFailedMessages) {
+		sendLatency.record(System.nanoTime() - startNanos);
+		sendsInFlight.decrement();
+		if (numberOfFailedMessages > 0) {
+			sendErrors.add(numberOfFailedMessages);
+		}
+	}
+
+	void recordReceivedMessageSize(long messageSize) {
+		receivedMessageSize.record(messageSize);
+	}
+
+	long startReceive() {
+		receivesInFlight.increment();
+		return System.nanoTime();
+	}
+
+	void endReceive(long startNanos, int numberOfFailedMessages) {
+		receiveLatency.record(System.nanoTime() - startNanos);
+		receivesInFlight.decrement();
+		if (numberOfFailedMessages > 0) {
+			receiveErrors.add(numberOfFailedMessages);
+		}
+	}
+
+	RoutingKeyMetricsSnapshot snapshot() {
+		return new RoutingKeyMetricsSnapshot(sendLatency.snapshot(), sentMessageSize.snapshot(),
+				sendErrors.sum(), sendsInFlight.sum(), receiveLatency.snapshot(),
+				receivedMessageSize.snapshot(), receiveErrors.sum(), receivesInFlight.sum());
+	}
+}
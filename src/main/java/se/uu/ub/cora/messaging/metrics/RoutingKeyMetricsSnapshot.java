@@ -0,0 +1,53 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+/**
+ * RoutingKeyMetricsSnapshot holds the metrics recorded for one routing key at the time the
+ * snapshot was taken.
+ * <p>
+ * Latencies are in nanoseconds. Message sizes are the number of characters for text messages and
+ * the number of bytes for binary messages. Send latencies for batches sent using
+ * {@link se.uu.ub.cora.messaging.MessageSender#sendMessages(java.util.List)} and receive latencies
+ * for batches delivered to a {@link se.uu.ub.cora.messaging.BatchMessageReceiver} are recorded
+ * once per batch, while sizes and errors are recorded per message.
+ */
+public final class RoutingKeyMetricsSnapshot {
+	public final HistogramSnapshot sendLatency;
+	public final HistogramSnapshot sentMessageSize;
+	public final long sendErrors;
+	public final long sendsInFlight;
+	public final HistogramSnapshot receiveLatency;
+	public final HistogramSnapshot receivedMessageSize;
+	public final long receiveErrors;
+	public final long receivesInFlight;
+
+	RoutingKeyMetricsSnapshot(HistogramSnapshot sendLatency, HistogramSnapshot sentMessageSize,
+			long sendErrors, long sendsInFlight, HistogramSnapshot receiveLatency,
+			HistogramSnapshot receivedMessageSize, long receiveErrors, long receivesInFlight) {
+		this.sendLatency = sendLatency;
+		this.sentMessageSize = sentMessageSize;
+		this.sendErrors = sendErrors;
+		this.sendsInFlight = sendsInFlight;
+		this.receiveLatency = receiveLatency;
+		this.receivedMessageSize = receivedMessageSize;
+		this.receiveErrors = receiveErrors;
+		this.receivesInFlight = receivesInFlight;
+	}
+}
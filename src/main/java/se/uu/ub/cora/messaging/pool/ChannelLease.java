@@ -0,0 +1,41 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.pool;
+
+/**
+ * ChannelLease gives the leasing thread exclusive use of a pooled channel until it is closed. A
+ * lease should be used in a try with resources block and must be closed by the thread that got
+ * it.
+ * 
+ * @param <H>
+ *            The type of channels
+ */
+public interface ChannelLease<H> extends AutoCloseable {
+
+	H getChannel();
+
+	/**
+	 * invalidate marks the channel as broken, for instance after a failed publish, so that it is
+	 * closed when the lease is closed and a new channel is opened for the next lease.
+	 */
+	void invalidate();
+
+	@Override
+	void close();
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.pool;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessagingException;
+
+/**
+ * ConnectionPool lets many senders and listeners share a small number of connections to each
+ * broker {@link MessagingEndpoint}. Transport implementations get their channels from the pool
+ * instead of opening one connection per sender or listener.
+ * <p>
+ * Each endpoint has at most maxConnectionsPerEndpoint connections, each with channelsPerConnection
+ * shared channels, opened when first needed. As channels are not thread safe each shared channel
+ * is a stripe that only one lease at a time can use, see {@link #leaseChannel(MessagingEndpoint)}.
+ * A thread first tries the stripe its thread id maps to, then any free stripe, and only waits if
+ * all stripes are leased. Listeners, which keep a channel for as long as they consume, get
+ * channels of their own using {@link #openDedicatedChannel(MessagingEndpoint)}, spread over the
+ * same connections.
+ * <p>
+ * Connections and channels are checked before they are leased and broken ones are replaced. If a
+ * healthCheckInterval is given, a timer thread also closes broken connections and idle broken
+ * channels periodically, so that they are not kept until next used.
+ * 
+ * @param <C>
+ *            The type of connections
+ * @param <H>
+ *            The type of channels
+ */
+public final class ConnectionPool<C, H> implements AutoCloseable {
+	private Logger log = LoggerProvider.getLoggerForClass(ConnectionPool.class);
+	private final ConnectionProvider<C, H> provider;
+	private final int maxConnectionsPerEndpoint;
+	private final int channelsPerConnection;
+	private final ConcurrentHashMap<MessagingEndpoint, EndpointPool> endpointPools =
+			new ConcurrentHashMap<>();
+	private final Optional<ScheduledExecutorService> healthCheckTimer;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param provider
+	 *            The {@link ConnectionProvider} used to open, check and close connections and
+	 *            channels
+	 * @param maxConnectionsPerEndpoint
+	 *            An int with the maximum number of connections to each endpoint
+	 * @param channelsPerConnection
+	 *            An int with the number of shared channels on each connection
+	 * @param healthCheckInterval
+	 *            A Duration with the interval of health checks, or Duration.ZERO for no timer
+	 */
+	public ConnectionPool(ConnectionProvider<C, H> provider, int maxConnectionsPerEndpoint,
+			int channelsPerConnection, Duration healthCheckInterval) {
+		throwErrorIfLessThanOne("maxConnectionsPerEndpoint", maxConnectionsPerEndpoint);
+		throwErrorIfLessThanOne("channelsPerConnection", channelsPerConnection);
+		this.provider = provider;
+		this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+		this.channelsPerConnection = channelsPerConnection;
+		healthCheckTimer = startHealthCheckTimerIfIntervalGiven(healthCheckInterval);
+	}
+
+	private static void throwErrorIfLessThanOne(String name, int value) {
+		if (value < 1) {
+			throw new IllegalArgumentException(name + " must be at least 1, was " + value);
+		}
+	}
+
+	private Optional<ScheduledExecutorService> startHealthCheckTimerIfIntervalGiven(
+			Duration healthCheckInterval) {
+		if (healthCheckInterval.isZero()) {
+			return Optional.empty();
+		}
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name("cora-connection-pool-health-check").daemon().factory());
+		long intervalNanos = healthCheckInterval.toNanos();
+		timer.scheduleWithFixedDelay(this::checkHealthFromTimer, intervalNanos, intervalNanos,
+				TimeUnit.NANOSECONDS);
+		return Optional.of(timer);
+	}
+
+	private void checkHealthFromTimer() {
+		try {
+			checkHealth();
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("Connection pool health check failed", e);
+		}
+	}
+
+	/**
+	 * leaseChannel leases one of the shared channels to the endpoint, opening the channel and its
+	 * connection if needed. The calling thread has exclusive use of the channel until the lease is
+	 * closed.
+	 * 
+	 * @param endpoint
+	 *            The {@link MessagingEndpoint} to get a channel to
+	 * @return A {@link ChannelLease} that must be closed by the calling thread
+	 * @throws MessagingException
+	 *             if a connection or channel could not be opened
+	 */
+	public ChannelLease<H> leaseChannel(MessagingEndpoint endpoint) {
+		return getEndpointPool(endpoint).leaseSharedChannel();
+	}
+
+	/**
+	 * openDedicatedChannel opens a new channel, not shared with other leases, on one of the pooled
+	 * connections to the endpoint. The channel is closed when the lease is closed.
+	 * 
+	 * @param endpoint
+	 *            The {@link MessagingEndpoint} to get a channel to
+	 * @return A {@link ChannelLease} for the new channel
+	 * @throws MessagingException
+	 *             if a connection or channel could not be opened
+	 */
+	public ChannelLease<H> openDedicatedChannel(MessagingEndpoint endpoint) {
+		return getEndpointPool(endpoint).openDedicatedChannel();
+	}
+
+	private EndpointPool getEndpointPool(MessagingEndpoint endpoint) {
+		if (closed) {
+			throw new IllegalStateException("ConnectionPool is closed");
+		}
+		return endpointPools.computeIfAbsent(endpoint, EndpointPool::new);
+	}
+
+	/**
+	 * checkHealth closes broken connections, and broken channels not currently leased, so that
+	 * they are replaced when next needed.
+	 */
+	public void checkHealth() {
+		endpointPools.values().forEach(EndpointPool::checkHealth);
+	}
+
+	/**
+	 * Returns the number of connections currently held to the endpoint.
+	 */
+	public int getNumberOfConnections(MessagingEndpoint endpoint) {
+		EndpointPool endpointPool = endpointPools.get(endpoint);
+		return null == endpointPool ? 0 : endpointPool.getNumberOfConnections();
+	}
+
+	/**
+	 * close stops the health check timer and closes all shared channels and connections. Channels
+	 * leased at the time are closed with their connections.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		healthCheckTimer.ifPresent(ScheduledExecutorService::shutdownNow);
+		endpointPools.values().forEach(EndpointPool::close);
+		endpointPools.clear();
+	}
+
+	private void closeChannelQuietly(MessagingEndpoint endpoint, H channel) {
+		try {
+			provider.closeChannel(channel);
+		} catch (RuntimeException e) {
+			log.logWarnUsingMessageAndException("Failed to close channel to " + endpoint, e);
+		}
+	}
+
+	private final class EndpointPool {
+		private final MessagingEndpoint endpoint;
+		private final PooledConnection[] connections;
+		private final Stripe[] stripes;
+		private final AtomicInteger nextDedicatedConnection = new AtomicInteger();
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		EndpointPool(MessagingEndpoint endpoint) {
+			this.endpoint = endpoint;
+			connections = new ConnectionPool.PooledConnection[maxConnectionsPerEndpoint];
+			for (int i = 0; i < connections.length; i++) {
+				connections[i] = new PooledConnection(endpoint);
+			}
+			stripes = new ConnectionPool.Stripe[maxConnectionsPerEndpoint * channelsPerConnection];
+			for (int i = 0; i < stripes.length; i++) {
+				stripes[i] = new Stripe(connections[i % connections.length]);
+			}
+		}
+
+		ChannelLease<H> leaseSharedChannel() {
+			Stripe stripe = lockStripe();
+			try {
+				return stripe.leaseOpenChannel();
+			} catch (RuntimeException e) {
+				stripe.lock.unlock();
+				throw e;
+			}
+		}
+
+		private Stripe lockStripe() {
+			int preferred = getPreferredStripeIndex();
+			for (int i = 0; i < stripes.length; i++) {
+				Stripe stripe = stripes[(preferred + i) % stripes.length];
+				if (!stripe.lock.isHeldByCurrentThread() && stripe.lock.tryLock()) {
+					return stripe;
+				}
+			}
+			Stripe stripe = findStripeNotLeasedByCurrentThread(preferred);
+			stripe.lock.lock();
+			return stripe;
+		}
+
+		private Stripe findStripeNotLeasedByCurrentThread(int preferred) {
+			for (int i = 0; i < stripes.length; i++) {
+				Stripe stripe = stripes[(preferred + i) % stripes.length];
+				if (!stripe.lock.isHeldByCurrentThread()) {
+					return stripe;
+				}
+			}
+			throw new IllegalStateException(
+					"All shared channels to " + endpoint + " are leased by the current thread");
+		}
+
+		private int getPreferredStripeIndex() {
+			long mixedThreadId = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+			return (int) ((mixedThreadId >>> 32) % stripes.length);
+		}
+
+		ChannelLease<H> openDedicatedChannel() {
+			int index = Math.floorMod(nextDedicatedConnection.getAndIncrement(),
+					connections.length);
+			H channel = connections[index].openChannel().channel();
+			return new DedicatedChannelLease(endpoint, channel);
+		}
+
+		void checkHealth() {
+			for (PooledConnection connection : connections) {
+				connection.closeIfBroken();
+			}
+			for (Stripe stripe : stripes) {
+				stripe.closeChannelIfBrokenAndNotLeased();
+			}
+		}
+
+		int getNumberOfConnections() {
+			int numberOfConnections = 0;
+			for (PooledConnection connection : connections) {
+				numberOfConnections += connection.isOpened() ? 1 : 0;
+			}
+			return numberOfConnections;
+		}
+
+		void close() {
+			for (Stripe stripe : stripes) {
+				stripe.closeChannelIfNotLeased();
+			}
+			for (PooledConnection connection : connections) {
+				connection.close();
+			}
+		}
+	}
+
+	private record OpenedChannel<T>(T channel, long connectionGeneration) {
+	}
+
+	/**
+	 * PooledConnection holds one connection, opened when first needed and replaced when broken.
+	 * The generation is increased each time the connection is replaced, so that channels opened on
+	 * an earlier connection can be recognized.
+	 */
+	private final class PooledConnection {
+		private final MessagingEndpoint endpoint;
+		private C connection;
+		private long generation = 0;
+
+		PooledConnection(MessagingEndpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		synchronized OpenedChannel<H> openChannel() {
+			ensureConnectionIsOpen();
+			try {
+				return new OpenedChannel<>(provider.openChannel(connection), generation);
+			} catch (RuntimeException e) {
+				throw new MessagingException("Could not open channel to " + endpoint, e);
+			}
+		}
+
+		private void ensureConnectionIsOpen() {
+			if (null == connection || !provider.isConnectionOpen(connection)) {
+				closeConnection();
+				connection = openConnection();
+			}
+		}
+
+		private C openConnection() {
+			try {
+				return provider.openConnection(endpoint);
+			} catch (RuntimeException e) {
+				throw new MessagingException("Could not open connection to " + endpoint, e);
+			}
+		}
+
+		synchronized long getGeneration() {
+			return generation;
+		}
+
+		synchronized boolean isOpened() {
+			return null != connection;
+		}
+
+		synchronized void closeIfBroken() {
+			if (null != connection && !provider.isConnectionOpen(connection)) {
+				log.logWarnUsingMessage("Closing broken connection to " + endpoint);
+				closeConnection();
+			}
+		}
+
+		synchronized void close() {
+			closeConnection();
+		}
+
+		private void closeConnection() {
+			if (null == connection) {
+				return;
+			}
+			try {
+				provider.closeConnection(connection);
+			} catch (RuntimeException e) {
+				log.logWarnUsingMessageAndException("Failed to close connection to " + endpoint,
+						e);
+			}
+			connection = null;
+			generation++;
+		}
+	}
+
+	/**
+	 * Stripe is one shared channel, only used by the thread holding its lock.
+	 */
+	private final class Stripe {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final PooledConnection connection;
+		private H channel;
+		private long connectionGeneration;
+
+		Stripe(PooledConnection connection) {
+			this.connection = connection;
+		}
+
+		ChannelLease<H> leaseOpenChannel() {
+			if (!isChannelUsable()) {
+				closeChannel();
+				OpenedChannel<H> openedChannel = connection.openChannel();
+				channel = openedChannel.channel();
+				connectionGeneration = openedChannel.connectionGeneration();
+			}
+			return new SharedChannelLease(this);
+		}
+
+		private boolean isChannelUsable() {
+			return null != channel && connectionGeneration == connection.getGeneration()
+					&& provider.isChannelOpen(channel);
+		}
+
+		void closeChannelIfBrokenAndNotLeased() {
+			if (lock.tryLock()) {
+				try {
+					if (null != channel && !isChannelUsable()) {
+						closeChannel();
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		void closeChannelIfNotLeased() {
+			if (lock.tryLock()) {
+				try {
+					closeChannel();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		private void closeChannel() {
+			if (null != channel) {
+				closeChannelQuietly(connection.endpoint, channel);
+				channel = null;
+			}
+		}
+	}
+
+	private final class SharedChannelLease implements ChannelLease<H> {
+		private final Stripe stripe;
+		private boolean invalid = false;
+		private boolean released = false;
+
+		SharedChannelLease(Stripe stripe) {
+			this.stripe = stripe;
+		}
+
+		@Override
+		public H getChannel() {
+			return stripe.channel;
+		}
+
+		@Override
+		public void invalidate() {
+			invalid = true;
+		}
+
+		@Override
+		public void close() {
+			if (released) {
+				return;
+			}
+			released = true;
+			if (invalid) {
+				stripe.closeChannel();
+			}
+			stripe.lock.unlock();
+		}
+	}
+
+	private final class DedicatedChannelLease implements ChannelLease<H> {
+		private final MessagingEndpoint endpoint;
+		private final H channel;
+		private final AtomicInteger closed = new AtomicInteger();
+
+		DedicatedChannelLease(MessagingEndpoint endpoint, H channel) {
+			this.endpoint = endpoint;
+			this.channel = channel;
+		}
+
+		@Override
+		public H getChannel() {
+			return channel;
+		}
+
+		@Override
+		public void invalidate() {
+			// the channel is closed when the lease is closed anyway
+		}
+
+		@Override
+		public void close() {
+			if (closed.getAndIncrement() == 0) {
+				closeChannelQuietly(endpoint, channel);
+			}
+		}
+	}
+}
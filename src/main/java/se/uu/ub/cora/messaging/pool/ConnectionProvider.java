@@ -0,0 +1,47 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.pool;
+
+/**
+ * ConnectionProvider is implemented by transport implementations to let a {@link ConnectionPool}
+ * open, check and close their connections and channels.
+ * 
+ * @param <C>
+ *            The type of connections, one TCP connection to a broker
+ * @param <H>
+ *            The type of channels, lightweight sessions multiplexed over a connection
+ */
+public interface ConnectionProvider<C, H> {
+
+	C openConnection(MessagingEndpoint endpoint);
+
+	/**
+	 * openChannel opens a new channel on the connection. Channels are only used by one thread at a
+	 * time, so they need not be thread safe.
+	 */
+	H openChannel(C connection);
+
+	boolean isConnectionOpen(C connection);
+
+	boolean isChannelOpen(H channel);
+
+	void closeChannel(H channel);
+
+	void closeConnection(C connection);
+}
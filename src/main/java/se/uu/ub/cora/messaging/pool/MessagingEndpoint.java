@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.pool;
+
+import java.util.Objects;
+
+import se.uu.ub.cora.messaging.AmqpMessageListenerRoutingInfo;
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+
+/**
+ * MessagingEndpoint identifies a broker endpoint, the hostname, port and virtual host connections
+ * are made to. Routing infos with different exchanges, routing keys or queues but the same
+ * endpoint share connections in a {@link ConnectionPool}.
+ */
+public final class MessagingEndpoint {
+	private static final String NO_VIRTUAL_HOST = "";
+	public final String hostname;
+	public final int port;
+	public final String virtualHost;
+
+	public MessagingEndpoint(String hostname, int port, String virtualHost) {
+		this.hostname = hostname;
+		this.port = port;
+		this.virtualHost = null == virtualHost ? NO_VIRTUAL_HOST : virtualHost;
+	}
+
+	/**
+	 * fromRoutingInfo returns the endpoint of a routing info. Routing infos without a virtual host
+	 * get an empty virtual host.
+	 * 
+	 * @param routingInfo
+	 *            A {@link MessageRoutingInfo}
+	 * @return The MessagingEndpoint of the routing info
+	 */
+	public static MessagingEndpoint fromRoutingInfo(MessageRoutingInfo routingInfo) {
+		return new MessagingEndpoint(routingInfo.hostname, routingInfo.port,
+				getVirtualHost(routingInfo));
+	}
+
+	private static String getVirtualHost(MessageRoutingInfo routingInfo) {
+		if (routingInfo instanceof AmqpMessageSenderRoutingInfo senderRoutingInfo) {
+			return senderRoutingInfo.virtualHost;
+		}
+		if (routingInfo instanceof AmqpMessageListenerRoutingInfo listenerRoutingInfo) {
+			return listenerRoutingInfo.virtualHost;
+		}
+		return NO_VIRTUAL_HOST;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(hostname, port, virtualHost);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof MessagingEndpoint other)) {
+			return false;
+		}
+		return Objects.equals(hostname, other.hostname) && port == other.port
+				&& virtualHost.equals(other.virtualHost);
+	}
+
+	@Override
+	public String toString() {
+		return hostname + ":" + port + "/" + virtualHost;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.List;
+
+import se.uu.ub.cora.messaging.ReceivedMessage;
+
+/**
+ * BatchAcknowledger is implemented by {@link se.uu.ub.cora.messaging.MessageListener}
+ * implementations to acknowledge or reject the batches delivered by a
+ * {@link ReceivedMessageBatcher}.
+ */
+public interface BatchAcknowledger {
+	/**
+	 * acknowledge is called when a batch has been handled successfully
+	 * 
+	 * @param batch
+	 *            A List of {@link ReceivedMessage} that was handled
+	 */
+	void acknowledge(List<ReceivedMessage> batch);
+
+	/**
+	 * reject is called when handling of a batch failed
+	 * 
+	 * @param batch
+	 *            A List of {@link ReceivedMessage} that failed
+	 * @param error
+	 *            The RuntimeException thrown while handling the batch
+	 */
+	void reject(List<ReceivedMessage> batch, RuntimeException error);
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageAcknowledger;
+
+/**
+ * BatchingAcknowledger is a {@link MessageAcknowledger} that collects acknowledgements and sends
+ * them to the decorated MessageAcknowledger as one cumulative acknowledgement, instead of one
+ * round-trip to the messaging server per message.
+ * <p>
+ * Delivery tags on a connection are consecutive, starting at firstDeliveryTag. A cumulative
+ * acknowledgement is only sent up to the highest delivery tag for which all earlier messages are
+ * settled, so a message still being handled is never acknowledged by a later message. Collected
+ * acknowledgements are sent when maxPendingAcknowledgements have been collected, when
+ * {@link #flush()} is called and, if a flushInterval is given, periodically from a timer thread.
+ * <p>
+ * Rejections and calls to acknowledgeUpTo are passed on immediately. A rejected message counts as
+ * settled, so it does not hold back the acknowledgement of later messages.
+ */
+public class BatchingAcknowledger implements MessageAcknowledger {
+	private Logger log = LoggerProvider.getLoggerForClass(BatchingAcknowledger.class);
+	private final MessageAcknowledger acknowledger;
+	private final int maxPendingAcknowledgements;
+	private final TreeSet<Long> settledAboveWatermark = new TreeSet<>();
+	private final TreeSet<Long> rejected = new TreeSet<>();
+	private final Optional<ScheduledExecutorService> flushTimer;
+	private long lowestUnsettled;
+	private long acknowledgedUpTo;
+	private int pendingAcknowledgements = 0;
+
+	/**
+	 * create creates a BatchingAcknowledger and, if a flushInterval is given, starts its flush
+	 * timer.
+	 * 
+	 * @param acknowledger
+	 *            The MessageAcknowledger to send cumulative acknowledgements to
+	 * @param firstDeliveryTag
+	 *            A long with the delivery tag of the first message on the connection, normally 1
+	 * @param maxPendingAcknowledgements
+	 *            An int with the number of collected acknowledgements that triggers a flush
+	 * @param flushInterval
+	 *            A Duration with the interval of timed flushes, or Duration.ZERO for no timer
+	 * @return A BatchingAcknowledger
+	 */
+	public static BatchingAcknowledger create(MessageAcknowledger acknowledger,
+			long firstDeliveryTag, int maxPendingAcknowledgements, Duration flushInterval) {
+		BatchingAcknowledger batchingAcknowledger = new BatchingAcknowledger(acknowledger,
+				firstDeliveryTag, maxPendingAcknowledgements, flushInterval);
+		batchingAcknowledger.scheduleTimedFlushes(flushInterval);
+		return batchingAcknowledger;
+	}
+
+	private BatchingAcknowledger(MessageAcknowledger acknowledger, long firstDeliveryTag,
+			int maxPendingAcknowledgements, Duration flushInterval) {
+		this.acknowledger = acknowledger;
+		this.maxPendingAcknowledgements = maxPendingAcknowledgements;
+		lowestUnsettled = firstDeliveryTag;
+		acknowledgedUpTo = firstDeliveryTag - 1;
+		flushTimer = createFlushTimerIfIntervalGiven(flushInterval);
+	}
+
+	private static Optional<ScheduledExecutorService> createFlushTimerIfIntervalGiven(
+			Duration flushInterval) {
+		if (flushInterval.isZero()) {
+			return Optional.empty();
+		}
+		return Optional.of(Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name("cora-ack-flusher").daemon().factory()));
+	}
+
+	private void scheduleTimedFlushes(Duration flushInterval) {
+		long intervalNanos = flushInterval.toNanos();
+		flushTimer.ifPresent(timer -> timer.scheduleWithFixedDelay(this::flushFromTimer,
+				intervalNanos, intervalNanos, TimeUnit.NANOSECONDS));
+	}
+
+	private void flushFromTimer() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("Failed to send acknowledgements", e);
+		}
+	}
+
+	@Override
+	public synchronized void acknowledge(long deliveryTag) {
+		markSettled(deliveryTag);
+		pendingAcknowledgements++;
+		if (pendingAcknowledgements >= maxPendingAcknowledgements) {
+			flush();
+		}
+	}
+
+	private void markSettled(long deliveryTag) {
+		if (deliveryTag >= lowestUnsettled) {
+			settledAboveWatermark.add(deliveryTag);
+			advanceWatermarkPastSettled();
+		}
+	}
+
+	private void advanceWatermarkPastSettled() {
+		while (!settledAboveWatermark.isEmpty()
+				&& settledAboveWatermark.first() <= lowestUnsettled) {
+			long settled = settledAboveWatermark.pollFirst();
+			lowestUnsettled = Math.max(lowestUnsettled, settled + 1);
+		}
+	}
+
+	@Override
+	public synchronized void acknowledgeUpTo(long deliveryTag) {
+		acknowledger.acknowledgeUpTo(deliveryTag);
+		settledAboveWatermark.headSet(deliveryTag, true).clear();
+		rejected.headSet(deliveryTag, true).clear();
+		lowestUnsettled = Math.max(lowestUnsettled, deliveryTag + 1);
+		acknowledgedUpTo = Math.max(acknowledgedUpTo, deliveryTag);
+		advanceWatermarkPastSettled();
+	}
+
+	@Override
+	public synchronized void reject(long deliveryTag, boolean requeue) {
+		acknowledger.reject(deliveryTag, requeue);
+		if (deliveryTag >= lowestUnsettled) {
+			rejected.add(deliveryTag);
+		}
+		markSettled(deliveryTag);
+	}
+
+	/**
+	 * flush sends a cumulative acknowledgement for all collected acknowledgements that can be
+	 * acknowledged. Rejected messages at the end of the settled range are not included, as they
+	 * are no longer known to the messaging server.
+	 */
+	public synchronized void flush() {
+		long highestSettled = lowestUnsettled - 1;
+		long highestToAcknowledge = highestSettled;
+		while (highestToAcknowledge > acknowledgedUpTo && rejected.contains(highestToAcknowledge)) {
+			highestToAcknowledge--;
+		}
+		if (highestToAcknowledge > acknowledgedUpTo) {
+			acknowledger.acknowledgeUpTo(highestToAcknowledge);
+		}
+		acknowledgedUpTo = Math.max(acknowledgedUpTo, highestSettled);
+		rejected.headSet(acknowledgedUpTo, true).clear();
+		pendingAcknowledgements = 0;
+	}
+
+	/**
+	 * close sends collected acknowledgements and stops the flush timer.
+	 */
+	public void close() {
+		try {
+			flush();
+		} finally {
+			flushTimer.ifPresent(ScheduledExecutorService::shutdownNow);
+		}
+	}
+}
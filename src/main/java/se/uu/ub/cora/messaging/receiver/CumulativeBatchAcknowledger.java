@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.List;
+
+import se.uu.ub.cora.messaging.MessageAcknowledger;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+
+/**
+ * CumulativeBatchAcknowledger is a {@link BatchAcknowledger} that settles batches from a
+ * {@link ReceivedMessageBatcher} through a {@link MessageAcknowledger}.
+ * <p>
+ * A handled batch is acknowledged with one cumulative acknowledgement up to the delivery tag of its
+ * last message. This is correct as long as all messages from the connection pass through the same
+ * ReceivedMessageBatcher, which delivers batches in order. The messages of a failed batch are
+ * rejected one by one.
+ */
+public class CumulativeBatchAcknowledger implements BatchAcknowledger {
+	private final MessageAcknowledger acknowledger;
+	private final boolean requeueRejected;
+
+	/**
+	 * @param acknowledger
+	 *            The MessageAcknowledger of the connection the messages were delivered on
+	 * @param requeueRejected
+	 *            A boolean, true if messages in failed batches should be delivered again
+	 */
+	public CumulativeBatchAcknowledger(MessageAcknowledger acknowledger, boolean requeueRejected) {
+		this.acknowledger = acknowledger;
+		this.requeueRejected = requeueRejected;
+	}
+
+	@Override
+	public void acknowledge(List<ReceivedMessage> batch) {
+		ReceivedMessage lastMessage = batch.get(batch.size() - 1);
+		acknowledger.acknowledgeUpTo(lastMessage.deliveryTag);
+	}
+
+	@Override
+	public void reject(List<ReceivedMessage> batch, RuntimeException error) {
+		for (ReceivedMessage receivedMessage : batch) {
+			acknowledger.reject(receivedMessage.deliveryTag, requeueRejected);
+		}
+	}
+}
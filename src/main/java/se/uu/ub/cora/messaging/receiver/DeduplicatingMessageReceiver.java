@@ -0,0 +1,249 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.MessagingProvider;
+
+/**
+ * DeduplicatingMessageReceiver is a {@link MessageReceiver} that passes each message on to the
+ * decorated MessageReceiver only once, dropping messages redelivered within a time window.
+ * <p>
+ * A message is identified by its {@link MessageHeaders#MESSAGE_ID} header or, if it has none, by
+ * its {@link MessageHeaders#ORIGIN} and {@link MessageHeaders#SEQUENCE_NUMBER} headers, where the
+ * origin is the sending application's {@link MessagingProvider#getMessagingId()}. Messages without
+ * an id are always passed on. If the decorated MessageReceiver throws an exception the id is
+ * forgotten, and it is only added to the Bloom filter when the MessageReceiver has returned, so
+ * that a redelivery of the message is passed on.
+ * <p>
+ * Ids are remembered as 64 bit fingerprints for the given window after they were last seen, at
+ * most capacity of them, so the memory used does not depend on the message rate. If more than
+ * capacity messages arrive within the window the least recently seen fingerprints are evicted
+ * early. An optional Bloom filter, sized for all ids of a window, is then asked about messages
+ * whose fingerprints might have been evicted, and those it has seen are dropped as duplicates. The
+ * Bloom filter can answer that it has seen a message it has not, so it trades a small risk of
+ * dropping a new message for catching redeliveries when the capacity is too small for the message
+ * rate.
+ * <p>
+ * The counters returned by {@link #getNumberOfMessages()}, {@link #getNumberOfDuplicates()} and
+ * related methods show how often duplicates are found, and if the capacity is large enough.
+ */
+public class DeduplicatingMessageReceiver implements MessageReceiver {
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final int BLOOM_FILTER_BITS_PER_MESSAGE = 10;
+	private static final String NO_ID = null;
+	private final MessageReceiver messageReceiver;
+	private final MessageIdWindow window;
+	private final RotatingBloomFilter bloomFilter;
+	private final LongSupplier nanoClock;
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder duplicates = new LongAdder();
+	private final LongAdder duplicatesFoundByBloomFilter = new LongAdder();
+	private final LongAdder messagesWithoutId = new LongAdder();
+
+	/**
+	 * @param messageReceiver
+	 *            The MessageReceiver to pass messages not seen before on to
+	 * @param capacity
+	 *            An int with the maximum number of message ids to remember
+	 * @param window
+	 *            A Duration with how long message ids are remembered
+	 * @param bloomFilterBits
+	 *            An int with the number of bits in each of the two generations of the Bloom
+	 *            filter, or 0 for no Bloom filter, otherwise between 10 and 2^30. About ten bits
+	 *            per message expected within the window gives a false positive rate of about one
+	 *            percent.
+	 */
+	public DeduplicatingMessageReceiver(MessageReceiver messageReceiver, int capacity,
+			Duration window, int bloomFilterBits) {
+		this(messageReceiver, capacity, window, bloomFilterBits, System::nanoTime);
+	}
+
+	DeduplicatingMessageReceiver(MessageReceiver messageReceiver, int capacity, Duration window,
+			int bloomFilterBits, LongSupplier nanoClock) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1, was " + capacity);
+		}
+		if (bloomFilterBits != 0 && (bloomFilterBits < BLOOM_FILTER_BITS_PER_MESSAGE
+				|| bloomFilterBits > RotatingBloomFilter.MAX_NUMBER_OF_BITS)) {
+			throw new IllegalArgumentException("bloomFilterBits must be 0 or between "
+					+ BLOOM_FILTER_BITS_PER_MESSAGE + " and "
+					+ RotatingBloomFilter.MAX_NUMBER_OF_BITS + ", was " + bloomFilterBits);
+		}
+		this.messageReceiver = messageReceiver;
+		this.nanoClock = nanoClock;
+		long windowNanos = window.toNanos();
+		this.window = new MessageIdWindow(capacity, windowNanos);
+		bloomFilter = bloomFilterBits == 0 ? null
+				: new RotatingBloomFilter(bloomFilterBits,
+						bloomFilterBits / BLOOM_FILTER_BITS_PER_MESSAGE, windowNanos,
+						nanoClock.getAsLong());
+	}
+
+	@Override
+	public void receiveMessage(Map<String, String> headers, String message) {
+		String messageId = getMessageId(headers.get(MessageHeaders.MESSAGE_ID),
+				headers.get(MessageHeaders.ORIGIN), headers.get(MessageHeaders.SEQUENCE_NUMBER));
+		receiveOnce(messageId, () -> messageReceiver.receiveMessage(headers, message));
+	}
+
+	@Override
+	public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+		String messageId = getMessageId(headers.get(MessageHeaders.MESSAGE_ID),
+				headers.get(MessageHeaders.ORIGIN), headers.get(MessageHeaders.SEQUENCE_NUMBER));
+		receiveOnce(messageId, () -> messageReceiver.receiveBinaryMessage(headers, message));
+	}
+
+	@Override
+	public void receiveMessageUsingHeaders(MessageHeaders headers, String message) {
+		String messageId = getMessageId(headers.getString(MessageHeaders.MESSAGE_ID),
+				headers.getString(MessageHeaders.ORIGIN),
+				headers.getString(MessageHeaders.SEQUENCE_NUMBER));
+		receiveOnce(messageId,
+				() -> messageReceiver.receiveMessageUsingHeaders(headers, message));
+	}
+
+	private static String getMessageId(String messageId, String origin, String sequenceNumber) {
+		if (null != messageId) {
+			return messageId;
+		}
+		if (null != origin && null != sequenceNumber) {
+			return origin + "/" + sequenceNumber;
+		}
+		return NO_ID;
+	}
+
+	private void receiveOnce(String messageId, Runnable receive) {
+		messages.increment();
+		if (null == messageId) {
+			messagesWithoutId.increment();
+			receive.run();
+			return;
+		}
+		long fingerprint = createFingerprint(messageId);
+		long now = nanoClock.getAsLong();
+		if (isDuplicate(fingerprint, now)) {
+			duplicates.increment();
+			return;
+		}
+		receiveAndForgetOnFailure(fingerprint, receive);
+		addToBloomFilterIfUsed(fingerprint, now);
+	}
+
+	private boolean isDuplicate(long fingerprint, long now) {
+		MessageIdWindow.Result result = window.markSeen(fingerprint, now);
+		if (null != bloomFilter && result == MessageIdWindow.Result.NOT_REMEMBERED
+				&& bloomFilter.mightContain(fingerprint, now)) {
+			duplicatesFoundByBloomFilter.increment();
+			return true;
+		}
+		return result == MessageIdWindow.Result.DUPLICATE;
+	}
+
+	private void receiveAndForgetOnFailure(long fingerprint, Runnable receive) {
+		try {
+			receive.run();
+		} catch (RuntimeException e) {
+			window.forget(fingerprint);
+			throw e;
+		}
+	}
+
+	private void addToBloomFilterIfUsed(long fingerprint, long now) {
+		if (null != bloomFilter) {
+			bloomFilter.add(fingerprint, now);
+		}
+	}
+
+	/**
+	 * createFingerprint hashes the message id to 64 bits using FNV-1a, followed by a mix so that
+	 * all bits depend on the whole id.
+	 */
+	private static long createFingerprint(String messageId) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < messageId.length(); i++) {
+			hash = (hash ^ messageId.charAt(i)) * FNV_PRIME;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	@Override
+	public void topicClosed() {
+		messageReceiver.topicClosed();
+	}
+
+	/**
+	 * Returns the number of messages received, including duplicates and messages without an id.
+	 */
+	public long getNumberOfMessages() {
+		return messages.sum();
+	}
+
+	/**
+	 * Returns the number of messages dropped as duplicates, including those found by the Bloom
+	 * filter.
+	 */
+	public long getNumberOfDuplicates() {
+		return duplicates.sum();
+	}
+
+	/**
+	 * Returns the number of messages dropped because the Bloom filter had seen them after their
+	 * ids had been evicted to keep within capacity. Some of these might not be duplicates.
+	 */
+	public long getNumberOfDuplicatesFoundByBloomFilter() {
+		return duplicatesFoundByBloomFilter.sum();
+	}
+
+	/**
+	 * Returns the number of messages passed on without deduplication as they had no id.
+	 */
+	public long getNumberOfMessagesWithoutId() {
+		return messagesWithoutId.sum();
+	}
+
+	/**
+	 * Returns the number of ids evicted before the end of the window to keep within capacity. A
+	 * growing number means the capacity is too small for the message rate.
+	 */
+	public long getNumberOfEvictedWithinWindow() {
+		return window.getNumberOfEvictedWithinWindow();
+	}
+
+	/**
+	 * Returns the share of received messages dropped as duplicates, 0 if no messages have been
+	 * received.
+	 */
+	public double getDuplicateRate() {
+		long numberOfMessages = messages.sum();
+		return numberOfMessages == 0 ? 0 : (double) duplicates.sum() / numberOfMessages;
+	}
+}
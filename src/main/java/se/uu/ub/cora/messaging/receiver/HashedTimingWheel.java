@@ -0,0 +1,137 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HashedTimingWheel keeps tasks to run at a later time in a ring of buckets, one bucket per tick.
+ * Scheduling a task is O(1) whatever the number of waiting tasks, which makes it suitable for
+ * holding large numbers of retries during a downstream outage.
+ * <p>
+ * A task is put in the bucket of the tick its deadline falls in, together with the number of
+ * whole turns of the wheel left before it is due. {@link #schedule(Object, long)} can be called
+ * from any thread, it only adds the task to a lock-free queue. The buckets are only touched by the
+ * single thread calling {@link #expire(long)}, which moves newly scheduled tasks into their buckets
+ * and returns the tasks that are due. Tasks are run at most one tick late.
+ */
+final class HashedTimingWheel<T> {
+	private final long startNanos;
+	private final long tickNanos;
+	private final int mask;
+	private final List<ArrayDeque<Timeout<T>>> buckets = new ArrayList<>();
+	private final ConcurrentLinkedQueue<Timeout<T>> newTimeouts = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingTimeouts = new AtomicInteger();
+	private long ticksDone = 0;
+
+	HashedTimingWheel(long startNanos, long tickNanos, int requestedTicksPerWheel) {
+		this.startNanos = startNanos;
+		this.tickNanos = tickNanos;
+		int ticksPerWheel = roundUpToPowerOfTwo(requestedTicksPerWheel);
+		mask = ticksPerWheel - 1;
+		for (int i = 0; i < ticksPerWheel; i++) {
+			buckets.add(new ArrayDeque<>());
+		}
+	}
+
+	private static int roundUpToPowerOfTwo(int requestedCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(1, requestedCapacity));
+		return capacity < requestedCapacity ? capacity << 1 : capacity;
+	}
+
+	/**
+	 * schedule adds a task to run when expire is called with a time at or after deadlineNanos
+	 */
+	void schedule(T task, long deadlineNanos) {
+		pendingTimeouts.incrementAndGet();
+		newTimeouts.add(new Timeout<>(task, deadlineNanos - startNanos));
+	}
+
+	/**
+	 * expire advances the wheel over all ticks that have ended at nowNanos, and returns the tasks
+	 * that are due. It MUST only be called by one thread at a time.
+	 */
+	List<T> expire(long nowNanos) {
+		List<T> expired = new ArrayList<>();
+		while ((ticksDone + 1) * tickNanos <= nowNanos - startNanos) {
+			moveNewTimeoutsToBuckets();
+			expireBucket(buckets.get((int) (ticksDone & mask)), expired);
+			ticksDone++;
+		}
+		pendingTimeouts.addAndGet(-expired.size());
+		return expired;
+	}
+
+	private void moveNewTimeoutsToBuckets() {
+		Timeout<T> timeout = newTimeouts.poll();
+		while (null != timeout) {
+			long deadlineTick = Math.max(timeout.deadline / tickNanos, ticksDone);
+			timeout.remainingRounds = (deadlineTick - ticksDone) / buckets.size();
+			buckets.get((int) (deadlineTick & mask)).add(timeout);
+			timeout = newTimeouts.poll();
+		}
+	}
+
+	private static <T> void expireBucket(ArrayDeque<Timeout<T>> bucket, List<T> expired) {
+		Iterator<Timeout<T>> timeouts = bucket.iterator();
+		while (timeouts.hasNext()) {
+			Timeout<T> timeout = timeouts.next();
+			if (timeout.remainingRounds == 0) {
+				expired.add(timeout.task);
+				timeouts.remove();
+			} else {
+				timeout.remainingRounds--;
+			}
+		}
+	}
+
+	/**
+	 * removeAll removes and returns all waiting tasks, due or not
+	 */
+	List<T> removeAll() {
+		List<T> removed = new ArrayList<>();
+		moveNewTimeoutsToBuckets();
+		for (ArrayDeque<Timeout<T>> bucket : buckets) {
+			bucket.forEach(timeout -> removed.add(timeout.task));
+			bucket.clear();
+		}
+		pendingTimeouts.addAndGet(-removed.size());
+		return removed;
+	}
+
+	int getNumberOfPendingTimeouts() {
+		return pendingTimeouts.get();
+	}
+
+	private static final class Timeout<T> {
+		private final T task;
+		private final long deadline;
+		private long remainingRounds;
+
+		Timeout(T task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.memory.WaitStrategy;
+
+/**
+ * KeyPartitionedMessageDispatcher is a {@link MessageReceiver} that hands received messages to the
+ * decorated MessageReceiver on a fixed number of lanes, choosing the lane by the hash of a key
+ * header, such as the id of the record a message is about. Messages with the same key are always
+ * handled on the same lane, one at a time and in the order they were received, while messages with
+ * different keys are handled in parallel. Messages without the key header are all handled on lane
+ * 0.
+ * <p>
+ * Each lane has a bounded {@link SpscQueue} and its own handler thread. The queues are lock-free
+ * and only work with a single producer, so the calls to this dispatcher MUST come from one thread
+ * at a time, which is also what is needed for messages to arrive in order, for instance a
+ * listener with a consumer concurrency of 1. A call made while another thread is queueing a
+ * message is refused with an IllegalStateException. When a lane is full the calling listener
+ * thread waits, and idle handler threads wait, using the entered {@link WaitStrategy}.
+ * <p>
+ * The call from the listener returns when the message has been queued, not when it has been
+ * handled, see {@link VirtualThreadMessageDispatcher} for what that means for acknowledgements.
+ * Exceptions thrown by the decorated MessageReceiver are logged, and the lane continues with the
+ * next message.
+ */
+public final class KeyPartitionedMessageDispatcher implements MessageReceiver {
+	private static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(30);
+	private Logger log = LoggerProvider.getLoggerForClass(KeyPartitionedMessageDispatcher.class);
+	private final MessageReceiver messageReceiver;
+	private final String keyHeaderName;
+	private final WaitStrategy waitStrategy;
+	private final List<Lane> lanes = new ArrayList<>();
+	private final List<Thread> laneThreads = new ArrayList<>();
+	private final AtomicReference<Thread> queueingThread = new AtomicReference<>();
+	private volatile boolean closed = false;
+
+	/**
+	 * @param messageReceiver
+	 *            The MessageReceiver to hand messages to
+	 * @param keyHeaderName
+	 *            A String with the name of the header holding the key messages are partitioned by
+	 * @param numberOfLanes
+	 *            An int with the number of lanes, the maximum number of messages handled at the
+	 *            same time
+	 * @param laneCapacity
+	 *            An int with the maximum number of messages waiting in each lane, rounded up to
+	 *            the nearest power of two
+	 * @param waitStrategy
+	 *            The WaitStrategy used while a lane is full or empty
+	 */
+	public KeyPartitionedMessageDispatcher(MessageReceiver messageReceiver, String keyHeaderName,
+			int numberOfLanes, int laneCapacity, WaitStrategy waitStrategy) {
+		throwErrorIfLessThanOne("numberOfLanes", numberOfLanes);
+		throwErrorIfLessThanOne("laneCapacity", laneCapacity);
+		this.messageReceiver = messageReceiver;
+		this.keyHeaderName = keyHeaderName;
+		this.waitStrategy = waitStrategy;
+		Thread.Builder laneThreadBuilder = Thread.ofPlatform().name("cora-partition-lane-", 0)
+				.daemon();
+		for (int i = 0; i < numberOfLanes; i++) {
+			Lane lane = new Lane(laneCapacity);
+			lanes.add(lane);
+			laneThreads.add(laneThreadBuilder.start(() -> handleUntilClosedAndDrained(lane)));
+		}
+	}
+
+	private static void throwErrorIfLessThanOne(String name, int value) {
+		if (value < 1) {
+			throw new IllegalArgumentException(name + " must be at least 1, was " + value);
+		}
+	}
+
+	@Override
+	public void receiveMessage(Map<String, String> headers, String message) {
+		queue(getLane(getKey(headers)), () -> messageReceiver.receiveMessage(headers, message));
+	}
+
+	@Override
+	public void receiveMessageUsingHeaders(MessageHeaders headers, String message) {
+		queue(getLane(headers.getString(keyHeaderName)),
+				() -> messageReceiver.receiveMessageUsingHeaders(headers, message));
+	}
+
+	/**
+	 * receiveBinaryMessage copies the message body, as the listener may reuse the buffer when this
+	 * call returns, and queues the copy.
+	 */
+	@Override
+	public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+		ByteBuffer copy = VirtualThreadMessageDispatcher.copyOf(message);
+		queue(getLane(getKey(headers)),
+				() -> messageReceiver.receiveBinaryMessage(headers, copy));
+	}
+
+	private String getKey(Map<String, String> headers) {
+		return null == headers ? null : headers.get(keyHeaderName);
+	}
+
+	private Lane getLane(String key) {
+		return lanes.get(getLaneNumber(key));
+	}
+
+	/**
+	 * getLaneNumber returns the number of the lane messages with the entered key are handled on
+	 */
+	public int getLaneNumber(String key) {
+		if (null == key) {
+			return 0;
+		}
+		int hash = key.hashCode();
+		return Math.floorMod(hash ^ (hash >>> 16), lanes.size());
+	}
+
+	private void queue(Lane lane, Runnable handling) {
+		startQueueingOrThrowErrorIfOtherThreadIs();
+		try {
+			throwErrorIfClosed();
+			if (!lane.queue.offer(handling)) {
+				lane.timesFull.increment();
+				waitForRoomAndQueue(lane, handling);
+			}
+		} finally {
+			queueingThread.set(null);
+		}
+	}
+
+	/**
+	 * startQueueingOrThrowErrorIfOtherThreadIs makes sure only one thread at a time offers to the
+	 * single producer lanes. Claiming and releasing the producer role also makes what one thread
+	 * queued visible to the next thread that queues, and to lane threads checking if they can
+	 * stop after close.
+	 */
+	private void startQueueingOrThrowErrorIfOtherThreadIs() {
+		Thread currentThread = Thread.currentThread();
+		if (!queueingThread.compareAndSet(null, currentThread)) {
+			throw new IllegalStateException("KeyPartitionedMessageDispatcher called from "
+					+ currentThread.getName() + " while another thread is queueing, only one "
+					+ "thread at a time can queue messages");
+		}
+	}
+
+	private void waitForRoomAndQueue(Lane lane, Runnable handling) {
+		while (!lane.queue.offer(handling)) {
+			throwErrorIfClosed();
+			waitStrategy.idle();
+		}
+	}
+
+	private void throwErrorIfClosed() {
+		if (closed) {
+			throw new IllegalStateException("KeyPartitionedMessageDispatcher is closed");
+		}
+	}
+
+	/**
+	 * handleUntilClosedAndDrained handles queued messages until the dispatcher is closed and the
+	 * lane is empty. As the producer role is claimed before closed is checked when queueing, a lane
+	 * that finds the dispatcher closed and no thread queueing before it finds the lane empty, can
+	 * not get more messages.
+	 */
+	private void handleUntilClosedAndDrained(Lane lane) {
+		while (true) {
+			boolean closedAndNotQueueing = closed && null == queueingThread.get();
+			Runnable handling = lane.queue.poll();
+			if (null != handling) {
+				handle(handling);
+				lane.handledMessages.increment();
+			} else if (closedAndNotQueueing) {
+				return;
+			} else {
+				waitStrategy.idle();
+			}
+		}
+	}
+
+	private void handle(Runnable handling) {
+		try {
+			handling.run();
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("Message handler failed", e);
+		}
+	}
+
+	@Override
+	public void topicClosed() {
+		messageReceiver.topicClosed();
+	}
+
+	/**
+	 * Returns the number of lanes.
+	 */
+	public int getNumberOfLanes() {
+		return lanes.size();
+	}
+
+	/**
+	 * Returns the number of messages waiting in the lane.
+	 */
+	public int getNumberOfQueuedMessages(int lane) {
+		return lanes.get(lane).queue.size();
+	}
+
+	/**
+	 * Returns the number of messages from the lane handed to the decorated MessageReceiver.
+	 */
+	public long getNumberOfHandledMessages(int lane) {
+		return lanes.get(lane).handledMessages.sum();
+	}
+
+	/**
+	 * Returns the number of times the listener had to wait for room in the lane. A lane that is
+	 * often full while others are not means that a few keys get most of the messages.
+	 */
+	public long getNumberOfTimesLaneWasFull(int lane) {
+		return lanes.get(lane).timesFull.sum();
+	}
+
+	/**
+	 * close closes the dispatcher and waits up to 30 seconds for the lane threads to finish, see
+	 * {@link #close(Duration)}.
+	 */
+	public void close() {
+		close(DEFAULT_CLOSE_TIMEOUT);
+	}
+
+	/**
+	 * close refuses later received messages with an IllegalStateException, lets the lane threads
+	 * hand the messages still waiting in the lanes to the decorated MessageReceiver and waits up to
+	 * timeout for them to finish. Lane threads are never interrupted, if timeout passes they keep
+	 * handling the waiting messages after close has returned.
+	 * 
+	 * @param timeout
+	 *            A Duration with the maximum time to wait for the lane threads to finish
+	 * @return A boolean, true if all lane threads finished within timeout, else false
+	 */
+	public boolean close(Duration timeout) {
+		closed = true;
+		return waitForLaneThreadsToFinish(timeout);
+	}
+
+	private boolean waitForLaneThreadsToFinish(Duration timeout) {
+		long giveUpAt = System.nanoTime() + timeout.toNanos();
+		try {
+			for (Thread laneThread : laneThreads) {
+				long nanosLeft = Math.max(0, giveUpAt - System.nanoTime());
+				if (!laneThread.join(Duration.ofNanos(nanosLeft))) {
+					logNotFinished(timeout);
+					return false;
+				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void logNotFinished(Duration timeout) {
+		log.logWarnUsingMessage("KeyPartitionedMessageDispatcher lanes did not finish within "
+				+ timeout + ", messages are still being handled");
+	}
+
+	private static final class Lane {
+		private final SpscQueue<Runnable> queue;
+		private final LongAdder handledMessages = new LongAdder();
+		private final LongAdder timesFull = new LongAdder();
+
+		Lane(int capacity) {
+			queue = new SpscQueue<>(capacity);
+		}
+	}
+}
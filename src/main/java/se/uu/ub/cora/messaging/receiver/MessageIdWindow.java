@@ -0,0 +1,122 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MessageIdWindow remembers the fingerprints of message ids seen during the last window, up to
+ * capacity fingerprints. It is split into stripes, each with its own lock, so that concurrent
+ * receivers seldom wait for each other, and each stripe holds capacity divided by the number of
+ * stripes, rounded up. Each stripe keeps its fingerprints in the order they were last seen, a
+ * fingerprint seen again is moved last. It removes those not seen within the window and, when
+ * full, evicts the least recently seen one even if it is still within the window.
+ */
+final class MessageIdWindow {
+	private static final int MAX_NUMBER_OF_STRIPES = 16;
+
+	enum Result {
+		/** The id has not been seen during the window */
+		NEW,
+		/** The id has been seen during the window */
+		DUPLICATE,
+		/**
+		 * The id is not remembered, but ids seen during the window have been evicted to keep within
+		 * capacity, so it might have been seen
+		 */
+		NOT_REMEMBERED
+	}
+
+	private final Stripe[] stripes;
+	private final long windowNanos;
+	private final LongAdder evictedWithinWindow = new LongAdder();
+
+	MessageIdWindow(int capacity, long windowNanos) {
+		this.windowNanos = windowNanos;
+		int numberOfStripes = Math.min(MAX_NUMBER_OF_STRIPES, capacity);
+		stripes = new Stripe[numberOfStripes];
+		for (int i = 0; i < numberOfStripes; i++) {
+			stripes[i] = new Stripe((capacity + numberOfStripes - 1) / numberOfStripes);
+		}
+	}
+
+	Result markSeen(long fingerprint, long now) {
+		return getStripe(fingerprint).markSeen(fingerprint, now);
+	}
+
+	void forget(long fingerprint) {
+		getStripe(fingerprint).forget(fingerprint);
+	}
+
+	private Stripe getStripe(long fingerprint) {
+		return stripes[(int) ((fingerprint >>> 32) % stripes.length)];
+	}
+
+	long getNumberOfEvictedWithinWindow() {
+		return evictedWithinWindow.sum();
+	}
+
+	private final class Stripe {
+		private final LinkedHashMap<Long, Long> lastSeen = new LinkedHashMap<>(16, 0.75f, true);
+		private final int capacity;
+		private long lastEvictedWithinWindowSeenAt;
+		private boolean hasEvictedWithinWindow = false;
+
+		Stripe(int capacity) {
+			this.capacity = capacity;
+		}
+
+		synchronized Result markSeen(long fingerprint, long now) {
+			removeExpired(now);
+			if (null != lastSeen.put(fingerprint, now)) {
+				return Result.DUPLICATE;
+			}
+			evictOldestIfOverCapacity();
+			return mightHaveBeenEvicted(now) ? Result.NOT_REMEMBERED : Result.NEW;
+		}
+
+		private void removeExpired(long now) {
+			Iterator<Entry<Long, Long>> oldestFirst = lastSeen.entrySet().iterator();
+			while (oldestFirst.hasNext() && now - oldestFirst.next().getValue() >= windowNanos) {
+				oldestFirst.remove();
+			}
+		}
+
+		private void evictOldestIfOverCapacity() {
+			if (lastSeen.size() > capacity) {
+				Iterator<Long> oldestFirst = lastSeen.values().iterator();
+				lastEvictedWithinWindowSeenAt = oldestFirst.next();
+				hasEvictedWithinWindow = true;
+				oldestFirst.remove();
+				evictedWithinWindow.increment();
+			}
+		}
+
+		private boolean mightHaveBeenEvicted(long now) {
+			return hasEvictedWithinWindow && now - lastEvictedWithinWindowSeenAt < windowNanos;
+		}
+
+		synchronized void forget(long fingerprint) {
+			lastSeen.remove(fingerprint);
+		}
+	}
+}
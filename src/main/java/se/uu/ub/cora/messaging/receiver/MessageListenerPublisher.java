@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import se.uu.ub.cora.messaging.CreditBasedMessageListener;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+
+/**
+ * MessageListenerPublisher is a {@link Flow.Publisher} view of a {@link MessageListener}, it lets a
+ * {@link Flow.Subscriber} receive messages with demand driven backpressure.
+ * <p>
+ * When subscribed, the publisher starts listening on the MessageListener. Messages are only
+ * passed to the subscriber when it has requested them, while there is no demand the listener
+ * thread delivering a message waits. With a limited prefetchCount on the listener, this stops the
+ * messaging server from sending more messages until the subscriber asks for them. If the
+ * MessageListener is a {@link CreditBasedMessageListener}, requested demand is also passed on as
+ * credit.
+ * <p>
+ * When the listener reports that the topic is closed the subscriber is completed. When the
+ * subscriber cancels, the MessageListener is closed and messages delivered after that are
+ * refused by throwing an IllegalStateException, so that they are not acknowledged.
+ * <p>
+ * A MessageListenerPublisher can only be subscribed to once.
+ */
+public class MessageListenerPublisher implements Flow.Publisher<ReceivedMessage> {
+	private final MessageListener messageListener;
+	private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+	public MessageListenerPublisher(MessageListener messageListener) {
+		this.messageListener = messageListener;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super ReceivedMessage> subscriber) {
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new RefusedSubscription());
+			subscriber.onError(
+					new IllegalStateException("MessageListenerPublisher already subscribed"));
+			return;
+		}
+		DemandGatedReceiver demandGatedReceiver = new DemandGatedReceiver(subscriber);
+		subscriber.onSubscribe(demandGatedReceiver);
+		messageListener.listen(demandGatedReceiver);
+	}
+
+	private final class DemandGatedReceiver implements MessageReceiver, Flow.Subscription {
+		private final Flow.Subscriber<? super ReceivedMessage> subscriber;
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition demandAvailable = lock.newCondition();
+		private long demand = 0;
+		private long nextDeliveryTag = 1;
+		private boolean done = false;
+
+		DemandGatedReceiver(Flow.Subscriber<? super ReceivedMessage> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long numberOfMessages) {
+			if (numberOfMessages <= 0) {
+				cancelWithError(new IllegalArgumentException(
+						"Requested number of messages must be positive, was " + numberOfMessages));
+				return;
+			}
+			addDemand(numberOfMessages);
+			if (messageListener instanceof CreditBasedMessageListener creditBasedListener) {
+				creditBasedListener.addCredit(numberOfMessages);
+			}
+		}
+
+		private void addDemand(long numberOfMessages) {
+			lock.lock();
+			try {
+				long newDemand = demand + numberOfMessages;
+				demand = newDemand < 0 ? Long.MAX_VALUE : newDemand;
+				demandAvailable.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			lock.lock();
+			try {
+				waitForDemand();
+				demand--;
+				subscriber.onNext(new ReceivedMessage(headers, message, nextDeliveryTag++));
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void waitForDemand() {
+			while (demand == 0 && !done) {
+				demandAvailable.awaitUninterruptibly();
+			}
+			if (done) {
+				throw new IllegalStateException("Subscription to messages is cancelled");
+			}
+		}
+
+		@Override
+		public void topicClosed() {
+			lock.lock();
+			try {
+				if (markDone()) {
+					subscriber.onComplete();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			if (markDone()) {
+				messageListener.close();
+			}
+		}
+
+		private void cancelWithError(Throwable error) {
+			lock.lock();
+			try {
+				if (markDone()) {
+					messageListener.close();
+					subscriber.onError(error);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean markDone() {
+			lock.lock();
+			try {
+				boolean wasDone = done;
+				done = true;
+				demandAvailable.signalAll();
+				return !wasDone;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private static final class RefusedSubscription implements Flow.Subscription {
+		@Override
+		public void request(long numberOfMessages) {
+			// nothing will be published
+		}
+
+		@Override
+		public void cancel() {
+			// nothing to cancel
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.concurrent.Flow;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+
+/**
+ * MessageReceiverSubscriber lets an existing {@link MessageReceiver} subscribe to a
+ * {@link Flow.Publisher} of messages, such as a {@link MessageListenerPublisher}.
+ * <p>
+ * The subscriber requests window messages when subscribing, and requests more each time half of
+ * the window has been handled, so that at most window messages are outstanding. When the publisher
+ * completes or fails, {@link MessageReceiver#topicClosed()} is called.
+ * <p>
+ * If the MessageReceiver throws an exception, the error is logged, the subscription is cancelled,
+ * {@link MessageReceiver#topicClosed()} is called and the exception is thrown from
+ * {@link #onNext(ReceivedMessage)}. A {@link MessageListenerPublisher} then passes the exception
+ * on to the listener, so that the failed message is not acknowledged. Messages published after
+ * the failure are ignored.
+ */
+public class MessageReceiverSubscriber implements Flow.Subscriber<ReceivedMessage> {
+	private Logger log = LoggerProvider.getLoggerForClass(MessageReceiverSubscriber.class);
+	private final MessageReceiver messageReceiver;
+	private final int window;
+	private final int refillSize;
+	private Flow.Subscription subscription;
+	private int handledSinceRefill = 0;
+	private boolean failed = false;
+
+	/**
+	 * @param messageReceiver
+	 *            The MessageReceiver to deliver messages to
+	 * @param window
+	 *            An int with the maximum number of requested but not yet handled messages
+	 */
+	public MessageReceiverSubscriber(MessageReceiver messageReceiver, int window) {
+		this.messageReceiver = messageReceiver;
+		this.window = window;
+		refillSize = Math.max(1, window / 2);
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		subscription.request(window);
+	}
+
+	@Override
+	public void onNext(ReceivedMessage receivedMessage) {
+		if (failed) {
+			return;
+		}
+		try {
+			messageReceiver.receiveMessage(receivedMessage.headers, receivedMessage.message);
+		} catch (RuntimeException e) {
+			cancelAfterFailure(e);
+			throw e;
+		}
+		requestMoreIfHalfWindowIsHandled();
+	}
+
+	private void cancelAfterFailure(RuntimeException e) {
+		failed = true;
+		log.logErrorUsingMessageAndException(
+				"MessageReceiver failed to handle message, cancelling subscription", e);
+		subscription.cancel();
+		messageReceiver.topicClosed();
+	}
+
+	private void requestMoreIfHalfWindowIsHandled() {
+		handledSinceRefill++;
+		if (handledSinceRefill == refillSize) {
+			handledSinceRefill = 0;
+			subscription.request(refillSize);
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		if (failed) {
+			return;
+		}
+		log.logErrorUsingMessage("Message publisher failed: " + throwable.getMessage());
+		messageReceiver.topicClosed();
+	}
+
+	@Override
+	public void onComplete() {
+		if (failed) {
+			return;
+		}
+		messageReceiver.topicClosed();
+	}
+}
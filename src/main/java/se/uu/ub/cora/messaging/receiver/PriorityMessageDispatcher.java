@@ -0,0 +1,348 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+
+/**
+ * PriorityMessageDispatcher is a {@link MessageReceiver} that queues received messages in lanes by
+ * their {@link MessageHeaders#PRIORITY} header, and lets a fixed number of handler threads hand
+ * them to the decorated MessageReceiver, highest priority lane first. Messages with interactive
+ * priority are thereby handled before queued bulk messages, even when bulk messages arrive much
+ * faster than they can be handled.
+ * <p>
+ * Lane 0 holds messages with priority 0 and messages without a valid priority, lane n holds
+ * messages with priority n, and the highest lane also holds all messages with higher priorities.
+ * Each lane holds at most laneCapacity messages, when a lane is full the calling listener thread
+ * waits until there is room.
+ * <p>
+ * To keep lower lanes from starving, a lane with waiting messages that has been passed over
+ * starvationLimit times in a row for messages in higher lanes is served next. A lower lane
+ * therefore gets at least one of every starvationLimit + 1 handled messages while it has messages
+ * waiting.
+ * <p>
+ * The call from the listener returns when the message has been queued, not when it has been
+ * handled, see {@link VirtualThreadMessageDispatcher} for what that means for acknowledgements.
+ * Exceptions thrown by the decorated MessageReceiver are logged.
+ */
+public final class PriorityMessageDispatcher implements MessageReceiver {
+	private static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(30);
+	private Logger log = LoggerProvider.getLoggerForClass(PriorityMessageDispatcher.class);
+	private final MessageReceiver messageReceiver;
+	private final int laneCapacity;
+	private final int starvationLimit;
+	private final List<ArrayDeque<Runnable>> lanes = new ArrayList<>();
+	private final int[] timesPassedOver;
+	private final LongAdder[] handledMessages;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition messageQueued = lock.newCondition();
+	private final Condition roomInLane = lock.newCondition();
+	private final List<Thread> handlers = new ArrayList<>();
+	private volatile boolean closed = false;
+
+	/**
+	 * @param messageReceiver
+	 *            The MessageReceiver to hand messages to
+	 * @param numberOfLanes
+	 *            An int with the number of priority lanes
+	 * @param laneCapacity
+	 *            An int with the maximum number of messages waiting in each lane
+	 * @param numberOfHandlers
+	 *            An int with the number of handler threads, the maximum number of messages handled
+	 *            at the same time
+	 * @param starvationLimit
+	 *            An int with the number of times a lane with waiting messages can be passed over
+	 *            before it is served
+	 */
+	public PriorityMessageDispatcher(MessageReceiver messageReceiver, int numberOfLanes,
+			int laneCapacity, int numberOfHandlers, int starvationLimit) {
+		throwErrorIfLessThanOne("numberOfLanes", numberOfLanes);
+		throwErrorIfLessThanOne("laneCapacity", laneCapacity);
+		throwErrorIfLessThanOne("numberOfHandlers", numberOfHandlers);
+		throwErrorIfLessThanOne("starvationLimit", starvationLimit);
+		this.messageReceiver = messageReceiver;
+		this.laneCapacity = laneCapacity;
+		this.starvationLimit = starvationLimit;
+		timesPassedOver = new int[numberOfLanes];
+		handledMessages = new LongAdder[numberOfLanes];
+		for (int i = 0; i < numberOfLanes; i++) {
+			lanes.add(new ArrayDeque<>(laneCapacity));
+			handledMessages[i] = new LongAdder();
+		}
+		startHandlers(numberOfHandlers);
+	}
+
+	private static void throwErrorIfLessThanOne(String name, int value) {
+		if (value < 1) {
+			throw new IllegalArgumentException(name + " must be at least 1, was " + value);
+		}
+	}
+
+	private void startHandlers(int numberOfHandlers) {
+		Thread.Builder handlerThreadBuilder = Thread.ofVirtual().name("cora-priority-handler-",
+				0);
+		for (int i = 0; i < numberOfHandlers; i++) {
+			handlers.add(handlerThreadBuilder.start(this::handleUntilClosedAndDrained));
+		}
+	}
+
+	@Override
+	public void receiveMessage(Map<String, String> headers, String message) {
+		queue(getLane(parsePriority(headers)),
+				() -> messageReceiver.receiveMessage(headers, message));
+	}
+
+	@Override
+	public void receiveMessageUsingHeaders(MessageHeaders headers, String message) {
+		queue(getLane(parsePriority(headers.getString(MessageHeaders.PRIORITY))),
+				() -> messageReceiver.receiveMessageUsingHeaders(headers, message));
+	}
+
+	/**
+	 * receiveBinaryMessage copies the message body, as the listener may reuse the buffer when this
+	 * call returns, and queues the copy.
+	 */
+	@Override
+	public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+		ByteBuffer copy = VirtualThreadMessageDispatcher.copyOf(message);
+		queue(getLane(parsePriority(headers)),
+				() -> messageReceiver.receiveBinaryMessage(headers, copy));
+	}
+
+	private static int parsePriority(Map<String, String> headers) {
+		return parsePriority(null == headers ? null : headers.get(MessageHeaders.PRIORITY));
+	}
+
+	private static int parsePriority(String priority) {
+		if (null == priority) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(priority);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private int getLane(int priority) {
+		return Math.clamp(priority, 0, lanes.size() - 1);
+	}
+
+	private void queue(int lane, Runnable handling) {
+		lock.lock();
+		try {
+			ArrayDeque<Runnable> queue = lanes.get(lane);
+			while (queue.size() >= laneCapacity) {
+				throwErrorIfClosed();
+				roomInLane.await();
+			}
+			throwErrorIfClosed();
+			queue.addLast(handling);
+			messageQueued.signal();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for room in priority lane",
+					e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void throwErrorIfClosed() {
+		if (closed) {
+			throw new IllegalStateException("PriorityMessageDispatcher is closed");
+		}
+	}
+
+	private void handleUntilClosedAndDrained() {
+		try {
+			while (handleNext()) {
+				// handle messages until closed and no messages are waiting
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean handleNext() throws InterruptedException {
+		int lane;
+		Runnable handling;
+		lock.lock();
+		try {
+			lane = waitForLaneToServe();
+			if (lane < 0) {
+				return false;
+			}
+			handling = lanes.get(lane).pollFirst();
+			roomInLane.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		handle(handling);
+		handledMessages[lane].increment();
+		return true;
+	}
+
+	/**
+	 * waitForLaneToServe returns the lane to serve next, or -1 if the dispatcher is closed and no
+	 * messages are waiting.
+	 */
+	private int waitForLaneToServe() throws InterruptedException {
+		int lane = chooseLane();
+		while (lane < 0 && !closed) {
+			messageQueued.await();
+			lane = chooseLane();
+		}
+		return lane;
+	}
+
+	/**
+	 * chooseLane returns the highest lane with waiting messages, unless a lower lane with waiting
+	 * messages has been passed over starvationLimit times, or -1 if no messages are waiting.
+	 */
+	private int chooseLane() {
+		int highest = findHighestNonEmptyLane();
+		if (highest < 0) {
+			return -1;
+		}
+		int chosen = findStarvedLaneBelow(highest);
+		for (int lane = 0; lane < chosen; lane++) {
+			if (!lanes.get(lane).isEmpty()) {
+				timesPassedOver[lane]++;
+			}
+		}
+		timesPassedOver[chosen] = 0;
+		return chosen;
+	}
+
+	private int findHighestNonEmptyLane() {
+		for (int lane = lanes.size() - 1; lane >= 0; lane--) {
+			if (!lanes.get(lane).isEmpty()) {
+				return lane;
+			}
+		}
+		return -1;
+	}
+
+	private int findStarvedLaneBelow(int highest) {
+		for (int lane = highest - 1; lane >= 0; lane--) {
+			if (timesPassedOver[lane] >= starvationLimit && !lanes.get(lane).isEmpty()) {
+				return lane;
+			}
+		}
+		return highest;
+	}
+
+	private void handle(Runnable handling) {
+		try {
+			handling.run();
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("Message handler failed", e);
+		}
+	}
+
+	@Override
+	public void topicClosed() {
+		messageReceiver.topicClosed();
+	}
+
+	/**
+	 * Returns the number of messages waiting in the lane.
+	 */
+	public int getNumberOfQueuedMessages(int lane) {
+		lock.lock();
+		try {
+			return lanes.get(lane).size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of messages from the lane handed to the decorated MessageReceiver.
+	 */
+	public long getNumberOfHandledMessages(int lane) {
+		return handledMessages[lane].sum();
+	}
+
+	/**
+	 * close closes the dispatcher and waits up to 30 seconds for the handler threads to finish, see
+	 * {@link #close(Duration)}.
+	 */
+	public void close() {
+		close(DEFAULT_CLOSE_TIMEOUT);
+	}
+
+	/**
+	 * close refuses later received messages with an IllegalStateException, lets the handler threads
+	 * hand the messages still waiting in the lanes to the decorated MessageReceiver and waits up to
+	 * timeout for them to finish. Handler threads are never interrupted, if timeout passes they
+	 * keep handling the waiting messages after close has returned.
+	 * 
+	 * @param timeout
+	 *            A Duration with the maximum time to wait for the handler threads to finish
+	 * @return A boolean, true if all handler threads finished within timeout, else false
+	 */
+	public boolean close(Duration timeout) {
+		lock.lock();
+		try {
+			closed = true;
+			messageQueued.signalAll();
+			roomInLane.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		return waitForHandlersToFinish(timeout);
+	}
+
+	private boolean waitForHandlersToFinish(Duration timeout) {
+		long giveUpAt = System.nanoTime() + timeout.toNanos();
+		try {
+			for (Thread handler : handlers) {
+				long nanosLeft = Math.max(0, giveUpAt - System.nanoTime());
+				if (!handler.join(Duration.ofNanos(nanosLeft))) {
+					logNotFinished(timeout);
+					return false;
+				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void logNotFinished(Duration timeout) {
+		log.logWarnUsingMessage("PriorityMessageDispatcher handlers did not finish within "
+				+ timeout + ", messages are still being handled");
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import se.uu.ub.cora.messaging.BatchMessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+
+/**
+ * ReceivedMessageBatcher collects received messages into batches and delivers them to a
+ * {@link BatchMessageReceiver}, using the batch size and wait time the receiver asks for.
+ * <p>
+ * A {@link se.uu.ub.cora.messaging.MessageListener} implementation calls
+ * {@link #add(ReceivedMessage)} for each message it receives. When a batch is full, add delivers it
+ * in the calling thread, a batch that has waited maxBatchWait is delivered from a timer thread.
+ * After delivery the batch is acknowledged or rejected through the {@link BatchAcknowledger}.
+ * <p>
+ * Batches are delivered outside the lock used when adding messages, so messages can be added while
+ * a batch is being delivered. Batches are delivered one at a time and in order, a thread calling
+ * add that fills the next batch waits while the previous batch is being delivered. A batch
+ * delivered from the timer is only delivered if it is still the batch that has waited, so a full
+ * batch delivered meanwhile does not cause the next batch to be delivered early.
+ */
+public class ReceivedMessageBatcher {
+	private final BatchMessageReceiver receiver;
+	private final BatchAcknowledger acknowledger;
+	private final int maxBatchSize;
+	private final long maxBatchWaitNanos;
+	private final ScheduledExecutorService waitTimer;
+	private final Object deliveryLock = new Object();
+	private List<ReceivedMessage> batch;
+	private ScheduledFuture<?> scheduledDelivery;
+
+	public ReceivedMessageBatcher(BatchMessageReceiver receiver, BatchAcknowledger acknowledger) {
+		this.receiver = receiver;
+		this.acknowledger = acknowledger;
+		maxBatchSize = receiver.getMaxBatchSize();
+		maxBatchWaitNanos = receiver.getMaxBatchWait().toNanos();
+		batch = new ArrayList<>(maxBatchSize);
+		waitTimer = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name("cora-message-batcher").daemon().factory());
+	}
+
+	/**
+	 * add adds a received message to the current batch, delivering the batch if it is full.
+	 * 
+	 * @param receivedMessage
+	 *            The {@link ReceivedMessage} to add
+	 */
+	public void add(ReceivedMessage receivedMessage) {
+		if (addAndCheckIfFull(receivedMessage)) {
+			deliver();
+		}
+	}
+
+	private synchronized boolean addAndCheckIfFull(ReceivedMessage receivedMessage) {
+		if (batch.isEmpty()) {
+			List<ReceivedMessage> waitingBatch = batch;
+			scheduledDelivery = waitTimer.schedule(() -> deliverAfterWait(waitingBatch),
+					maxBatchWaitNanos, TimeUnit.NANOSECONDS);
+		}
+		batch.add(receivedMessage);
+		return batch.size() >= maxBatchSize;
+	}
+
+	/**
+	 * deliver delivers the current batch, if any, without waiting for it to fill up.
+	 */
+	public void deliver() {
+		synchronized (deliveryLock) {
+			List<ReceivedMessage> batchToDeliver = takeBatch();
+			if (!batchToDeliver.isEmpty()) {
+				deliverAndAcknowledge(batchToDeliver);
+			}
+		}
+	}
+
+	private void deliverAfterWait(List<ReceivedMessage> waitedBatch) {
+		synchronized (deliveryLock) {
+			List<ReceivedMessage> batchToDeliver = takeBatchIfCurrent(waitedBatch);
+			if (!batchToDeliver.isEmpty()) {
+				deliverAndAcknowledge(batchToDeliver);
+			}
+		}
+	}
+
+	private synchronized List<ReceivedMessage> takeBatchIfCurrent(
+			List<ReceivedMessage> waitedBatch) {
+		return batch == waitedBatch ? takeBatch() : List.of();
+	}
+
+	private synchronized List<ReceivedMessage> takeBatch() {
+		List<ReceivedMessage> batchToDeliver = batch;
+		if (!batchToDeliver.isEmpty()) {
+			scheduledDelivery.cancel(false);
+			batch = new ArrayList<>(maxBatchSize);
+		}
+		return batchToDeliver;
+	}
+
+	private void deliverAndAcknowledge(List<ReceivedMessage> batchToDeliver) {
+		try {
+			receiver.receiveMessages(batchToDeliver);
+		} catch (RuntimeException e) {
+			acknowledger.reject(batchToDeliver, e);
+			return;
+		}
+		acknowledger.acknowledge(batchToDeliver);
+	}
+
+	/**
+	 * close delivers the current batch and stops the wait timer.
+	 */
+	public void close() {
+		try {
+			deliver();
+		} finally {
+			waitTimer.shutdownNow();
+		}
+	}
+}
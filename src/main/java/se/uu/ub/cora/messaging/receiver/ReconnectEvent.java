@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.time.Duration;
+
+/**
+ * ReconnectEvent tells about a lost connection of a {@link SupervisedMessageListener} and the
+ * attempts to reconnect it.
+ */
+public final class ReconnectEvent {
+	/**
+	 * Type is the kind of event
+	 */
+	public enum Type {
+		/**
+		 * The listener reported that its topic was closed, reconnection starts
+		 */
+		CONNECTION_LOST,
+		/**
+		 * A reconnect attempt failed, another attempt follows after a delay
+		 */
+		RECONNECT_FAILED,
+		/**
+		 * A reconnect attempt succeeded, messages are delivered again
+		 */
+		RECONNECTED
+	}
+
+	public final Type type;
+	public final int attempt;
+	public final Duration downtime;
+	public final Exception error;
+
+	/**
+	 * @param type
+	 *            The Type of the event
+	 * @param attempt
+	 *            An int with the number of the reconnect attempt, 0 for CONNECTION_LOST
+	 * @param downtime
+	 *            A Duration with the time since the connection was lost
+	 * @param error
+	 *            The Exception a failed attempt ended with, or null
+	 */
+	public ReconnectEvent(Type type, int attempt, Duration downtime, Exception error) {
+		this.type = type;
+		this.attempt = attempt;
+		this.downtime = downtime;
+		this.error = error;
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageSender;
+
+/**
+ * RetryDelayingMessageSender is a {@link MessageSender} that holds each message for the number of
+ * milliseconds in its {@link MessageHeaders#RETRY_DELAY} header before sending it through the
+ * decorated MessageSender. It is meant as the retry MessageSender of a
+ * {@link RetryingMessageReceiver}, when the messaging server can not delay messages itself, with
+ * the decorated MessageSender sending to the queue the RetryingMessageReceiver listens on.
+ * Messages without the header, or with a delay of 0, are sent right away.
+ * <p>
+ * Waiting messages are kept in a {@link HashedTimingWheel}, so holding many of them is cheap, and
+ * are sent at most one tick late. As the retry attempt is kept in the message headers, the count
+ * continues when a retried message fails again, but messages still waiting when the process stops
+ * are lost, use a delaying destination on the messaging server where that matters.
+ * <p>
+ * If sending a message that has waited fails, the error is logged and the message waits its delay
+ * again before the next try.
+ */
+public final class RetryDelayingMessageSender implements MessageSender {
+	private static final Duration DEFAULT_TICK = Duration.ofMillis(10);
+	private static final int TICKS_PER_WHEEL = 512;
+	private Logger log = LoggerProvider.getLoggerForClass(RetryDelayingMessageSender.class);
+	private final MessageSender messageSender;
+	private final HashedTimingWheel<DelayedMessage> wheel;
+	private final ScheduledExecutorService wheelTimer;
+	private boolean closed = false;
+
+	/**
+	 * @param messageSender
+	 *            The MessageSender to send messages through when their delay has passed
+	 * @param tick
+	 *            A Duration with how often waiting messages are checked, the most a message is
+	 *            sent late
+	 */
+	public RetryDelayingMessageSender(MessageSender messageSender, Duration tick) {
+		if (tick.isNegative() || tick.isZero()) {
+			throw new IllegalArgumentException("tick must be positive, was " + tick);
+		}
+		this.messageSender = messageSender;
+		long tickNanos = tick.toNanos();
+		wheel = new HashedTimingWheel<>(System.nanoTime(), tickNanos, TICKS_PER_WHEEL);
+		wheelTimer = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name("cora-retry-delay").daemon().factory());
+		wheelTimer.scheduleWithFixedDelay(this::sendDueMessages, tickNanos, tickNanos,
+				TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Creates a RetryDelayingMessageSender checking waiting messages every 10 milliseconds.
+	 */
+	public RetryDelayingMessageSender(MessageSender messageSender) {
+		this(messageSender, DEFAULT_TICK);
+	}
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		sendOrDelay(new DelayedMessage(headers, message, null));
+	}
+
+	/**
+	 * sendBinaryMessage copies the message body before it waits, as the caller may reuse the buffer
+	 * when this call returns.
+	 */
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		sendOrDelay(new DelayedMessage(headers, null,
+				VirtualThreadMessageDispatcher.copyOf(message)));
+	}
+
+	@Override
+	public boolean supportsBinaryMessages() {
+		return messageSender.supportsBinaryMessages();
+	}
+
+	private void sendOrDelay(DelayedMessage delayedMessage) {
+		if (delayedMessage.delayNanos == 0) {
+			delayedMessage.sendTo(messageSender);
+		} else {
+			delay(delayedMessage);
+		}
+	}
+
+	private synchronized void delay(DelayedMessage delayedMessage) {
+		if (closed) {
+			throw new IllegalStateException("RetryDelayingMessageSender is closed");
+		}
+		wheel.schedule(delayedMessage, System.nanoTime() + delayedMessage.delayNanos);
+	}
+
+	private void sendDueMessages() {
+		for (DelayedMessage delayedMessage : wheel.expire(System.nanoTime())) {
+			sendOrDelayAgain(delayedMessage);
+		}
+	}
+
+	private void sendOrDelayAgain(DelayedMessage delayedMessage) {
+		try {
+			delayedMessage.sendTo(messageSender);
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException(
+					"Failed to send delayed message, it is delayed again", e);
+			wheel.schedule(delayedMessage, System.nanoTime() + delayedMessage.delayNanos);
+		}
+	}
+
+	/**
+	 * Returns the number of messages waiting for their delay to pass.
+	 */
+	public int getNumberOfWaitingMessages() {
+		return wheel.getNumberOfPendingTimeouts();
+	}
+
+	/**
+	 * close sends the waiting messages right away, without waiting for their delay to pass, and
+	 * closes the decorated MessageSender. Messages sent with a delay after close are refused with
+	 * an IllegalStateException. Calling close more than once has no further effect.
+	 */
+	@Override
+	public void close() {
+		if (!markClosed()) {
+			return;
+		}
+		wheelTimer.execute(this::sendAllWaitingMessages);
+		wheelTimer.shutdown();
+		try {
+			wheelTimer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		messageSender.close();
+	}
+
+	private synchronized boolean markClosed() {
+		boolean wasOpen = !closed;
+		closed = true;
+		return wasOpen;
+	}
+
+	private void sendAllWaitingMessages() {
+		for (DelayedMessage delayedMessage : wheel.removeAll()) {
+			try {
+				delayedMessage.sendTo(messageSender);
+			} catch (RuntimeException e) {
+				log.logErrorUsingMessageAndException(
+						"Failed to send delayed message on close, the message is lost", e);
+			}
+		}
+	}
+
+	private static final class DelayedMessage {
+		private final Map<String, Object> headers;
+		private final String message;
+		private final ByteBuffer binaryMessage;
+		private final long delayNanos;
+
+		DelayedMessage(Map<String, Object> headers, String message, ByteBuffer binaryMessage) {
+			this.headers = headers;
+			this.message = message;
+			this.binaryMessage = binaryMessage;
+			this.delayNanos = TimeUnit.MILLISECONDS.toNanos(getRetryDelayMillis(headers));
+		}
+
+		private static long getRetryDelayMillis(Map<String, Object> headers) {
+			Object retryDelay = null == headers ? null : headers.get(MessageHeaders.RETRY_DELAY);
+			if (retryDelay instanceof Number number) {
+				return Math.max(0, number.longValue());
+			}
+			if (null == retryDelay) {
+				return 0;
+			}
+			try {
+				return Math.max(0, Long.parseLong(retryDelay.toString()));
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+
+		void sendTo(MessageSender sender) {
+			if (null == binaryMessage) {
+				sender.sendMessage(headers, message);
+			} else {
+				sender.sendBinaryMessage(headers, binaryMessage.duplicate());
+			}
+		}
+	}
+}
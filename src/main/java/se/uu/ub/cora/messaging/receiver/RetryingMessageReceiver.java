@@ -0,0 +1,262 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.MessageSender;
+
+/**
+ * RetryingMessageReceiver is a {@link MessageReceiver} that retries messages the decorated
+ * MessageReceiver throws an exception for, without blocking the calling listener thread while
+ * waiting. A failed message is republished through the retry {@link MessageSender} before the call
+ * from the listener returns. Messages that still fail after maxAttempts deliveries are sent to the
+ * dead-letter MessageSender.
+ * <p>
+ * The retry MessageSender holds each message for the number of milliseconds in its
+ * {@link MessageHeaders#RETRY_DELAY} header and then routes it back to the queue this receiver
+ * listens on. With a delaying destination on the messaging server, for instance a delayed message
+ * exchange, waiting retries survive a restart. A {@link RetryDelayingMessageSender} delays them in
+ * this process instead, where waiting retries are lost if the process stops. The delay before
+ * retry n is initialDelay * 2^(n-1), at most maxDelay, of which a random part of up to half is
+ * left out, so that messages failing at the same time are not all retried at the same time.
+ * <p>
+ * The number of retries made is kept in the {@link MessageHeaders#RETRY_ATTEMPT} header of
+ * republished messages, and messages arriving with the header continue counting from it.
+ * Republished messages also get {@link MessageHeaders#LAST_ERROR}, and dead-lettered messages get
+ * {@link MessageHeaders#RETRY_ATTEMPT}, {@link MessageHeaders#LAST_ERROR} and
+ * {@link MessageHeaders#DEAD_LETTER_REASON}.
+ * <p>
+ * If republishing or dead-lettering a failed message fails, the exception from the decorated
+ * MessageReceiver is thrown to the listener, with the sending error added as suppressed, so that
+ * the message is not acknowledged and is delivered again by the messaging server.
+ * <p>
+ * A retried message is handled later than, and possibly after, messages received after it.
+ */
+public final class RetryingMessageReceiver implements MessageReceiver {
+	/**
+	 * The dead letter reason of messages that failed in all attempts
+	 */
+	public static final String MAX_ATTEMPTS_REACHED = "maxAttemptsReached";
+	private Logger log = LoggerProvider.getLoggerForClass(RetryingMessageReceiver.class);
+	private final MessageReceiver messageReceiver;
+	private final MessageSender retrySender;
+	private final MessageSender deadLetterSender;
+	private final int maxAttempts;
+	private final long initialDelayNanos;
+	private final long maxDelayNanos;
+	private final DoubleSupplier random;
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder deadLetters = new LongAdder();
+
+	/**
+	 * @param messageReceiver
+	 *            The MessageReceiver to deliver messages to
+	 * @param retrySender
+	 *            The MessageSender to republish failed messages through, it must delay them by
+	 *            their retryDelay header before they are delivered again, see
+	 *            {@link RetryDelayingMessageSender}
+	 * @param deadLetterSender
+	 *            The MessageSender to send messages that fail in all attempts to
+	 * @param maxAttempts
+	 *            An int with the maximum number of deliveries of a message, including the first
+	 * @param initialDelay
+	 *            A Duration with the delay before the first retry
+	 * @param maxDelay
+	 *            A Duration with the longest delay between retries
+	 */
+	public RetryingMessageReceiver(MessageReceiver messageReceiver, MessageSender retrySender,
+			MessageSender deadLetterSender, int maxAttempts, Duration initialDelay,
+			Duration maxDelay) {
+		this(messageReceiver, retrySender, deadLetterSender, maxAttempts, initialDelay, maxDelay,
+				() -> ThreadLocalRandom.current().nextDouble());
+	}
+
+	RetryingMessageReceiver(MessageReceiver messageReceiver, MessageSender retrySender,
+			MessageSender deadLetterSender, int maxAttempts, Duration initialDelay,
+			Duration maxDelay, DoubleSupplier random) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException(
+					"maxAttempts must be at least 1, was " + maxAttempts);
+		}
+		if (initialDelay.isNegative() || initialDelay.isZero()) {
+			throw new IllegalArgumentException(
+					"initialDelay must be positive, was " + initialDelay);
+		}
+		this.messageReceiver = messageReceiver;
+		this.retrySender = retrySender;
+		this.deadLetterSender = deadLetterSender;
+		this.maxAttempts = maxAttempts;
+		this.initialDelayNanos = initialDelay.toNanos();
+		this.maxDelayNanos = Math.max(initialDelayNanos, maxDelay.toNanos());
+		this.random = random;
+	}
+
+	@Override
+	public void receiveMessage(Map<String, String> headers, String message) {
+		deliver(new Delivery(headers, message, null));
+	}
+
+	/**
+	 * receiveBinaryMessage republishes the message body from the position it had when this method
+	 * was called, also if the decorated MessageReceiver has read from it.
+	 */
+	@Override
+	public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+		deliver(new Delivery(headers, null, message));
+	}
+
+	private void deliver(Delivery delivery) {
+		ByteBuffer unreadBinaryMessage = null == delivery.binaryMessage ? null
+				: delivery.binaryMessage.duplicate();
+		try {
+			delivery.deliverTo(messageReceiver);
+		} catch (RuntimeException e) {
+			handleFailure(new Delivery(delivery.headers, delivery.message, unreadBinaryMessage),
+					e);
+		}
+	}
+
+	private void handleFailure(Delivery failed, RuntimeException error) {
+		int retriesDone = getRetriesDone(failed.headers);
+		try {
+			if (retriesDone + 1 >= maxAttempts) {
+				sendToDeadLetter(failed, retriesDone, error);
+			} else {
+				republishForRetry(failed, retriesDone + 1, error);
+			}
+		} catch (RuntimeException sendError) {
+			log.logErrorUsingMessageAndException("Failed to send failed message for retry or to "
+					+ "dead letter, the message is given back to the listener", sendError);
+			error.addSuppressed(sendError);
+			throw error;
+		}
+	}
+
+	private static int getRetriesDone(Map<String, String> headers) {
+		String retryAttempt = null == headers ? null : headers.get(MessageHeaders.RETRY_ATTEMPT);
+		if (null == retryAttempt) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Integer.parseInt(retryAttempt));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private void republishForRetry(Delivery failed, int retry, RuntimeException error) {
+		long delayNanos = calculateDelayNanos(retry, initialDelayNanos, maxDelayNanos,
+				random.getAsDouble());
+		Map<String, Object> headers = copyHeadersWithError(failed, retry, error);
+		headers.put(MessageHeaders.RETRY_DELAY, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+		failed.sendTo(retrySender, headers);
+		retries.increment();
+		log.logWarnUsingMessageAndException(
+				"Message handler failed, retry " + retry + " is republished", error);
+	}
+
+	private static Map<String, Object> copyHeadersWithError(Delivery failed, int retryAttempt,
+			RuntimeException error) {
+		Map<String, Object> headers = new HashMap<>();
+		if (null != failed.headers) {
+			headers.putAll(failed.headers);
+		}
+		headers.put(MessageHeaders.RETRY_ATTEMPT, retryAttempt);
+		headers.put(MessageHeaders.LAST_ERROR, error.toString());
+		return headers;
+	}
+
+	/**
+	 * calculateDelayNanos returns initialDelayNanos * 2^(retry-1), at most maxDelayNanos, minus up
+	 * to half of it depending on random, a number between 0 and 1.
+	 */
+	static long calculateDelayNanos(int retry, long initialDelayNanos, long maxDelayNanos,
+			double random) {
+		int doublings = Math.min(retry - 1, Long.numberOfLeadingZeros(initialDelayNanos) - 1);
+		long delayNanos = Math.min(maxDelayNanos, initialDelayNanos << doublings);
+		return delayNanos - (long) (random * (delayNanos / 2));
+	}
+
+	private void sendToDeadLetter(Delivery failed, int retriesDone, RuntimeException error) {
+		Map<String, Object> headers = copyHeadersWithError(failed, retriesDone, error);
+		headers.remove(MessageHeaders.RETRY_DELAY);
+		headers.put(MessageHeaders.DEAD_LETTER_REASON, MAX_ATTEMPTS_REACHED);
+		failed.sendTo(deadLetterSender, headers);
+		deadLetters.increment();
+	}
+
+	@Override
+	public void topicClosed() {
+		messageReceiver.topicClosed();
+	}
+
+	/**
+	 * Returns the number of failed messages republished for a retry.
+	 */
+	public long getNumberOfRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * Returns the number of messages sent to the dead-letter MessageSender.
+	 */
+	public long getNumberOfDeadLetters() {
+		return deadLetters.sum();
+	}
+
+	private static final class Delivery {
+		private final Map<String, String> headers;
+		private final String message;
+		private final ByteBuffer binaryMessage;
+
+		Delivery(Map<String, String> headers, String message, ByteBuffer binaryMessage) {
+			this.headers = headers;
+			this.message = message;
+			this.binaryMessage = binaryMessage;
+		}
+
+		void deliverTo(MessageReceiver receiver) {
+			if (null == binaryMessage) {
+				receiver.receiveMessage(headers, message);
+			} else {
+				receiver.receiveBinaryMessage(headers, binaryMessage);
+			}
+		}
+
+		void sendTo(MessageSender sender, Map<String, Object> headers) {
+			if (null == binaryMessage) {
+				sender.sendMessage(headers, message);
+			} else {
+				sender.sendBinaryMessage(headers, binaryMessage);
+			}
+		}
+	}
+}
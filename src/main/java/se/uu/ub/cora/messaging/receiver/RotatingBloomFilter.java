@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * RotatingBloomFilter remembers fingerprints seen during at least the last window in a fixed
+ * number of bits. It holds two generations of bits, fingerprints are added to the current one and
+ * looked for in both. Every window the current generation becomes the previous one and a new,
+ * empty, generation is started, so fingerprints are forgotten between one and two windows after
+ * they were added.
+ * <p>
+ * Adding and looking up takes no lock. A lookup can answer that a fingerprint is present although
+ * it has never been added, the probability of that grows with the number of fingerprints added per
+ * window relative to the number of bits.
+ */
+final class RotatingBloomFilter {
+	static final int MAX_NUMBER_OF_BITS = 1 << 30;
+	private static final int BITS_PER_WORD = 64;
+	private final int numberOfHashes;
+	private final int bitMask;
+	private final long windowNanos;
+	private volatile AtomicLongArray current;
+	private volatile AtomicLongArray previous;
+	private volatile long rotateAt;
+
+	/**
+	 * @param numberOfBits
+	 *            An int with the number of bits in each generation, rounded up to a power of two,
+	 *            at most MAX_NUMBER_OF_BITS
+	 * @param expectedPerWindow
+	 *            An int with the expected number of fingerprints added per window, used to choose
+	 *            the number of hashes
+	 */
+	RotatingBloomFilter(int numberOfBits, int expectedPerWindow, long windowNanos, long now) {
+		if (numberOfBits < 1 || numberOfBits > MAX_NUMBER_OF_BITS) {
+			throw new IllegalArgumentException("numberOfBits must be between 1 and "
+					+ MAX_NUMBER_OF_BITS + ", was " + numberOfBits);
+		}
+		if (expectedPerWindow < 1) {
+			throw new IllegalArgumentException(
+					"expectedPerWindow must be at least 1, was " + expectedPerWindow);
+		}
+		int roundedBits = Math.max(BITS_PER_WORD, Integer.highestOneBit(numberOfBits - 1) << 1);
+		bitMask = roundedBits - 1;
+		numberOfHashes = calculateNumberOfHashes(roundedBits, expectedPerWindow);
+		this.windowNanos = windowNanos;
+		current = new AtomicLongArray(roundedBits / BITS_PER_WORD);
+		previous = new AtomicLongArray(roundedBits / BITS_PER_WORD);
+		rotateAt = now + windowNanos;
+	}
+
+	private static int calculateNumberOfHashes(int numberOfBits, int expectedPerWindow) {
+		long optimal = Math.round((double) numberOfBits / expectedPerWindow * Math.log(2));
+		return Math.clamp(optimal, 1, 8);
+	}
+
+	boolean mightContain(long fingerprint, long now) {
+		rotateIfDue(now);
+		return containsIn(previous, fingerprint) || containsIn(current, fingerprint);
+	}
+
+	private boolean containsIn(AtomicLongArray bits, long fingerprint) {
+		int hash1 = (int) fingerprint;
+		int hash2 = (int) (fingerprint >>> 32);
+		for (int i = 0; i < numberOfHashes; i++) {
+			int bit = (hash1 + i * hash2) & bitMask;
+			if ((bits.get(bit / BITS_PER_WORD) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	void add(long fingerprint, long now) {
+		rotateIfDue(now);
+		AtomicLongArray bits = current;
+		int hash1 = (int) fingerprint;
+		int hash2 = (int) (fingerprint >>> 32);
+		for (int i = 0; i < numberOfHashes; i++) {
+			int bit = (hash1 + i * hash2) & bitMask;
+			long mask = 1L << bit;
+			int word = bit / BITS_PER_WORD;
+			if ((bits.get(word) & mask) == 0) {
+				bits.getAndUpdate(word, value -> value | mask);
+			}
+		}
+	}
+
+	private void rotateIfDue(long now) {
+		if (now - rotateAt >= 0) {
+			rotate(now);
+		}
+	}
+
+	private synchronized void rotate(long now) {
+		if (now - rotateAt >= 0) {
+			boolean currentIsOlderThanWindow = now - rotateAt >= windowNanos;
+			previous = currentIsOlderThanWindow ? new AtomicLongArray(current.length()) : current;
+			current = new AtomicLongArray(current.length());
+			rotateAt = now + windowNanos;
+		}
+	}
+
+	int getNumberOfHashes() {
+		return numberOfHashes;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * SpscQueue is a bounded, lock-free queue for exactly one producing and one consuming thread.
+ * <p>
+ * As only the producer writes the tail and only the consumer writes the head, neither needs
+ * compare-and-set, each side publishes its counter with a release write. The producer keeps a
+ * cached copy of the head, and the consumer of the tail, so that the counter written by the other
+ * thread is only read when the cached copy says the queue is full or empty. The capacity is
+ * rounded up to the nearest power of two.
+ */
+final class SpscQueue<T> {
+	private final int mask;
+	private final AtomicReferenceArray<T> elements;
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+	private long cachedHead = 0;
+	private long cachedTail = 0;
+
+	SpscQueue(int requestedCapacity) {
+		int capacity = roundUpToPowerOfTwo(requestedCapacity);
+		mask = capacity - 1;
+		elements = new AtomicReferenceArray<>(capacity);
+	}
+
+	private static int roundUpToPowerOfTwo(int requestedCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(1, requestedCapacity));
+		return capacity < requestedCapacity ? capacity << 1 : capacity;
+	}
+
+	/**
+	 * offer adds an element if there is room, it MUST only be called by the producing thread
+	 * 
+	 * @return true if the element was added, false if the queue is full
+	 */
+	boolean offer(T element) {
+		long position = tail.getPlain();
+		if (position - cachedHead > mask) {
+			cachedHead = head.getAcquire();
+			if (position - cachedHead > mask) {
+				return false;
+			}
+		}
+		elements.setPlain((int) (position & mask), element);
+		tail.setRelease(position + 1);
+		return true;
+	}
+
+	/**
+	 * poll removes and returns the oldest element, it MUST only be called by the consuming thread
+	 * 
+	 * @return the oldest element, or null if the queue is empty
+	 */
+	T poll() {
+		long position = head.getPlain();
+		if (position >= cachedTail) {
+			cachedTail = tail.getAcquire();
+			if (position >= cachedTail) {
+				return null;
+			}
+		}
+		int index = (int) (position & mask);
+		T element = elements.getPlain(index);
+		elements.setPlain(index, null);
+		head.setRelease(position + 1);
+		return element;
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * size returns the number of queued elements, it can be called from any thread
+	 */
+	int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AcknowledgingMessageReceiver;
+import se.uu.ub.cora.messaging.AmqpMessageListenerRoutingInfo;
+import se.uu.ub.cora.messaging.BatchMessageReceiver;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.receiver.ReconnectEvent.Type;
+
+/**
+ * SupervisedMessageListener is a {@link MessageListener} that keeps listening when the connection
+ * of the listener it uses is lost. When the listener calls {@link MessageReceiver#topicClosed()}
+ * without this SupervisedMessageListener having been closed, the listener is closed and a new one
+ * is created from the listenerFactory and started with the same MessageReceiver. Creating a new
+ * listener declares the queue and its bindings again, as given in the
+ * {@link AmqpMessageListenerRoutingInfo} it was created for.
+ * <p>
+ * Reconnect attempts are made on a virtual thread until one succeeds or this
+ * SupervisedMessageListener is closed. The delay before attempt n is initialDelay * 2^(n-1), at
+ * most maxDelay, of which a random part of up to half is left out, so that listeners losing their
+ * connection in the same broker failover do not all reconnect at the same time.
+ * <p>
+ * Lost connections, failed attempts and reconnections are logged and published as
+ * {@link ReconnectEvent}s to the eventListener, together with the time since the connection was
+ * lost. As the listener is reconnected, topicClosed is not passed on to the MessageReceiver.
+ * <p>
+ * If the first listener can not be started, the exception is thrown from
+ * {@link #listen(MessageReceiver)} and no reconnect attempts are made.
+ */
+public final class SupervisedMessageListener implements MessageListener {
+	private Logger log = LoggerProvider.getLoggerForClass(SupervisedMessageListener.class);
+	private final Supplier<MessageListener> listenerFactory;
+	private final long initialDelayNanos;
+	private final long maxDelayNanos;
+	private final Consumer<ReconnectEvent> eventListener;
+	private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+	private final LongAdder reconnects = new LongAdder();
+	private final LongAdder downtimeNanos = new LongAdder();
+	private final Object connectionLock = new Object();
+	private MessageReceiver messageReceiver;
+	private volatile MessageListener listener;
+	private volatile SupervisingReceiver currentReceiver;
+	private volatile Thread reconnectThread;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param listenerFactory
+	 *            A Supplier creating a new, not yet started, MessageListener for each connection
+	 * @param initialDelay
+	 *            A Duration with the delay before the first reconnect attempt
+	 * @param maxDelay
+	 *            A Duration with the longest delay between reconnect attempts
+	 * @param eventListener
+	 *            A Consumer of the ReconnectEvents, called on the reconnecting thread
+	 */
+	public SupervisedMessageListener(Supplier<MessageListener> listenerFactory,
+			Duration initialDelay, Duration maxDelay, Consumer<ReconnectEvent> eventListener) {
+		if (initialDelay.isNegative() || initialDelay.isZero()) {
+			throw new IllegalArgumentException(
+					"initialDelay must be positive, was " + initialDelay);
+		}
+		this.listenerFactory = listenerFactory;
+		this.initialDelayNanos = initialDelay.toNanos();
+		this.maxDelayNanos = Math.max(initialDelayNanos, maxDelay.toNanos());
+		this.eventListener = eventListener;
+	}
+
+	@Override
+	public void listen(MessageReceiver messageReceiver) {
+		this.messageReceiver = messageReceiver;
+		connect();
+	}
+
+	/**
+	 * connect creates and starts a new listener unless this SupervisedMessageListener is closed.
+	 * It holds the same lock as close, so a listener is never started after close has closed the
+	 * current one.
+	 * 
+	 * @return A boolean, true if a new listener was started, false if closed
+	 */
+	private boolean connect() {
+		synchronized (connectionLock) {
+			if (closed) {
+				return false;
+			}
+			SupervisingReceiver supervisingReceiver = supervise(messageReceiver);
+			MessageListener newListener = listenerFactory.get();
+			listener = newListener;
+			currentReceiver = supervisingReceiver;
+			newListener.listen(supervisingReceiver);
+			return true;
+		}
+	}
+
+	private SupervisingReceiver supervise(MessageReceiver receiver) {
+		if (receiver instanceof AcknowledgingMessageReceiver acknowledgingReceiver) {
+			return new SupervisingAcknowledgingReceiver(acknowledgingReceiver);
+		}
+		if (receiver instanceof BatchMessageReceiver batchReceiver) {
+			return new SupervisingBatchReceiver(batchReceiver);
+		}
+		return new SupervisingReceiver(receiver);
+	}
+
+	private void connectionLost(SupervisingReceiver lostReceiver) {
+		if (closed || lostReceiver != currentReceiver) {
+			return;
+		}
+		if (reconnecting.compareAndSet(false, true)) {
+			reconnectThread = Thread.ofVirtual().name("cora-listener-supervisor")
+					.start(this::reconnectUntilConnectedOrClosed);
+		}
+	}
+
+	private void reconnectUntilConnectedOrClosed() {
+		long lostAt = System.nanoTime();
+		log.logWarnUsingMessage("Listener connection lost, reconnecting");
+		publish(new ReconnectEvent(Type.CONNECTION_LOST, 0, Duration.ZERO, null));
+		int attempt = 0;
+		boolean connected = false;
+		while (!connected && !closed && waitBeforeAttempt(++attempt)) {
+			connected = tryToReconnect(attempt, lostAt);
+		}
+		reconnecting.set(false);
+		SupervisingReceiver receiver = currentReceiver;
+		if (receiver.lost) {
+			connectionLost(receiver);
+		}
+	}
+
+	private boolean waitBeforeAttempt(int attempt) {
+		long delayNanos = RetryingMessageReceiver.calculateDelayNanos(attempt, initialDelayNanos,
+				maxDelayNanos, ThreadLocalRandom.current().nextDouble());
+		try {
+			Thread.sleep(Duration.ofNanos(delayNanos));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private boolean tryToReconnect(int attempt, long lostAt) {
+		closeListener();
+		try {
+			if (!connect()) {
+				return false;
+			}
+		} catch (RuntimeException e) {
+			Duration downtime = Duration.ofNanos(System.nanoTime() - lostAt);
+			log.logWarnUsingMessageAndException(
+					"Reconnect attempt " + attempt + " failed, down for " + downtime, e);
+			publish(new ReconnectEvent(Type.RECONNECT_FAILED, attempt, downtime, e));
+			return false;
+		}
+		long downNanos = System.nanoTime() - lostAt;
+		reconnects.increment();
+		downtimeNanos.add(downNanos);
+		Duration downtime = Duration.ofNanos(downNanos);
+		log.logInfoUsingMessage(
+				"Listener reconnected after " + attempt + " attempts, down for " + downtime);
+		publish(new ReconnectEvent(Type.RECONNECTED, attempt, downtime, null));
+		return true;
+	}
+
+	private void closeListener() {
+		synchronized (connectionLock) {
+			MessageListener listenerToClose = listener;
+			if (null == listenerToClose) {
+				return;
+			}
+			try {
+				listenerToClose.close();
+			} catch (RuntimeException e) {
+				log.logWarnUsingMessageAndException("Failed to close lost listener", e);
+			}
+		}
+	}
+
+	private void publish(ReconnectEvent event) {
+		try {
+			eventListener.accept(event);
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("Reconnect event listener failed", e);
+		}
+	}
+
+	/**
+	 * Returns true if a listener is started and its connection is not lost.
+	 */
+	public boolean isConnected() {
+		SupervisingReceiver receiver = currentReceiver;
+		return !closed && null != receiver && !receiver.lost && !reconnecting.get();
+	}
+
+	/**
+	 * Returns the number of successful reconnects.
+	 */
+	public long getNumberOfReconnects() {
+		return reconnects.sum();
+	}
+
+	/**
+	 * Returns the summed time from lost connections until they were reconnected.
+	 */
+	public Duration getTotalDowntime() {
+		return Duration.ofNanos(downtimeNanos.sum());
+	}
+
+	/**
+	 * close stops reconnect attempts and closes the current listener. If a reconnect attempt is
+	 * starting a new listener, close waits for it and closes the new listener.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Thread thread = reconnectThread;
+		if (null != thread) {
+			thread.interrupt();
+		}
+		closeListener();
+	}
+
+	private class SupervisingReceiver implements MessageReceiver {
+		private final MessageReceiver receiver;
+		private volatile boolean lost = false;
+
+		SupervisingReceiver(MessageReceiver receiver) {
+			this.receiver = receiver;
+		}
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			receiver.receiveMessage(headers, message);
+		}
+
+		@Override
+		public void receiveMessageUsingHeaders(MessageHeaders headers, String message) {
+			receiver.receiveMessageUsingHeaders(headers, message);
+		}
+
+		@Override
+		public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+			receiver.receiveBinaryMessage(headers, message);
+		}
+
+		@Override
+		public void topicClosed() {
+			lost = true;
+			connectionLost(this);
+		}
+	}
+
+	private final class SupervisingAcknowledgingReceiver extends SupervisingReceiver
+			implements AcknowledgingMessageReceiver {
+		private final AcknowledgingMessageReceiver receiver;
+
+		SupervisingAcknowledgingReceiver(AcknowledgingMessageReceiver receiver) {
+			super(receiver);
+			this.receiver = receiver;
+		}
+
+		@Override
+		public void receiveMessage(ReceivedMessage receivedMessage) {
+			receiver.receiveMessage(receivedMessage);
+		}
+	}
+
+	private final class SupervisingBatchReceiver extends SupervisingReceiver
+			implements BatchMessageReceiver {
+		private final BatchMessageReceiver receiver;
+
+		SupervisingBatchReceiver(BatchMessageReceiver receiver) {
+			super(receiver);
+			this.receiver = receiver;
+		}
+
+		@Override
+		public void receiveMessages(List<ReceivedMessage> messages) {
+			receiver.receiveMessages(messages);
+		}
+
+		@Override
+		public int getMaxBatchSize() {
+			return receiver.getMaxBatchSize();
+		}
+
+		@Override
+		public Duration getMaxBatchWait() {
+			return receiver.getMaxBatchWait();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+
+/**
+ * VirtualThreadMessageDispatcher is a {@link MessageReceiver} that hands each received message to
+ * the decorated MessageReceiver on a new virtual thread, so that MessageReceivers doing blocking
+ * I/O can handle many messages at the same time without a large pool of platform threads.
+ * <p>
+ * At most maxConcurrentHandlers messages are handled at the same time, when that many are running
+ * the calling listener thread waits until one has finished. This keeps the listener from taking
+ * more messages from the messaging server than can be handled.
+ * <p>
+ * The call from the listener returns when the message has been handed over, not when it has been
+ * handled. A listener acknowledging messages when receiveMessage returns will therefore
+ * acknowledge messages that are still being handled. Exceptions thrown by the decorated
+ * MessageReceiver are logged.
+ */
+public class VirtualThreadMessageDispatcher implements MessageReceiver {
+	private Logger log = LoggerProvider.getLoggerForClass(VirtualThreadMessageDispatcher.class);
+	private final MessageReceiver messageReceiver;
+	private final int maxConcurrentHandlers;
+	private final Semaphore handlerPermits;
+	private final ThreadFactory handlerThreadFactory = Thread.ofVirtual()
+			.name("cora-message-handler-", 0).factory();
+
+	/**
+	 * @param messageReceiver
+	 *            The MessageReceiver to hand messages to
+	 * @param maxConcurrentHandlers
+	 *            An int with the maximum number of messages handled at the same time
+	 */
+	public VirtualThreadMessageDispatcher(MessageReceiver messageReceiver,
+			int maxConcurrentHandlers) {
+		this.messageReceiver = messageReceiver;
+		this.maxConcurrentHandlers = maxConcurrentHandlers;
+		handlerPermits = new Semaphore(maxConcurrentHandlers);
+	}
+
+	@Override
+	public void receiveMessage(Map<String, String> headers, String message) {
+		dispatch(() -> messageReceiver.receiveMessage(headers, message));
+	}
+
+	@Override
+	public void receiveMessageUsingHeaders(MessageHeaders headers, String message) {
+		dispatch(() -> messageReceiver.receiveMessageUsingHeaders(headers, message));
+	}
+
+	/**
+	 * receiveBinaryMessage copies the message body, as the listener may reuse the buffer when this
+	 * call returns, and hands the copy to the decorated MessageReceiver.
+	 */
+	@Override
+	public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+		ByteBuffer copy = copyOf(message);
+		dispatch(() -> messageReceiver.receiveBinaryMessage(headers, copy));
+	}
+
+	static ByteBuffer copyOf(ByteBuffer message) {
+		ByteBuffer copy = ByteBuffer.allocate(message.remaining());
+		copy.put(message.duplicate()).flip();
+		return copy.asReadOnlyBuffer();
+	}
+
+	private void dispatch(Runnable handling) {
+		acquireHandlerPermit();
+		try {
+			handlerThreadFactory.newThread(() -> handleAndReleasePermit(handling)).start();
+		} catch (RuntimeException e) {
+			handlerPermits.release();
+			throw e;
+		}
+	}
+
+	private void acquireHandlerPermit() {
+		try {
+			handlerPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a free message handler",
+					e);
+		}
+	}
+
+	private void handleAndReleasePermit(Runnable handling) {
+		try {
+			handling.run();
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("Message handler failed", e);
+		} finally {
+			handlerPermits.release();
+		}
+	}
+
+	@Override
+	public void topicClosed() {
+		messageReceiver.topicClosed();
+	}
+
+	/**
+	 * @return An int with the number of messages currently being handled
+	 */
+	public int getNumberOfRunningHandlers() {
+		return maxConcurrentHandlers - handlerPermits.availablePermits();
+	}
+}
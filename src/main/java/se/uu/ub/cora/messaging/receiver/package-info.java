@@ -0,0 +1,7 @@
+/**
+ * The receiver package contains helpers for delivering messages to a
+ * {@link se.uu.ub.cora.messaging.MessageReceiver}, intended to be used by
+ * {@link se.uu.ub.cora.messaging.MessageListener} implementations and by applications wrapping
+ * their MessageReceivers.
+ */
+package se.uu.ub.cora.messaging.receiver;
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+
+/**
+ * BatchingMessageSender is a {@link MessageSender} that collects messages and sends them as a batch
+ * through {@link MessageSender#sendMessages(List)} on the decorated MessageSender.
+ * <p>
+ * A batch is sent when it holds maxMessages messages, when the bodies of its messages together
+ * hold at least maxBytes bytes (UTF-8 encoded) or when lingerTime has passed since the first
+ * message was added to the batch, whichever happens first. No batch sent holds more messages or
+ * bytes than that, if more messages are collected they are sent as several batches.
+ * <p>
+ * Batches are sent outside the lock used when adding messages, so callers adding messages are not
+ * blocked while a batch is sent, only callers that send a batch wait for each other, which keeps
+ * batches in order.
+ * <p>
+ * If sending a batch fails when it is sent from a call to sendMessage, sendMessages, flush or
+ * sendBinaryMessage, the exception is thrown to that caller. If it fails when it is sent after
+ * lingerTime, the error is logged. In both cases the messages in the failed batch are put back
+ * first among the collected messages, and are sent again with them. An exception from sendMessage
+ * does therefore not mean that the message is dropped.
+ * <p>
+ * At most maxHeldMessages messages, including the ones being sent, are held. When that many are
+ * held, for instance while the messaging server is down, sendMessage and sendMessages throw a
+ * {@link MessagingException} and the message is not added.
+ * <p>
+ * Messages are sent at least once. If the decorated MessageSender does not override sendMessages,
+ * a batch is sent one message at a time, and if sending fails part way through the batch, the
+ * messages sent before the failure are sent again with the rest of the batch.
+ */
+public class BatchingMessageSender extends HoldingMessageSender {
+	private final int maxMessages;
+	private final long maxBytes;
+	private final ArrayDeque<HeldMessage> held = new ArrayDeque<>();
+	private long heldBytes = 0;
+
+	/**
+	 * @param messageSender
+	 *            The MessageSender to send batches through
+	 * @param maxMessages
+	 *            An int with the maximum number of messages in a batch
+	 * @param maxBytes
+	 *            A long with the number of body bytes that triggers sending of a batch
+	 * @param lingerTime
+	 *            A Duration with the maximum time a message waits in a batch before it is sent
+	 * @param maxHeldMessages
+	 *            An int with the maximum number of messages to hold, at least maxMessages
+	 */
+	public BatchingMessageSender(MessageSender messageSender, int maxMessages, long maxBytes,
+			Duration lingerTime, int maxHeldMessages) {
+		super(messageSender, maxMessages, lingerTime, maxHeldMessages, "cora-batching-sender");
+		this.maxMessages = maxMessages;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Creates a BatchingMessageSender holding at most 16 batches of maxMessages messages.
+	 * 
+	 * @see #BatchingMessageSender(MessageSender, int, long, Duration, int)
+	 */
+	public BatchingMessageSender(MessageSender messageSender, int maxMessages, long maxBytes,
+			Duration lingerTime) {
+		this(messageSender, maxMessages, maxBytes, lingerTime,
+				defaultMaxHeldMessages(maxMessages));
+	}
+
+	@Override
+	boolean hold(OutgoingMessage outgoingMessage) {
+		HeldMessage heldMessage = new HeldMessage(outgoingMessage);
+		held.add(heldMessage);
+		heldBytes += heldMessage.bytes;
+		return held.size() >= maxMessages || heldBytes >= maxBytes;
+	}
+
+	@Override
+	int getNumberOfHeldMessages() {
+		return held.size();
+	}
+
+	@Override
+	List<OutgoingMessage> takeBatch() {
+		List<OutgoingMessage> batchToSend = new ArrayList<>(Math.min(maxMessages, held.size()));
+		long batchBytes = 0;
+		while (!held.isEmpty() && batchToSend.size() < maxMessages && batchBytes < maxBytes) {
+			HeldMessage heldMessage = held.poll();
+			batchToSend.add(heldMessage.message);
+			batchBytes += heldMessage.bytes;
+		}
+		heldBytes -= batchBytes;
+		return batchToSend;
+	}
+
+	@Override
+	void putBackFirst(List<OutgoingMessage> failedBatch) {
+		for (int i = failedBatch.size() - 1; i >= 0; i--) {
+			HeldMessage heldMessage = new HeldMessage(failedBatch.get(i));
+			held.addFirst(heldMessage);
+			heldBytes += heldMessage.bytes;
+		}
+	}
+
+	private static final class HeldMessage {
+		private final OutgoingMessage message;
+		private final long bytes;
+
+		private HeldMessage(OutgoingMessage message) {
+			this.message = message;
+			this.bytes = utf8Length(message.message);
+		}
+	}
+
+	private static long utf8Length(String message) {
+		if (null == message) {
+			return 0;
+		}
+		long length = 0;
+		for (int i = 0; i < message.length(); i++) {
+			char character = message.charAt(i);
+			if (character < 0x80) {
+				length++;
+			} else if (character < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(character)) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+
+/**
+ * CircuitBreakingMessageSender is a {@link MessageSender} that stops sending through the decorated
+ * MessageSender while it is failing, so that callers are not held up waiting for timeouts from a
+ * broker in trouble.
+ * <p>
+ * Sends are counted over a sliding window. A send that throws an exception, or that takes longer
+ * than slowCallDuration, counts as a failure. When at least minimumNumberOfCalls sends have been
+ * made within the window and failureRatePercent of them have failed, the circuit opens. While it is
+ * open messages are not sent through the decorated MessageSender, they are handed to the fallback
+ * MessageSender, such as an {@link OutboxMessageSender}, or if there is no fallback a
+ * {@link MessagingException} is thrown at once. A fallback that does nothing drops the messages,
+ * they are still counted by {@link #getNumberOfRejectedMessages()}.
+ * <p>
+ * When openDuration has passed the circuit is half open, and messages are sent through the
+ * decorated MessageSender one at a time as probes while other messages are still rejected. After
+ * {@value #SUCCESSFUL_PROBES_TO_CLOSE} successful probes in a row the circuit closes, a failed
+ * probe opens it again.
+ * <p>
+ * Exceptions from sends through the decorated MessageSender are thrown to the caller as they are.
+ * The state and the window are only updated using compare-and-set, sends while the circuit is
+ * closed take no lock.
+ */
+public final class CircuitBreakingMessageSender implements MessageSender {
+	/**
+	 * The number of successful probes in a row needed to close a half open circuit
+	 */
+	public static final int SUCCESSFUL_PROBES_TO_CLOSE = 3;
+	private static final int CIRCUIT_CLOSED = 0;
+	private static final int CIRCUIT_OPEN = 1;
+	private static final int CIRCUIT_HALF_OPEN = 2;
+	private static final int CIRCUIT_PROBING = 3;
+
+	/**
+	 * State is the state of the circuit
+	 */
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private Logger log = LoggerProvider.getLoggerForClass(CircuitBreakingMessageSender.class);
+	private final MessageSender messageSender;
+	private final MessageSender fallbackSender;
+	private final int minimumNumberOfCalls;
+	private final int failureRatePercent;
+	private final long slowCallNanos;
+	private final long openNanos;
+	private final LongSupplier nanoClock;
+	private final SlidingFailureWindow window;
+	private final AtomicInteger state = new AtomicInteger(CIRCUIT_CLOSED);
+	private final AtomicInteger successfulProbes = new AtomicInteger();
+	private final LongAdder rejectedMessages = new LongAdder();
+	private volatile long openUntilNanos;
+
+	/**
+	 * @param messageSender
+	 *            The MessageSender to send messages through while the circuit is closed
+	 * @param fallbackSender
+	 *            The MessageSender to send messages through while the circuit is open, or null to
+	 *            throw a MessagingException
+	 * @param window
+	 *            A Duration with the time sends are counted over
+	 * @param minimumNumberOfCalls
+	 *            An int with the least number of sends within the window before the circuit can
+	 *            open
+	 * @param failureRatePercent
+	 *            An int with the percentage of failed sends within the window that opens the
+	 *            circuit
+	 * @param slowCallDuration
+	 *            A Duration with the time after which a send counts as failed even if it succeeds
+	 * @param openDuration
+	 *            A Duration with how long the circuit stays open before probes are sent
+	 */
+	public CircuitBreakingMessageSender(MessageSender messageSender, MessageSender fallbackSender,
+			Duration window, int minimumNumberOfCalls, int failureRatePercent,
+			Duration slowCallDuration, Duration openDuration) {
+		this(messageSender, fallbackSender, window, minimumNumberOfCalls, failureRatePercent,
+				slowCallDuration, openDuration, System::nanoTime);
+	}
+
+	CircuitBreakingMessageSender(MessageSender messageSender, MessageSender fallbackSender,
+			Duration window, int minimumNumberOfCalls, int failureRatePercent,
+			Duration slowCallDuration, Duration openDuration, LongSupplier nanoClock) {
+		if (minimumNumberOfCalls < 1) {
+			throw new IllegalArgumentException(
+					"minimumNumberOfCalls must be at least 1, was " + minimumNumberOfCalls);
+		}
+		if (failureRatePercent < 1 || failureRatePercent > 100) {
+			throw new IllegalArgumentException(
+					"failureRatePercent must be between 1 and 100, was " + failureRatePercent);
+		}
+		this.messageSender = messageSender;
+		this.fallbackSender = fallbackSender;
+		this.minimumNumberOfCalls = minimumNumberOfCalls;
+		this.failureRatePercent = failureRatePercent;
+		this.slowCallNanos = slowCallDuration.toNanos();
+		this.openNanos = openDuration.toNanos();
+		this.nanoClock = nanoClock;
+		this.window = new SlidingFailureWindow(window.toNanos());
+	}
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		send(() -> messageSender.sendMessage(headers, message),
+				() -> fallbackSender.sendMessage(headers, message));
+	}
+
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		send(() -> messageSender.sendBinaryMessage(headers, message),
+				() -> fallbackSender.sendBinaryMessage(headers, message));
+	}
+
+	@Override
+	public boolean supportsBinaryMessages() {
+		return messageSender.supportsBinaryMessages()
+				&& (null == fallbackSender || fallbackSender.supportsBinaryMessages());
+	}
+
+	/**
+	 * sendMessages counts the batch as one send
+	 */
+	@Override
+	public void sendMessages(List<OutgoingMessage> messages) {
+		send(() -> messageSender.sendMessages(messages),
+				() -> fallbackSender.sendMessages(messages));
+	}
+
+	private void send(Runnable send, Runnable fallback) {
+		int currentState = state.get();
+		if (currentState == CIRCUIT_CLOSED) {
+			sendAndRecord(send);
+		} else if (tryToStartProbe(currentState)) {
+			sendProbe(send);
+		} else {
+			reject(fallback);
+		}
+	}
+
+	private boolean tryToStartProbe(int currentState) {
+		if (currentState == CIRCUIT_OPEN && isOpenDurationPassed()) {
+			return state.compareAndSet(CIRCUIT_OPEN, CIRCUIT_PROBING);
+		}
+		return currentState == CIRCUIT_HALF_OPEN
+				&& state.compareAndSet(CIRCUIT_HALF_OPEN, CIRCUIT_PROBING);
+	}
+
+	private boolean isOpenDurationPassed() {
+		return nanoClock.getAsLong() - openUntilNanos >= 0;
+	}
+
+	private void sendAndRecord(Runnable send) {
+		long start = nanoClock.getAsLong();
+		try {
+			send.run();
+		} catch (RuntimeException e) {
+			recordFailure(nanoClock.getAsLong());
+			throw e;
+		}
+		long end = nanoClock.getAsLong();
+		if (end - start > slowCallNanos) {
+			recordFailure(end);
+		} else {
+			window.recordSuccess(end);
+		}
+	}
+
+	private void recordFailure(long now) {
+		window.recordFailure(now);
+		long calls = window.getNumberOfCalls(now);
+		if (calls >= minimumNumberOfCalls
+				&& window.getNumberOfFailures(now) * 100 >= calls * failureRatePercent) {
+			open(CIRCUIT_CLOSED, now);
+		}
+	}
+
+	private void open(int fromState, long now) {
+		if (state.get() != fromState) {
+			return;
+		}
+		openUntilNanos = now + openNanos;
+		if (state.compareAndSet(fromState, CIRCUIT_OPEN)) {
+			successfulProbes.set(0);
+			log.logWarnUsingMessage("Circuit opened, messages are not sent for "
+					+ Duration.ofNanos(openNanos));
+		}
+	}
+
+	/**
+	 * sendProbe ends the probe in finally, so that the circuit always leaves the probing state,
+	 * also when sending throws an Error.
+	 */
+	private void sendProbe(Runnable send) {
+		long start = nanoClock.getAsLong();
+		boolean sent = false;
+		try {
+			send.run();
+			sent = true;
+		} finally {
+			endProbe(start, sent);
+		}
+	}
+
+	private void endProbe(long start, boolean sent) {
+		long end = nanoClock.getAsLong();
+		if (sent && end - start <= slowCallNanos) {
+			endSuccessfulProbe();
+		} else {
+			open(CIRCUIT_PROBING, end);
+		}
+	}
+
+	private void endSuccessfulProbe() {
+		if (successfulProbes.incrementAndGet() >= SUCCESSFUL_PROBES_TO_CLOSE) {
+			window.reset();
+			state.set(CIRCUIT_CLOSED);
+			log.logInfoUsingMessage("Circuit closed, messages are sent again");
+		} else {
+			state.set(CIRCUIT_HALF_OPEN);
+		}
+	}
+
+	private void reject(Runnable fallback) {
+		rejectedMessages.increment();
+		if (null == fallbackSender) {
+			throw new MessagingException("Circuit is open, message is not sent");
+		}
+		fallback.run();
+	}
+
+	/**
+	 * Returns the current state of the circuit.
+	 */
+	public State getState() {
+		return switch (state.get()) {
+			case CIRCUIT_CLOSED -> State.CLOSED;
+			case CIRCUIT_OPEN -> isOpenDurationPassed() ? State.HALF_OPEN : State.OPEN;
+			default -> State.HALF_OPEN;
+		};
+	}
+
+	/**
+	 * Returns the number of messages, or batches, not sent through the decorated MessageSender
+	 * because the circuit was open.
+	 */
+	public long getNumberOfRejectedMessages() {
+		return rejectedMessages.sum();
+	}
+
+	/**
+	 * close closes the decorated MessageSender, the fallback MessageSender is not closed.
+	 */
+	@Override
+	public void close() {
+		messageSender.close();
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+
+/**
+ * ConflatingMessageSender is a {@link MessageSender} that holds messages for a time window and
+ * replaces a held message by a later message with the same key, so that only the latest version
+ * of for instance a record updated many times in a row is sent.
+ * <p>
+ * The key of a message is the values of its keyHeaderNames headers, for instance
+ * {@link MessageHeaders#RECORD_TYPE} and {@link MessageHeaders#RECORD_ID}. A message replacing a
+ * held one takes its place, so messages are sent in the order their keys were first seen.
+ * Messages missing any of the key headers are never replaced. Held messages are sent through
+ * {@link MessageSender#sendMessages(List)}, in batches of at most maxPendingMessages messages,
+ * when window has passed since the first of them was held, when maxPendingMessages are held or
+ * when {@link #flush()} is called.
+ * <p>
+ * Messages sent using sendBinaryMessage are not conflated, held messages are sent before them to
+ * keep the order.
+ * <p>
+ * Failed batches are held again, before messages held while sending, and conflated with them.
+ * At most maxHeldMessages messages, including the ones being sent, are held. When that many are
+ * held, a message that does not replace a held message is refused with a
+ * {@link MessagingException}, and counted as rejected.
+ */
+public class ConflatingMessageSender extends HoldingMessageSender {
+	private final List<String> keyHeaderNames;
+	private final int maxPendingMessages;
+	private final LongAdder receivedMessages = new LongAdder();
+	private final LongAdder conflatedMessages = new LongAdder();
+	private LinkedHashMap<Object, OutgoingMessage> pending = new LinkedHashMap<>();
+
+	/**
+	 * @param messageSender
+	 *            The MessageSender to send conflated messages through
+	 * @param keyHeaderNames
+	 *            A List with the names of the headers whose values together are the key of a
+	 *            message
+	 * @param maxPendingMessages
+	 *            An int with the number of held messages that triggers sending, and the maximum
+	 *            number of messages in a batch
+	 * @param window
+	 *            A Duration with the maximum time a message is held before it is sent
+	 * @param maxHeldMessages
+	 *            An int with the maximum number of messages to hold, at least maxPendingMessages
+	 */
+	public ConflatingMessageSender(MessageSender messageSender, List<String> keyHeaderNames,
+			int maxPendingMessages, Duration window, int maxHeldMessages) {
+		super(messageSender, maxPendingMessages, window, maxHeldMessages,
+				"cora-conflating-sender");
+		if (maxPendingMessages < 1) {
+			throw new IllegalArgumentException(
+					"maxPendingMessages must be at least 1, was " + maxPendingMessages);
+		}
+		this.keyHeaderNames = List.copyOf(keyHeaderNames);
+		this.maxPendingMessages = maxPendingMessages;
+	}
+
+	/**
+	 * Creates a ConflatingMessageSender holding at most 16 batches of maxPendingMessages
+	 * messages.
+	 * 
+	 * @see #ConflatingMessageSender(MessageSender, List, int, Duration, int)
+	 */
+	public ConflatingMessageSender(MessageSender messageSender, List<String> keyHeaderNames,
+			int maxPendingMessages, Duration window) {
+		this(messageSender, keyHeaderNames, maxPendingMessages, window,
+				defaultMaxHeldMessages(maxPendingMessages));
+	}
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		receivedMessages.increment();
+		super.sendMessage(headers, message);
+	}
+
+	@Override
+	public void sendMessages(List<OutgoingMessage> messages) {
+		receivedMessages.add(messages.size());
+		super.sendMessages(messages);
+	}
+
+	@Override
+	boolean replacesHeldMessage(OutgoingMessage outgoingMessage) {
+		return pending.containsKey(createKey(outgoingMessage.headers));
+	}
+
+	@Override
+	boolean hold(OutgoingMessage outgoingMessage) {
+		if (null != pending.put(createKey(outgoingMessage.headers), outgoingMessage)) {
+			conflatedMessages.increment();
+		}
+		return pending.size() >= maxPendingMessages;
+	}
+
+	private Object createKey(Map<String, Object> headers) {
+		if (null == headers) {
+			return new Object();
+		}
+		List<Object> key = new ArrayList<>(keyHeaderNames.size());
+		for (String keyHeaderName : keyHeaderNames) {
+			Object value = headers.get(keyHeaderName);
+			if (null == value) {
+				return new Object();
+			}
+			key.add(value);
+		}
+		return key;
+	}
+
+	@Override
+	int getNumberOfHeldMessages() {
+		return pending.size();
+	}
+
+	@Override
+	List<OutgoingMessage> takeBatch() {
+		List<OutgoingMessage> batchToSend = new ArrayList<>(
+				Math.min(maxPendingMessages, pending.size()));
+		Iterator<OutgoingMessage> heldMessages = pending.values().iterator();
+		while (heldMessages.hasNext() && batchToSend.size() < maxPendingMessages) {
+			batchToSend.add(heldMessages.next());
+			heldMessages.remove();
+		}
+		return batchToSend;
+	}
+
+	@Override
+	void putBackFirst(List<OutgoingMessage> failedBatch) {
+		LinkedHashMap<Object, OutgoingMessage> heldAgain = new LinkedHashMap<>();
+		for (OutgoingMessage outgoingMessage : failedBatch) {
+			heldAgain.put(createKey(outgoingMessage.headers), outgoingMessage);
+		}
+		for (Map.Entry<Object, OutgoingMessage> heldEntry : pending.entrySet()) {
+			if (null != heldAgain.put(heldEntry.getKey(), heldEntry.getValue())) {
+				conflatedMessages.increment();
+			}
+		}
+		pending = heldAgain;
+	}
+
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		receivedMessages.increment();
+		super.sendBinaryMessage(headers, message);
+	}
+
+	/**
+	 * Returns the number of messages given to this sender.
+	 */
+	public long getNumberOfReceivedMessages() {
+		return receivedMessages.sum();
+	}
+
+	/**
+	 * Returns the number of messages replaced by a later message with the same key, and therefore
+	 * not sent.
+	 */
+	public long getNumberOfConflatedMessages() {
+		return conflatedMessages.sum();
+	}
+
+	/**
+	 * Returns the share of received messages that were replaced by a later message, 0 if no
+	 * messages have been received.
+	 */
+	public double getConflationRate() {
+		long received = receivedMessages.sum();
+		return received == 0 ? 0 : (double) conflatedMessages.sum() / received;
+	}
+}
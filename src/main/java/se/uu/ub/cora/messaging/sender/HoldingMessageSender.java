@@ -0,0 +1,256 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+
+/**
+ * HoldingMessageSender holds messages and sends them in batches through
+ * {@link MessageSender#sendMessages(List)} on the decorated MessageSender, when the held messages
+ * fill a batch, when maxHoldTime has passed since the first of them was held, when
+ * {@link #flush()} is called or when the sender is closed. Subclasses decide how messages are held
+ * and what goes into each batch.
+ * <p>
+ * Batches are sent one at a time under a send lock, outside the lock used when holding messages.
+ * The messages in a batch that fails are put back first among the held messages and the exception
+ * is thrown to the caller, or logged if the batch was sent after maxHoldTime. At most
+ * maxHeldMessages messages, including the ones being sent, are held, new messages are refused with
+ * a {@link MessagingException} when that many are held.
+ */
+abstract class HoldingMessageSender implements MessageSender {
+	private static final int DEFAULT_MAX_HELD_BATCHES = 16;
+	private Logger log = LoggerProvider.getLoggerForClass(getClass());
+	private final MessageSender messageSender;
+	private final long maxHoldNanos;
+	private final int maxHeldMessages;
+	private final ScheduledExecutorService holdTimer;
+	private final Object sendLock = new Object();
+	private final LongAdder rejectedMessages = new LongAdder();
+	private int messagesBeingSent = 0;
+	private ScheduledFuture<?> scheduledFlush;
+
+	HoldingMessageSender(MessageSender messageSender, int messagesPerBatch, Duration maxHoldTime,
+			int maxHeldMessages, String timerThreadName) {
+		if (maxHeldMessages < messagesPerBatch) {
+			throw new IllegalArgumentException("maxHeldMessages must be at least "
+					+ messagesPerBatch + ", was " + maxHeldMessages);
+		}
+		this.messageSender = messageSender;
+		this.maxHoldNanos = maxHoldTime.toNanos();
+		this.maxHeldMessages = maxHeldMessages;
+		holdTimer = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name(timerThreadName).daemon().factory());
+	}
+
+	static int defaultMaxHeldMessages(int messagesPerBatch) {
+		long maxHeldMessages = (long) DEFAULT_MAX_HELD_BATCHES * messagesPerBatch;
+		return (int) Math.min(Integer.MAX_VALUE, maxHeldMessages);
+	}
+
+	/**
+	 * Holds the message, called while holding the lock of this sender.
+	 * 
+	 * @return A boolean, true if the held messages fill a batch and should be sent
+	 */
+	abstract boolean hold(OutgoingMessage outgoingMessage);
+
+	/**
+	 * Returns true if the message replaces a held message when held, and therefore does not add to
+	 * the number of held messages. Called while holding the lock of this sender.
+	 */
+	boolean replacesHeldMessage(OutgoingMessage outgoingMessage) {
+		return false;
+	}
+
+	/**
+	 * Returns the number of held messages, called while holding the lock of this sender.
+	 */
+	abstract int getNumberOfHeldMessages();
+
+	/**
+	 * Removes the first held messages, at most one batch, and returns them. Called while holding
+	 * the lock of this sender.
+	 */
+	abstract List<OutgoingMessage> takeBatch();
+
+	/**
+	 * Puts the messages of a batch that failed back first among the held messages. Called while
+	 * holding the lock of this sender.
+	 */
+	abstract void putBackFirst(List<OutgoingMessage> failedBatch);
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		holdAndSendIfFull(new OutgoingMessage(headers, message));
+	}
+
+	@Override
+	public void sendMessages(List<OutgoingMessage> messages) {
+		for (OutgoingMessage outgoingMessage : messages) {
+			holdAndSendIfFull(outgoingMessage);
+		}
+	}
+
+	private void holdAndSendIfFull(OutgoingMessage outgoingMessage) {
+		if (holdAndCheckIfFull(outgoingMessage)) {
+			flush();
+		}
+	}
+
+	private synchronized boolean holdAndCheckIfFull(OutgoingMessage outgoingMessage) {
+		if (getNumberOfHeldMessages() + messagesBeingSent >= maxHeldMessages
+				&& !replacesHeldMessage(outgoingMessage)) {
+			rejectedMessages.increment();
+			throw new MessagingException(getClass().getSimpleName()
+					+ " holds the maximum number of messages, " + maxHeldMessages
+					+ ", message not added");
+		}
+		if (null == scheduledFlush) {
+			scheduleFlush();
+		}
+		return hold(outgoingMessage);
+	}
+
+	private void scheduleFlush() {
+		scheduledFlush = holdTimer.schedule(this::flushAfterMaxHoldTime, maxHoldNanos,
+				TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * sendBinaryMessage sends the currently held messages and then the binary message, so that the
+	 * binary message is not sent before messages given to this sender before it.
+	 */
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		synchronized (sendLock) {
+			flush();
+			messageSender.sendBinaryMessage(headers, message);
+		}
+	}
+
+	@Override
+	public boolean supportsBinaryMessages() {
+		return messageSender.supportsBinaryMessages();
+	}
+
+	/**
+	 * flush sends the currently held messages, if any, without waiting for a batch to fill up or
+	 * for the hold time to pass. Messages held while flush sends are left for later.
+	 */
+	public void flush() {
+		synchronized (sendLock) {
+			try {
+				sendHeldBatches();
+			} finally {
+				rescheduleFlush();
+			}
+		}
+	}
+
+	private void sendHeldBatches() {
+		int messagesLeftToSend = getNumberOfHeldMessagesWhileLocked();
+		while (messagesLeftToSend > 0) {
+			List<OutgoingMessage> batchToSend = takeBatchToSend();
+			messagesLeftToSend -= batchToSend.size();
+			sendBatchOrPutItBack(batchToSend);
+		}
+	}
+
+	private synchronized int getNumberOfHeldMessagesWhileLocked() {
+		return getNumberOfHeldMessages();
+	}
+
+	private synchronized List<OutgoingMessage> takeBatchToSend() {
+		List<OutgoingMessage> batchToSend = takeBatch();
+		messagesBeingSent = batchToSend.size();
+		return batchToSend;
+	}
+
+	private void sendBatchOrPutItBack(List<OutgoingMessage> batchToSend) {
+		try {
+			messageSender.sendMessages(batchToSend);
+		} catch (RuntimeException e) {
+			putBackFailedBatch(batchToSend);
+			throw e;
+		} finally {
+			markBatchAsSent();
+		}
+	}
+
+	private synchronized void putBackFailedBatch(List<OutgoingMessage> failedBatch) {
+		putBackFirst(failedBatch);
+	}
+
+	private synchronized void markBatchAsSent() {
+		messagesBeingSent = 0;
+	}
+
+	private synchronized void rescheduleFlush() {
+		if (null != scheduledFlush) {
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		if (getNumberOfHeldMessages() > 0) {
+			scheduleFlush();
+		}
+	}
+
+	private void flushAfterMaxHoldTime() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("Failed to send held messages", e);
+		}
+	}
+
+	/**
+	 * Returns the number of messages refused because maxHeldMessages messages were held.
+	 */
+	public long getNumberOfRejectedMessages() {
+		return rejectedMessages.sum();
+	}
+
+	/**
+	 * close sends the currently held messages, stops the hold timer and closes the decorated
+	 * MessageSender.
+	 */
+	@Override
+	public void close() {
+		try {
+			flush();
+		} finally {
+			holdTimer.shutdownNow();
+			messageSender.close();
+		}
+	}
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import se.uu.ub.cora.logger.Logger;
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingException;
+
+/**
+ * OutboxMessageSender is a {@link MessageSender} that writes messages to a local outbox on disk and
+ * returns, while a background thread sends them through the decorated MessageSender. Calls to
+ * sendMessage are therefore not slowed down, and messages are not lost, when the messaging server
+ * is slow or unavailable.
+ * <p>
+ * The outbox is a directory of memory mapped segment files of segmentSize bytes. Messages are sent
+ * in the order they were written. A message that fails to send is retried, first after retryDelay
+ * and then with the delay doubled for each failure up to 64 times retryDelay, before any later
+ * message is sent. After maxSendAttempts failed attempts the message is sent to the
+ * deadLetterSender, with the headers {@link MessageHeaders#RETRY_ATTEMPT},
+ * {@link MessageHeaders#LAST_ERROR} and {@link MessageHeaders#DEAD_LETTER_REASON} added, and the
+ * next message is sent. Without a deadLetterSender, or if sending to it fails, the message is
+ * logged as lost and skipped. A segment file is deleted once all its messages are sent.
+ * <p>
+ * The outbox holds at most maxUnsentMessages unsent messages, when it is full sendMessage throws
+ * a {@link MessagingException}, so that a messaging server being unavailable for a long time
+ * does not fill up the disk. Messages left in the
+ * outbox when the sender is closed, or when the JVM stops, are sent by the next
+ * OutboxMessageSender using the same directory, so a message can be sent more than once.
+ * <p>
+ * Written messages survive the JVM stopping at once. To also survive the machine stopping, changed
+ * segments are forced to disk every syncInterval, one sync for all messages written during the
+ * interval. With a syncInterval of Duration.ZERO each message is forced to disk before sendMessage
+ * returns.
+ * <p>
+ * Header values must be of type String, Integer, Long, Double, Boolean or byte[].
+ */
+public final class OutboxMessageSender implements MessageSender {
+	/**
+	 * The {@link MessageHeaders#DEAD_LETTER_REASON} of messages that failed maxSendAttempts times
+	 */
+	public static final String MAX_ATTEMPTS_REACHED = "maxAttemptsReached";
+	private static final int MAX_RETRY_DELAY_FACTOR = 64;
+	private static final long CLOSE_TIMEOUT_MILLIS = 10_000;
+	private static final String LOCK_FILE_NAME = "outbox.lock";
+	private Logger log = LoggerProvider.getLoggerForClass(OutboxMessageSender.class);
+	private final MessageSender messageSender;
+	private final MessageSender deadLetterSender;
+	private final Path directory;
+	private final int segmentSize;
+	private final long retryDelayNanos;
+	private final boolean syncEachMessage;
+	private final int maxSendAttempts;
+	private final int maxUnsentMessages;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition messageWritten = lock.newCondition();
+	private final ArrayDeque<OutboxSegment> segments = new ArrayDeque<>();
+	private final Set<OutboxSegment> unsyncedSegments = new LinkedHashSet<>();
+	private final FileChannel lockFileChannel;
+	private final FileLock directoryLock;
+	private final Optional<ScheduledExecutorService> syncTimer;
+	private final Thread drainer;
+	private int readOffset = 0;
+	private int unsentMessages;
+	private boolean drainerStopped = false;
+	private boolean releaseDirectoryWhenDrainerStops = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param messageSender
+	 *            The MessageSender to send messages from the outbox through
+	 * @param deadLetterSender
+	 *            The MessageSender to send messages that failed maxSendAttempts times to, or null
+	 *            to skip them
+	 * @param directory
+	 *            A Path to the directory holding the outbox, created if missing. The directory can
+	 *            only be used by one OutboxMessageSender at a time.
+	 * @param segmentSize
+	 *            An int with the size in bytes of each segment file, the largest message that can
+	 *            be written is slightly smaller
+	 * @param syncInterval
+	 *            A Duration with the interval between forcing written messages to disk, or
+	 *            Duration.ZERO to force each message before sendMessage returns
+	 * @param retryDelay
+	 *            A Duration with the delay before the first retry of a message that failed to send
+	 * @param maxSendAttempts
+	 *            An int with the number of times a message is tried before it is sent to the
+	 *            deadLetterSender
+	 * @param maxUnsentMessages
+	 *            An int with the maximum number of unsent messages the outbox can hold
+	 * @throws MessagingException
+	 *             if the outbox directory can not be opened
+	 */
+	public OutboxMessageSender(MessageSender messageSender, MessageSender deadLetterSender,
+			Path directory, int segmentSize, Duration syncInterval, Duration retryDelay,
+			int maxSendAttempts, int maxUnsentMessages) {
+		throwErrorIfInvalid(segmentSize, maxSendAttempts, maxUnsentMessages);
+		this.messageSender = messageSender;
+		this.deadLetterSender = deadLetterSender;
+		this.maxSendAttempts = maxSendAttempts;
+		this.maxUnsentMessages = maxUnsentMessages;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.retryDelayNanos = retryDelay.toNanos();
+		this.syncEachMessage = syncInterval.isZero();
+		try {
+			Files.createDirectories(directory);
+			lockFileChannel = FileChannel.open(directory.resolve(LOCK_FILE_NAME),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			directoryLock = lockDirectory();
+			openSegments();
+			unsentMessages = countUnsentMessages();
+		} catch (IOException e) {
+			throw new MessagingException("Could not open outbox in " + directory, e);
+		}
+		syncTimer = startSyncTimerUnlessSyncingEachMessage(syncInterval);
+		drainer = Thread.ofPlatform().name("cora-outbox-drainer").daemon().start(this::drain);
+	}
+
+	private static void throwErrorIfInvalid(int segmentSize, int maxSendAttempts,
+			int maxUnsentMessages) {
+		if (segmentSize <= OutboxSegment.RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException("segmentSize must be at least "
+					+ (OutboxSegment.RECORD_HEADER_SIZE + 1) + ", was " + segmentSize);
+		}
+		if (maxSendAttempts < 1) {
+			throw new IllegalArgumentException(
+					"maxSendAttempts must be at least 1, was " + maxSendAttempts);
+		}
+		if (maxUnsentMessages < 1) {
+			throw new IllegalArgumentException(
+					"maxUnsentMessages must be at least 1, was " + maxUnsentMessages);
+		}
+	}
+
+	private FileLock lockDirectory() throws IOException {
+		FileLock fileLock = tryLockOrNullIfLockedInThisJvm();
+		if (null == fileLock) {
+			lockFileChannel.close();
+			throw new MessagingException(
+					"Outbox in " + directory + " is used by another OutboxMessageSender");
+		}
+		return fileLock;
+	}
+
+	private FileLock tryLockOrNullIfLockedInThisJvm() throws IOException {
+		try {
+			return lockFileChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			return null;
+		}
+	}
+
+	private void openSegments() throws IOException {
+		for (Path segmentFile : listSegmentFilesInOrder()) {
+			segments.addLast(OutboxSegment.open(segmentFile, segmentSize));
+		}
+		if (segments.isEmpty()) {
+			segments.addLast(OutboxSegment.create(directory, 0, segmentSize));
+		}
+	}
+
+	private List<Path> listSegmentFilesInOrder() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(OutboxSegment::isSegmentFile)
+					.sorted(Comparator.comparingLong(OutboxSegment::readSequence)).toList();
+		}
+	}
+
+	private Optional<ScheduledExecutorService> startSyncTimerUnlessSyncingEachMessage(
+			Duration syncInterval) {
+		if (syncEachMessage) {
+			return Optional.empty();
+		}
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+				Thread.ofPlatform().name("cora-outbox-sync").daemon().factory());
+		long intervalNanos = syncInterval.toNanos();
+		timer.scheduleWithFixedDelay(this::syncFromTimer, intervalNanos, intervalNanos,
+				TimeUnit.NANOSECONDS);
+		return Optional.of(timer);
+	}
+
+	private void syncFromTimer() {
+		try {
+			sync();
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException("Failed to sync outbox in " + directory, e);
+		}
+	}
+
+	@Override
+	public void sendMessage(Map<String, Object> headers, String message) {
+		write(OutboxRecord.text(headers, message));
+	}
+
+	@Override
+	public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+		write(OutboxRecord.binary(headers, message));
+	}
+
+	@Override
+	public boolean supportsBinaryMessages() {
+		return messageSender.supportsBinaryMessages();
+	}
+
+	private void write(OutboxRecord outboxRecord) {
+		byte[] payload = outboxRecord.encode();
+		throwErrorIfLargerThanSegment(payload);
+		OutboxSegment writtenSegment = writeToSegment(payload);
+		if (syncEachMessage) {
+			writtenSegment.force();
+		}
+	}
+
+	private void throwErrorIfLargerThanSegment(byte[] payload) {
+		if (OutboxSegment.RECORD_HEADER_SIZE + payload.length > segmentSize) {
+			throw new IllegalArgumentException("Message of " + payload.length
+					+ " bytes does not fit in outbox segment of " + segmentSize + " bytes");
+		}
+	}
+
+	private OutboxSegment writeToSegment(byte[] payload) {
+		lock.lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("OutboxMessageSender is closed");
+			}
+			throwErrorIfFull();
+			OutboxSegment segment = getSegmentWithRoomFor(payload.length);
+			segment.append(payload);
+			unsentMessages++;
+			unsyncedSegments.add(segment);
+			messageWritten.signal();
+			return segment;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void throwErrorIfFull() {
+		if (unsentMessages >= maxUnsentMessages) {
+			throw new MessagingException("Outbox in " + directory + " is full, " + unsentMessages
+					+ " messages are not yet sent");
+		}
+	}
+
+	private OutboxSegment getSegmentWithRoomFor(int payloadLength) {
+		OutboxSegment segment = segments.getLast();
+		if (segment.hasRoomFor(payloadLength)) {
+			return segment;
+		}
+		try {
+			OutboxSegment nextSegment = OutboxSegment.create(directory, segment.getSequence() + 1,
+					segmentSize);
+			segments.addLast(nextSegment);
+			return nextSegment;
+		} catch (IOException e) {
+			throw new MessagingException("Could not create outbox segment in " + directory, e);
+		}
+	}
+
+	/**
+	 * sync forces all messages written so far to disk, without waiting for the next syncInterval.
+	 */
+	public void sync() {
+		for (OutboxSegment segment : takeUnsyncedSegments()) {
+			segment.force();
+		}
+	}
+
+	private List<OutboxSegment> takeUnsyncedSegments() {
+		lock.lock();
+		try {
+			List<OutboxSegment> segmentsToSync = new ArrayList<>(unsyncedSegments);
+			unsyncedSegments.clear();
+			return segmentsToSync;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void drain() {
+		try {
+			while (!closed) {
+				sendNextMessage();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			markDrainerStopped();
+		}
+	}
+
+	private void markDrainerStopped() {
+		lock.lock();
+		try {
+			drainerStopped = true;
+			if (releaseDirectoryWhenDrainerStops) {
+				syncAndReleaseDirectory();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void sendNextMessage() throws InterruptedException {
+		OutboxSegment segment = waitForSegmentWithUnsentMessage();
+		byte[] payload = segment.readPayload(readOffset);
+		if (null == payload) {
+			log.logErrorUsingMessage("Skipping damaged message in outbox segment "
+					+ segment.getPath() + " at offset " + readOffset);
+		} else {
+			sendWithRetry(OutboxRecord.decode(payload));
+		}
+		markSent(segment);
+	}
+
+	private OutboxSegment waitForSegmentWithUnsentMessage() throws InterruptedException {
+		lock.lock();
+		try {
+			while (true) {
+				OutboxSegment segment = segments.getFirst();
+				if (readOffset < segment.getWriteOffset()) {
+					if (!segment.isSent(readOffset)) {
+						return segment;
+					}
+					readOffset = segment.getNextOffset(readOffset);
+				} else if (segment != segments.getLast()) {
+					removeSentSegment();
+				} else {
+					messageWritten.await();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void removeSentSegment() {
+		OutboxSegment sentSegment = segments.removeFirst();
+		unsyncedSegments.remove(sentSegment);
+		readOffset = 0;
+		try {
+			sentSegment.delete();
+		} catch (IOException e) {
+			log.logWarnUsingMessageAndException(
+					"Failed to delete sent outbox segment " + sentSegment.getPath(), e);
+		}
+	}
+
+	private void sendWithRetry(OutboxRecord outboxRecord) throws InterruptedException {
+		long delayNanos = retryDelayNanos;
+		for (int attempt = 1;; attempt++) {
+			try {
+				outboxRecord.sendUsing(messageSender);
+				return;
+			} catch (RuntimeException e) {
+				if (attempt == maxSendAttempts) {
+					sendToDeadLetterOrSkip(outboxRecord, attempt, e);
+					return;
+				}
+				log.logWarnUsingMessageAndException("Failed to send message from outbox in "
+						+ directory + ", retrying in " + TimeUnit.NANOSECONDS.toMillis(delayNanos)
+						+ " ms", e);
+			}
+			TimeUnit.NANOSECONDS.sleep(delayNanos);
+			delayNanos = Math.min(delayNanos * 2, retryDelayNanos * MAX_RETRY_DELAY_FACTOR);
+		}
+	}
+
+	private void sendToDeadLetterOrSkip(OutboxRecord outboxRecord, int attempts,
+			RuntimeException lastError) {
+		if (null == deadLetterSender) {
+			log.logErrorUsingMessageAndException("Failed to send message from outbox in "
+					+ directory + " " + attempts + " times, the message is lost", lastError);
+			return;
+		}
+		try {
+			outboxRecord.sendUsing(deadLetterSender,
+					createDeadLetterHeaders(outboxRecord, attempts, lastError));
+		} catch (RuntimeException e) {
+			log.logErrorUsingMessageAndException(
+					"Failed to send message to dead letter, the message is lost", e);
+		}
+	}
+
+	private static Map<String, Object> createDeadLetterHeaders(OutboxRecord outboxRecord,
+			int attempts, RuntimeException lastError) {
+		Map<String, Object> headers = new HashMap<>();
+		if (null != outboxRecord.getHeaders()) {
+			headers.putAll(outboxRecord.getHeaders());
+		}
+		headers.put(MessageHeaders.RETRY_ATTEMPT, attempts - 1);
+		headers.put(MessageHeaders.LAST_ERROR, String.valueOf(lastError.getMessage()));
+		headers.put(MessageHeaders.DEAD_LETTER_REASON, MAX_ATTEMPTS_REACHED);
+		return headers;
+	}
+
+	private void markSent(OutboxSegment segment) {
+		lock.lock();
+		try {
+			segment.markSent(readOffset);
+			unsentMessages--;
+			unsyncedSegments.add(segment);
+			readOffset = segment.getNextOffset(readOffset);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of messages in the outbox not yet sent.
+	 */
+	public int getNumberOfUnsentMessages() {
+		lock.lock();
+		try {
+			return unsentMessages;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int countUnsentMessages() {
+		int unsent = 0;
+		int offset = readOffset;
+		for (OutboxSegment segment : segments) {
+			for (; offset < segment.getWriteOffset(); offset = segment.getNextOffset(offset)) {
+				unsent += segment.isSent(offset) ? 0 : 1;
+			}
+			offset = 0;
+		}
+		return unsent;
+	}
+
+	/**
+	 * close stops sending messages from the outbox, forces written messages to disk and closes
+	 * the decorated MessageSender. A message being sent when close is called is interrupted and
+	 * sent again by the next OutboxMessageSender using the same directory.
+	 * <p>
+	 * If the sending thread has not stopped within 10 seconds, close returns without releasing the
+	 * directory, which is then released when the sending thread stops, so that another
+	 * OutboxMessageSender can not use the directory while this one still reads from it.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		syncTimer.ifPresent(ScheduledExecutorService::shutdownNow);
+		stopDrainer();
+		lock.lock();
+		try {
+			releaseDirectoryOrLeaveItToDrainer();
+		} finally {
+			lock.unlock();
+			messageSender.close();
+		}
+	}
+
+	private void stopDrainer() {
+		drainer.interrupt();
+		try {
+			drainer.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void releaseDirectoryOrLeaveItToDrainer() {
+		if (drainerStopped) {
+			syncAndReleaseDirectory();
+		} else {
+			releaseDirectoryWhenDrainerStops = true;
+			log.logWarnUsingMessage("Outbox in " + directory + " is still sending, the directory"
+					+ " is released when the message being sent is done");
+		}
+	}
+
+	private void syncAndReleaseDirectory() {
+		sync();
+		closeSegmentsAndReleaseDirectory();
+	}
+
+	private void closeSegmentsAndReleaseDirectory() {
+		try {
+			for (OutboxSegment segment : segments) {
+				segment.close();
+			}
+			directoryLock.release();
+			lockFileChannel.close();
+		} catch (IOException e) {
+			log.logWarnUsingMessageAndException("Failed to close outbox in " + directory, e);
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import se.uu.ub.cora.messaging.MessageSender;
+
+/**
+ * OutboxRecord is one message stored in an outbox segment, with its headers and a text or binary
+ * body. Header values must be of type String, Integer, Long, Double, Boolean or byte[], so that
+ * they can be restored with the same type.
+ */
+final class OutboxRecord {
+	private static final byte TEXT = 0;
+	private static final byte BINARY = 1;
+	private static final byte STRING_VALUE = 0;
+	private static final byte INTEGER_VALUE = 1;
+	private static final byte LONG_VALUE = 2;
+	private static final byte DOUBLE_VALUE = 3;
+	private static final byte BOOLEAN_VALUE = 4;
+	private static final byte BYTES_VALUE = 5;
+	private static final int NULL_BODY = -1;
+
+	private final Map<String, Object> headers;
+	private final boolean binary;
+	private final byte[] body;
+
+	private OutboxRecord(Map<String, Object> headers, boolean binary, byte[] body) {
+		this.headers = headers;
+		this.binary = binary;
+		this.body = body;
+	}
+
+	static OutboxRecord text(Map<String, Object> headers, String message) {
+		byte[] body = null == message ? null : message.getBytes(StandardCharsets.UTF_8);
+		return new OutboxRecord(headers, false, body);
+	}
+
+	static OutboxRecord binary(Map<String, Object> headers, ByteBuffer message) {
+		ByteBuffer source = message.duplicate();
+		byte[] body = new byte[source.remaining()];
+		source.get(body);
+		return new OutboxRecord(headers, true, body);
+	}
+
+	byte[] encode() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + bodyLength());
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(binary ? BINARY : TEXT);
+			writeHeaders(out);
+			writeBody(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private int bodyLength() {
+		return null == body ? 0 : body.length;
+	}
+
+	private void writeHeaders(DataOutputStream out) throws IOException {
+		if (null == headers) {
+			out.writeInt(NULL_BODY);
+			return;
+		}
+		out.writeInt(headers.size());
+		for (Entry<String, Object> header : headers.entrySet()) {
+			out.writeUTF(header.getKey());
+			writeValue(out, header.getKey(), header.getValue());
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, String name, Object value)
+			throws IOException {
+		switch (value) {
+			case String stringValue -> {
+				out.writeByte(STRING_VALUE);
+				writeBytes(out, stringValue.getBytes(StandardCharsets.UTF_8));
+			}
+			case Integer intValue -> {
+				out.writeByte(INTEGER_VALUE);
+				out.writeInt(intValue);
+			}
+			case Long longValue -> {
+				out.writeByte(LONG_VALUE);
+				out.writeLong(longValue);
+			}
+			case Double doubleValue -> {
+				out.writeByte(DOUBLE_VALUE);
+				out.writeDouble(doubleValue);
+			}
+			case Boolean booleanValue -> {
+				out.writeByte(BOOLEAN_VALUE);
+				out.writeBoolean(booleanValue);
+			}
+			case byte[] bytesValue -> {
+				out.writeByte(BYTES_VALUE);
+				writeBytes(out, bytesValue);
+			}
+			case null, default -> throw new IllegalArgumentException("Header " + name
+					+ " with value of type " + (null == value ? "null" : value.getClass().getName())
+					+ " can not be stored in outbox");
+		}
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	private void writeBody(DataOutputStream out) throws IOException {
+		if (null == body) {
+			out.writeInt(NULL_BODY);
+		} else {
+			writeBytes(out, body);
+		}
+	}
+
+	static OutboxRecord decode(byte[] payload) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+			boolean binary = in.readByte() == BINARY;
+			Map<String, Object> headers = readHeaders(in);
+			byte[] body = readBytesOrNull(in);
+			return new OutboxRecord(headers, binary, body);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Map<String, Object> readHeaders(DataInputStream in) throws IOException {
+		int numberOfHeaders = in.readInt();
+		if (numberOfHeaders == NULL_BODY) {
+			return null;
+		}
+		Map<String, Object> headers = new LinkedHashMap<>();
+		for (int i = 0; i < numberOfHeaders; i++) {
+			String name = in.readUTF();
+			headers.put(name, readValue(in));
+		}
+		return headers;
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		return switch (type) {
+			case STRING_VALUE -> new String(readBytesOrNull(in), StandardCharsets.UTF_8);
+			case INTEGER_VALUE -> in.readInt();
+			case LONG_VALUE -> in.readLong();
+			case DOUBLE_VALUE -> in.readDouble();
+			case BOOLEAN_VALUE -> in.readBoolean();
+			case BYTES_VALUE -> readBytesOrNull(in);
+			default -> throw new IOException("Unknown header value type " + type);
+		};
+	}
+
+	private static byte[] readBytesOrNull(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == NULL_BODY) {
+			return null;
+		}
+		byte[] value = new byte[length];
+		in.readFully(value);
+		return value;
+	}
+
+	void sendUsing(MessageSender messageSender) {
+		sendUsing(messageSender, headers);
+	}
+
+	void sendUsing(MessageSender messageSender, Map<String, Object> headersToSend) {
+		if (binary) {
+			messageSender.sendBinaryMessage(headersToSend,
+					ByteBuffer.wrap(body).asReadOnlyBuffer());
+		} else {
+			String message = null == body ? null : new String(body, StandardCharsets.UTF_8);
+			messageSender.sendMessage(headersToSend, message);
+		}
+	}
+
+	Map<String, Object> getHeaders() {
+		return headers;
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * OutboxSegment is one memory mapped file of fixed size in an outbox. Records are appended one
+ * after the other, each as a length, a CRC32C checksum of the payload, a state byte and the
+ * payload. The length is written last, so a record is only seen once it is completely written. A
+ * length of zero marks the end of the written records, as the file starts out filled with zeros.
+ * <p>
+ * Appends are made by one thread at a time. Reading records and marking them as sent is done by
+ * the draining thread, which only reads records below the write offset it has been handed.
+ */
+final class OutboxSegment {
+	static final int RECORD_HEADER_SIZE = 9;
+	private static final String FILE_PREFIX = "outbox-";
+	private static final String FILE_SUFFIX = ".segment";
+	private static final int CHECKSUM_POSITION = 4;
+	private static final int STATE_POSITION = 8;
+	private static final byte PENDING = 0;
+	private static final byte SENT = 1;
+
+	private final Path path;
+	private final long sequence;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int size;
+	private int writeOffset = 0;
+	private boolean closed = false;
+
+	private OutboxSegment(Path path, long sequence, int size) throws IOException {
+		this.path = path;
+		this.sequence = sequence;
+		this.size = size;
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		buffer = channel.map(MapMode.READ_WRITE, 0, size);
+	}
+
+	static OutboxSegment create(Path directory, long sequence, int size) throws IOException {
+		return new OutboxSegment(directory.resolve(createFileName(sequence)), sequence, size);
+	}
+
+	/**
+	 * open maps an existing segment and finds the end of the records written to it.
+	 */
+	static OutboxSegment open(Path path, int size) throws IOException {
+		OutboxSegment segment = new OutboxSegment(path, readSequence(path), size);
+		segment.findWriteOffset();
+		return segment;
+	}
+
+	private static String createFileName(long sequence) {
+		return String.format("%s%016d%s", FILE_PREFIX, sequence, FILE_SUFFIX);
+	}
+
+	static boolean isSegmentFile(Path path) {
+		String fileName = path.getFileName().toString();
+		return fileName.startsWith(FILE_PREFIX) && fileName.endsWith(FILE_SUFFIX);
+	}
+
+	static long readSequence(Path path) {
+		String fileName = path.getFileName().toString();
+		return Long.parseLong(fileName.substring(FILE_PREFIX.length(),
+				fileName.length() - FILE_SUFFIX.length()));
+	}
+
+	private void findWriteOffset() {
+		while (hasRecordAt(writeOffset)) {
+			writeOffset = getNextOffset(writeOffset);
+		}
+	}
+
+	private boolean hasRecordAt(int offset) {
+		if (offset + RECORD_HEADER_SIZE > size) {
+			return false;
+		}
+		int length = buffer.getInt(offset);
+		return length > 0 && length <= size - offset - RECORD_HEADER_SIZE;
+	}
+
+	boolean hasRoomFor(int payloadLength) {
+		return writeOffset + RECORD_HEADER_SIZE + payloadLength <= size;
+	}
+
+	void append(byte[] payload) {
+		int offset = writeOffset;
+		buffer.put(offset + RECORD_HEADER_SIZE, payload);
+		buffer.putInt(offset + CHECKSUM_POSITION, calculateChecksum(payload));
+		buffer.put(offset + STATE_POSITION, PENDING);
+		buffer.putInt(offset, payload.length);
+		writeOffset = offset + RECORD_HEADER_SIZE + payload.length;
+	}
+
+	private static int calculateChecksum(byte[] payload) {
+		CRC32C checksum = new CRC32C();
+		checksum.update(payload);
+		return (int) checksum.getValue();
+	}
+
+	int getWriteOffset() {
+		return writeOffset;
+	}
+
+	int getNextOffset(int offset) {
+		return offset + RECORD_HEADER_SIZE + buffer.getInt(offset);
+	}
+
+	boolean isSent(int offset) {
+		return buffer.get(offset + STATE_POSITION) == SENT;
+	}
+
+	void markSent(int offset) {
+		buffer.put(offset + STATE_POSITION, SENT);
+	}
+
+	/**
+	 * readPayload returns the payload of the record at offset, or null if its checksum does not
+	 * match, which happens if the machine stopped before the record reached the disk.
+	 */
+	byte[] readPayload(int offset) {
+		byte[] payload = new byte[buffer.getInt(offset)];
+		buffer.get(offset + RECORD_HEADER_SIZE, payload);
+		if (calculateChecksum(payload) != buffer.getInt(offset + CHECKSUM_POSITION)) {
+			return null;
+		}
+		return payload;
+	}
+
+	/**
+	 * force writes the segment to disk, unless it has been closed or deleted, which can happen
+	 * while a sync is about to force it.
+	 */
+	synchronized void force() {
+		if (!closed) {
+			buffer.force();
+		}
+	}
+
+	long getSequence() {
+		return sequence;
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	synchronized void close() throws IOException {
+		closed = true;
+		channel.close();
+	}
+
+	synchronized void delete() throws IOException {
+		close();
+		Files.deleteIfExists(path);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * SlidingFailureWindow counts calls and failed calls over a sliding time window, without locks.
+ * <p>
+ * The window is divided into buckets, kept in a ring. Each bucket is a single long holding a stamp
+ * telling which period of time it counts, the number of calls and the number of failures, so that
+ * recording a call is one compare-and-set. A bucket found with the stamp of an earlier period is
+ * started over from zero by the first call recording into it. Buckets are counted when their stamp
+ * is within the window.
+ * <p>
+ * Each bucket counts at most 2^24 - 1 calls, further calls within the same bucket are not counted.
+ */
+final class SlidingFailureWindow {
+	private static final int NUMBER_OF_BUCKETS = 10;
+	private static final int COUNT_BITS = 24;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+	private static final int STAMP_SHIFT = 2 * COUNT_BITS;
+	private static final long STAMP_MASK = 0xFFFF;
+	private final long bucketNanos;
+	private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+	SlidingFailureWindow(long windowNanos) {
+		bucketNanos = Math.max(1, windowNanos / NUMBER_OF_BUCKETS);
+	}
+
+	void recordSuccess(long nowNanos) {
+		record(nowNanos, 0);
+	}
+
+	void recordFailure(long nowNanos) {
+		record(nowNanos, 1);
+	}
+
+	private void record(long nowNanos, long failures) {
+		long period = nowNanos / bucketNanos;
+		int index = (int) Math.floorMod(period, (long) NUMBER_OF_BUCKETS);
+		long stamp = period & STAMP_MASK;
+		long bucket;
+		long updated;
+		do {
+			bucket = buckets.get(index);
+			long counted = getStamp(bucket) == stamp ? bucket : stamp << STAMP_SHIFT;
+			if (getCalls(counted) == COUNT_MASK) {
+				return;
+			}
+			updated = counted + (1L << COUNT_BITS) + failures;
+		} while (!buckets.compareAndSet(index, bucket, updated));
+	}
+
+	private static long getStamp(long bucket) {
+		return bucket >>> STAMP_SHIFT;
+	}
+
+	private static long getCalls(long bucket) {
+		return (bucket >>> COUNT_BITS) & COUNT_MASK;
+	}
+
+	private static long getFailures(long bucket) {
+		return bucket & COUNT_MASK;
+	}
+
+	/**
+	 * Returns the number of calls recorded within the window.
+	 */
+	long getNumberOfCalls(long nowNanos) {
+		return sumBucketsWithinWindow(nowNanos, true);
+	}
+
+	/**
+	 * Returns the number of failed calls recorded within the window.
+	 */
+	long getNumberOfFailures(long nowNanos) {
+		return sumBucketsWithinWindow(nowNanos, false);
+	}
+
+	private long sumBucketsWithinWindow(long nowNanos, boolean calls) {
+		long currentStamp = (nowNanos / bucketNanos) & STAMP_MASK;
+		long sum = 0;
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			long bucket = buckets.get(i);
+			long age = (currentStamp - getStamp(bucket)) & STAMP_MASK;
+			if (age < NUMBER_OF_BUCKETS) {
+				sum += calls ? getCalls(bucket) : getFailures(bucket);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * reset forgets all recorded calls
+	 */
+	void reset() {
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+	}
+}
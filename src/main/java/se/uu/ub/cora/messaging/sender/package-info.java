@@ -0,0 +1,6 @@
+/**
+ * The sender package contains {@link se.uu.ub.cora.messaging.MessageSender} decorators that add
+ * behaviour, such as batching, a local outbox or a circuit breaker, to any MessageSender
+ * regardless of which MessagingFactory implementation created it.
+ */
+package se.uu.ub.cora.messaging.sender;
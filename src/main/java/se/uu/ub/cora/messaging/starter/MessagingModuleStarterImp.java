@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -19,54 +19,71 @@
 
 package se.uu.ub.cora.messaging.starter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import se.uu.ub.cora.logger.Logger;
 import se.uu.ub.cora.logger.LoggerProvider;
 import se.uu.ub.cora.messaging.MessagingFactory;
+import se.uu.ub.cora.messaging.MessagingFactoryRegistry;
 import se.uu.ub.cora.messaging.MessagingInitializationException;
 
+/**
+ * MessagingModuleStarterImp starts the MessagingFactory implementations found. If only one is
+ * found it is used as is, if more than one is found they are used together through a
+ * {@link MessagingFactoryRegistry}.
+ */
 public class MessagingModuleStarterImp implements MessagingModuleStarter {
 	private Logger loggerForClass = LoggerProvider
 			.getLoggerForClass(MessagingModuleStarterImp.class);
-	private MessagingFactory foundMessagingFactory = null;
-	private int numberOfImplementations = 0;
+	private List<MessagingFactory> foundMessagingFactories = new ArrayList<>();
 
 	@Override
 	public MessagingFactory startUsingMessagingFactoryImplementations(
 			Iterable<MessagingFactory> messagingFactoryImplementations) {
-		chooseAndCountFactories(messagingFactoryImplementations);
-		throwErrorIfNotOne();
-		return foundMessagingFactory;
-	}
-
-	private void throwErrorIfNotOne() {
+		collectFactories(messagingFactoryImplementations);
 		logAndThrowErrorIfNone();
-		logAndThrowErrorIfMoreThanOne();
+		if (foundMessagingFactories.size() == 1) {
+			return foundMessagingFactories.get(0);
+		}
+		return createRegistry();
 	}
 
-	private void chooseAndCountFactories(
-			Iterable<MessagingFactory> messagingFactoryImplementations) {
+	private void collectFactories(Iterable<MessagingFactory> messagingFactoryImplementations) {
 		for (MessagingFactory messagingFactory : messagingFactoryImplementations) {
-			numberOfImplementations++;
-			foundMessagingFactory = messagingFactory;
-			loggerForClass.logInfoUsingMessage(foundMessagingFactory.getClass().getSimpleName()
+			loggerForClass.logInfoUsingMessage(messagingFactory.getClass().getSimpleName()
 					+ " found as implemetation for MessagingFactory");
+			foundMessagingFactories.add(messagingFactory);
 		}
 	}
 
 	private void logAndThrowErrorIfNone() {
-		if (numberOfImplementations == 0) {
+		if (foundMessagingFactories.isEmpty()) {
 			String errorMessage = "No implementations found for MessagingFactory";
 			loggerForClass.logFatalUsingMessage(errorMessage);
 			throw new MessagingInitializationException(errorMessage);
 		}
 	}
 
-	private void logAndThrowErrorIfMoreThanOne() {
-		if (numberOfImplementations > 1) {
-			String errorMessage = "More than one implementations found for MessagingFactory";
-			loggerForClass.logFatalUsingMessage(errorMessage);
-			throw new MessagingInitializationException(errorMessage);
+	private MessagingFactory createRegistry() {
+		try {
+			MessagingFactoryRegistry registry = new MessagingFactoryRegistry(
+					foundMessagingFactories);
+			loggerForClass.logInfoUsingMessage("Using MessagingFactoryRegistry with transports "
+					+ getTransportNames(registry));
+			return registry;
+		} catch (MessagingInitializationException e) {
+			loggerForClass.logFatalUsingMessage(e.getMessage());
+			throw e;
+		}
+	}
+
+	private String getTransportNames(MessagingFactoryRegistry registry) {
+		List<String> transportNames = new ArrayList<>();
+		for (MessagingFactory factory : registry.getFactories()) {
+			transportNames.add(factory.getTransportName());
 		}
+		return String.join(", ", transportNames);
 	}
 
 }
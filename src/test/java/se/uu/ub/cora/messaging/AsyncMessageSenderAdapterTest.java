@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+import se.uu.ub.cora.messaging.spy.MessagingFactorySpy;
+
+public class AsyncMessageSenderAdapterTest {
+	private static final Map<String, Object> HEADERS = Collections.emptyMap();
+	private MessageSenderSpy messageSender;
+	private AsyncMessageSenderAdapter asyncSender;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		messageSender = new MessageSenderSpy();
+		asyncSender = new AsyncMessageSenderAdapter(messageSender, 2);
+	}
+
+	@Test
+	public void testFutureIsCompletedWhenMessageIsSent() throws Exception {
+		CompletableFuture<Void> confirmation = asyncSender.sendMessageAsync(HEADERS, "message");
+
+		confirmation.get(5, TimeUnit.SECONDS);
+		assertEquals(messageSender.sentMessages.get(0).message, "message");
+		assertSame(messageSender.sentMessages.get(0).headers, HEADERS);
+	}
+
+	@Test
+	public void testMessagesAreSentInOrder() throws Exception {
+		asyncSender.sendMessageAsync(HEADERS, "first");
+		asyncSender.sendMessageAsync(HEADERS, "second").get(5, TimeUnit.SECONDS);
+
+		assertEquals(messageSender.sentMessages.get(0).message, "first");
+		assertEquals(messageSender.sentMessages.get(1).message, "second");
+	}
+
+	@Test
+	public void testFutureIsCompletedExceptionallyWhenSendingFails() throws Exception {
+		RuntimeException sendError = new RuntimeException("broker down");
+		messageSender.exceptionToThrow = sendError;
+
+		CompletableFuture<Void> confirmation = asyncSender.sendMessageAsync(HEADERS, "message");
+
+		try {
+			confirmation.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertSame(e.getCause(), sendError);
+		}
+		assertTrue(confirmation.isCompletedExceptionally());
+		assertEquals(asyncSender.getNumberInFlight(), 0);
+	}
+
+	@Test
+	public void testSendBlocksWhenWindowIsFull() throws Exception {
+		CountDownLatch unblockSending = new CountDownLatch(1);
+		messageSender.blockSendingUntilCountedDown = unblockSending;
+		asyncSender.sendMessageAsync(HEADERS, "first");
+		asyncSender.sendMessageAsync(HEADERS, "second");
+
+		CompletableFuture<Void> thirdSent = CompletableFuture
+				.runAsync(() -> asyncSender.sendMessageAsync(HEADERS, "third"));
+		Thread.sleep(50);
+
+		assertFalse(thirdSent.isDone());
+		assertEquals(asyncSender.getNumberInFlight(), 2);
+		unblockSending.countDown();
+		thirdSent.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testSendAfterCloseFails() throws Exception {
+		asyncSender.close();
+
+		CompletableFuture<Void> confirmation = asyncSender.sendMessageAsync(HEADERS, "message");
+
+		assertTrue(confirmation.isCompletedExceptionally());
+		assertTrue(messageSender.closeWasCalled);
+	}
+
+	@Test
+	public void testDefaultFactoryMethodAdaptsSynchronousSender() throws Exception {
+		MessagingFactorySpy messagingFactory = new MessagingFactorySpy();
+		MessageRoutingInfo routingInfo = new AmqpMessageSenderRoutingInfo("localhost", 5672,
+				"alvin", "index", "key");
+
+		AsyncMessageSender factoredSender = messagingFactory
+				.factorTopicAsyncMessageSender(routingInfo, 10);
+		factoredSender.sendMessageAsync(HEADERS, "message").get(5, TimeUnit.SECONDS);
+
+		assertTrue(factoredSender instanceof AsyncMessageSenderAdapter);
+		assertSame(messagingFactory.messagingRoutingInfo, routingInfo);
+		MessageSenderSpy factoredSyncSender = (MessageSenderSpy) messagingFactory.messageSender;
+		assertEquals(factoredSyncSender.sentMessages.get(0).message, "message");
+	}
+}
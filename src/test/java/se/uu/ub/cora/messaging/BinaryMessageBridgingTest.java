@@ -0,0 +1,90 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.memory.InMemoryMessagingFactory;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+
+public class BinaryMessageBridgingTest {
+	private static final String BODY = "<record>åäö</record>";
+
+	@Test
+	public void testSendBinaryMessageDefaultsToStringBody() {
+		MessageSenderSpy messageSender = new MessageSenderSpy();
+		Map<String, Object> headers = Map.of("action", "update");
+
+		messageSender.sendBinaryMessage(headers, createDirectReadOnlyBuffer(BODY));
+
+		assertEquals(messageSender.sentMessages.get(0).message, BODY);
+		assertSame(messageSender.sentMessages.get(0).headers, headers);
+	}
+
+	@Test
+	public void testDefaultSenderDoesNotSupportBinaryMessages() {
+		assertFalse(new MessageSenderSpy().supportsBinaryMessages());
+	}
+
+	@Test
+	public void testInMemorySenderSupportsBinaryMessages() {
+		MessageSender messageSender = new InMemoryMessagingFactory().factorTopicMessageSender(
+				new AmqpMessageSenderRoutingInfo("localhost", 5672, "alvin", "index", "key"));
+
+		assertTrue(messageSender.supportsBinaryMessages());
+	}
+
+	private ByteBuffer createDirectReadOnlyBuffer(String body) {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes).flip();
+		return buffer.asReadOnlyBuffer();
+	}
+
+	@Test
+	public void testReceiveBinaryMessageDefaultsToStringBody() {
+		MessageReceiverSpy messageReceiver = new MessageReceiverSpy();
+		Map<String, String> headers = Map.of("action", "update");
+
+		messageReceiver.receiveBinaryMessage(headers, createDirectReadOnlyBuffer(BODY));
+
+		assertEquals(messageReceiver.receivedMessages.get(0), BODY);
+		assertSame(messageReceiver.receivedHeaders.get(0), headers);
+	}
+
+	@Test
+	public void testBufferPositionIsNotChanged() {
+		MessageReceiverSpy messageReceiver = new MessageReceiverSpy();
+		ByteBuffer buffer = createDirectReadOnlyBuffer(BODY);
+
+		messageReceiver.receiveBinaryMessage(Map.of(), buffer);
+
+		assertEquals(buffer.position(), 0);
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class MessageHandlerCacheTest {
+	private static final long MINUTE = 60_000_000_000L;
+	private long now;
+	private MessageHandlerCache<MessageSender> cache;
+	private int numberOfCreatedSenders;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		now = 0;
+		numberOfCreatedSenders = 0;
+		cache = new MessageHandlerCache<>(MessageSender::close, 2, 10 * MINUTE, () -> now);
+	}
+
+	private MessageHandlerCache<MessageSender>.Lease lease(String routingKey) {
+		return cache.getOrCreate(createRoutingInfo(routingKey), routingInfo -> {
+			numberOfCreatedSenders++;
+			return new MessageSenderSpy();
+		});
+	}
+
+	private MessageSenderSpy getOrCreate(String routingKey) {
+		MessageHandlerCache<MessageSender>.Lease lease = lease(routingKey);
+		lease.release();
+		return (MessageSenderSpy) lease.getHandler();
+	}
+
+	private AmqpMessageSenderRoutingInfo createRoutingInfo(String routingKey) {
+		return new AmqpMessageSenderRoutingInfo("localhost", 5672, "alvin", "index", routingKey);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maximumSize must be at least 1, was 0")
+	public void testMaximumSizeMustBePositive() {
+		new MessageHandlerCache<>(MessageSender::close, 0, MINUTE);
+	}
+
+	@Test
+	public void testSameInstanceReturnedForEqualRoutingInfo() {
+		MessageSender first = getOrCreate("key1");
+		MessageSender second = getOrCreate("key1");
+
+		assertSame(first, second);
+		assertEquals(numberOfCreatedSenders, 1);
+	}
+
+	@Test
+	public void testDifferentInstancesForDifferentRoutingInfo() {
+		MessageSender first = getOrCreate("key1");
+		MessageSender second = getOrCreate("key2");
+
+		assertNotSame(first, second);
+		assertEquals(numberOfCreatedSenders, 2);
+	}
+
+	@Test
+	public void testCachedHandlerIsNotClosedWhenLeaseIsReleased() {
+		MessageSenderSpy sender = getOrCreate("key1");
+
+		assertFalse(sender.closeWasCalled);
+		assertEquals(cache.size(), 1);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedWithoutLeasesIsEvictedAndClosedWhenFull() {
+		MessageSenderSpy first = getOrCreate("key1");
+		now += MINUTE;
+		MessageSenderSpy second = getOrCreate("key2");
+		now += MINUTE;
+		getOrCreate("key1");
+		now += MINUTE;
+
+		getOrCreate("key3");
+
+		assertEquals(cache.size(), 2);
+		assertFalse(first.closeWasCalled);
+		assertTrue(second.closeWasCalled);
+		assertNotSame(getOrCreate("key2"), second);
+	}
+
+	@Test
+	public void testEvictedHandlerIsClosedWhenLastLeaseIsReleased() {
+		MessageHandlerCache<MessageSender>.Lease firstLease = lease("key1");
+		MessageHandlerCache<MessageSender>.Lease secondLease = lease("key1");
+		MessageSenderSpy sender = (MessageSenderSpy) firstLease.getHandler();
+		now += MINUTE;
+		getOrCreate("key2");
+		now += MINUTE;
+		getOrCreate("key3");
+
+		firstLease.release();
+		firstLease.release();
+		assertFalse(sender.closeWasCalled);
+		secondLease.release();
+
+		assertTrue(sender.closeWasCalled);
+	}
+
+	@Test
+	public void testIdleHandlersAreEvictedAndClosedWhenReleased() {
+		MessageHandlerCache<MessageSender>.Lease idleLease = lease("key1");
+		MessageSenderSpy idle = (MessageSenderSpy) idleLease.getHandler();
+		now += 6 * MINUTE;
+		MessageSenderSpy used = getOrCreate("key2");
+		now += 6 * MINUTE;
+
+		getOrCreate("key2");
+
+		assertEquals(cache.size(), 1);
+		assertFalse(idle.closeWasCalled);
+		idleLease.release();
+		assertTrue(idle.closeWasCalled);
+		assertFalse(used.closeWasCalled);
+		assertNotSame(getOrCreate("key1"), idle);
+	}
+
+	@Test
+	public void testCacheWithoutLimitsNeverEvicts() {
+		cache = new MessageHandlerCache<>(MessageSender::close);
+		MessageSender first = getOrCreate("key1");
+		getOrCreate("key2");
+		now += 1000 * MINUTE;
+
+		getOrCreate("key3");
+
+		assertEquals(cache.size(), 3);
+		assertSame(getOrCreate("key1"), first);
+	}
+
+	@Test
+	public void testHandlerCreatedConcurrentlyForSameRoutingInfoIsClosed() {
+		MessageSenderSpy stored = new MessageSenderSpy();
+		MessageSenderSpy notStored = new MessageSenderSpy();
+
+		MessageSender returned = cache.getOrCreate(createRoutingInfo("key1"), routingInfo -> {
+			cache.getOrCreate(routingInfo, sameRoutingInfo -> stored).release();
+			return notStored;
+		}).getHandler();
+
+		assertSame(returned, stored);
+		assertTrue(notStored.closeWasCalled);
+		assertFalse(stored.closeWasCalled);
+		assertEquals(cache.size(), 1);
+	}
+
+	@Test
+	public void testRetireClosesHandlersWhenReleased() {
+		MessageSenderSpy unused = getOrCreate("key1");
+		MessageHandlerCache<MessageSender>.Lease lease = lease("key2");
+
+		cache.retire();
+
+		assertEquals(cache.size(), 0);
+		assertTrue(unused.closeWasCalled);
+		assertFalse(((MessageSenderSpy) lease.getHandler()).closeWasCalled);
+		lease.release();
+		assertTrue(((MessageSenderSpy) lease.getHandler()).closeWasCalled);
+	}
+
+	@Test
+	public void testHandlerCreatedInRetiredCacheIsClosedWhenReleased() {
+		cache.retire();
+
+		MessageHandlerCache<MessageSender>.Lease lease = lease("key1");
+
+		assertEquals(cache.size(), 0);
+		assertFalse(((MessageSenderSpy) lease.getHandler()).closeWasCalled);
+		lease.release();
+		assertTrue(((MessageSenderSpy) lease.getHandler()).closeWasCalled);
+	}
+
+	@Test
+	public void testFailingCloseDoesNotStopEviction() {
+		cache = new MessageHandlerCache<>(sender -> {
+			throw new RuntimeException("close failed");
+		}, 2, 10 * MINUTE, () -> now);
+		getOrCreate("key1");
+
+		cache.retire();
+
+		assertEquals(cache.size(), 0);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+
+public class MessageHeadersTest {
+
+	private MessageHeaders createHeaders() {
+		return MessageHeaders.builder().put("action", "UPDATE").put("count", 42)
+				.put("indexed", true).build();
+	}
+
+	@Test
+	public void testGetReturnsOriginalValues() {
+		MessageHeaders headers = createHeaders();
+
+		assertEquals(headers.size(), 3);
+		assertEquals(headers.get("action"), "UPDATE");
+		assertEquals(headers.get("count"), 42);
+		assertNull(headers.get("missing"));
+		assertFalse(headers.containsKey("missing"));
+	}
+
+	@Test
+	public void testTypedAccessors() {
+		MessageHeaders headers = createHeaders().with("countAsString", "7");
+
+		assertEquals(headers.getLong("count", 0), 42);
+		assertEquals(headers.getInt("countAsString", 0), 7);
+		assertEquals(headers.getInt("missing", -1), -1);
+		assertTrue(headers.getBoolean("indexed", false));
+		assertEquals(headers.getString("count"), "42");
+		assertNull(headers.getString("missing"));
+	}
+
+	@Test(expectedExceptions = NumberFormatException.class)
+	public void testGetLongOfNonNumericValue() {
+		createHeaders().getLong("action", 0);
+	}
+
+	@Test
+	public void testEqualsAndHashCodeAsMap() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("action", "UPDATE");
+		map.put("count", 42);
+		map.put("indexed", true);
+
+		assertEquals(createHeaders(), map);
+		assertEquals(map, createHeaders());
+		assertEquals(createHeaders().hashCode(), map.hashCode());
+	}
+
+	@Test
+	public void testAsStringMapConvertsValues() {
+		Map<String, String> stringMap = createHeaders().asStringMap();
+
+		assertEquals(stringMap, Map.of("action", "UPDATE", "count", "42", "indexed", "true"));
+		assertEquals(stringMap.get("count"), "42");
+	}
+
+	@Test
+	public void testPutReplacesHeaderWithSameName() {
+		MessageHeaders headers = MessageHeaders.builder().put("action", "CREATE")
+				.put("action", "UPDATE").build();
+
+		assertEquals(headers, Map.of("action", "UPDATE"));
+	}
+
+	@Test
+	public void testWithDoesNotChangeOriginal() {
+		MessageHeaders original = createHeaders();
+
+		MessageHeaders changed = original.with("action", "DELETE").with("extra", 1);
+
+		assertEquals(original.get("action"), "UPDATE");
+		assertEquals(changed.get("action"), "DELETE");
+		assertEquals(changed.size(), 4);
+	}
+
+	@Test
+	public void testWellKnownNamesAreInterned() {
+		String copyOfName = new String("recordType");
+
+		MessageHeaders headers = MessageHeaders.copyOf(Map.of(copyOfName, "place"));
+
+		assertSame(headers.keySet().iterator().next(), MessageHeaders.RECORD_TYPE);
+		assertSame(MessageHeaders.internName("unknown"), "unknown");
+	}
+
+	@Test
+	public void testCopyOfMessageHeadersReturnsSameInstance() {
+		MessageHeaders headers = createHeaders();
+
+		assertSame(MessageHeaders.copyOf(headers), headers);
+		assertSame(MessageHeaders.copyOf(null), MessageHeaders.empty());
+	}
+
+	@Test(expectedExceptions = UnsupportedOperationException.class)
+	public void testHeadersCanNotBeModified() {
+		createHeaders().put("action", "DELETE");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "Header value must not be null, for header action")
+	public void testNullValueIsNotAllowed() {
+		MessageHeaders.builder().put("action", null);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ""
+			+ "Builder can not be used after build")
+	public void testBuilderCanNotBeUsedAfterBuild() {
+		MessageHeaders.Builder builder = MessageHeaders.builder();
+		builder.build();
+
+		builder.put("action", "UPDATE");
+	}
+
+	@Test
+	public void testBuilderGrowsBeyondInitialSize() {
+		MessageHeaders.Builder builder = MessageHeaders.builder();
+		for (int i = 0; i < 20; i++) {
+			builder.put("header" + i, i);
+		}
+
+		MessageHeaders headers = builder.build();
+
+		assertEquals(headers.size(), 20);
+		assertEquals(headers.get("header19"), 19);
+	}
+
+	@Test
+	public void testDefaultReceiveMessageUsingHeadersCallsReceiveMessage() {
+		MessageReceiverSpy receiver = new MessageReceiverSpy();
+
+		receiver.receiveMessageUsingHeaders(createHeaders(), "message");
+
+		assertEquals(receiver.receivedMessages, List.of("message"));
+		assertEquals(receiver.receivedHeaders.get(0).get("count"), "42");
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2025 Uppsala University Library
+ * Copyright 2019, 2025, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -19,6 +19,7 @@
 package se.uu.ub.cora.messaging;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
 
 import org.testng.annotations.Test;
 
@@ -82,4 +83,142 @@ public class MessageRoutingInfoTest {
 		assertEquals(routingInfo.exchange, exchange);
 		assertEquals(routingInfo.routingKey, routingKey);
 	}
+
+	@Test
+	public void testJmsMessageRoutingInfoEquality() {
+		JmsMessageRoutingInfo routingInfo = new JmsMessageRoutingInfo(HOSTNAME, PORT, ROUTING_KEY,
+				"admin", "admin");
+
+		assertEquals(routingInfo, new JmsMessageRoutingInfo(HOSTNAME, PORT, ROUTING_KEY, "admin",
+				"admin"));
+		assertEquals(routingInfo.hashCode(), new JmsMessageRoutingInfo(HOSTNAME, PORT, ROUTING_KEY,
+				"admin", "admin").hashCode());
+		assertNotEquals(routingInfo,
+				new JmsMessageRoutingInfo(HOSTNAME, PORT, ROUTING_KEY, "admin", "other"));
+		assertNotEquals(routingInfo,
+				new JmsMessageRoutingInfo(HOSTNAME, 1234, ROUTING_KEY, "admin", "admin"));
+	}
+
+	@Test
+	public void testAMQPMessageSenderRoutingInfoEquality() {
+		AmqpMessageSenderRoutingInfo routingInfo = new AmqpMessageSenderRoutingInfo(HOSTNAME, PORT,
+				VHOST, EXCHANGE, ROUTING_KEY);
+
+		assertEquals(routingInfo,
+				new AmqpMessageSenderRoutingInfo(HOSTNAME, PORT, VHOST, EXCHANGE, ROUTING_KEY));
+		assertEquals(routingInfo.hashCode(), new AmqpMessageSenderRoutingInfo(HOSTNAME, PORT, VHOST,
+				EXCHANGE, ROUTING_KEY).hashCode());
+		assertNotEquals(routingInfo,
+				new AmqpMessageSenderRoutingInfo(HOSTNAME, PORT, VHOST, EXCHANGE, "other"));
+		assertNotEquals(routingInfo,
+				new AmqpMessageSenderRoutingInfo("otherHost", PORT, VHOST, EXCHANGE, ROUTING_KEY));
+	}
+
+	@Test
+	public void testAMQPMessageSenderRoutingInfoWithPriority() {
+		AmqpMessageSenderRoutingInfo routingInfo = new AmqpMessageSenderRoutingInfo(HOSTNAME, PORT,
+				VHOST, EXCHANGE, ROUTING_KEY);
+
+		AmqpMessageSenderRoutingInfo prioritized = routingInfo.withPriority(9);
+
+		assertEquals(routingInfo.priority, 0);
+		assertEquals(prioritized.priority, 9);
+		assertEquals(prioritized.hostname, HOSTNAME);
+		assertEquals(prioritized.port, PORT);
+		assertEquals(prioritized.virtualHost, VHOST);
+		assertEquals(prioritized.exchange, EXCHANGE);
+		assertEquals(prioritized.routingKey, ROUTING_KEY);
+		assertNotEquals(prioritized, routingInfo);
+		assertEquals(prioritized, routingInfo.withPriority(9));
+		assertEquals(prioritized.hashCode(), routingInfo.withPriority(9).hashCode());
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "priority must be between 0 and 255, was 256")
+	public void testAMQPMessageSenderRoutingInfoPriorityMustNotBeTooHigh() {
+		new AmqpMessageSenderRoutingInfo(HOSTNAME, PORT, VHOST, EXCHANGE, ROUTING_KEY)
+				.withPriority(256);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "priority must be between 0 and 255, was -1")
+	public void testAMQPMessageSenderRoutingInfoPriorityMustNotBeNegative() {
+		new AmqpMessageSenderRoutingInfo(HOSTNAME, PORT, VHOST, EXCHANGE, ROUTING_KEY)
+				.withPriority(-1);
+	}
+
+	@Test
+	public void testAMQPMessageListenerRoutingInfoEquality() {
+		AmqpMessageListenerRoutingInfo routingInfo = new AmqpMessageListenerRoutingInfo(HOSTNAME,
+				PORT, VHOST, QUEUE_NAME);
+
+		assertEquals(routingInfo,
+				new AmqpMessageListenerRoutingInfo(HOSTNAME, PORT, VHOST, QUEUE_NAME));
+		assertEquals(routingInfo.hashCode(),
+				new AmqpMessageListenerRoutingInfo(HOSTNAME, PORT, VHOST, QUEUE_NAME).hashCode());
+		assertNotEquals(routingInfo,
+				new AmqpMessageListenerRoutingInfo(HOSTNAME, PORT, VHOST, "otherQueue"));
+		assertNotEquals(routingInfo,
+				new AmqpMessageListenerRoutingInfo(HOSTNAME, PORT, VHOST, EXCHANGE, ROUTING_KEY));
+	}
+
+	@Test
+	public void testRoutingInfosOfDifferentTypesAreNotEqual() {
+		AmqpMessageListenerRoutingInfo listenerRoutingInfo = new AmqpMessageListenerRoutingInfo(
+				HOSTNAME, PORT, VHOST, EXCHANGE, ROUTING_KEY);
+		AmqpMessageSenderRoutingInfo senderRoutingInfo = new AmqpMessageSenderRoutingInfo(HOSTNAME,
+				PORT, VHOST, EXCHANGE, ROUTING_KEY);
+
+		assertNotEquals(listenerRoutingInfo, senderRoutingInfo);
+	}
+
+	@Test
+	public void testAMQPMessageListenerRoutingInfoDefaultConsumerSettings() {
+		AmqpMessageListenerRoutingInfo routingInfo = new AmqpMessageListenerRoutingInfo(HOSTNAME,
+				PORT, VHOST, QUEUE_NAME);
+
+		assertEquals(routingInfo.prefetchCount, 0);
+		assertEquals(routingInfo.consumerConcurrency, 1);
+		assertEquals(routingInfo.dispatchQueueCapacity, 0);
+	}
+
+	@Test
+	public void testAMQPMessageListenerRoutingInfoWithConsumerSettings() {
+		AmqpMessageListenerRoutingInfo routingInfo = new AmqpMessageListenerRoutingInfo(HOSTNAME,
+				PORT, VHOST, EXCHANGE, ROUTING_KEY);
+
+		AmqpMessageListenerRoutingInfo tuned = routingInfo.withConsumerSettings(250, 8, 500);
+
+		assertEquals(tuned.hostname, HOSTNAME);
+		assertEquals(tuned.port, PORT);
+		assertEquals(tuned.virtualHost, VHOST);
+		assertEquals(tuned.exchange, EXCHANGE);
+		assertEquals(tuned.routingKey, ROUTING_KEY);
+		assertEquals(tuned.prefetchCount, 250);
+		assertEquals(tuned.consumerConcurrency, 8);
+		assertEquals(tuned.dispatchQueueCapacity, 500);
+		assertNotEquals(tuned, routingInfo);
+		assertEquals(tuned, routingInfo.withConsumerSettings(250, 8, 500));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "consumerConcurrency must be at least 1, was 0")
+	public void testAMQPMessageListenerRoutingInfoConsumerConcurrencyMustBePositive() {
+		new AmqpMessageListenerRoutingInfo(HOSTNAME, PORT, VHOST, QUEUE_NAME)
+				.withConsumerSettings(10, 0, 0);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "prefetchCount must be at least 0, was -1")
+	public void testAMQPMessageListenerRoutingInfoPrefetchCountMustNotBeNegative() {
+		new AmqpMessageListenerRoutingInfo(HOSTNAME, PORT, VHOST, QUEUE_NAME)
+				.withConsumerSettings(-1, 1, 0);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "dispatchQueueCapacity must be at least 0, was -5")
+	public void testAMQPMessageListenerRoutingInfoDispatchQueueCapacityMustNotBeNegative() {
+		new AmqpMessageListenerRoutingInfo(HOSTNAME, PORT, VHOST, QUEUE_NAME)
+				.withConsumerSettings(1, 1, -5);
+	}
 }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.memory.InMemoryMessagingFactory;
+import se.uu.ub.cora.messaging.spy.MessagingFactorySpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class MessagingFactoryRegistryTest {
+	private MessagingFactorySpy amqpFactory;
+	private MessagingFactorySpy fallbackFactory;
+	private MessagingFactoryRegistry registry;
+	private AmqpMessageSenderRoutingInfo amqpRoutingInfo;
+	private JmsMessageRoutingInfo jmsRoutingInfo;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		amqpFactory = new MessagingFactorySpy("amqp", 10);
+		amqpFactory.supportedRoutingInfoType = AmqpMessageSenderRoutingInfo.class;
+		fallbackFactory = new MessagingFactorySpy("fallback", 0);
+		registry = new MessagingFactoryRegistry(List.of(fallbackFactory, amqpFactory));
+		amqpRoutingInfo = new AmqpMessageSenderRoutingInfo("localhost", 5672, "alvin", "index",
+				"key");
+		jmsRoutingInfo = new JmsMessageRoutingInfo("localhost", 61617, "key", "user", "pass");
+	}
+
+	@Test
+	public void testFactoriesAreOrderedByPriority() {
+		assertEquals(registry.getFactories(), List.of(amqpFactory, fallbackFactory));
+	}
+
+	@Test
+	public void testEqualPriorityIsOrderedByTransportName() {
+		MessagingFactorySpy second = new MessagingFactorySpy("b", 0);
+		MessagingFactorySpy first = new MessagingFactorySpy("a", 0);
+
+		registry = new MessagingFactoryRegistry(List.of(second, first));
+
+		assertEquals(registry.getFactories(), List.of(first, second));
+	}
+
+	@Test
+	public void testDispatchOnRoutingInfoType() {
+		registry.factorTopicMessageSender(amqpRoutingInfo);
+		registry.factorTopicMessageSender(jmsRoutingInfo);
+
+		assertEquals(amqpFactory.numberOfFactoredSenders, 1);
+		assertSame(amqpFactory.messagingRoutingInfo, amqpRoutingInfo);
+		assertEquals(fallbackFactory.numberOfFactoredSenders, 1);
+		assertSame(fallbackFactory.messagingRoutingInfo, jmsRoutingInfo);
+	}
+
+	@Test
+	public void testListenersAndAsyncSendersUseSameDispatch() {
+		registry.factorTopicMessageListener(jmsRoutingInfo);
+		registry.factorTopicAsyncMessageSender(amqpRoutingInfo, 10).close();
+
+		assertEquals(fallbackFactory.numberOfFactoredListeners, 1);
+		assertEquals(amqpFactory.numberOfFactoredSenders, 1);
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "No MessagingFactory supports routing info JmsMessageRoutingInfo")
+	public void testNoFactorySupportingRoutingInfoType() {
+		registry = new MessagingFactoryRegistry(List.of(amqpFactory));
+
+		registry.factorTopicMessageSender(jmsRoutingInfo);
+	}
+
+	@Test
+	public void testSupportsRoutingInfoTypeIfAnyFactoryDoes() {
+		registry = new MessagingFactoryRegistry(List.of(amqpFactory));
+
+		assertTrue(registry.supportsRoutingInfoType(AmqpMessageSenderRoutingInfo.class));
+		assertFalse(registry.supportsRoutingInfoType(JmsMessageRoutingInfo.class));
+	}
+
+	@Test
+	public void testNullRoutingInfoUsesHighestPriority() {
+		assertSame(registry.getFactoryForRoutingInfo(null), amqpFactory);
+	}
+
+	@Test
+	public void testTransportSelectorChoosesFactory() {
+		registry.setTransportSelector(routingInfo -> "fallback");
+
+		registry.factorTopicMessageSender(amqpRoutingInfo);
+
+		assertEquals(fallbackFactory.numberOfFactoredSenders, 1);
+		assertEquals(amqpFactory.numberOfFactoredSenders, 0);
+	}
+
+	@Test
+	public void testTransportSelectorReturningNullUsesPriority() {
+		registry = new MessagingFactoryRegistry(List.of(fallbackFactory, amqpFactory),
+				routingInfo -> null);
+
+		assertSame(registry.getFactoryForRoutingInfo(amqpRoutingInfo), amqpFactory);
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "No MessagingFactory found for selected transport unknown")
+	public void testTransportSelectorChoosingUnknownTransport() {
+		registry.setTransportSelector(routingInfo -> "unknown");
+
+		registry.factorTopicMessageSender(amqpRoutingInfo);
+	}
+
+	@Test
+	public void testLocalRoutingInfosCanUseInMemoryTransport() {
+		InMemoryMessagingFactory inMemoryFactory = new InMemoryMessagingFactory();
+		registry = new MessagingFactoryRegistry(List.of(inMemoryFactory, amqpFactory),
+				routingInfo -> "localhost".equals(routingInfo.hostname)
+						? InMemoryMessagingFactory.TRANSPORT_NAME
+						: null);
+		AmqpMessageSenderRoutingInfo remoteRoutingInfo = new AmqpMessageSenderRoutingInfo(
+				"remote", 5672, "alvin", "index", "key");
+
+		assertSame(registry.getFactoryForRoutingInfo(amqpRoutingInfo), inMemoryFactory);
+		assertSame(registry.getFactoryForRoutingInfo(remoteRoutingInfo), amqpFactory);
+	}
+
+	@Test
+	public void testBuiltInIsOnlyUsedWhenNoOtherSupportsType() {
+		InMemoryMessagingFactory inMemoryFactory = new InMemoryMessagingFactory();
+		registry = new MessagingFactoryRegistry(List.of(inMemoryFactory, amqpFactory));
+
+		assertSame(registry.getFactoryForRoutingInfo(amqpRoutingInfo), amqpFactory);
+		assertSame(registry.getFactoryForRoutingInfo(jmsRoutingInfo), inMemoryFactory);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "factories must not be empty")
+	public void testEmptyFactories() {
+		new MessagingFactoryRegistry(List.of());
+	}
+
+	@Test(expectedExceptions = MessagingInitializationException.class, expectedExceptionsMessageRegExp = ""
+			+ "More than one implementations found for MessagingFactory with transport name amqp")
+	public void testSameTransportNameTwice() {
+		new MessagingFactoryRegistry(List.of(amqpFactory, new MessagingFactorySpy("amqp", 0)));
+	}
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019, 2025 Uppsala University Library
+ * Copyright 2019, 2025, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -20,21 +20,34 @@
 package se.uu.ub.cora.messaging;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.receiver.SupervisedMessageListener;
+import se.uu.ub.cora.messaging.spy.MessageListenerSpy;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
 import se.uu.ub.cora.messaging.spy.MessagingFactorySpy;
 import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
 import se.uu.ub.cora.messaging.starter.MessagingModuleStarter;
@@ -61,6 +74,7 @@ public class MessagingProviderTest {
 		loggerFactorySpy.resetLogs(testedClassName);
 		LoggerProvider.setLoggerFactory(loggerFactorySpy);
 		MessagingProvider.setMessagingFactory(null);
+		MessagingProvider.setMetricsEnabled(false);
 
 		amqpRoutingInfo = new AmqpMessageListenerRoutingInfo("tcp://dev-diva-drafts", 61617,
 				"alvin", "someQueue");
@@ -91,16 +105,24 @@ public class MessagingProviderTest {
 		MessageSender messageSender = MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
 
 		assertEquals(messagingFactorySpy.messagingRoutingInfo, amqpRoutingInfo);
-		assertEquals(messageSender, messagingFactorySpy.messageSender);
+		messageSender.sendMessage(Map.of(), "message");
+		assertEquals(((MessageSenderSpy) messagingFactorySpy.messageSender).sentMessages.size(), 1);
 	}
 
 	@Test
 	public void testStartingOfProviderFactoryCanOnlyBeDoneByOneThreadAtATime() throws Exception {
 		Method declaredMethod = MessagingProvider.class
-				.getDeclaredMethod("ensureMessagingFactoryIsSet");
+				.getDeclaredMethod("startMessagingFactoryIfNotStarted");
 		assertTrue(Modifier.isSynchronized(declaredMethod.getModifiers()));
 	}
 
+	@Test
+	public void testLookupOfStartedProviderFactoryTakesNoLock() throws Exception {
+		Method declaredMethod = MessagingProvider.class
+				.getDeclaredMethod("ensureMessagingFactoryIsSet");
+		assertFalse(Modifier.isSynchronized(declaredMethod.getModifiers()));
+	}
+
 	@Test
 	public void testNonExceptionThrowingStartupForTopicMessageSender() {
 		MessagingModuleStarterSpy starter = startAndSetMessagingModuleStarterSpy();
@@ -190,6 +212,28 @@ public class MessagingProviderTest {
 		assertEquals(messageListener, messagingFactorySpy.messageListener);
 	}
 
+	@Test
+	public void testSupervisedTopicMessageListenerCreatesListenersFromFactory() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+
+		SupervisedMessageListener messageListener = MessagingProvider
+				.getSupervisedTopicMessageListener(amqpRoutingInfo, Duration.ofMillis(10),
+						Duration.ofSeconds(1), event -> {
+						});
+		MessageReceiverSpy receiver = new MessageReceiverSpy();
+		messageListener.listen(receiver);
+		((MessageListenerSpy) messagingFactorySpy.messageListener).messageReceiver
+				.receiveMessage(Map.of(), "message");
+
+		assertEquals(messagingFactorySpy.messagingRoutingInfo, amqpRoutingInfo);
+		assertEquals(receiver.receivedMessages.get(0), "message");
+		assertNotSame(MessagingProvider.getSupervisedTopicMessageListener(amqpRoutingInfo,
+				Duration.ofMillis(10), Duration.ofSeconds(1), event -> {
+				}), messageListener);
+		messageListener.close();
+	}
+
 	@Test
 	public void testNonExceptionThrowingStartupForTopicMessageListener() {
 		MessagingModuleStarterSpy starter = startAndSetMessagingModuleStarterSpy();
@@ -272,4 +316,240 @@ public class MessagingProviderTest {
 		assertSame(uniqueId, uniqueId2);
 	}
 
+	@Test
+	public void testTopicMessageSenderIsReusedForEqualRoutingInfo() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+
+		MessageSender messageSender = MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+		MessageSender messageSender2 = MessagingProvider.getTopicMessageSender(
+				new AmqpMessageListenerRoutingInfo("tcp://dev-diva-drafts", 61617, "alvin",
+						"someQueue"));
+
+		messageSender.sendMessage(Map.of(), "first");
+		messageSender2.sendMessage(Map.of(), "second");
+		assertEquals(((MessageSenderSpy) messagingFactorySpy.messageSender).sentMessages.size(), 2);
+		assertEquals(messagingFactorySpy.numberOfFactoredSenders, 1);
+	}
+
+	@Test
+	public void testClosingTopicMessageSenderDoesNotCloseSharedSender() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo).close();
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+
+		assertFalse(((MessageSenderSpy) messagingFactorySpy.messageSender).closeWasCalled);
+		assertEquals(messagingFactorySpy.numberOfFactoredSenders, 1);
+	}
+
+	@Test
+	public void testTopicMessageSenderIsNotReusedForDifferentRoutingInfo() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+
+		MessageSender messageSender = MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+		MessageSender messageSender2 = MessagingProvider.getTopicMessageSender(
+				new AmqpMessageListenerRoutingInfo("tcp://dev-diva-drafts", 61617, "alvin",
+						"someOtherQueue"));
+
+		assertNotSame(messageSender, messageSender2);
+		assertEquals(messagingFactorySpy.numberOfFactoredSenders, 2);
+	}
+
+	@Test
+	public void testTopicMessageListenerIsNotSharedForEqualRoutingInfo() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+
+		MessageListener messageListener = MessagingProvider
+				.getTopicMessageListener(amqpRoutingInfo);
+		MessageListener messageListener2 = MessagingProvider
+				.getTopicMessageListener(amqpRoutingInfo);
+
+		assertNotSame(messageListener, messageListener2);
+		assertEquals(messagingFactorySpy.numberOfFactoredListeners, 2);
+	}
+
+	@Test
+	public void testSetMessagingFactoryClosesCachedSenderWhenReleased() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+		MessageSender messageSender = MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+		MessageSenderSpy cachedSender = (MessageSenderSpy) messagingFactorySpy.messageSender;
+
+		MessagingProvider.setMessagingFactory(new MessagingFactorySpy());
+
+		assertFalse(cachedSender.closeWasCalled);
+		messageSender.close();
+		assertTrue(cachedSender.closeWasCalled);
+	}
+
+	@Test
+	public void testSetMessagingFactoryClosesWarmedUpListeners() throws Exception {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+		MessagingProvider.warmUp(amqpRoutingInfo).get(5, TimeUnit.SECONDS);
+
+		MessagingProvider.setMessagingFactory(new MessagingFactorySpy());
+
+		assertTrue(((MessageListenerSpy) messagingFactorySpy.messageListener).closeWasCalled);
+	}
+
+	@Test
+	public void testSetInstanceCacheLimits() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo).close();
+		MessageSenderSpy cachedSender = (MessageSenderSpy) messagingFactorySpy.messageSender;
+
+		MessagingProvider.setInstanceCacheLimits(1, Duration.ofMinutes(1));
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+
+		assertTrue(cachedSender.closeWasCalled);
+		assertEquals(messagingFactorySpy.numberOfFactoredSenders, 2);
+		MessagingProvider.setInstanceCacheLimits(256, Duration.ofMinutes(10));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maximumSize must be at least 1, was 0")
+	public void testInstanceCacheMaximumSizeMustBePositive() {
+		MessagingProvider.setInstanceCacheLimits(0, Duration.ofMinutes(1));
+	}
+
+	@Test
+	public void testGetTopicAsyncMessageSenderUsesMessagingFactory() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+
+		AsyncMessageSender asyncMessageSender = MessagingProvider
+				.getTopicAsyncMessageSender(amqpRoutingInfo, 10);
+
+		assertTrue(asyncMessageSender instanceof AsyncMessageSenderAdapter);
+		assertEquals(messagingFactorySpy.messagingRoutingInfo, amqpRoutingInfo);
+		asyncMessageSender.close();
+	}
+
+	@Test
+	public void testMetricsSnapshotIsEmptyWhenMetricsAreOff() {
+		MessagingProvider.setMessagingFactory(new MessagingFactorySpy());
+
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo).sendMessage(Map.of(), "message");
+
+		assertTrue(MessagingProvider.getMetricsSnapshot().isEmpty());
+	}
+
+	@Test
+	public void testMetricsAreRecordedWhenMetricsAreOn() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+		MessagingProvider.setMetricsEnabled(true);
+
+		MessageSender messageSender = MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+		messageSender.sendMessage(Map.of(), "message");
+
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+		assertEquals(messagingFactorySpy.numberOfFactoredSenders, 1);
+		assertEquals(MessagingProvider.getMetricsSnapshot().get("someQueue").sendLatency
+				.getCount(), 1);
+	}
+
+	@Test
+	public void testChangingMetricsSettingEvictsCachedInstances() {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo).close();
+		MessageSenderSpy uninstrumented = (MessageSenderSpy) messagingFactorySpy.messageSender;
+
+		MessagingProvider.setMetricsEnabled(true);
+		MessagingProvider.getTopicMessageSender(amqpRoutingInfo);
+
+		assertTrue(uninstrumented.closeWasCalled);
+		assertNotSame(messagingFactorySpy.messageSender, uninstrumented);
+		assertEquals(messagingFactorySpy.numberOfFactoredSenders, 2);
+	}
+
+	@Test
+	public void testWarmUpStartsFactoryAndCreatesInstances() throws Exception {
+		MessagingModuleStarterSpy starter = startAndSetMessagingModuleStarterSpy();
+		AmqpMessageSenderRoutingInfo senderRoutingInfo = new AmqpMessageSenderRoutingInfo(
+				"localhost", 5672, "alvin", "index", "key");
+
+		MessagingProvider.warmUp(senderRoutingInfo, amqpRoutingInfo).get(5, TimeUnit.SECONDS);
+
+		assertTrue(starter.startWasCalled);
+		MessageSender warmedUpSender = MessagingProvider.getTopicMessageSender(senderRoutingInfo);
+		MessageListenerSpy warmedUpListener = (MessageListenerSpy) MessagingProvider
+				.getTopicMessageListener(amqpRoutingInfo);
+		assertNotNull(warmedUpSender);
+		assertNotNull(warmedUpListener);
+	}
+
+	@Test
+	public void testWarmedUpInstancesAreReused() throws Exception {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+		AmqpMessageSenderRoutingInfo senderRoutingInfo = new AmqpMessageSenderRoutingInfo(
+				"localhost", 5672, "alvin", "index", "key");
+
+		MessagingProvider.warmUp(senderRoutingInfo, amqpRoutingInfo).get(5, TimeUnit.SECONDS);
+		MessagingProvider.getTopicMessageSender(senderRoutingInfo);
+		MessagingProvider.getTopicMessageListener(amqpRoutingInfo);
+
+		assertEquals(messagingFactorySpy.numberOfFactoredSenders, 1);
+		assertEquals(messagingFactorySpy.numberOfFactoredListeners, 1);
+	}
+
+	@Test
+	public void testWarmUpFailureCompletesExceptionallyAfterTryingAll() throws Exception {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		RuntimeException failure = new RuntimeException("connect failed");
+		messagingFactorySpy.exceptionToThrow = failure;
+		MessagingProvider.setMessagingFactory(messagingFactorySpy);
+		AmqpMessageSenderRoutingInfo senderRoutingInfo = new AmqpMessageSenderRoutingInfo(
+				"localhost", 5672, "alvin", "index", "key");
+
+		CompletableFuture<Void> warmedUp = MessagingProvider.warmUp(senderRoutingInfo,
+				amqpRoutingInfo);
+
+		try {
+			warmedUp.get(5, TimeUnit.SECONDS);
+			fail("Expected warm up to fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof MessagingException);
+			assertEquals(e.getCause().getMessage(), "Warm up failed for 1 of 2 routing infos");
+			assertSame(e.getCause().getCause(), failure);
+		}
+		assertEquals(messagingFactorySpy.numberOfFactoredListeners, 1);
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "A TransportSelector can only be used when more than one MessagingFactory "
+			+ "implementation is in use")
+	public void testSetTransportSelectorWithOnlyOneFactory() {
+		MessagingProvider.setMessagingFactory(new MessagingFactorySpy());
+
+		MessagingProvider.setTransportSelector(routingInfo -> "other");
+	}
+
+	@Test
+	public void testSetTransportSelectorUsesSelectedTransport() {
+		MessagingFactorySpy amqpFactory = new MessagingFactorySpy("amqp", 1);
+		MessagingFactorySpy localFactory = new MessagingFactorySpy("local", 0);
+		MessagingProvider.setMessagingFactory(
+				new MessagingFactoryRegistry(List.of(amqpFactory, localFactory)));
+		AmqpMessageSenderRoutingInfo senderRoutingInfo = new AmqpMessageSenderRoutingInfo(
+				"localhost", 5672, "alvin", "index", "key");
+		MessagingProvider.getTopicMessageSender(senderRoutingInfo).close();
+		MessageSenderSpy amqpSender = (MessageSenderSpy) amqpFactory.messageSender;
+
+		MessagingProvider.setTransportSelector(routingInfo -> "local");
+		MessagingProvider.getTopicMessageSender(senderRoutingInfo);
+
+		assertTrue(amqpSender.closeWasCalled);
+		assertEquals(amqpFactory.numberOfFactoredSenders, 1);
+		assertEquals(localFactory.numberOfFactoredSenders, 1);
+	}
 }
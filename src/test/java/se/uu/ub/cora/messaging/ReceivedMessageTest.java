@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.spy.MessageAcknowledgerSpy;
+
+public class ReceivedMessageTest {
+
+	@Test
+	public void testInit() {
+		ReceivedMessage receivedMessage = new ReceivedMessage(Map.of("key", "value"), "message",
+				7);
+
+		assertEquals(receivedMessage.headers, Map.of("key", "value"));
+		assertEquals(receivedMessage.message, "message");
+		assertEquals(receivedMessage.deliveryTag, 7);
+	}
+
+	@Test
+	public void testSettlingMessageWithoutAcknowledgerDoesNothing() {
+		ReceivedMessage receivedMessage = new ReceivedMessage(Map.of(), "message", 7);
+
+		receivedMessage.acknowledge();
+		receivedMessage.acknowledgeUpToThis();
+		receivedMessage.reject(true);
+	}
+
+	@Test
+	public void testSettlingUsesAcknowledgerAndDeliveryTag() {
+		MessageAcknowledgerSpy acknowledger = new MessageAcknowledgerSpy();
+		ReceivedMessage receivedMessage = new ReceivedMessage(Map.of(), "message", 7,
+				acknowledger);
+
+		receivedMessage.acknowledge();
+		receivedMessage.acknowledgeUpToThis();
+		receivedMessage.reject(true);
+
+		assertEquals(acknowledger.calls,
+				List.of("acknowledge 7", "acknowledgeUpTo 7", "reject 7 true"));
+	}
+
+	@Test
+	public void testAcknowledgingReceiverGetsMessageFromUnawareListener() {
+		List<ReceivedMessage> received = new ArrayList<>();
+		AcknowledgingMessageReceiver receiver = new AcknowledgingMessageReceiver() {
+			@Override
+			public void receiveMessage(ReceivedMessage receivedMessage) {
+				received.add(receivedMessage);
+			}
+
+			@Override
+			public void topicClosed() {
+				// not used in test
+			}
+		};
+
+		receiver.receiveMessage(Map.of("key", "value"), "message");
+
+		assertEquals(received.get(0).message, "message");
+		assertEquals(received.get(0).headers, Map.of("key", "value"));
+		received.get(0).acknowledge();
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.codec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+
+public class DecodingMessageReceiverTest {
+	private static final String BODY = "<record><id>place:0001</id></record>".repeat(20);
+	private MessageReceiverSpy receiverSpy;
+	private DeflateCodec codec;
+	private DecodingMessageReceiver receiver;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		receiverSpy = new MessageReceiverSpy();
+		codec = new DeflateCodec();
+		receiver = new DecodingMessageReceiver(receiverSpy, codec);
+	}
+
+	private ByteBuffer encode(String body) {
+		byte[] encoded = codec.encode(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)));
+		return ByteBuffer.wrap(encoded);
+	}
+
+	@Test
+	public void testEncodedBodyIsDecoded() {
+		receiver.receiveBinaryMessage(
+				Map.of("action", "UPDATE", MessageHeaders.CONTENT_ENCODING, "deflate"),
+				encode(BODY));
+
+		assertEquals(receiverSpy.receivedMessages, List.of(BODY));
+		Map<String, String> headers = receiverSpy.receivedHeaders.get(0);
+		assertEquals(headers.get("action"), "UPDATE");
+		assertFalse(headers.containsKey(MessageHeaders.CONTENT_ENCODING));
+	}
+
+	@Test
+	public void testDecodedBodyIsHandedOnAsBinary() {
+		byte[] body = new byte[1000];
+		for (int i = 0; i < body.length; i++) {
+			body[i] = (byte) (0x80 | i % 4);
+		}
+		List<ByteBuffer> receivedBodies = new ArrayList<>();
+		receiver = new DecodingMessageReceiver(new MessageReceiverSpy() {
+			@Override
+			public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+				receivedBodies.add(message);
+			}
+		}, codec);
+
+		receiver.receiveBinaryMessage(Map.of(MessageHeaders.CONTENT_ENCODING, "deflate"),
+				ByteBuffer.wrap(codec.encode(ByteBuffer.wrap(body))));
+
+		assertEquals(receivedBodies, List.of(ByteBuffer.wrap(body)));
+	}
+
+	@Test
+	public void testMessageWithoutEncodingIsHandedOnUnchanged() {
+		receiver.receiveMessage(Map.of("action", "UPDATE"), "message");
+		receiver.receiveBinaryMessage(Map.of(),
+				ByteBuffer.wrap("binary".getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(receiverSpy.receivedMessages, List.of("message", "binary"));
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "No codec found for content encoding gzip")
+	public void testUnknownEncodingThrowsError() {
+		receiver.receiveBinaryMessage(Map.of(MessageHeaders.CONTENT_ENCODING, "gzip"),
+				encode(BODY));
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "Message encoded using deflate was delivered as text, it must be delivered as binary")
+	public void testEncodedMessageDeliveredAsTextThrowsError() {
+		receiver.receiveMessage(Map.of(MessageHeaders.CONTENT_ENCODING, "deflate"), "garbage");
+	}
+
+	@Test
+	public void testTopicClosedIsHandedOn() {
+		receiver.topicClosed();
+
+		assertTrue(receiverSpy.topicClosedWasCalled);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.codec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.MessagingException;
+
+public class DeflateCodecTest {
+	private static final String RECORD = "<record><recordInfo><id>place:0001</id>"
+			+ "<type>place</type><dataDivider>alvin</dataDivider></recordInfo>"
+			+ "<name><namePart>Uppsala</namePart></name></record>";
+
+	private ByteBuffer utf8(String text) {
+		return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String decodeToText(PayloadCodec codec, byte[] encoded) {
+		return new String(codec.decode(ByteBuffer.wrap(encoded)), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testEncodedBodyDecodesToOriginal() {
+		DeflateCodec codec = new DeflateCodec();
+		String body = RECORD.repeat(100);
+
+		byte[] encoded = codec.encode(utf8(body));
+
+		assertTrue(encoded.length < body.length() / 10);
+		assertEquals(decodeToText(codec, encoded), body);
+	}
+
+	@Test
+	public void testLargeBodyGrowsBuffers() {
+		DeflateCodec codec = new DeflateCodec(0, null, 1);
+		String body = RECORD.repeat(1000);
+
+		byte[] encoded = codec.encode(utf8(body));
+
+		assertEquals(decodeToText(codec, encoded), body);
+	}
+
+	@Test
+	public void testEncodeDoesNotModifyInput() {
+		ByteBuffer body = utf8(RECORD);
+
+		new DeflateCodec().encode(body);
+
+		assertEquals(body.position(), 0);
+	}
+
+	@Test
+	public void testDictionaryImprovesCompressionOfSmallBodies() {
+		byte[] dictionary = DeflateCodec.buildDictionary(List.of(RECORD), 32768);
+		DeflateCodec withDictionary = new DeflateCodec(6, dictionary, 2);
+		DeflateCodec withoutDictionary = new DeflateCodec();
+		String body = RECORD.replace("0001", "0002");
+
+		byte[] encoded = withDictionary.encode(utf8(body));
+
+		assertTrue(encoded.length < withoutDictionary.encode(utf8(body)).length);
+		assertEquals(decodeToText(withDictionary, encoded), body);
+	}
+
+	@Test
+	public void testContentEncodingNamesDictionary() {
+		byte[] dictionary = "dictionary".getBytes(StandardCharsets.UTF_8);
+
+		assertEquals(new DeflateCodec().getContentEncoding(), "deflate");
+		assertTrue(new DeflateCodec(6, dictionary, 1).getContentEncoding()
+				.matches("deflate-[0-9a-f]+"));
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "Message body could not be decoded using deflate")
+	public void testDecodingWithoutNeededDictionaryThrowsError() {
+		byte[] dictionary = DeflateCodec.buildDictionary(List.of(RECORD), 1024);
+		byte[] encoded = new DeflateCodec(6, dictionary, 1).encode(utf8(RECORD));
+
+		new DeflateCodec().decode(ByteBuffer.wrap(encoded));
+	}
+
+	@Test(expectedExceptions = MessagingException.class)
+	public void testDecodingCorruptBodyThrowsError() {
+		byte[] encoded = new DeflateCodec().encode(utf8(RECORD));
+
+		new DeflateCodec().decode(ByteBuffer.wrap(encoded, 0, encoded.length / 2));
+	}
+
+	@Test
+	public void testBodyOfMaximumDecodedSizeIsDecoded() {
+		DeflateCodec codec = new DeflateCodec(6, null, 1, 100_000);
+		byte[] body = new byte[100_000];
+
+		byte[] encoded = codec.encode(ByteBuffer.wrap(body));
+
+		assertEquals(codec.decode(ByteBuffer.wrap(encoded)), body);
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "Message body decoded using deflate is larger than the maximum of 100000 bytes")
+	public void testDecodingBodyLargerThanMaximumDecodedSizeThrowsError() {
+		DeflateCodec codec = new DeflateCodec(6, null, 1, 100_000);
+		byte[] encoded = codec.encode(ByteBuffer.wrap(new byte[100_001]));
+
+		codec.decode(ByteBuffer.wrap(encoded));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maximumDecodedSize must be at least 1, was 0")
+	public void testInvalidMaximumDecodedSize() {
+		new DeflateCodec(6, null, 1, 0);
+	}
+
+	@Test
+	public void testCompressorsAreReused() {
+		DeflateCodec codec = new DeflateCodec(6, null, 2);
+
+		codec.encode(utf8(RECORD));
+		codec.encode(utf8(RECORD));
+
+		assertEquals(codec.getNumberOfIdleCompressors(), 1);
+	}
+
+	@Test
+	public void testBuildDictionaryKeepsEndOfSamples() {
+		byte[] dictionary = DeflateCodec.buildDictionary(List.of("first", "second"), 8);
+
+		assertEquals(new String(dictionary, StandardCharsets.UTF_8), "stsecond");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "level must be between 0 and 9, was 10")
+	public void testInvalidLevel() {
+		new DeflateCodec(10, null, 1);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.codec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+
+public class EncodingMessageSenderTest {
+	private static final String BODY = "<record><id>place:0001</id></record>".repeat(20);
+	private BinaryCapturingSender capturingSender;
+	private DeflateCodec codec;
+	private EncodingMessageSender sender;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		capturingSender = new BinaryCapturingSender();
+		codec = new DeflateCodec();
+		sender = new EncodingMessageSender(capturingSender, codec, 100);
+	}
+
+	@Test
+	public void testSmallBodyIsSentAsText() {
+		sender.sendMessage(Map.of("action", "UPDATE"), "small");
+
+		assertEquals(capturingSender.textMessage, "small");
+		assertNull(capturingSender.binaryMessage);
+	}
+
+	@Test
+	public void testLargeBodyIsEncodedAndMarked() {
+		Map<String, Object> headers = new HashMap<>(Map.of("action", "UPDATE"));
+
+		sender.sendMessage(headers, BODY);
+
+		assertEquals(capturingSender.headers.get(MessageHeaders.CONTENT_ENCODING), "deflate");
+		assertEquals(capturingSender.headers.get("action"), "UPDATE");
+		assertFalse(headers.containsKey(MessageHeaders.CONTENT_ENCODING));
+		byte[] decoded = codec.decode(capturingSender.binaryMessage);
+		assertEquals(new String(decoded, StandardCharsets.UTF_8), BODY);
+	}
+
+	@Test
+	public void testBodyNotGettingSmallerIsSentUnchanged() {
+		byte[] random = new byte[1000];
+		new Random(1).nextBytes(random);
+
+		sender.sendBinaryMessage(Map.of(), ByteBuffer.wrap(random));
+
+		assertEquals(capturingSender.binaryMessage, ByteBuffer.wrap(random));
+		assertNull(capturingSender.headers.get(MessageHeaders.CONTENT_ENCODING));
+	}
+
+	@Test
+	public void testLargeBinaryBodyIsEncoded() {
+		sender.sendBinaryMessage(Map.of(),
+				ByteBuffer.wrap(BODY.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(capturingSender.headers.get(MessageHeaders.CONTENT_ENCODING), "deflate");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "thresholdSize must be at least 0, was -1")
+	public void testNegativeThreshold() {
+		new EncodingMessageSender(capturingSender, codec, -1);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "messageSender must support binary messages, MessageSenderSpy does not")
+	public void testSenderNotSupportingBinaryMessagesIsRefused() {
+		new EncodingMessageSender(new MessageSenderSpy(), codec, 100);
+	}
+
+	static final class BinaryCapturingSender implements MessageSender {
+		Map<String, Object> headers;
+		String textMessage;
+		ByteBuffer binaryMessage;
+
+		@Override
+		public void sendMessage(Map<String, Object> headers, String message) {
+			this.headers = headers;
+			textMessage = message;
+		}
+
+		@Override
+		public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+			this.headers = headers;
+			binaryMessage = message;
+		}
+
+		@Override
+		public boolean supportsBinaryMessages() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AcknowledgingMessageReceiver;
+import se.uu.ub.cora.messaging.AmqpMessageListenerRoutingInfo;
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
+import se.uu.ub.cora.messaging.JmsMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.MessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.spy.BatchMessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class InMemoryMessagingFactoryTest {
+	private InMemoryMessagingFactory factory;
+	private MessageListener listener;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		factory = new InMemoryMessagingFactory(4, WaitStrategy.YIELD);
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		if (null != listener) {
+			listener.close();
+		}
+	}
+
+	private MessageSender createSender(String exchange, String routingKey) {
+		return factory.factorTopicMessageSender(new AmqpMessageSenderRoutingInfo("localhost", 5672,
+				"alvin", exchange, routingKey));
+	}
+
+	private AmqpMessageListenerRoutingInfo createListenerRoutingInfo(String exchange,
+			String routingKey) {
+		return new AmqpMessageListenerRoutingInfo("localhost", 5672, "alvin", exchange,
+				routingKey);
+	}
+
+	private CollectingReceiver listen(MessageRoutingInfo routingInfo) {
+		CollectingReceiver receiver = new CollectingReceiver();
+		listener = factory.factorTopicMessageListener(routingInfo);
+		listener.listen(receiver);
+		return receiver;
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "capacity must be at least 1, was 0")
+	public void testCapacityMustBePositive() {
+		new InMemoryMessagingFactory(0, WaitStrategy.PARK);
+	}
+
+	@Test
+	public void testMessageIsDeliveredToMatchingListener() throws Exception {
+		CollectingReceiver receiver = listen(createListenerRoutingInfo("index", "alvin.#"));
+
+		createSender("index", "alvin.updates").sendMessage(Map.of("action", "UPDATE", "count", 2),
+				"message");
+
+		ReceivedMessage received = receiver.take();
+		assertEquals(received.message, "message");
+		assertEquals(received.headers, Map.of("action", "UPDATE", "count", "2"));
+	}
+
+	@Test
+	public void testMessageIsNotDeliveredToOtherExchangeOrRoutingKey() throws Exception {
+		CollectingReceiver receiver = listen(createListenerRoutingInfo("index", "alvin.*"));
+
+		createSender("other", "alvin.updates").sendMessage(Map.of(), "otherExchange");
+		createSender("index", "diva.updates").sendMessage(Map.of(), "otherRoutingKey");
+		createSender("index", "alvin.updates").sendMessage(Map.of(), "matching");
+
+		assertEquals(receiver.take().message, "matching");
+		assertTrue(receiver.received.isEmpty());
+	}
+
+	@Test
+	public void testAllMatchingListenersGetTheMessage() throws Exception {
+		CollectingReceiver first = listen(createListenerRoutingInfo("index", "alvin.#"));
+		MessageListener firstListener = listener;
+		CollectingReceiver second = listen(createListenerRoutingInfo("index", "#"));
+
+		createSender("index", "alvin.updates").sendMessage(Map.of(), "message");
+
+		assertEquals(first.take().message, "message");
+		assertEquals(second.take().message, "message");
+		firstListener.close();
+	}
+
+	@Test
+	public void testQueueListenerGetsMessagesSentToDefaultExchangeWithQueueName()
+			throws Exception {
+		CollectingReceiver receiver = listen(
+				new AmqpMessageListenerRoutingInfo("localhost", 5672, "alvin", "someQueue"));
+
+		createSender("", "someQueue").sendMessage(Map.of(), "message");
+
+		assertEquals(receiver.take().message, "message");
+	}
+
+	@Test
+	public void testJmsSenderAndListenerUseDefaultExchange() throws Exception {
+		CollectingReceiver receiver = listen(
+				new JmsMessageRoutingInfo("localhost", 61617, "alvin.>", "user", "password"));
+
+		factory.factorTopicMessageSender(
+				new JmsMessageRoutingInfo("localhost", 61617, "alvin.updates", "user", "password"))
+				.sendMessage(Map.of(), "message");
+
+		assertEquals(receiver.take().message, "message");
+	}
+
+	@Test
+	public void testSenderPriorityIsSentAsHeader() throws Exception {
+		CollectingReceiver receiver = listen(createListenerRoutingInfo("index", "#"));
+		MessageSender sender = factory.factorTopicMessageSender(
+				new AmqpMessageSenderRoutingInfo("localhost", 5672, "alvin", "index", "key")
+						.withPriority(5));
+
+		sender.sendMessage(Map.of(), "senderPriority");
+		sender.sendMessage(Map.of(MessageHeaders.PRIORITY, 1), "ownPriority");
+
+		assertEquals(receiver.take().headers, Map.of(MessageHeaders.PRIORITY, "5"));
+		assertEquals(receiver.take().headers, Map.of(MessageHeaders.PRIORITY, "1"));
+	}
+
+	@Test
+	public void testNoPriorityHeaderWithoutSenderPriority() throws Exception {
+		CollectingReceiver receiver = listen(createListenerRoutingInfo("index", "#"));
+
+		createSender("index", "key").sendMessage(Map.of(), "message");
+
+		assertEquals(receiver.take().headers, Map.of());
+	}
+
+	@Test
+	public void testSenderWaitsForRoomWhenBufferIsFull() throws Exception {
+		BlockingReceiver receiver = new BlockingReceiver();
+		listener = factory.factorTopicMessageListener(createListenerRoutingInfo("index", "#"));
+		listener.listen(receiver);
+		MessageSender sender = createSender("index", "key");
+
+		CompletableFuture<Void> sending = CompletableFuture.runAsync(() -> {
+			for (int i = 0; i < 10; i++) {
+				sender.sendMessage(Map.of(), "message" + i);
+			}
+		});
+		Thread.sleep(50);
+
+		assertFalse(sending.isDone());
+		receiver.released.complete(null);
+		sending.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testClosedListenerGetsNoMoreMessages() throws Exception {
+		CollectingReceiver receiver = listen(createListenerRoutingInfo("index", "#"));
+		listener.close();
+
+		createSender("index", "key").sendMessage(Map.of(), "message");
+
+		assertEquals(factory.getNumberOfSubscriptions(), 0);
+		assertTrue(receiver.received.isEmpty());
+	}
+
+	@Test
+	public void testAcknowledgingReceiverGetsDeliveryTags() throws Exception {
+		CollectingReceiver receiver = listen(createListenerRoutingInfo("index", "#"));
+		MessageSender sender = createSender("index", "key");
+
+		sender.sendMessage(Map.of(), "first");
+		sender.sendMessage(Map.of(), "second");
+
+		assertEquals(receiver.take().deliveryTag, 1);
+		assertEquals(receiver.take().deliveryTag, 2);
+	}
+
+	@Test
+	public void testBatchReceiverGetsBatches() throws Exception {
+		BatchMessageReceiverSpy receiver = new BatchMessageReceiverSpy();
+		listener = factory.factorTopicMessageListener(createListenerRoutingInfo("index", "#"));
+		listener.listen(receiver);
+		MessageSender sender = createSender("index", "key");
+
+		for (int i = 0; i < 3; i++) {
+			sender.sendMessage(Map.of(), "message" + i);
+		}
+
+		long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (receiver.getNumberOfReceivedBatches() == 0 && System.nanoTime() < giveUpAt) {
+			Thread.sleep(1);
+		}
+		List<ReceivedMessage> batch = receiver.receivedBatches.get(0);
+		assertEquals(batch.size(), 3);
+		assertEquals(batch.get(2).message, "message2");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "Unsupported routing info for in memory messaging: AmqpMessageListenerRoutingInfo")
+	public void testListenerRoutingInfoCanNotBeUsedForSender() {
+		factory.factorTopicMessageSender(createListenerRoutingInfo("index", "#"));
+	}
+
+	private static final class CollectingReceiver implements AcknowledgingMessageReceiver {
+		final BlockingQueue<ReceivedMessage> received = new LinkedBlockingQueue<>();
+
+		@Override
+		public void receiveMessage(ReceivedMessage message) {
+			received.add(message);
+		}
+
+		@Override
+		public void topicClosed() {
+			// not used in test
+		}
+
+		ReceivedMessage take() throws InterruptedException {
+			return received.poll(5, TimeUnit.SECONDS);
+		}
+	}
+
+	private static final class BlockingReceiver implements MessageReceiver {
+		final CompletableFuture<Void> released = new CompletableFuture<>();
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			released.join();
+		}
+
+		@Override
+		public void topicClosed() {
+			// not used in test
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class RingBufferTest {
+
+	@Test
+	public void testCapacityIsRoundedUpToPowerOfTwo() {
+		assertEquals(new RingBuffer<String>(1).capacity(), 1);
+		assertEquals(new RingBuffer<String>(3).capacity(), 4);
+		assertEquals(new RingBuffer<String>(1024).capacity(), 1024);
+	}
+
+	@Test
+	public void testPollReturnsElementsInOfferedOrder() {
+		RingBuffer<String> buffer = new RingBuffer<>(4);
+		buffer.offer("first");
+		buffer.offer("second");
+
+		assertEquals(buffer.poll(), "first");
+		assertEquals(buffer.poll(), "second");
+		assertNull(buffer.poll());
+	}
+
+	@Test
+	public void testOfferFailsWhenFull() {
+		RingBuffer<String> buffer = new RingBuffer<>(2);
+
+		assertTrue(buffer.offer("first"));
+		assertTrue(buffer.offer("second"));
+		assertFalse(buffer.offer("third"));
+		assertEquals(buffer.size(), 2);
+	}
+
+	@Test
+	public void testSlotsAreReusedAfterPoll() {
+		RingBuffer<Integer> buffer = new RingBuffer<>(2);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(buffer.offer(i));
+			assertEquals(buffer.poll(), Integer.valueOf(i));
+		}
+		assertEquals(buffer.size(), 0);
+	}
+
+	@Test
+	public void testConcurrentProducersAndConsumerLoseNoElements() throws Exception {
+		RingBuffer<Integer> buffer = new RingBuffer<>(16);
+		CompletableFuture<Void> firstProducer = produce(buffer, 0, 10_000);
+		CompletableFuture<Void> secondProducer = produce(buffer, 10_000, 20_000);
+
+		Set<Integer> polled = new HashSet<>();
+		while (polled.size() < 20_000) {
+			Integer element = buffer.poll();
+			if (null != element) {
+				polled.add(element);
+			}
+		}
+
+		firstProducer.get(5, TimeUnit.SECONDS);
+		secondProducer.get(5, TimeUnit.SECONDS);
+		assertEquals(polled.size(), 20_000);
+		assertNull(buffer.poll());
+	}
+
+	private CompletableFuture<Void> produce(RingBuffer<Integer> buffer, int from, int to) {
+		return CompletableFuture.runAsync(() -> {
+			for (int i = from; i < to; i++) {
+				while (!buffer.offer(i)) {
+					Thread.onSpinWait();
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.memory;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class TopicPatternTest {
+
+	private boolean matches(TopicPattern pattern, String routingKey) {
+		return pattern.matches(TopicPattern.splitIntoWords(routingKey));
+	}
+
+	@Test
+	public void testPatternWithoutWildcardsMatchesOnlySameKey() {
+		TopicPattern pattern = TopicPattern.compile("alvin.updates.place");
+
+		assertTrue(matches(pattern, "alvin.updates.place"));
+		assertFalse(matches(pattern, "alvin.updates"));
+		assertFalse(matches(pattern, "alvin.updates.person"));
+	}
+
+	@Test
+	public void testStarMatchesExactlyOneWord() {
+		TopicPattern pattern = TopicPattern.compile("alvin.*.place");
+
+		assertTrue(matches(pattern, "alvin.updates.place"));
+		assertFalse(matches(pattern, "alvin.place"));
+		assertFalse(matches(pattern, "alvin.updates.more.place"));
+	}
+
+	@Test
+	public void testHashMatchesZeroOrMoreWords() {
+		TopicPattern pattern = TopicPattern.compile("alvin.#");
+
+		assertTrue(matches(pattern, "alvin"));
+		assertTrue(matches(pattern, "alvin.updates"));
+		assertTrue(matches(pattern, "alvin.updates.place"));
+		assertFalse(matches(pattern, "diva.updates"));
+	}
+
+	@Test
+	public void testHashInMiddleOfPattern() {
+		TopicPattern pattern = TopicPattern.compile("alvin.#.place");
+
+		assertTrue(matches(pattern, "alvin.place"));
+		assertTrue(matches(pattern, "alvin.updates.new.place"));
+		assertFalse(matches(pattern, "alvin.updates.person"));
+	}
+
+	@Test
+	public void testJmsWildcardIsTreatedAsHash() {
+		TopicPattern pattern = TopicPattern.compile("alvin.>");
+
+		assertTrue(matches(pattern, "alvin.updates.place"));
+	}
+
+	@Test
+	public void testLiteralDoesNotTreatWildcardsSpecially() {
+		TopicPattern pattern = TopicPattern.literal("queue.*");
+
+		assertTrue(matches(pattern, "queue.*"));
+		assertFalse(matches(pattern, "queue.name"));
+	}
+}
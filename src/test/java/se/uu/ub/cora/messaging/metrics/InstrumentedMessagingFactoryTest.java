@@ -0,0 +1,246 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.AcknowledgingMessageReceiver;
+import se.uu.ub.cora.messaging.AmqpMessageListenerRoutingInfo;
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
+import se.uu.ub.cora.messaging.BatchMessageReceiver;
+import se.uu.ub.cora.messaging.JmsMessageRoutingInfo;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.spy.BatchMessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.MessageListenerSpy;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+import se.uu.ub.cora.messaging.spy.MessagingFactorySpy;
+
+public class InstrumentedMessagingFactoryTest {
+	private MessagingFactorySpy factorySpy;
+	private MessagingMetrics metrics;
+	private InstrumentedMessagingFactory factory;
+	private AmqpMessageSenderRoutingInfo senderRoutingInfo;
+	private AmqpMessageListenerRoutingInfo listenerRoutingInfo;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		factorySpy = new MessagingFactorySpy();
+		metrics = new MessagingMetrics();
+		factory = new InstrumentedMessagingFactory(factorySpy, metrics);
+		senderRoutingInfo = new AmqpMessageSenderRoutingInfo("localhost", 5672, "alvin", "index",
+				"alvin.updates");
+		listenerRoutingInfo = new AmqpMessageListenerRoutingInfo("localhost", 5672, "alvin",
+				"someQueue");
+	}
+
+	private RoutingKeyMetricsSnapshot getSnapshot(String routingKey) {
+		return metrics.getSnapshot().get(routingKey);
+	}
+
+	@Test
+	public void testSentMessageIsPassedOnAndRecorded() {
+		MessageSender sender = factory.factorTopicMessageSender(senderRoutingInfo);
+
+		sender.sendMessage(Map.of(), "message");
+
+		MessageSenderSpy senderSpy = (MessageSenderSpy) factorySpy.messageSender;
+		assertEquals(senderSpy.sentMessages.get(0).message, "message");
+		RoutingKeyMetricsSnapshot snapshot = getSnapshot("alvin.updates");
+		assertEquals(snapshot.sendLatency.getCount(), 1);
+		assertEquals(snapshot.sentMessageSize.getMax(), 7);
+		assertEquals(snapshot.sendErrors, 0);
+		assertEquals(snapshot.sendsInFlight, 0);
+	}
+
+	@Test
+	public void testFailedSendIsCountedAsError() {
+		MessageSender sender = factory.factorTopicMessageSender(senderRoutingInfo);
+		RuntimeException error = new RuntimeException("send failed");
+		((MessageSenderSpy) factorySpy.messageSender).exceptionToThrow = error;
+
+		try {
+			sender.sendMessage(Map.of(), "message");
+		} catch (RuntimeException e) {
+			assertSame(e, error);
+		}
+
+		assertEquals(getSnapshot("alvin.updates").sendErrors, 1);
+		assertEquals(getSnapshot("alvin.updates").sendsInFlight, 0);
+	}
+
+	@Test
+	public void testBinaryMessageSizeIsInBytes() {
+		MessageSender sender = factory.factorTopicMessageSender(senderRoutingInfo);
+
+		sender.sendBinaryMessage(Map.of(), ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+
+		assertEquals(getSnapshot("alvin.updates").sentMessageSize.getMax(), 3);
+	}
+
+	@Test
+	public void testTextMessageSizeIsInCharacters() {
+		MessageSender sender = factory.factorTopicMessageSender(senderRoutingInfo);
+
+		sender.sendMessage(Map.of(), "aå€\uD83D\uDE00");
+
+		assertEquals(getSnapshot("alvin.updates").sentMessageSize.getMax(), 5);
+	}
+
+	@Test
+	public void testBatchIsSentAsOneBatch() {
+		MessageSender sender = factory.factorTopicMessageSender(senderRoutingInfo);
+
+		sender.sendMessages(List.of(new OutgoingMessage(Map.of(), "a"),
+				new OutgoingMessage(Map.of(), "bb")));
+
+		assertEquals(((MessageSenderSpy) factorySpy.messageSender).sentBatches.size(), 1);
+		RoutingKeyMetricsSnapshot snapshot = getSnapshot("alvin.updates");
+		assertEquals(snapshot.sendLatency.getCount(), 1);
+		assertEquals(snapshot.sentMessageSize.getCount(), 2);
+	}
+
+	@Test
+	public void testCloseIsPassedOn() {
+		factory.factorTopicMessageSender(senderRoutingInfo).close();
+
+		assertTrue(((MessageSenderSpy) factorySpy.messageSender).closeWasCalled);
+	}
+
+	@Test
+	public void testReceivedMessageIsPassedOnAndRecorded() {
+		MessageReceiverSpy receiver = new MessageReceiverSpy();
+		MessageListener listener = factory.factorTopicMessageListener(listenerRoutingInfo);
+		listener.listen(receiver);
+
+		getReceiverGivenToListener().receiveMessage(Map.of("key", "value"), "message");
+
+		assertEquals(receiver.receivedMessages.get(0), "message");
+		RoutingKeyMetricsSnapshot snapshot = getSnapshot("someQueue");
+		assertEquals(snapshot.receiveLatency.getCount(), 1);
+		assertEquals(snapshot.receivedMessageSize.getMax(), 7);
+		assertEquals(snapshot.receivesInFlight, 0);
+	}
+
+	private MessageReceiver getReceiverGivenToListener() {
+		return ((MessageListenerSpy) factorySpy.messageListener).messageReceiver;
+	}
+
+	@Test
+	public void testFailingReceiverIsCountedAsError() {
+		MessageReceiverSpy receiver = new MessageReceiverSpy();
+		receiver.exceptionToThrow = new RuntimeException("receive failed");
+		factory.factorTopicMessageListener(listenerRoutingInfo).listen(receiver);
+
+		try {
+			getReceiverGivenToListener().receiveMessage(Map.of(), "message");
+		} catch (RuntimeException e) {
+			// expected
+		}
+
+		assertEquals(getSnapshot("someQueue").receiveErrors, 1);
+	}
+
+	@Test
+	public void testBatchReceiverIsStillBatchReceiver() {
+		BatchMessageReceiverSpy receiver = new BatchMessageReceiverSpy();
+		factory.factorTopicMessageListener(listenerRoutingInfo).listen(receiver);
+
+		BatchMessageReceiver wrapped = (BatchMessageReceiver) getReceiverGivenToListener();
+		wrapped.receiveMessages(List.of(new ReceivedMessage(Map.of(), "a", 1),
+				new ReceivedMessage(Map.of(), "b", 2)));
+
+		assertEquals(wrapped.getMaxBatchSize(), 3);
+		assertEquals(receiver.getNumberOfReceivedBatches(), 1);
+		assertEquals(getSnapshot("someQueue").receiveLatency.getCount(), 1);
+		assertEquals(getSnapshot("someQueue").receivedMessageSize.getCount(), 2);
+	}
+
+	@Test
+	public void testAcknowledgingReceiverIsStillAcknowledging() {
+		ReceivedMessage[] received = new ReceivedMessage[1];
+		AcknowledgingMessageReceiver receiver = new AcknowledgingMessageReceiver() {
+			@Override
+			public void receiveMessage(ReceivedMessage receivedMessage) {
+				received[0] = receivedMessage;
+			}
+
+			@Override
+			public void topicClosed() {
+				// not used in test
+			}
+		};
+		factory.factorTopicMessageListener(listenerRoutingInfo).listen(receiver);
+		ReceivedMessage message = new ReceivedMessage(Map.of(), "message", 1);
+
+		((AcknowledgingMessageReceiver) getReceiverGivenToListener()).receiveMessage(message);
+
+		assertSame(received[0], message);
+		assertEquals(getSnapshot("someQueue").receiveLatency.getCount(), 1);
+	}
+
+	@Test
+	public void testTopicClosedAndListenerCloseArePassedOn() {
+		MessageReceiverSpy receiver = new MessageReceiverSpy();
+		MessageListener listener = factory.factorTopicMessageListener(listenerRoutingInfo);
+		listener.listen(receiver);
+
+		getReceiverGivenToListener().topicClosed();
+		listener.close();
+
+		assertTrue(receiver.topicClosedWasCalled);
+		assertTrue(((MessageListenerSpy) factorySpy.messageListener).closeWasCalled);
+	}
+
+	@Test
+	public void testAsyncSendIsRecordedWhenCompleted() throws Exception {
+		factory.factorTopicAsyncMessageSender(senderRoutingInfo, 10)
+				.sendMessageAsync(Map.of(), "message").get();
+
+		RoutingKeyMetricsSnapshot snapshot = getSnapshot("alvin.updates");
+		assertEquals(snapshot.sendLatency.getCount(), 1);
+		assertEquals(snapshot.sendsInFlight, 0);
+	}
+
+	@Test
+	public void testTransportNamePriorityAndSupportedTypesAreForwarded() {
+		factorySpy.transportName = "amqp";
+		factorySpy.priority = 5;
+		factorySpy.supportedRoutingInfoType = JmsMessageRoutingInfo.class;
+
+		assertEquals(factory.getTransportName(), "amqp");
+		assertEquals(factory.getPriority(), 5);
+		assertTrue(factory.supportsRoutingInfoType(JmsMessageRoutingInfo.class));
+		assertFalse(factory.supportsRoutingInfoType(AmqpMessageSenderRoutingInfo.class));
+	}
+}
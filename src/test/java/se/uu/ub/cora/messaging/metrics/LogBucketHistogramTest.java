@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class LogBucketHistogramTest {
+
+	@Test
+	public void testEmptySnapshot() {
+		HistogramSnapshot snapshot = new LogBucketHistogram().snapshot();
+
+		assertEquals(snapshot.getCount(), 0);
+		assertEquals(snapshot.getMean(), 0.0);
+		assertEquals(snapshot.getValueAtPercentile(99), 0);
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		LogBucketHistogram histogram = new LogBucketHistogram();
+		for (int i = 0; i < 16; i++) {
+			histogram.record(i);
+		}
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		assertEquals(snapshot.getCount(), 16);
+		assertEquals(snapshot.getSum(), 120);
+		assertEquals(snapshot.getMax(), 15);
+		assertEquals(snapshot.getValueAtPercentile(50), 7);
+		assertEquals(snapshot.getValueAtPercentile(100), 15);
+	}
+
+	@Test
+	public void testBucketsAreContiguous() {
+		for (long value = 0; value < 100_000; value++) {
+			int index = LogBucketHistogram.bucketIndex(value);
+			assertTrue(LogBucketHistogram.highestValueInBucket(index) >= value);
+			if (index > 0) {
+				assertTrue(LogBucketHistogram.highestValueInBucket(index - 1) < value);
+			}
+		}
+	}
+
+	@Test
+	public void testLargeValuesWithinRelativeError() {
+		LogBucketHistogram histogram = new LogBucketHistogram();
+		histogram.record(1_000_000);
+		histogram.record(5_000_000);
+
+		HistogramSnapshot snapshot = histogram.snapshot();
+		long median = snapshot.getValueAtPercentile(50);
+		assertTrue(median >= 1_000_000 && median <= 1_125_000, "median was " + median);
+		assertEquals(snapshot.getValueAtPercentile(100), 5_000_000);
+	}
+
+	@Test
+	public void testMaximumValueCanBeRecorded() {
+		LogBucketHistogram histogram = new LogBucketHistogram();
+
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(histogram.snapshot().getValueAtPercentile(100), Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testNegativeValuesAreRecordedAsZero() {
+		LogBucketHistogram histogram = new LogBucketHistogram();
+
+		histogram.record(-5);
+
+		assertEquals(histogram.snapshot().getMax(), 0);
+		assertEquals(histogram.snapshot().getCount(), 1);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "percentile must be between 0 and 100, was 101.0")
+	public void testPercentileOutOfRange() {
+		new LogBucketHistogram().snapshot().getValueAtPercentile(101);
+	}
+}
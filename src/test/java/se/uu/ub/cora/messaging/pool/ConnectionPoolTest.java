@@ -0,0 +1,283 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.pool;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageListenerRoutingInfo;
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.pool.ConnectionProviderSpy.ChannelSpy;
+import se.uu.ub.cora.messaging.pool.ConnectionProviderSpy.ConnectionSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class ConnectionPoolTest {
+	private ConnectionProviderSpy provider;
+	private ConnectionPool<ConnectionSpy, ChannelSpy> pool;
+	private MessagingEndpoint endpoint;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		provider = new ConnectionProviderSpy();
+		pool = new ConnectionPool<>(provider, 2, 2, Duration.ZERO);
+		endpoint = new MessagingEndpoint("localhost", 5672, "alvin");
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		pool.close();
+	}
+
+	private ChannelSpy leaseAndRelease() {
+		try (ChannelLease<ChannelSpy> lease = pool.leaseChannel(endpoint)) {
+			return lease.getChannel();
+		}
+	}
+
+	@Test
+	public void testEndpointFromRoutingInfosIgnoresExchangeAndRoutingKey() {
+		AmqpMessageSenderRoutingInfo senderRoutingInfo = new AmqpMessageSenderRoutingInfo(
+				"localhost", 5672, "alvin", "index", "key1");
+		AmqpMessageListenerRoutingInfo listenerRoutingInfo = new AmqpMessageListenerRoutingInfo(
+				"localhost", 5672, "alvin", "other", "key2");
+
+		assertEquals(MessagingEndpoint.fromRoutingInfo(senderRoutingInfo), endpoint);
+		assertEquals(MessagingEndpoint.fromRoutingInfo(listenerRoutingInfo), endpoint);
+		assertEquals(endpoint.toString(), "localhost:5672/alvin");
+	}
+
+	@Test
+	public void testLeasesFromSameThreadReuseChannelAndConnection() {
+		ChannelSpy first = leaseAndRelease();
+		ChannelSpy second = leaseAndRelease();
+
+		assertSame(first, second);
+		assertEquals(provider.openedConnections.size(), 1);
+		assertEquals(pool.getNumberOfConnections(endpoint), 1);
+	}
+
+	@Test
+	public void testLeasedChannelIsNotLeasedAgainUntilReleased() {
+		try (ChannelLease<ChannelSpy> first = pool.leaseChannel(endpoint);
+				ChannelLease<ChannelSpy> second = pool.leaseChannel(endpoint)) {
+			assertNotSame(first.getChannel(), second.getChannel());
+		}
+	}
+
+	@Test
+	public void testThreadLeasingAllChannelsCanNotLeaseMore() {
+		pool.close();
+		pool = new ConnectionPool<>(provider, 1, 1, Duration.ZERO);
+		ChannelLease<ChannelSpy> lease = pool.leaseChannel(endpoint);
+
+		try (ChannelLease<ChannelSpy> unexpectedLease = pool.leaseChannel(endpoint)) {
+			fail("Leasing should have failed, got " + unexpectedLease.getChannel());
+		} catch (IllegalStateException e) {
+			assertEquals(e.getMessage(),
+					"All shared channels to localhost:5672/alvin are leased by the current thread");
+		}
+		lease.close();
+		try (ChannelLease<ChannelSpy> leaseAfterRelease = pool.leaseChannel(endpoint)) {
+			assertSame(leaseAfterRelease.getChannel(), lease.getChannel());
+		}
+	}
+
+	@Test
+	public void testManyThreadsShareLimitedConnectionsAndChannels() throws Exception {
+		AtomicInteger sharedUse = new AtomicInteger();
+		List<Thread> threads = new ArrayList<>();
+		CountDownLatch start = new CountDownLatch(1);
+		for (int i = 0; i < 16; i++) {
+			threads.add(Thread.ofPlatform().start(() -> leaseRepeatedly(start, sharedUse)));
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(10_000);
+		}
+
+		assertEquals(sharedUse.get(), 0);
+		assertEquals(provider.openedConnections.size(), 2);
+		assertTrue(provider.openedChannels.size() <= 4);
+	}
+
+	private void leaseRepeatedly(CountDownLatch start, AtomicInteger sharedUse) {
+		awaitQuietly(start);
+		for (int i = 0; i < 1000; i++) {
+			try (ChannelLease<ChannelSpy> lease = pool.leaseChannel(endpoint)) {
+				if (lease.getChannel().users.incrementAndGet() != 1) {
+					sharedUse.incrementAndGet();
+				}
+				lease.getChannel().users.decrementAndGet();
+			}
+		}
+	}
+
+	private void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	public void testClosedChannelIsReplacedOnNextLease() {
+		ChannelSpy first = leaseAndRelease();
+		first.open = false;
+
+		ChannelSpy second = leaseAndRelease();
+
+		assertNotSame(first, second);
+		assertTrue(first.closeWasCalled);
+		assertEquals(provider.openedConnections.size(), 1);
+	}
+
+	@Test
+	public void testInvalidatedChannelIsClosedWhenReleased() {
+		ChannelSpy channel;
+		try (ChannelLease<ChannelSpy> lease = pool.leaseChannel(endpoint)) {
+			channel = lease.getChannel();
+			lease.invalidate();
+		}
+
+		assertTrue(channel.closeWasCalled);
+		assertNotSame(leaseAndRelease(), channel);
+	}
+
+	@Test
+	public void testBrokenConnectionIsReplacedOnNextLease() {
+		ChannelSpy first = leaseAndRelease();
+		first.connection.open = false;
+
+		ChannelSpy second = leaseAndRelease();
+
+		assertTrue(first.connection.closeWasCalled);
+		assertNotSame(second.connection, first.connection);
+		assertTrue(second.connection.open);
+	}
+
+	@Test
+	public void testHealthCheckClosesBrokenConnectionsAndChannels() {
+		ChannelSpy channel = leaseAndRelease();
+		channel.connection.open = false;
+
+		pool.checkHealth();
+
+		assertTrue(channel.connection.closeWasCalled);
+		assertTrue(channel.closeWasCalled);
+		assertEquals(pool.getNumberOfConnections(endpoint), 0);
+	}
+
+	@Test
+	public void testHealthCheckTimer() throws Exception {
+		pool.close();
+		pool = new ConnectionPool<>(provider, 1, 1, Duration.ofMillis(5));
+		ChannelSpy channel = leaseAndRelease();
+		channel.connection.open = false;
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!channel.closeWasCalled && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+
+		assertTrue(channel.connection.closeWasCalled);
+		assertTrue(channel.closeWasCalled);
+	}
+
+	@Test
+	public void testDedicatedChannelsAreSpreadOverConnectionsAndClosedWithLease() {
+		ChannelLease<ChannelSpy> first = pool.openDedicatedChannel(endpoint);
+		ChannelLease<ChannelSpy> second = pool.openDedicatedChannel(endpoint);
+
+		assertNotSame(first.getChannel().connection, second.getChannel().connection);
+		first.close();
+		assertTrue(first.getChannel().closeWasCalled);
+		assertFalse(second.getChannel().closeWasCalled);
+		second.close();
+	}
+
+	@Test
+	public void testFailingConnectionIsReportedAndReleasesChannel() {
+		RuntimeException failure = new RuntimeException("refused");
+		provider.exceptionToThrowOnOpenConnection = failure;
+		pool.close();
+		pool = new ConnectionPool<>(provider, 1, 1, Duration.ZERO);
+		try {
+			pool.leaseChannel(endpoint);
+			fail("Expected connection to fail");
+		} catch (MessagingException e) {
+			assertEquals(e.getMessage(), "Could not open connection to localhost:5672/alvin");
+			assertSame(e.getCause(), failure);
+		}
+		provider.exceptionToThrowOnOpenConnection = null;
+
+		leaseAndRelease();
+
+		assertEquals(provider.openedConnections.size(), 1);
+	}
+
+	@Test
+	public void testCloseClosesChannelsAndConnections() {
+		ChannelSpy channel = leaseAndRelease();
+
+		pool.close();
+
+		assertTrue(channel.closeWasCalled);
+		assertTrue(channel.connection.closeWasCalled);
+		assertEquals(pool.getNumberOfConnections(endpoint), 0);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ""
+			+ "ConnectionPool is closed")
+	public void testLeaseAfterClose() {
+		pool.close();
+
+		pool.leaseChannel(endpoint);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxConnectionsPerEndpoint must be at least 1, was 0")
+	public void testMaxConnectionsMustBePositive() {
+		new ConnectionPool<>(provider, 0, 1, Duration.ZERO);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "channelsPerConnection must be at least 1, was 0")
+	public void testChannelsPerConnectionMustBePositive() {
+		new ConnectionPool<>(provider, 1, 0, Duration.ZERO);
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.pool;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.uu.ub.cora.messaging.pool.ConnectionProviderSpy.ChannelSpy;
+import se.uu.ub.cora.messaging.pool.ConnectionProviderSpy.ConnectionSpy;
+
+public class ConnectionProviderSpy implements ConnectionProvider<ConnectionSpy, ChannelSpy> {
+
+	public List<ConnectionSpy> openedConnections = new CopyOnWriteArrayList<>();
+	public List<ChannelSpy> openedChannels = new CopyOnWriteArrayList<>();
+	public RuntimeException exceptionToThrowOnOpenConnection;
+
+	public static class ConnectionSpy {
+		public MessagingEndpoint endpoint;
+		public volatile boolean open = true;
+		public volatile boolean closeWasCalled = false;
+	}
+
+	public static class ChannelSpy {
+		public ConnectionSpy connection;
+		public volatile boolean open = true;
+		public volatile boolean closeWasCalled = false;
+		public AtomicInteger users = new AtomicInteger();
+	}
+
+	@Override
+	public ConnectionSpy openConnection(MessagingEndpoint endpoint) {
+		if (null != exceptionToThrowOnOpenConnection) {
+			throw exceptionToThrowOnOpenConnection;
+		}
+		ConnectionSpy connection = new ConnectionSpy();
+		connection.endpoint = endpoint;
+		openedConnections.add(connection);
+		return connection;
+	}
+
+	@Override
+	public ChannelSpy openChannel(ConnectionSpy connection) {
+		ChannelSpy channel = new ChannelSpy();
+		channel.connection = connection;
+		openedChannels.add(channel);
+		return channel;
+	}
+
+	@Override
+	public boolean isConnectionOpen(ConnectionSpy connection) {
+		return connection.open;
+	}
+
+	@Override
+	public boolean isChannelOpen(ChannelSpy channel) {
+		return channel.open && channel.connection.open;
+	}
+
+	@Override
+	public void closeChannel(ChannelSpy channel) {
+		channel.open = false;
+		channel.closeWasCalled = true;
+	}
+
+	@Override
+	public void closeConnection(ConnectionSpy connection) {
+		connection.open = false;
+		connection.closeWasCalled = true;
+	}
+}
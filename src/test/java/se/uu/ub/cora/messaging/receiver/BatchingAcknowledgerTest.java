@@ -0,0 +1,135 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.spy.MessageAcknowledgerSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class BatchingAcknowledgerTest {
+	private MessageAcknowledgerSpy acknowledgerSpy;
+	private BatchingAcknowledger acknowledger;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		acknowledgerSpy = new MessageAcknowledgerSpy();
+		acknowledger = BatchingAcknowledger.create(acknowledgerSpy, 1, 3, Duration.ZERO);
+	}
+
+	@Test
+	public void testAcknowledgementsAreCollectedAndSentCumulatively() {
+		acknowledger.acknowledge(1);
+		acknowledger.acknowledge(2);
+
+		assertEquals(acknowledgerSpy.calls.size(), 0);
+
+		acknowledger.acknowledge(3);
+
+		assertEquals(acknowledgerSpy.calls, List.of("acknowledgeUpTo 3"));
+	}
+
+	@Test
+	public void testUnsettledMessageHoldsBackLaterAcknowledgements() {
+		acknowledger.acknowledge(2);
+		acknowledger.acknowledge(3);
+		acknowledger.acknowledge(4);
+
+		assertEquals(acknowledgerSpy.calls.size(), 0);
+
+		acknowledger.acknowledge(1);
+		acknowledger.flush();
+
+		assertEquals(acknowledgerSpy.calls, List.of("acknowledgeUpTo 4"));
+	}
+
+	@Test
+	public void testFlushOnlySendsNewAcknowledgements() {
+		acknowledger.acknowledge(1);
+		acknowledger.flush();
+		acknowledger.flush();
+		acknowledger.acknowledge(2);
+		acknowledger.flush();
+
+		assertEquals(acknowledgerSpy.calls, List.of("acknowledgeUpTo 1", "acknowledgeUpTo 2"));
+	}
+
+	@Test
+	public void testRejectIsPassedOnAndCountsAsSettled() {
+		acknowledger.acknowledge(1);
+		acknowledger.reject(2, true);
+		acknowledger.acknowledge(3);
+		acknowledger.flush();
+
+		assertEquals(acknowledgerSpy.calls, List.of("reject 2 true", "acknowledgeUpTo 3"));
+	}
+
+	@Test
+	public void testRejectedMessageIsNotAcknowledged() {
+		acknowledger.acknowledge(1);
+		acknowledger.reject(2, false);
+		acknowledger.flush();
+		acknowledger.acknowledge(3);
+		acknowledger.flush();
+
+		assertEquals(acknowledgerSpy.calls,
+				List.of("reject 2 false", "acknowledgeUpTo 1", "acknowledgeUpTo 3"));
+	}
+
+	@Test
+	public void testAcknowledgeUpToIsPassedOnImmediately() {
+		acknowledger.acknowledge(6);
+		acknowledger.acknowledgeUpTo(5);
+		acknowledger.flush();
+
+		assertEquals(acknowledgerSpy.calls, List.of("acknowledgeUpTo 5", "acknowledgeUpTo 6"));
+	}
+
+	@Test
+	public void testFirstDeliveryTag() {
+		acknowledger = BatchingAcknowledger.create(acknowledgerSpy, 10, 3, Duration.ZERO);
+
+		acknowledger.acknowledge(10);
+		acknowledger.close();
+
+		assertEquals(acknowledgerSpy.calls, List.of("acknowledgeUpTo 10"));
+	}
+
+	@Test
+	public void testTimedFlush() throws Exception {
+		acknowledger = BatchingAcknowledger.create(acknowledgerSpy, 1, 100, Duration.ofMillis(10));
+
+		acknowledger.acknowledge(1);
+
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (acknowledgerSpy.getCalls().isEmpty() && System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+		assertEquals(acknowledgerSpy.getCalls(), List.of("acknowledgeUpTo 1"));
+		acknowledger.close();
+	}
+}
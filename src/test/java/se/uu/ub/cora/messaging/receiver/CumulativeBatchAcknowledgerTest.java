@@ -0,0 +1,57 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.spy.MessageAcknowledgerSpy;
+
+public class CumulativeBatchAcknowledgerTest {
+	private MessageAcknowledgerSpy acknowledgerSpy;
+	private List<ReceivedMessage> batch;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		acknowledgerSpy = new MessageAcknowledgerSpy();
+		batch = List.of(new ReceivedMessage(Map.of(), "first", 4),
+				new ReceivedMessage(Map.of(), "second", 5));
+	}
+
+	@Test
+	public void testBatchIsAcknowledgedUpToLastMessage() {
+		new CumulativeBatchAcknowledger(acknowledgerSpy, true).acknowledge(batch);
+
+		assertEquals(acknowledgerSpy.calls, List.of("acknowledgeUpTo 5"));
+	}
+
+	@Test
+	public void testFailedBatchIsRejectedMessageByMessage() {
+		new CumulativeBatchAcknowledger(acknowledgerSpy, false).reject(batch,
+				new RuntimeException());
+
+		assertEquals(acknowledgerSpy.calls, List.of("reject 4 false", "reject 5 false"));
+	}
+}
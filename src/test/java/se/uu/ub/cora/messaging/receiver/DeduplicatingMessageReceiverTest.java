@@ -0,0 +1,269 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+
+public class DeduplicatingMessageReceiverTest {
+	private static final long SECOND = 1_000_000_000L;
+	private long now;
+	private MessageReceiverSpy receiverSpy;
+	private DeduplicatingMessageReceiver deduplicatingReceiver;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		now = 0;
+		receiverSpy = new MessageReceiverSpy();
+		deduplicatingReceiver = createReceiver(100, 0);
+	}
+
+	private DeduplicatingMessageReceiver createReceiver(int capacity, int bloomFilterBits) {
+		return new DeduplicatingMessageReceiver(receiverSpy, capacity, Duration.ofSeconds(60),
+				bloomFilterBits, () -> now);
+	}
+
+	private void receive(String messageId, String message) {
+		deduplicatingReceiver.receiveMessage(Map.of(MessageHeaders.MESSAGE_ID, messageId),
+				message);
+	}
+
+	@Test
+	public void testRedeliveredMessageIsDropped() {
+		receive("id1", "first");
+		receive("id2", "second");
+		receive("id1", "first again");
+
+		assertEquals(receiverSpy.receivedMessages, List.of("first", "second"));
+		assertEquals(deduplicatingReceiver.getNumberOfMessages(), 3);
+		assertEquals(deduplicatingReceiver.getNumberOfDuplicates(), 1);
+		assertEquals(deduplicatingReceiver.getDuplicateRate(), 1.0 / 3);
+	}
+
+	@Test
+	public void testOriginAndSequenceNumberIdentifyMessage() {
+		Map<String, String> headers = Map.of(MessageHeaders.ORIGIN, "node1",
+				MessageHeaders.SEQUENCE_NUMBER, "17");
+		Map<String, String> otherSequenceNumber = Map.of(MessageHeaders.ORIGIN, "node1",
+				MessageHeaders.SEQUENCE_NUMBER, "18");
+
+		deduplicatingReceiver.receiveMessage(headers, "first");
+		deduplicatingReceiver.receiveMessage(otherSequenceNumber, "second");
+		deduplicatingReceiver.receiveMessage(headers, "first again");
+
+		assertEquals(receiverSpy.receivedMessages, List.of("first", "second"));
+	}
+
+	@Test
+	public void testMessagesWithoutIdAreAlwaysPassedOn() {
+		deduplicatingReceiver.receiveMessage(Map.of(MessageHeaders.ORIGIN, "node1"), "one");
+		deduplicatingReceiver.receiveMessage(Map.of(MessageHeaders.ORIGIN, "node1"), "one");
+
+		assertEquals(receiverSpy.receivedMessages.size(), 2);
+		assertEquals(deduplicatingReceiver.getNumberOfMessagesWithoutId(), 2);
+	}
+
+	@Test
+	public void testIdIsForgottenAfterWindow() {
+		receive("id1", "first");
+		now += 60 * SECOND;
+
+		receive("id1", "first again");
+
+		assertEquals(receiverSpy.receivedMessages, List.of("first", "first again"));
+	}
+
+	@Test
+	public void testWindowCountsFromWhenIdWasLastSeen() {
+		receive("id1", "first");
+		now += 50 * SECOND;
+		receive("id1", "first again");
+		now += 50 * SECOND;
+
+		receive("id1", "first a third time");
+
+		assertEquals(receiverSpy.receivedMessages, List.of("first"));
+		assertEquals(deduplicatingReceiver.getNumberOfDuplicates(), 2);
+	}
+
+	@Test
+	public void testCapacityIsRoundedUpForEachStripe() {
+		MessageIdWindow window = new MessageIdWindow(17, 60 * SECOND);
+
+		window.markSeen(0, 0);
+		window.markSeen(16L << 32, 0);
+
+		assertEquals(window.markSeen(0, 0), MessageIdWindow.Result.DUPLICATE);
+		assertEquals(window.getNumberOfEvictedWithinWindow(), 0);
+	}
+
+	@Test
+	public void testFailedMessageIsPassedOnWhenRedelivered() {
+		RuntimeException failure = new RuntimeException("failed");
+		receiverSpy.exceptionToThrow = failure;
+		try {
+			receive("id1", "first");
+			fail("Expected exception from receiver");
+		} catch (RuntimeException e) {
+			assertSame(e, failure);
+		}
+		receiverSpy.exceptionToThrow = null;
+
+		receive("id1", "first again");
+
+		assertEquals(receiverSpy.receivedMessages, List.of("first again"));
+	}
+
+	@Test
+	public void testOldestIdsAreEvictedWhenOverCapacity() {
+		deduplicatingReceiver = createReceiver(1, 0);
+		receive("id1", "first");
+		receive("id2", "second");
+
+		receive("id1", "first again");
+
+		assertEquals(receiverSpy.receivedMessages.size(), 3);
+		assertEquals(deduplicatingReceiver.getNumberOfEvictedWithinWindow(), 2);
+	}
+
+	@Test
+	public void testBloomFilterCatchesDuplicatesEvictedFromWindow() {
+		deduplicatingReceiver = createReceiver(1, 1024);
+		receive("id1", "first");
+		receive("id2", "second");
+
+		receive("id1", "first again");
+
+		assertEquals(receiverSpy.receivedMessages, List.of("first", "second"));
+		assertEquals(deduplicatingReceiver.getNumberOfDuplicatesFoundByBloomFilter(), 1);
+		assertEquals(deduplicatingReceiver.getNumberOfDuplicates(), 1);
+	}
+
+	@Test
+	public void testFailedMessageIsPassedOnWhenRedeliveredAfterEvictionWithBloomFilter() {
+		deduplicatingReceiver = createReceiver(1, 1024);
+		RuntimeException failure = new RuntimeException("failed");
+		receiverSpy.exceptionToThrow = failure;
+		try {
+			receive("id1", "first");
+			fail("Expected exception from receiver");
+		} catch (RuntimeException e) {
+			assertSame(e, failure);
+		}
+		receiverSpy.exceptionToThrow = null;
+		receive("id2", "second");
+		receive("id3", "third");
+
+		receive("id1", "first again");
+
+		assertEquals(receiverSpy.receivedMessages, List.of("second", "third", "first again"));
+		assertEquals(deduplicatingReceiver.getNumberOfEvictedWithinWindow(), 2);
+		assertEquals(deduplicatingReceiver.getNumberOfDuplicates(), 0);
+	}
+
+	@Test
+	public void testBloomFilterForgetsAfterTwoWindows() {
+		deduplicatingReceiver = createReceiver(1, 1024);
+		receive("id1", "first");
+		receive("id2", "second");
+		now += 120 * SECOND;
+		receive("id3", "third");
+
+		receive("id1", "first again");
+
+		assertEquals(receiverSpy.receivedMessages.size(), 4);
+	}
+
+	@Test
+	public void testBloomFilterHasFewFalsePositives() {
+		RotatingBloomFilter bloomFilter = new RotatingBloomFilter(8192, 1000, 60 * SECOND, 0);
+		for (long i = 0; i < 1000; i++) {
+			bloomFilter.add(i * 0x9E3779B97F4A7C15L, 0);
+		}
+		int falsePositives = 0;
+		for (long i = 1000; i < 11_000; i++) {
+			falsePositives += bloomFilter.mightContain(i * 0x9E3779B97F4A7C15L, 0) ? 1 : 0;
+		}
+
+		assertEquals(bloomFilter.getNumberOfHashes(), 6);
+		assertTrue(falsePositives < 500, "false positives: " + falsePositives);
+	}
+
+	@Test
+	public void testBinaryAndMessageHeadersAreDeduplicated() {
+		ByteBuffer body = ByteBuffer.wrap("binary".getBytes(StandardCharsets.UTF_8));
+		MessageHeaders headers = MessageHeaders.builder().put(MessageHeaders.ORIGIN, "node1")
+				.put(MessageHeaders.SEQUENCE_NUMBER, 5L).build();
+
+		deduplicatingReceiver.receiveBinaryMessage(Map.of(MessageHeaders.MESSAGE_ID, "id1"),
+				body);
+		deduplicatingReceiver.receiveBinaryMessage(Map.of(MessageHeaders.MESSAGE_ID, "id1"),
+				body);
+		deduplicatingReceiver.receiveMessageUsingHeaders(headers, "typed");
+		deduplicatingReceiver.receiveMessage(Map.of(MessageHeaders.ORIGIN, "node1",
+				MessageHeaders.SEQUENCE_NUMBER, "5"), "typed again");
+
+		assertEquals(receiverSpy.receivedMessages, List.of("binary", "typed"));
+	}
+
+	@Test
+	public void testTopicClosedIsPassedOn() {
+		deduplicatingReceiver.topicClosed();
+
+		assertTrue(receiverSpy.topicClosedWasCalled);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "capacity must be at least 1, was 0")
+	public void testCapacityMustBePositive() {
+		createReceiver(0, 0);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "bloomFilterBits must be 0 or between 10 and 1073741824, was 9")
+	public void testBloomFilterBitsMustFitAtLeastOneMessage() {
+		createReceiver(1, 9);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "expectedPerWindow must be at least 1, was 0")
+	public void testBloomFilterExpectedPerWindowMustBePositive() {
+		new RotatingBloomFilter(1024, 0, 60 * SECOND, 0);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "numberOfBits must be between 1 and 1073741824, was 1073741825")
+	public void testBloomFilterNumberOfBitsMustNotOverflow() {
+		new RotatingBloomFilter((1 << 30) + 1, 1, 60 * SECOND, 0);
+	}
+}
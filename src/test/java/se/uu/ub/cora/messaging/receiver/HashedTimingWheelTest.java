@@ -0,0 +1,89 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class HashedTimingWheelTest {
+	private static final long TICK = 10;
+
+	@Test
+	public void testTaskIsNotExpiredBeforeItsDeadline() {
+		HashedTimingWheel<String> wheel = new HashedTimingWheel<>(1000, TICK, 8);
+
+		wheel.schedule("task", 1045);
+
+		assertTrue(wheel.expire(1040).isEmpty());
+		assertEquals(wheel.expire(1050), List.of("task"));
+		assertEquals(wheel.getNumberOfPendingTimeouts(), 0);
+	}
+
+	@Test
+	public void testTaskWithPassedDeadlineExpiresOnNextTick() {
+		HashedTimingWheel<String> wheel = new HashedTimingWheel<>(1000, TICK, 8);
+		wheel.expire(1100);
+
+		wheel.schedule("task", 1000);
+
+		assertEquals(wheel.expire(1110), List.of("task"));
+	}
+
+	@Test
+	public void testTaskMoreThanOneTurnAheadWaitsForItsRound() {
+		HashedTimingWheel<String> wheel = new HashedTimingWheel<>(0, TICK, 8);
+
+		wheel.schedule("nextRound", 85);
+		wheel.schedule("thisRound", 5);
+
+		assertEquals(wheel.expire(10), List.of("thisRound"));
+		assertTrue(wheel.expire(80).isEmpty());
+		assertEquals(wheel.getNumberOfPendingTimeouts(), 1);
+		assertEquals(wheel.expire(90), List.of("nextRound"));
+	}
+
+	@Test
+	public void testTasksAreExpiredInDeadlineOrderOverSeveralTicks() {
+		HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>(0, TICK, 4);
+		for (int i = 9; i >= 0; i--) {
+			wheel.schedule(i, i * 10L);
+		}
+
+		assertEquals(wheel.expire(100), List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+	}
+
+	@Test
+	public void testRemoveAllReturnsAllWaitingTasks() {
+		HashedTimingWheel<String> wheel = new HashedTimingWheel<>(0, TICK, 4);
+		wheel.schedule("first", 15);
+		wheel.expire(10);
+		wheel.schedule("second", 500);
+
+		List<String> removed = wheel.removeAll();
+
+		assertEquals(removed.size(), 2);
+		assertTrue(removed.containsAll(List.of("first", "second")));
+		assertEquals(wheel.getNumberOfPendingTimeouts(), 0);
+		assertTrue(wheel.expire(1000).isEmpty());
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.memory.WaitStrategy;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class KeyPartitionedMessageDispatcherTest {
+	private static final String RECORD_ID = "recordId";
+	private static final Map<String, String> RECORD_1 = Map.of(RECORD_ID, "record:1");
+	private RecordingReceiver receiver;
+	private KeyPartitionedMessageDispatcher dispatcher;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		receiver = new RecordingReceiver();
+		dispatcher = new KeyPartitionedMessageDispatcher(receiver, RECORD_ID, 4, 8,
+				WaitStrategy.PARK);
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		receiver.release.countDown();
+		dispatcher.close();
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "numberOfLanes must be at least 1, was 0")
+	public void testNumberOfLanesMustBePositive() {
+		new KeyPartitionedMessageDispatcher(receiver, RECORD_ID, 0, 8, WaitStrategy.PARK);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "laneCapacity must be at least 1, was 0")
+	public void testLaneCapacityMustBePositive() {
+		new KeyPartitionedMessageDispatcher(receiver, RECORD_ID, 4, 0, WaitStrategy.PARK);
+	}
+
+	@Test
+	public void testSameKeyAlwaysGetsSameLane() {
+		int lane = dispatcher.getLaneNumber("record:1");
+
+		assertEquals(dispatcher.getLaneNumber("record:1"), lane);
+		assertTrue(lane >= 0 && lane < dispatcher.getNumberOfLanes());
+		assertEquals(dispatcher.getLaneNumber(null), 0);
+	}
+
+	@Test
+	public void testKeysAreSpreadOverLanes() {
+		int[] keysPerLane = new int[4];
+		for (int i = 0; i < 1000; i++) {
+			keysPerLane[dispatcher.getLaneNumber("record:" + i)]++;
+		}
+
+		for (int keys : keysPerLane) {
+			assertTrue(keys > 150, "unevenly spread keys: " + keys);
+		}
+	}
+
+	@Test
+	public void testMessagesWithSameKeyAreHandledInOrder() throws Exception {
+		receiver.release.countDown();
+		for (int i = 0; i < 200; i++) {
+			String recordId = "record:" + (i % 10);
+			dispatcher.receiveMessage(Map.of(RECORD_ID, recordId), String.valueOf(i));
+		}
+
+		receiver.waitForMessages(200);
+		for (int key = 0; key < 10; key++) {
+			List<String> handled = receiver.handledPerKey.get("record:" + key);
+			assertEquals(handled.size(), 20);
+			for (int i = 0; i < 20; i++) {
+				assertEquals(handled.get(i), String.valueOf(key + 10 * i));
+			}
+		}
+	}
+
+	@Test
+	public void testDifferentLanesAreHandledInParallel() throws Exception {
+		String blockedKey = findKeyOnLane(1);
+		String otherKey = findKeyOnLane(2);
+
+		dispatcher.receiveMessage(Map.of(RECORD_ID, blockedKey), RecordingReceiver.BLOCKER);
+		assertTrue(receiver.blocked.await(5, TimeUnit.SECONDS));
+		dispatcher.receiveMessage(Map.of(RECORD_ID, blockedKey), "waiting");
+		dispatcher.receiveMessage(Map.of(RECORD_ID, otherKey), "other");
+
+		receiver.waitForMessages(1);
+		assertEquals(receiver.handledPerKey.get(otherKey), List.of("other"));
+		assertEquals(dispatcher.getNumberOfQueuedMessages(1), 1);
+		waitForHandledMessages(2, 1);
+		assertEquals(dispatcher.getNumberOfHandledMessages(2), 1);
+	}
+
+	private void waitForHandledMessages(int lane, int expected) throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (dispatcher.getNumberOfHandledMessages(lane) < expected
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+	}
+
+	private String findKeyOnLane(int lane) {
+		int i = 0;
+		while (dispatcher.getLaneNumber("record:" + i) != lane) {
+			i++;
+		}
+		return "record:" + i;
+	}
+
+	@Test
+	public void testReceiveWaitsWhenLaneIsFull() throws Exception {
+		dispatcher.close();
+		dispatcher = new KeyPartitionedMessageDispatcher(receiver, RECORD_ID, 1, 1,
+				WaitStrategy.PARK);
+		dispatcher.receiveMessage(Map.of(), RecordingReceiver.BLOCKER);
+		assertTrue(receiver.blocked.await(5, TimeUnit.SECONDS));
+		dispatcher.receiveMessage(Map.of(), "first");
+
+		CompletableFuture<Void> second = CompletableFuture
+				.runAsync(() -> dispatcher.receiveMessage(Map.of(), "second"));
+		Thread.sleep(50);
+
+		assertFalse(second.isDone());
+		receiver.release.countDown();
+		second.get(5, TimeUnit.SECONDS);
+		assertEquals(dispatcher.getNumberOfTimesLaneWasFull(0), 1);
+	}
+
+	@Test
+	public void testReceiveFromSecondThreadWhileFirstIsQueueingIsRefused() throws Exception {
+		dispatcher.close();
+		dispatcher = new KeyPartitionedMessageDispatcher(receiver, RECORD_ID, 1, 1,
+				WaitStrategy.PARK);
+		dispatcher.receiveMessage(Map.of(), RecordingReceiver.BLOCKER);
+		assertTrue(receiver.blocked.await(5, TimeUnit.SECONDS));
+		dispatcher.receiveMessage(RECORD_1, "first");
+		CompletableFuture<Void> waitingForRoom = CompletableFuture
+				.runAsync(() -> dispatcher.receiveMessage(RECORD_1, "second"));
+		waitUntilLaneHasBeenFull();
+
+		try {
+			dispatcher.receiveMessage(RECORD_1, "third");
+			fail("Expected second producer to be refused");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage().endsWith("only one thread at a time can queue messages"));
+		}
+
+		receiver.release.countDown();
+		waitingForRoom.get(5, TimeUnit.SECONDS);
+		dispatcher.receiveMessage(RECORD_1, "third");
+		receiver.waitForMessages(3);
+		assertEquals(receiver.handledPerKey.get("record:1"), List.of("first", "second", "third"));
+	}
+
+	private void waitUntilLaneHasBeenFull() throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (dispatcher.getNumberOfTimesLaneWasFull(0) == 0
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+		assertEquals(dispatcher.getNumberOfTimesLaneWasFull(0), 1);
+	}
+
+	@Test
+	public void testTypedHeadersAreUsedForKey() throws Exception {
+		receiver.release.countDown();
+
+		dispatcher.receiveMessageUsingHeaders(
+				MessageHeaders.builder().put(RECORD_ID, "record:1").build(), "message");
+
+		int lane = dispatcher.getLaneNumber("record:1");
+		waitForHandledMessages(lane, 1);
+		assertEquals(receiver.handledPerKey.get("record:1"), List.of("message"));
+		assertEquals(dispatcher.getNumberOfHandledMessages(lane), 1);
+	}
+
+	@Test
+	public void testFailingHandlerDoesNotStopLane() throws Exception {
+		receiver.release.countDown();
+		receiver.exceptionToThrow = new RuntimeException("handler failed");
+
+		dispatcher.receiveMessage(Map.of(RECORD_ID, "record:1"), "first");
+		dispatcher.receiveMessage(Map.of(RECORD_ID, "record:1"), "second");
+
+		receiver.waitForMessages(2);
+		assertEquals(receiver.handledPerKey.get("record:1"), List.of("first", "second"));
+	}
+
+	@Test
+	public void testBinaryMessageIsCopiedBeforeDispatch() throws Exception {
+		receiver.release.countDown();
+		ByteBuffer buffer = ByteBuffer.wrap("message".getBytes(StandardCharsets.UTF_8));
+
+		dispatcher.receiveBinaryMessage(Map.of(RECORD_ID, "record:1"), buffer);
+
+		ByteBuffer received = receiver.receivedBuffer.get(5, TimeUnit.SECONDS);
+		assertNotSame(received, buffer);
+		assertEquals(StandardCharsets.UTF_8.decode(received).toString(), "message");
+	}
+
+	@Test
+	public void testTopicClosedIsPassedOn() {
+		MessageReceiverSpy receiverSpy = new MessageReceiverSpy();
+		KeyPartitionedMessageDispatcher spyDispatcher = new KeyPartitionedMessageDispatcher(
+				receiverSpy, RECORD_ID, 1, 1, WaitStrategy.PARK);
+
+		spyDispatcher.topicClosed();
+
+		assertTrue(receiverSpy.topicClosedWasCalled);
+		spyDispatcher.close();
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ""
+			+ "KeyPartitionedMessageDispatcher is closed")
+	public void testClosedDispatcherRefusesMessages() {
+		dispatcher.close();
+
+		dispatcher.receiveMessage(Map.of(), "message");
+	}
+
+	@Test
+	public void testCloseLetsLanesFinishWaitingMessages() throws Exception {
+		dispatcher.receiveMessage(RECORD_1, RecordingReceiver.BLOCKER);
+		assertTrue(receiver.blocked.await(5, TimeUnit.SECONDS));
+		dispatcher.receiveMessage(RECORD_1, "first");
+		dispatcher.receiveMessage(RECORD_1, "second");
+
+		CompletableFuture<Boolean> closing = CompletableFuture
+				.supplyAsync(() -> dispatcher.close(Duration.ofSeconds(5)));
+		Thread.sleep(50);
+		assertFalse(closing.isDone());
+		receiver.release.countDown();
+
+		assertTrue(closing.get(5, TimeUnit.SECONDS));
+		assertEquals(receiver.handledPerKey.get("record:1"), List.of("first", "second"));
+	}
+
+	@Test
+	public void testCloseReturnsFalseWhenLanesDoNotFinishWithinTimeout() throws Exception {
+		dispatcher.receiveMessage(RECORD_1, RecordingReceiver.BLOCKER);
+		assertTrue(receiver.blocked.await(5, TimeUnit.SECONDS));
+		dispatcher.receiveMessage(RECORD_1, "waiting");
+
+		assertFalse(dispatcher.close(Duration.ofMillis(50)));
+
+		receiver.release.countDown();
+		receiver.waitForMessages(1);
+		assertEquals(receiver.handledPerKey.get("record:1"), List.of("waiting"));
+	}
+
+	private static class RecordingReceiver implements MessageReceiver {
+		static final String BLOCKER = "blocker";
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Map<String, List<String>> handledPerKey = new ConcurrentHashMap<>();
+		CompletableFuture<ByteBuffer> receivedBuffer = new CompletableFuture<>();
+		volatile RuntimeException exceptionToThrow;
+		private final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			if (BLOCKER.equals(message)) {
+				blocked.countDown();
+				awaitRelease();
+				return;
+			}
+			handledPerKey.computeIfAbsent(headers.get(RECORD_ID),
+					key -> Collections.synchronizedList(new ArrayList<>())).add(message);
+			handled.add(message);
+			if (null != exceptionToThrow) {
+				throw exceptionToThrow;
+			}
+		}
+
+		private void awaitRelease() {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+			receivedBuffer.complete(message);
+		}
+
+		@Override
+		public void topicClosed() {
+			// not used in tests
+		}
+
+		void waitForMessages(int numberOfMessages) throws InterruptedException {
+			long giveUpAt = System.currentTimeMillis() + 5000;
+			while (handled.size() < numberOfMessages && System.currentTimeMillis() < giveUpAt) {
+				Thread.sleep(5);
+			}
+		}
+	}
+}
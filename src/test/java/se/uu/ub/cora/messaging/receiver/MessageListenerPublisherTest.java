@@ -0,0 +1,181 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.CreditBasedMessageListener;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.spy.MessageListenerSpy;
+
+public class MessageListenerPublisherTest {
+	private MessageListenerSpy listener;
+	private MessageListenerPublisher publisher;
+	private SubscriberSpy subscriber;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		listener = new MessageListenerSpy();
+		publisher = new MessageListenerPublisher(listener);
+		subscriber = new SubscriberSpy();
+	}
+
+	@Test
+	public void testSubscribeStartsListening() {
+		publisher.subscribe(subscriber);
+
+		assertTrue(listener.messageReceiver != null);
+		assertTrue(subscriber.subscription != null);
+	}
+
+	@Test
+	public void testRequestedMessagesAreDelivered() {
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(2);
+
+		listener.messageReceiver.receiveMessage(Map.of("key", "value"), "first");
+		listener.messageReceiver.receiveMessage(Map.of(), "second");
+
+		assertEquals(subscriber.received.size(), 2);
+		assertEquals(subscriber.received.get(0).message, "first");
+		assertEquals(subscriber.received.get(0).headers, Map.of("key", "value"));
+		assertEquals(subscriber.received.get(0).deliveryTag, 1);
+		assertEquals(subscriber.received.get(1).deliveryTag, 2);
+	}
+
+	@Test
+	public void testDeliveryWaitsForDemand() throws Exception {
+		publisher.subscribe(subscriber);
+		MessageReceiver receiver = listener.messageReceiver;
+
+		CompletableFuture<Void> delivery = CompletableFuture
+				.runAsync(() -> receiver.receiveMessage(Map.of(), "message"));
+		Thread.sleep(50);
+
+		assertFalse(delivery.isDone());
+		subscriber.subscription.request(1);
+		delivery.get(5, TimeUnit.SECONDS);
+		assertEquals(subscriber.received.size(), 1);
+	}
+
+	@Test
+	public void testCancelClosesListenerAndRefusesMessages() {
+		publisher.subscribe(subscriber);
+		subscriber.subscription.cancel();
+
+		assertTrue(listener.closeWasCalled);
+		try {
+			listener.messageReceiver.receiveMessage(Map.of(), "message");
+		} catch (IllegalStateException e) {
+			assertEquals(e.getMessage(), "Subscription to messages is cancelled");
+		}
+		assertEquals(subscriber.received.size(), 0);
+	}
+
+	@Test
+	public void testTopicClosedCompletesSubscriber() {
+		publisher.subscribe(subscriber);
+
+		listener.messageReceiver.topicClosed();
+		listener.messageReceiver.topicClosed();
+
+		assertEquals(subscriber.numberOfCompletions, 1);
+	}
+
+	@Test
+	public void testNonPositiveRequestIsAnError() {
+		publisher.subscribe(subscriber);
+
+		subscriber.subscription.request(0);
+
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertTrue(listener.closeWasCalled);
+	}
+
+	@Test
+	public void testSecondSubscriberIsRefused() {
+		publisher.subscribe(subscriber);
+		SubscriberSpy secondSubscriber = new SubscriberSpy();
+
+		publisher.subscribe(secondSubscriber);
+
+		assertTrue(secondSubscriber.error instanceof IllegalStateException);
+	}
+
+	@Test
+	public void testDemandIsPassedOnAsCreditToCreditBasedListener() {
+		CreditBasedListenerSpy creditBasedListener = new CreditBasedListenerSpy();
+		publisher = new MessageListenerPublisher(creditBasedListener);
+		publisher.subscribe(subscriber);
+
+		subscriber.subscription.request(5);
+
+		assertEquals(creditBasedListener.credit, 5);
+	}
+
+	private static class SubscriberSpy implements Flow.Subscriber<ReceivedMessage> {
+		Flow.Subscription subscription;
+		List<ReceivedMessage> received = new ArrayList<>();
+		int numberOfCompletions = 0;
+		Throwable error;
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(ReceivedMessage item) {
+			received.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			numberOfCompletions++;
+		}
+	}
+
+	private static class CreditBasedListenerSpy extends MessageListenerSpy
+			implements CreditBasedMessageListener {
+		long credit = 0;
+
+		@Override
+		public void addCredit(long numberOfMessages) {
+			credit += numberOfMessages;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class MessageReceiverSubscriberTest {
+
+	@Test
+	public void testMessageReceiverSubscriberRequestsInWindows() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		RequestCountingSubscription subscription = new RequestCountingSubscription();
+		List<String> messages = new ArrayList<>();
+		MessageReceiverSubscriber receiverSubscriber = new MessageReceiverSubscriber(
+				new MessageReceiver() {
+					@Override
+					public void receiveMessage(Map<String, String> headers, String message) {
+						messages.add(message);
+					}
+
+					@Override
+					public void topicClosed() {
+						messages.add("closed");
+					}
+				}, 4);
+
+		receiverSubscriber.onSubscribe(subscription);
+		assertEquals(subscription.requested, 4);
+		receiverSubscriber.onNext(new ReceivedMessage(Map.of(), "first", 1));
+		assertEquals(subscription.requested, 4);
+		receiverSubscriber.onNext(new ReceivedMessage(Map.of(), "second", 2));
+		assertEquals(subscription.requested, 6);
+		receiverSubscriber.onComplete();
+
+		assertEquals(messages, List.of("first", "second", "closed"));
+	}
+
+	@Test
+	public void testFailingMessageReceiverCancelsSubscriptionAndThrows() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		RequestCountingSubscription subscription = new RequestCountingSubscription();
+		RuntimeException failure = new RuntimeException("handling failed");
+		List<String> messages = new ArrayList<>();
+		MessageReceiverSubscriber receiverSubscriber = new MessageReceiverSubscriber(
+				new MessageReceiver() {
+					@Override
+					public void receiveMessage(Map<String, String> headers, String message) {
+						messages.add(message);
+						throw failure;
+					}
+
+					@Override
+					public void topicClosed() {
+						messages.add("closed");
+					}
+				}, 4);
+		receiverSubscriber.onSubscribe(subscription);
+
+		try {
+			receiverSubscriber.onNext(new ReceivedMessage(Map.of(), "first", 1));
+			fail("Exception should have been thrown");
+		} catch (RuntimeException e) {
+			assertSame(e, failure);
+		}
+		receiverSubscriber.onNext(new ReceivedMessage(Map.of(), "second", 2));
+		receiverSubscriber.onComplete();
+
+		assertTrue(subscription.cancelled);
+		assertEquals(messages, List.of("first", "closed"));
+	}
+
+	private static class RequestCountingSubscription implements Flow.Subscription {
+		long requested = 0;
+		boolean cancelled = false;
+
+		@Override
+		public void request(long n) {
+			requested += n;
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+		}
+	}
+}
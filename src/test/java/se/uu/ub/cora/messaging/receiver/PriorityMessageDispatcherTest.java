@@ -0,0 +1,316 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class PriorityMessageDispatcherTest {
+	private static final String BLOCKER = "blocker";
+	private OrderRecordingReceiver receiver;
+	private PriorityMessageDispatcher dispatcher;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		receiver = new OrderRecordingReceiver();
+		dispatcher = new PriorityMessageDispatcher(receiver, 3, 10, 1, 2);
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		receiver.release.countDown();
+		dispatcher.close();
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "numberOfLanes must be at least 1, was 0")
+	public void testNumberOfLanesMustBePositive() {
+		new PriorityMessageDispatcher(receiver, 0, 10, 1, 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "laneCapacity must be at least 1, was 0")
+	public void testLaneCapacityMustBePositive() {
+		new PriorityMessageDispatcher(receiver, 3, 0, 1, 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "numberOfHandlers must be at least 1, was 0")
+	public void testNumberOfHandlersMustBePositive() {
+		new PriorityMessageDispatcher(receiver, 3, 10, 0, 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "starvationLimit must be at least 1, was 0")
+	public void testStarvationLimitMustBePositive() {
+		new PriorityMessageDispatcher(receiver, 3, 10, 1, 0);
+	}
+
+	@Test
+	public void testMessageIsHandled() throws Exception {
+		receiver.release.countDown();
+
+		dispatcher.receiveMessage(withPriority(1), "message");
+
+		assertEquals(receiver.take(), "message");
+		waitForHandledMessages(1, 1);
+		assertEquals(dispatcher.getNumberOfHandledMessages(1), 1);
+	}
+
+	private Map<String, String> withPriority(int priority) {
+		return Map.of(MessageHeaders.PRIORITY, String.valueOf(priority));
+	}
+
+	private void waitForHandledMessages(int lane, int expected) throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (dispatcher.getNumberOfHandledMessages(lane) < expected
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void testHigherLanesAreHandledFirst() throws Exception {
+		blockHandler();
+
+		dispatcher.receiveMessage(withPriority(0), "low");
+		dispatcher.receiveMessage(withPriority(1), "medium");
+		dispatcher.receiveMessage(withPriority(2), "high");
+		receiver.release.countDown();
+
+		assertEquals(takeMessages(3), List.of("high", "medium", "low"));
+	}
+
+	private void blockHandler() throws InterruptedException {
+		dispatcher.receiveMessage(Map.of(), BLOCKER);
+		assertTrue(receiver.blocked.await(5, TimeUnit.SECONDS));
+	}
+
+	private List<String> takeMessages(int numberOfMessages) throws InterruptedException {
+		List<String> messages = new ArrayList<>();
+		for (int i = 0; i < numberOfMessages; i++) {
+			messages.add(receiver.take());
+		}
+		return messages;
+	}
+
+	@Test
+	public void testPassedOverLaneIsServedWhenStarvationLimitIsReached() throws Exception {
+		blockHandler();
+
+		dispatcher.receiveMessage(withPriority(0), "low1");
+		dispatcher.receiveMessage(withPriority(0), "low2");
+		for (int i = 1; i <= 5; i++) {
+			dispatcher.receiveMessage(withPriority(2), "high" + i);
+		}
+		receiver.release.countDown();
+
+		assertEquals(takeMessages(7),
+				List.of("high1", "high2", "low1", "high3", "high4", "low2", "high5"));
+	}
+
+	@Test
+	public void testMessagesAreQueuedInLaneByPriority() throws Exception {
+		blockHandler();
+
+		dispatcher.receiveMessage(Map.of(), "noPriority");
+		dispatcher.receiveMessage(Map.of(MessageHeaders.PRIORITY, "notANumber"), "invalid");
+		dispatcher.receiveMessage(withPriority(-3), "negative");
+		dispatcher.receiveMessage(withPriority(1), "medium");
+		dispatcher.receiveMessage(withPriority(255), "veryHigh");
+
+		assertEquals(dispatcher.getNumberOfQueuedMessages(0), 3);
+		assertEquals(dispatcher.getNumberOfQueuedMessages(1), 1);
+		assertEquals(dispatcher.getNumberOfQueuedMessages(2), 1);
+	}
+
+	@Test
+	public void testHeadersAreUsedForPriorityOfMessageHeaders() throws Exception {
+		blockHandler();
+
+		dispatcher.receiveMessageUsingHeaders(
+				MessageHeaders.builder().put(MessageHeaders.PRIORITY, 2).build(), "high");
+
+		assertEquals(dispatcher.getNumberOfQueuedMessages(2), 1);
+		receiver.release.countDown();
+		assertEquals(takeMessages(1), List.of("high"));
+	}
+
+	@Test
+	public void testReceiveBlocksWhenLaneIsFull() throws Exception {
+		dispatcher.close();
+		dispatcher = new PriorityMessageDispatcher(receiver, 2, 1, 1, 2);
+		blockHandler();
+		dispatcher.receiveMessage(withPriority(0), "first");
+
+		CompletableFuture<Void> second = CompletableFuture
+				.runAsync(() -> dispatcher.receiveMessage(withPriority(0), "second"));
+		dispatcher.receiveMessage(withPriority(1), "otherLane");
+		Thread.sleep(50);
+
+		assertFalse(second.isDone());
+		receiver.release.countDown();
+		second.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testFailingHandlerDoesNotStopHandling() throws Exception {
+		receiver.release.countDown();
+		receiver.exceptionToThrow = new RuntimeException("handler failed");
+
+		dispatcher.receiveMessage(Map.of(), "first");
+		dispatcher.receiveMessage(Map.of(), "second");
+
+		assertEquals(takeMessages(2), List.of("first", "second"));
+		waitForHandledMessages(0, 2);
+		assertEquals(dispatcher.getNumberOfHandledMessages(0), 2);
+	}
+
+	@Test
+	public void testBinaryMessageIsCopiedBeforeDispatch() throws Exception {
+		receiver.release.countDown();
+		ByteBuffer buffer = ByteBuffer.wrap("message".getBytes(StandardCharsets.UTF_8));
+
+		dispatcher.receiveBinaryMessage(withPriority(1), buffer);
+
+		ByteBuffer received = receiver.receivedBuffer.get(5, TimeUnit.SECONDS);
+		assertNotSame(received, buffer);
+		assertEquals(StandardCharsets.UTF_8.decode(received).toString(), "message");
+	}
+
+	@Test
+	public void testTopicClosedIsPassedOn() {
+		MessageReceiverSpy receiverSpy = new MessageReceiverSpy();
+		PriorityMessageDispatcher spyDispatcher = new PriorityMessageDispatcher(receiverSpy, 1, 1,
+				1, 1);
+
+		spyDispatcher.topicClosed();
+
+		assertTrue(receiverSpy.topicClosedWasCalled);
+		spyDispatcher.close();
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ""
+			+ "PriorityMessageDispatcher is closed")
+	public void testClosedDispatcherRefusesMessages() {
+		dispatcher.close();
+
+		dispatcher.receiveMessage(new HashMap<>(), "message");
+	}
+
+	@Test
+	public void testCloseLetsHandlersFinishWaitingMessages() throws Exception {
+		blockHandler();
+		dispatcher.receiveMessage(withPriority(0), "low");
+		dispatcher.receiveMessage(withPriority(2), "high");
+
+		CompletableFuture<Boolean> closing = CompletableFuture
+				.supplyAsync(() -> dispatcher.close(Duration.ofSeconds(5)));
+		Thread.sleep(50);
+		assertFalse(closing.isDone());
+		receiver.release.countDown();
+
+		assertTrue(closing.get(5, TimeUnit.SECONDS));
+		assertEquals(takeMessages(2), List.of("high", "low"));
+		assertFalse(receiver.interrupted);
+	}
+
+	@Test
+	public void testCloseReturnsFalseWhenHandlersDoNotFinishWithinTimeout() throws Exception {
+		blockHandler();
+		dispatcher.receiveMessage(withPriority(0), "waiting");
+
+		assertFalse(dispatcher.close(Duration.ofMillis(50)));
+
+		receiver.release.countDown();
+		assertEquals(takeMessages(1), List.of("waiting"));
+		assertFalse(receiver.interrupted);
+	}
+
+	private static class OrderRecordingReceiver implements MessageReceiver {
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingQueue<String> handledMessages = new LinkedBlockingQueue<>();
+		CompletableFuture<ByteBuffer> receivedBuffer = new CompletableFuture<>();
+		volatile RuntimeException exceptionToThrow;
+		volatile boolean interrupted = false;
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			if (BLOCKER.equals(message)) {
+				blocked.countDown();
+				awaitRelease();
+				return;
+			}
+			handledMessages.add(message);
+			if (null != exceptionToThrow) {
+				throw exceptionToThrow;
+			}
+		}
+
+		private void awaitRelease() {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				interrupted = true;
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+			receivedBuffer.complete(message);
+		}
+
+		@Override
+		public void topicClosed() {
+			// not used in tests
+		}
+
+		String take() throws InterruptedException {
+			return handledMessages.poll(5, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.spy.BatchMessageReceiverSpy;
+
+public class ReceivedMessageBatcherTest {
+	private BatchMessageReceiverSpy receiver;
+	private BatchAcknowledgerSpy acknowledger;
+	private ReceivedMessageBatcher batcher;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		receiver = new BatchMessageReceiverSpy();
+		acknowledger = new BatchAcknowledgerSpy();
+		batcher = new ReceivedMessageBatcher(receiver, acknowledger);
+	}
+
+	private ReceivedMessage createMessage(long deliveryTag) {
+		return new ReceivedMessage(Map.of(), "message" + deliveryTag, deliveryTag);
+	}
+
+	@Test
+	public void testBatchIsDeliveredWhenFull() {
+		batcher.add(createMessage(1));
+		batcher.add(createMessage(2));
+
+		assertEquals(receiver.receivedBatches.size(), 0);
+
+		batcher.add(createMessage(3));
+
+		assertEquals(receiver.receivedBatches.size(), 1);
+		List<ReceivedMessage> batch = receiver.receivedBatches.get(0);
+		assertEquals(batch.size(), 3);
+		assertEquals(batch.get(0).deliveryTag, 1);
+		assertEquals(batch.get(2).deliveryTag, 3);
+	}
+
+	@Test
+	public void testDeliveredBatchIsAcknowledged() {
+		batcher.add(createMessage(1));
+
+		batcher.deliver();
+
+		assertSame(acknowledger.acknowledgedBatches.get(0), receiver.receivedBatches.get(0));
+		assertEquals(acknowledger.rejectedBatches.size(), 0);
+	}
+
+	@Test
+	public void testFailedBatchIsRejected() {
+		RuntimeException error = new RuntimeException("index down");
+		receiver.exceptionToThrow = error;
+		batcher.add(createMessage(1));
+
+		batcher.deliver();
+
+		assertSame(acknowledger.rejectedBatches.get(0), receiver.receivedBatches.get(0));
+		assertSame(acknowledger.errors.get(0), error);
+		assertEquals(acknowledger.acknowledgedBatches.size(), 0);
+	}
+
+	@Test
+	public void testBatchIsDeliveredAfterMaxWait() throws Exception {
+		receiver.maxBatchWait = Duration.ofMillis(10);
+		batcher = new ReceivedMessageBatcher(receiver, acknowledger);
+
+		batcher.add(createMessage(1));
+
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (receiver.getNumberOfReceivedBatches() == 0
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+		assertEquals(receiver.getNumberOfReceivedBatches(), 1);
+	}
+
+	@Test
+	public void testCloseDeliversCurrentBatch() {
+		batcher.add(createMessage(1));
+
+		batcher.close();
+
+		assertEquals(receiver.receivedBatches.size(), 1);
+	}
+
+	@Test
+	public void testReceiveMessageDeliversBatchOfOne() {
+		receiver.receiveMessage(Map.of("key", "value"), "message");
+
+		List<ReceivedMessage> batch = receiver.receivedBatches.get(0);
+		assertEquals(batch.size(), 1);
+		assertEquals(batch.get(0).message, "message");
+		assertEquals(batch.get(0).headers, Map.of("key", "value"));
+	}
+
+	@Test
+	public void testMessagesCanBeAddedWhileBatchIsDelivered() throws Exception {
+		BlockingBatchReceiver blockingReceiver = new BlockingBatchReceiver();
+		batcher = new ReceivedMessageBatcher(blockingReceiver, acknowledger);
+		batcher.add(createMessage(1));
+		batcher.add(createMessage(2));
+		Thread deliveringThread = Thread.ofPlatform().start(() -> batcher.add(createMessage(3)));
+		assertTrue(blockingReceiver.delivering.await(5, TimeUnit.SECONDS));
+
+		batcher.add(createMessage(4));
+
+		blockingReceiver.release.countDown();
+		deliveringThread.join(5000);
+		assertEquals(blockingReceiver.getNumberOfReceivedBatches(), 1);
+		batcher.deliver();
+		assertEquals(blockingReceiver.receivedBatches.get(1).get(0).deliveryTag, 4);
+	}
+
+	@Test
+	public void testWaitedBatchDeliveredWhenFullDoesNotDeliverNextBatchEarly() throws Exception {
+		BlockingBatchReceiver blockingReceiver = new BlockingBatchReceiver();
+		blockingReceiver.maxBatchWait = Duration.ofMillis(200);
+		batcher = new ReceivedMessageBatcher(blockingReceiver, acknowledger);
+		batcher.add(createMessage(1));
+		batcher.add(createMessage(2));
+		Thread deliveringThread = Thread.ofPlatform().start(() -> batcher.add(createMessage(3)));
+		assertTrue(blockingReceiver.delivering.await(5, TimeUnit.SECONDS));
+		Thread.sleep(300);
+
+		batcher.add(createMessage(4));
+		blockingReceiver.release.countDown();
+		deliveringThread.join(5000);
+		Thread.sleep(50);
+
+		assertEquals(blockingReceiver.getNumberOfReceivedBatches(), 1);
+		batcher.close();
+		assertEquals(blockingReceiver.getNumberOfReceivedBatches(), 2);
+	}
+
+	private static class BlockingBatchReceiver extends BatchMessageReceiverSpy {
+		CountDownLatch delivering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public void receiveMessages(List<ReceivedMessage> messages) {
+			delivering.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			super.receiveMessages(messages);
+		}
+	}
+
+	private static class BatchAcknowledgerSpy implements BatchAcknowledger {
+		List<List<ReceivedMessage>> acknowledgedBatches = new ArrayList<>();
+		List<List<ReceivedMessage>> rejectedBatches = new ArrayList<>();
+		List<RuntimeException> errors = new ArrayList<>();
+
+		@Override
+		public void acknowledge(List<ReceivedMessage> batch) {
+			acknowledgedBatches.add(batch);
+		}
+
+		@Override
+		public void reject(List<ReceivedMessage> batch, RuntimeException error) {
+			rejectedBatches.add(batch);
+			errors.add(error);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class RetryDelayingMessageSenderTest {
+	private TimingSender messageSender;
+	private RetryDelayingMessageSender delayingSender;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		messageSender = new TimingSender();
+		delayingSender = new RetryDelayingMessageSender(messageSender, Duration.ofMillis(5));
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		delayingSender.close();
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "tick must be positive, was PT0S")
+	public void testTickMustBePositive() {
+		new RetryDelayingMessageSender(messageSender, Duration.ZERO);
+	}
+
+	@Test
+	public void testMessageWithoutRetryDelayIsSentRightAway() {
+		delayingSender.sendMessage(Map.of(), "message");
+
+		assertEquals(messageSender.sentMessages, List.of("message"));
+		assertEquals(delayingSender.getNumberOfWaitingMessages(), 0);
+	}
+
+	@Test
+	public void testMessageIsHeldForItsRetryDelay() throws Exception {
+		long start = System.nanoTime();
+
+		delayingSender.sendMessage(Map.of(MessageHeaders.RETRY_DELAY, 100L), "message");
+
+		assertEquals(delayingSender.getNumberOfWaitingMessages(), 1);
+		messageSender.waitForMessages(1);
+		assertEquals(messageSender.sentMessages, List.of("message"));
+		assertTrue(messageSender.sendTimes.get(0) - start >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(delayingSender.getNumberOfWaitingMessages(), 0);
+	}
+
+	@Test
+	public void testRetryDelayCanBeText() throws Exception {
+		long start = System.nanoTime();
+
+		delayingSender.sendMessage(Map.of(MessageHeaders.RETRY_DELAY, "50"), "message");
+
+		messageSender.waitForMessages(1);
+		assertTrue(messageSender.sendTimes.get(0) - start >= TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	@Test
+	public void testBinaryMessageIsCopiedBeforeItWaits() throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap("message".getBytes(StandardCharsets.UTF_8));
+
+		delayingSender.sendBinaryMessage(Map.of(MessageHeaders.RETRY_DELAY, 10L), buffer);
+		buffer.put(0, (byte) 'M');
+
+		messageSender.waitForMessages(1);
+		assertEquals(messageSender.sentMessages, List.of("message"));
+		assertNotSame(messageSender.sentBuffer, buffer);
+	}
+
+	@Test
+	public void testRetryingReceiverBacksOffBeforeRetry() throws Exception {
+		MessageReceiver failingOnce = new FailingOnceReceiver();
+		RetryingMessageReceiver retryingReceiver = new RetryingMessageReceiver(failingOnce,
+				delayingSender, new TimingSender(), 3, Duration.ofMillis(100),
+				Duration.ofSeconds(1), () -> 0);
+		long start = System.nanoTime();
+
+		retryingReceiver.receiveMessage(Map.of(), "message");
+
+		assertEquals(messageSender.sentMessages.size(), 0);
+		messageSender.waitForMessages(1);
+		assertTrue(messageSender.sendTimes.get(0) - start >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(messageSender.sentHeaders.get(0).get(MessageHeaders.RETRY_ATTEMPT), 1);
+	}
+
+	@Test
+	public void testCloseSendsWaitingMessagesAndClosesDecoratedSender() {
+		delayingSender.sendMessage(Map.of(MessageHeaders.RETRY_DELAY, 60_000L), "message");
+
+		delayingSender.close();
+
+		assertEquals(messageSender.sentMessages, List.of("message"));
+		assertEquals(delayingSender.getNumberOfWaitingMessages(), 0);
+		assertTrue(messageSender.closeWasCalled);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ""
+			+ "RetryDelayingMessageSender is closed")
+	public void testDelayedMessageAfterCloseIsRefused() {
+		delayingSender.close();
+
+		delayingSender.sendMessage(Map.of(MessageHeaders.RETRY_DELAY, 10L), "message");
+	}
+
+	@Test
+	public void testFailedSendIsDelayedAgain() throws Exception {
+		messageSender.failuresLeft = 1;
+
+		delayingSender.sendMessage(Map.of(MessageHeaders.RETRY_DELAY, 10L), "message");
+
+		messageSender.waitForMessages(1);
+		assertEquals(messageSender.sentMessages, List.of("message"));
+		assertEquals(messageSender.numberOfSends, 2);
+	}
+
+	private static class TimingSender implements MessageSender {
+		List<String> sentMessages = new CopyOnWriteArrayList<>();
+		List<Map<String, Object>> sentHeaders = new CopyOnWriteArrayList<>();
+		List<Long> sendTimes = new CopyOnWriteArrayList<>();
+		volatile ByteBuffer sentBuffer;
+		volatile int failuresLeft = 0;
+		volatile int numberOfSends = 0;
+		volatile boolean closeWasCalled = false;
+
+		@Override
+		public void sendMessage(Map<String, Object> headers, String message) {
+			numberOfSends++;
+			if (failuresLeft > 0) {
+				failuresLeft--;
+				throw new RuntimeException("send failed");
+			}
+			sendTimes.add(System.nanoTime());
+			sentHeaders.add(headers);
+			sentMessages.add(message);
+		}
+
+		@Override
+		public void sendBinaryMessage(Map<String, Object> headers, ByteBuffer message) {
+			sentBuffer = message;
+			sendMessage(headers, StandardCharsets.UTF_8.decode(message).toString());
+		}
+
+		@Override
+		public void close() {
+			closeWasCalled = true;
+		}
+
+		void waitForMessages(int numberOfMessages) throws InterruptedException {
+			long giveUpAt = System.currentTimeMillis() + 5000;
+			while (sentMessages.size() < numberOfMessages
+					&& System.currentTimeMillis() < giveUpAt) {
+				Thread.sleep(5);
+			}
+		}
+	}
+
+	private static class FailingOnceReceiver implements MessageReceiver {
+		private boolean failed = false;
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			if (!failed) {
+				failed = true;
+				throw new RuntimeException("handler failed");
+			}
+		}
+
+		@Override
+		public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+			// not used in tests
+		}
+
+		@Override
+		public void topicClosed() {
+			// not used in tests
+		}
+	}
+}
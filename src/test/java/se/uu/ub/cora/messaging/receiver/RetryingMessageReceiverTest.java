@@ -0,0 +1,258 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class RetryingMessageReceiverTest {
+	private FailingReceiver receiver;
+	private MessageSenderSpy retrySender;
+	private MessageSenderSpy deadLetterSender;
+	private RetryingMessageReceiver retryingReceiver;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		receiver = new FailingReceiver();
+		retrySender = new MessageSenderSpy();
+		deadLetterSender = new MessageSenderSpy();
+		retryingReceiver = new RetryingMessageReceiver(receiver, retrySender, deadLetterSender, 3,
+				Duration.ofMillis(100), Duration.ofMillis(300), () -> 0.5);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxAttempts must be at least 1, was 0")
+	public void testMaxAttemptsMustBePositive() {
+		new RetryingMessageReceiver(receiver, retrySender, deadLetterSender, 0,
+				Duration.ofMillis(5), Duration.ofMillis(20));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "initialDelay must be positive, was PT0S")
+	public void testInitialDelayMustBePositive() {
+		new RetryingMessageReceiver(receiver, retrySender, deadLetterSender, 3, Duration.ZERO,
+				Duration.ofMillis(20));
+	}
+
+	@Test
+	public void testDelayDoublesForEachRetryUpToMaxDelay() {
+		assertEquals(RetryingMessageReceiver.calculateDelayNanos(1, 100, 1000, 0), 100);
+		assertEquals(RetryingMessageReceiver.calculateDelayNanos(2, 100, 1000, 0), 200);
+		assertEquals(RetryingMessageReceiver.calculateDelayNanos(4, 100, 1000, 0), 800);
+		assertEquals(RetryingMessageReceiver.calculateDelayNanos(5, 100, 1000, 0), 1000);
+		assertEquals(RetryingMessageReceiver.calculateDelayNanos(100, 100, 1000, 0), 1000);
+	}
+
+	@Test
+	public void testJitterLeavesOutUpToHalfOfDelay() {
+		assertEquals(RetryingMessageReceiver.calculateDelayNanos(2, 100, 1000, 0.5), 150);
+		assertEquals(RetryingMessageReceiver.calculateDelayNanos(2, 100, 1000, 1), 100);
+	}
+
+	@Test
+	public void testSuccessfulMessageIsNotRetried() {
+		retryingReceiver.receiveMessage(Map.of(), "message");
+
+		assertEquals(receiver.receivedMessages.size(), 1);
+		assertTrue(retrySender.sentMessages.isEmpty());
+		assertEquals(retryingReceiver.getNumberOfRetries(), 0);
+	}
+
+	@Test
+	public void testFailedMessageIsRepublishedForRetryBeforeReturning() {
+		receiver.failuresLeft.set(1);
+
+		retryingReceiver.receiveMessage(Map.of("action", "UPDATE"), "message");
+
+		OutgoingMessage retry = retrySender.sentMessages.get(0);
+		assertEquals(retry.message, "message");
+		assertEquals(retry.headers,
+				Map.of("action", "UPDATE", MessageHeaders.RETRY_ATTEMPT, 1,
+						MessageHeaders.LAST_ERROR, "java.lang.RuntimeException: failure 1",
+						MessageHeaders.RETRY_DELAY, 75L));
+		assertEquals(retryingReceiver.getNumberOfRetries(), 1);
+		assertTrue(deadLetterSender.sentMessages.isEmpty());
+	}
+
+	@Test
+	public void testDelayOfRepublishedMessageGrowsForEachRetry() {
+		retryingReceiver = new RetryingMessageReceiver(receiver, retrySender, deadLetterSender, 5,
+				Duration.ofMillis(100), Duration.ofMillis(300), () -> 0);
+		receiver.failuresLeft.set(Integer.MAX_VALUE);
+
+		retryingReceiver.receiveMessage(Map.of(), "message");
+		redeliverLastRetry();
+		redeliverLastRetry();
+
+		assertEquals(getRetryHeader(0, MessageHeaders.RETRY_DELAY), 100L);
+		assertEquals(getRetryHeader(1, MessageHeaders.RETRY_DELAY), 200L);
+		assertEquals(getRetryHeader(2, MessageHeaders.RETRY_DELAY), 300L);
+		assertEquals(getRetryHeader(2, MessageHeaders.RETRY_ATTEMPT), 3);
+	}
+
+	private void redeliverLastRetry() {
+		OutgoingMessage retry = retrySender.sentMessages.getLast();
+		Map<String, String> headers = new HashMap<>();
+		retry.headers.forEach((name, value) -> headers.put(name, String.valueOf(value)));
+		retryingReceiver.receiveMessage(headers, retry.message);
+	}
+
+	private Object getRetryHeader(int retry, String name) {
+		return retrySender.sentMessages.get(retry).headers.get(name);
+	}
+
+	@Test
+	public void testMessageIsSentToDeadLetterAfterMaxAttempts() {
+		receiver.failuresLeft.set(Integer.MAX_VALUE);
+
+		retryingReceiver.receiveMessage(Map.of("action", "UPDATE"), "message");
+		redeliverLastRetry();
+		redeliverLastRetry();
+
+		assertEquals(receiver.receivedMessages.size(), 3);
+		assertEquals(retryingReceiver.getNumberOfRetries(), 2);
+		assertEquals(retryingReceiver.getNumberOfDeadLetters(), 1);
+		OutgoingMessage deadLetter = deadLetterSender.sentMessages.get(0);
+		assertEquals(deadLetter.message, "message");
+		assertEquals(deadLetter.headers.get("action"), "UPDATE");
+		assertEquals(deadLetter.headers.get(MessageHeaders.RETRY_ATTEMPT), 2);
+		assertEquals(deadLetter.headers.get(MessageHeaders.LAST_ERROR),
+				"java.lang.RuntimeException: failure 3");
+		assertEquals(deadLetter.headers.get(MessageHeaders.DEAD_LETTER_REASON),
+				RetryingMessageReceiver.MAX_ATTEMPTS_REACHED);
+		assertFalse(deadLetter.headers.containsKey(MessageHeaders.RETRY_DELAY));
+	}
+
+	@Test
+	public void testRetryAttemptHeaderOfReceivedMessageIsContinued() {
+		receiver.failuresLeft.set(1);
+
+		retryingReceiver.receiveMessage(Map.of(MessageHeaders.RETRY_ATTEMPT, "2"), "message");
+
+		assertEquals(retryingReceiver.getNumberOfDeadLetters(), 1);
+		assertTrue(retrySender.sentMessages.isEmpty());
+		assertEquals(deadLetterSender.sentMessages.get(0).headers
+				.get(MessageHeaders.RETRY_ATTEMPT), 2);
+	}
+
+	@Test
+	public void testBinaryMessageIsRepublishedFromItsStart() {
+		receiver.failuresLeft.set(1);
+		ByteBuffer buffer = ByteBuffer.wrap("message".getBytes(StandardCharsets.UTF_8));
+
+		retryingReceiver.receiveBinaryMessage(Map.of(), buffer);
+
+		assertEquals(receiver.receivedMessages.get(0), "message");
+		assertEquals(retrySender.sentMessages.get(0).message, "message");
+	}
+
+	@Test
+	public void testFailingRetrySenderThrowsReceiverErrorToListener() {
+		RuntimeException sendError = new RuntimeException("broker down");
+		retrySender.exceptionToThrow = sendError;
+		receiver.failuresLeft.set(1);
+
+		RuntimeException thrown = receiveExpectingError(Map.of());
+
+		assertEquals(thrown.getMessage(), "failure 1");
+		assertSame(thrown.getSuppressed()[0], sendError);
+		assertEquals(retryingReceiver.getNumberOfRetries(), 0);
+	}
+
+	private RuntimeException receiveExpectingError(Map<String, String> headers) {
+		try {
+			retryingReceiver.receiveMessage(headers, "message");
+			fail("Expected the error from the receiver");
+			return null;
+		} catch (RuntimeException e) {
+			return e;
+		}
+	}
+
+	@Test
+	public void testFailingDeadLetterSenderThrowsReceiverErrorToListener() {
+		RuntimeException sendError = new RuntimeException("broker down");
+		deadLetterSender.exceptionToThrow = sendError;
+		receiver.failuresLeft.set(1);
+
+		RuntimeException thrown = receiveExpectingError(Map.of(MessageHeaders.RETRY_ATTEMPT, "2"));
+
+		assertEquals(thrown.getMessage(), "failure 1");
+		assertSame(thrown.getSuppressed()[0], sendError);
+		assertEquals(retryingReceiver.getNumberOfDeadLetters(), 0);
+	}
+
+	@Test
+	public void testTopicClosedIsPassedOn() {
+		MessageReceiverSpy receiverSpy = new MessageReceiverSpy();
+		RetryingMessageReceiver spyRetryingReceiver = new RetryingMessageReceiver(receiverSpy,
+				retrySender, deadLetterSender, 3, Duration.ofMillis(5), Duration.ofMillis(20));
+
+		spyRetryingReceiver.topicClosed();
+
+		assertTrue(receiverSpy.topicClosedWasCalled);
+	}
+
+	private static class FailingReceiver implements MessageReceiver {
+		AtomicInteger failuresLeft = new AtomicInteger();
+		List<String> receivedMessages = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			receivedMessages.add(message);
+			if (failuresLeft.getAndDecrement() > 0) {
+				throw new RuntimeException("failure " + receivedMessages.size());
+			}
+		}
+
+		@Override
+		public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+			receiveMessage(headers, StandardCharsets.UTF_8.decode(message).toString());
+		}
+
+		@Override
+		public void topicClosed() {
+			// not used in tests
+		}
+	}
+}
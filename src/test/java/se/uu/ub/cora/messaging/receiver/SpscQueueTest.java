@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+public class SpscQueueTest {
+
+	@Test
+	public void testCapacityIsRoundedUpToPowerOfTwo() {
+		assertEquals(new SpscQueue<String>(1).capacity(), 1);
+		assertEquals(new SpscQueue<String>(3).capacity(), 4);
+		assertEquals(new SpscQueue<String>(1024).capacity(), 1024);
+	}
+
+	@Test
+	public void testPollReturnsElementsInOfferedOrder() {
+		SpscQueue<String> queue = new SpscQueue<>(4);
+		queue.offer("first");
+		queue.offer("second");
+
+		assertEquals(queue.poll(), "first");
+		assertEquals(queue.poll(), "second");
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void testOfferFailsWhenFull() {
+		SpscQueue<String> queue = new SpscQueue<>(2);
+
+		assertTrue(queue.offer("first"));
+		assertTrue(queue.offer("second"));
+		assertFalse(queue.offer("third"));
+		assertEquals(queue.size(), 2);
+	}
+
+	@Test
+	public void testSlotsAreReusedAfterPoll() {
+		SpscQueue<Integer> queue = new SpscQueue<>(2);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(queue.offer(i));
+			assertEquals(queue.poll(), Integer.valueOf(i));
+		}
+		assertEquals(queue.size(), 0);
+	}
+
+	@Test
+	public void testConcurrentProducerAndConsumerKeepOrder() throws Exception {
+		SpscQueue<Integer> queue = new SpscQueue<>(16);
+		CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+			for (int i = 0; i < 100_000; i++) {
+				while (!queue.offer(i)) {
+					Thread.onSpinWait();
+				}
+			}
+		});
+
+		int expected = 0;
+		while (expected < 100_000) {
+			Integer element = queue.poll();
+			if (null != element) {
+				assertEquals(element.intValue(), expected);
+				expected++;
+			}
+		}
+
+		producer.get(5, TimeUnit.SECONDS);
+		assertNull(queue.poll());
+	}
+}
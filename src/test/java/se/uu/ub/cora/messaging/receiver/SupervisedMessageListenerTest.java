@@ -0,0 +1,337 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AcknowledgingMessageReceiver;
+import se.uu.ub.cora.messaging.BatchMessageReceiver;
+import se.uu.ub.cora.messaging.MessageListener;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+import se.uu.ub.cora.messaging.receiver.ReconnectEvent.Type;
+import se.uu.ub.cora.messaging.spy.BatchMessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.MessageListenerSpy;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class SupervisedMessageListenerTest {
+	private List<MessageListenerSpy> createdListeners;
+	private AtomicInteger failingListenersToCreate;
+	private List<ReconnectEvent> events;
+	private MessageReceiverSpy receiver;
+	private SupervisedMessageListener supervisedListener;
+	private CountDownLatch reconnectStarted;
+	private CountDownLatch blockReconnectUntilCountedDown;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		createdListeners = new CopyOnWriteArrayList<>();
+		failingListenersToCreate = new AtomicInteger();
+		events = new CopyOnWriteArrayList<>();
+		receiver = new MessageReceiverSpy();
+		supervisedListener = new SupervisedMessageListener(this::createListener,
+				Duration.ofMillis(2), Duration.ofMillis(10), events::add);
+	}
+
+	private MessageListener createListener() {
+		if (null != blockReconnectUntilCountedDown && !createdListeners.isEmpty()) {
+			reconnectStarted.countDown();
+			awaitUninterruptibly(blockReconnectUntilCountedDown);
+		}
+		MessageListenerSpy listener = new MessageListenerSpy();
+		if (failingListenersToCreate.getAndDecrement() > 0) {
+			listener.exceptionToThrow = new MessagingException("broker unreachable");
+		}
+		createdListeners.add(listener);
+		return listener;
+	}
+
+	private void awaitUninterruptibly(CountDownLatch latch) {
+		boolean interrupted = false;
+		while (latch.getCount() > 0) {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@AfterMethod
+	public void afterMethod() {
+		supervisedListener.close();
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "initialDelay must be positive, was PT0S")
+	public void testInitialDelayMustBePositive() {
+		new SupervisedMessageListener(this::createListener, Duration.ZERO, Duration.ofMillis(10),
+				events::add);
+	}
+
+	@Test
+	public void testListenStartsListenerThatDeliversToReceiver() {
+		supervisedListener.listen(receiver);
+
+		getListener(0).messageReceiver.receiveMessage(Map.of("action", "UPDATE"), "message");
+
+		assertEquals(createdListeners.size(), 1);
+		assertEquals(receiver.receivedMessages, List.of("message"));
+		assertTrue(supervisedListener.isConnected());
+	}
+
+	private MessageListenerSpy getListener(int index) {
+		return createdListeners.get(index);
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "broker unreachable")
+	public void testFailingFirstListenIsThrown() {
+		failingListenersToCreate.set(1);
+
+		supervisedListener.listen(receiver);
+	}
+
+	@Test
+	public void testClosedTopicIsReconnected() throws Exception {
+		supervisedListener.listen(receiver);
+
+		getListener(0).messageReceiver.topicClosed();
+
+		waitUntil(() -> supervisedListener.getNumberOfReconnects() == 1);
+		assertEquals(createdListeners.size(), 2);
+		assertTrue(getListener(0).closeWasCalled);
+		getListener(1).messageReceiver.receiveMessage(Map.of(), "afterReconnect");
+		assertEquals(receiver.receivedMessages, List.of("afterReconnect"));
+		assertFalse(receiver.topicClosedWasCalled);
+		waitUntil(() -> events.size() == 2);
+		assertEventTypes(Type.CONNECTION_LOST, Type.RECONNECTED);
+		assertEquals(events.get(1).attempt, 1);
+		assertNull(events.get(1).error);
+		waitUntil(supervisedListener::isConnected);
+		assertTrue(supervisedListener.isConnected());
+	}
+
+	private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(2);
+		}
+	}
+
+	private void assertEventTypes(Type... expectedTypes) {
+		assertEquals(events.stream().map(event -> event.type).toList(), List.of(expectedTypes));
+	}
+
+	@Test
+	public void testFailedAttemptsAreRetriedAndPublished() throws Exception {
+		supervisedListener.listen(receiver);
+		failingListenersToCreate.set(2);
+
+		getListener(0).messageReceiver.topicClosed();
+
+		waitUntil(() -> supervisedListener.getNumberOfReconnects() == 1);
+		waitUntil(() -> events.size() == 4);
+		assertEquals(createdListeners.size(), 4);
+		assertEventTypes(Type.CONNECTION_LOST, Type.RECONNECT_FAILED, Type.RECONNECT_FAILED,
+				Type.RECONNECTED);
+		assertEquals(events.get(1).error.getMessage(), "broker unreachable");
+		assertEquals(events.get(2).attempt, 2);
+		assertEquals(events.get(3).attempt, 3);
+		assertTrue(events.get(3).downtime.compareTo(events.get(2).downtime) >= 0);
+		assertTrue(supervisedListener.getTotalDowntime().compareTo(Duration.ZERO) > 0);
+	}
+
+	@Test
+	public void testTopicClosedFromReplacedListenerIsIgnored() throws Exception {
+		supervisedListener.listen(receiver);
+		getListener(0).messageReceiver.topicClosed();
+		waitUntil(() -> supervisedListener.getNumberOfReconnects() == 1);
+
+		getListener(0).messageReceiver.topicClosed();
+		Thread.sleep(30);
+
+		assertEquals(createdListeners.size(), 2);
+		assertEquals(supervisedListener.getNumberOfReconnects(), 1);
+	}
+
+	@Test
+	public void testReconnectedListenerIsSupervisedAgain() throws Exception {
+		supervisedListener.listen(receiver);
+		getListener(0).messageReceiver.topicClosed();
+		waitUntil(() -> supervisedListener.getNumberOfReconnects() == 1);
+
+		getListener(1).messageReceiver.topicClosed();
+
+		waitUntil(() -> supervisedListener.getNumberOfReconnects() == 2);
+		assertEquals(createdListeners.size(), 3);
+	}
+
+	@Test
+	public void testCloseStopsReconnecting() throws Exception {
+		supervisedListener.listen(receiver);
+		failingListenersToCreate.set(Integer.MAX_VALUE);
+		getListener(0).messageReceiver.topicClosed();
+		waitUntil(() -> createdListeners.size() > 2);
+
+		supervisedListener.close();
+		int createdWhenClosed = createdListeners.size();
+		Thread.sleep(30);
+
+		assertTrue(createdListeners.size() <= createdWhenClosed + 1);
+		assertFalse(supervisedListener.isConnected());
+	}
+
+	@Test
+	public void testListenerStartedWhileClosingIsClosed() throws Exception {
+		supervisedListener.listen(receiver);
+		reconnectStarted = new CountDownLatch(1);
+		blockReconnectUntilCountedDown = new CountDownLatch(1);
+		getListener(0).messageReceiver.topicClosed();
+		assertTrue(reconnectStarted.await(5, TimeUnit.SECONDS));
+
+		Thread closingThread = Thread.ofPlatform().start(supervisedListener::close);
+		waitUntil(() -> closingThread.getState() == Thread.State.BLOCKED);
+		blockReconnectUntilCountedDown.countDown();
+		closingThread.join(5000);
+
+		assertEquals(createdListeners.size(), 2);
+		assertTrue(getListener(1).closeWasCalled);
+		assertFalse(supervisedListener.isConnected());
+	}
+
+	@Test
+	public void testTopicClosedAfterCloseIsIgnored() throws Exception {
+		supervisedListener.listen(receiver);
+
+		supervisedListener.close();
+		getListener(0).messageReceiver.topicClosed();
+		Thread.sleep(30);
+
+		assertTrue(getListener(0).closeWasCalled);
+		assertEquals(createdListeners.size(), 1);
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	public void testFailingEventListenerDoesNotStopReconnect() throws Exception {
+		supervisedListener = new SupervisedMessageListener(this::createListener,
+				Duration.ofMillis(2), Duration.ofMillis(10), event -> {
+					throw new RuntimeException("event listener failed");
+				});
+		supervisedListener.listen(receiver);
+
+		getListener(0).messageReceiver.topicClosed();
+
+		waitUntil(() -> supervisedListener.getNumberOfReconnects() == 1);
+		assertEquals(supervisedListener.getNumberOfReconnects(), 1);
+	}
+
+	@Test
+	public void testAcknowledgingReceiverKeepsItsType() {
+		CollectingAcknowledgingReceiver acknowledgingReceiver =
+				new CollectingAcknowledgingReceiver();
+
+		supervisedListener.listen(acknowledgingReceiver);
+
+		assertTrue(getListener(0).messageReceiver instanceof AcknowledgingMessageReceiver);
+		ReceivedMessage receivedMessage = new ReceivedMessage(Map.of(), "message", 7);
+		((AcknowledgingMessageReceiver) getListener(0).messageReceiver)
+				.receiveMessage(receivedMessage);
+		assertEquals(acknowledgingReceiver.received, List.of(receivedMessage));
+	}
+
+	@Test
+	public void testBatchReceiverKeepsItsType() {
+		BatchMessageReceiverSpy batchReceiver = new BatchMessageReceiverSpy();
+
+		supervisedListener.listen(batchReceiver);
+
+		BatchMessageReceiver supervisingReceiver = (BatchMessageReceiver) getListener(
+				0).messageReceiver;
+		assertEquals(supervisingReceiver.getMaxBatchSize(), batchReceiver.getMaxBatchSize());
+		assertEquals(supervisingReceiver.getMaxBatchWait(), batchReceiver.getMaxBatchWait());
+		supervisingReceiver.receiveMessages(List.of(new ReceivedMessage(Map.of(), "message", 1)));
+		assertEquals(batchReceiver.getNumberOfReceivedBatches(), 1);
+	}
+
+	@Test
+	public void testAcknowledgingBatchReceiverKeepsExplicitAcknowledgement() {
+		AcknowledgingBatchReceiver acknowledgingBatchReceiver = new AcknowledgingBatchReceiver();
+
+		supervisedListener.listen(acknowledgingBatchReceiver);
+
+		assertTrue(getListener(0).messageReceiver instanceof AcknowledgingMessageReceiver);
+		ReceivedMessage receivedMessage = new ReceivedMessage(Map.of(), "message", 7);
+		((AcknowledgingMessageReceiver) getListener(0).messageReceiver)
+				.receiveMessage(receivedMessage);
+		assertEquals(acknowledgingBatchReceiver.received, List.of(receivedMessage));
+	}
+
+	private static class AcknowledgingBatchReceiver extends BatchMessageReceiverSpy
+			implements AcknowledgingMessageReceiver {
+		List<ReceivedMessage> received = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void receiveMessage(ReceivedMessage receivedMessage) {
+			received.add(receivedMessage);
+		}
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			receiveMessage(new ReceivedMessage(headers, message, 0));
+		}
+	}
+
+	private static class CollectingAcknowledgingReceiver implements AcknowledgingMessageReceiver {
+		List<ReceivedMessage> received = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void receiveMessage(ReceivedMessage receivedMessage) {
+			received.add(receivedMessage);
+		}
+
+		@Override
+		public void topicClosed() {
+			// not used in tests
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.receiver;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageReceiver;
+import se.uu.ub.cora.messaging.spy.MessageListenerSpy;
+import se.uu.ub.cora.messaging.spy.MessageReceiverSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class VirtualThreadMessageDispatcherTest {
+	private BlockingReceiver receiver;
+	private VirtualThreadMessageDispatcher dispatcher;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		receiver = new BlockingReceiver();
+		dispatcher = new VirtualThreadMessageDispatcher(receiver, 2);
+	}
+
+	@Test
+	public void testMessageIsHandledOnVirtualThread() throws Exception {
+		receiver.release.countDown();
+
+		dispatcher.receiveMessage(Map.of(), "message");
+
+		assertTrue(receiver.handledOnVirtualThread.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testReceiveBlocksWhenMaxConcurrentHandlersAreRunning() throws Exception {
+		dispatcher.receiveMessage(Map.of(), "first");
+		dispatcher.receiveMessage(Map.of(), "second");
+
+		CompletableFuture<Void> third = CompletableFuture
+				.runAsync(() -> dispatcher.receiveMessage(Map.of(), "third"));
+		Thread.sleep(50);
+
+		assertFalse(third.isDone());
+		assertEquals(dispatcher.getNumberOfRunningHandlers(), 2);
+		receiver.release.countDown();
+		third.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testFailingHandlerReleasesItsPermit() throws Exception {
+		receiver.release.countDown();
+		receiver.exceptionToThrow = new RuntimeException("handler failed");
+
+		dispatcher.receiveMessage(Map.of(), "first");
+		dispatcher.receiveMessage(Map.of(), "second");
+		dispatcher.receiveMessage(Map.of(), "third");
+
+		waitForNoRunningHandlers();
+		assertEquals(dispatcher.getNumberOfRunningHandlers(), 0);
+	}
+
+	private void waitForNoRunningHandlers() throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (dispatcher.getNumberOfRunningHandlers() > 0
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void testBinaryMessageIsCopiedBeforeDispatch() throws Exception {
+		receiver.release.countDown();
+		ByteBuffer buffer = ByteBuffer.wrap("message".getBytes(StandardCharsets.UTF_8));
+
+		dispatcher.receiveBinaryMessage(Map.of(), buffer);
+
+		ByteBuffer received = receiver.receivedBuffer.get(5, TimeUnit.SECONDS);
+		assertNotSame(received, buffer);
+		assertEquals(StandardCharsets.UTF_8.decode(received).toString(), "message");
+	}
+
+	@Test
+	public void testTopicClosedIsPassedOn() {
+		MessageReceiverSpy receiverSpy = new MessageReceiverSpy();
+		dispatcher = new VirtualThreadMessageDispatcher(receiverSpy, 1);
+
+		dispatcher.topicClosed();
+
+		assertTrue(receiverSpy.topicClosedWasCalled);
+	}
+
+	@Test
+	public void testListenUsingVirtualThreadsWrapsReceiver() {
+		MessageListenerSpy listener = new MessageListenerSpy();
+		MessageReceiverSpy receiverSpy = new MessageReceiverSpy();
+
+		listener.listenUsingVirtualThreads(receiverSpy, 10);
+
+		assertTrue(listener.messageReceiver instanceof VirtualThreadMessageDispatcher);
+	}
+
+	private static class BlockingReceiver implements MessageReceiver {
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> handledOnVirtualThread = new CompletableFuture<>();
+		CompletableFuture<ByteBuffer> receivedBuffer = new CompletableFuture<>();
+		volatile RuntimeException exceptionToThrow;
+
+		@Override
+		public void receiveMessage(Map<String, String> headers, String message) {
+			handledOnVirtualThread.complete(Thread.currentThread().isVirtual());
+			awaitRelease();
+			if (null != exceptionToThrow) {
+				throw exceptionToThrow;
+			}
+		}
+
+		@Override
+		public void receiveBinaryMessage(Map<String, String> headers, ByteBuffer message) {
+			receivedBuffer.complete(message);
+		}
+
+		private void awaitRelease() {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void topicClosed() {
+			// not used in tests
+		}
+	}
+}
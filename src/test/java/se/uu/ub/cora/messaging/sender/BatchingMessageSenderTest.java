@@ -0,0 +1,246 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class BatchingMessageSenderTest {
+	private static final Map<String, Object> HEADERS = Collections.emptyMap();
+	private MessageSenderSpy messageSender;
+	private BatchingMessageSender batchingSender;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		messageSender = new MessageSenderSpy();
+		batchingSender = new BatchingMessageSender(messageSender, 3, 1000, Duration.ofHours(1));
+	}
+
+	@Test
+	public void testMessagesAreHeldUntilBatchIsFull() {
+		batchingSender.sendMessage(HEADERS, "one");
+		batchingSender.sendMessage(HEADERS, "two");
+
+		assertEquals(messageSender.sentBatches.size(), 0);
+
+		batchingSender.sendMessage(HEADERS, "three");
+
+		assertEquals(messageSender.sentBatches.size(), 1);
+		assertBatchContains(messageSender.sentBatches.get(0), "one", "two", "three");
+	}
+
+	private void assertBatchContains(List<OutgoingMessage> batch, String... messages) {
+		assertEquals(batch.size(), messages.length);
+		for (int i = 0; i < messages.length; i++) {
+			assertEquals(batch.get(i).message, messages[i]);
+			assertEquals(batch.get(i).headers, HEADERS);
+		}
+	}
+
+	@Test
+	public void testBatchIsSentWhenMaxBytesIsReached() {
+		batchingSender = new BatchingMessageSender(messageSender, 100, 6, Duration.ofHours(1));
+
+		batchingSender.sendMessage(HEADERS, "åäö");
+
+		assertEquals(messageSender.sentBatches.size(), 1);
+		assertBatchContains(messageSender.sentBatches.get(0), "åäö");
+	}
+
+	@Test
+	public void testSendMessagesIsSplitIntoBatches() {
+		batchingSender.sendMessages(List.of(new OutgoingMessage(HEADERS, "1"),
+				new OutgoingMessage(HEADERS, "2"), new OutgoingMessage(HEADERS, "3"),
+				new OutgoingMessage(HEADERS, "4")));
+
+		assertEquals(messageSender.sentBatches.size(), 1);
+		assertBatchContains(messageSender.sentBatches.get(0), "1", "2", "3");
+		batchingSender.flush();
+		assertBatchContains(messageSender.sentBatches.get(1), "4");
+	}
+
+	@Test
+	public void testFlushWithEmptyBatchSendsNothing() {
+		batchingSender.flush();
+
+		assertEquals(messageSender.sentBatches.size(), 0);
+	}
+
+	@Test
+	public void testBatchIsSentAfterLingerTime() throws Exception {
+		batchingSender = new BatchingMessageSender(messageSender, 100, 1000,
+				Duration.ofMillis(10));
+
+		batchingSender.sendMessage(HEADERS, "one");
+		waitForNumberOfBatches(1);
+
+		assertBatchContains(messageSender.sentBatches.get(0), "one");
+	}
+
+	private void waitForNumberOfBatches(int expected) throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (messageSender.sentBatches.size() < expected
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+		assertEquals(messageSender.sentBatches.size(), expected);
+	}
+
+	@Test
+	public void testCloseFlushesAndClosesDecoratedSender() {
+		batchingSender.sendMessage(HEADERS, "one");
+
+		batchingSender.close();
+
+		assertBatchContains(messageSender.sentBatches.get(0), "one");
+		assertTrue(messageSender.closeWasCalled);
+	}
+
+	@Test
+	public void testFailedBatchIsKeptAndSentWithNextBatch() {
+		messageSender.exceptionToThrow = new RuntimeException("send failed");
+		batchingSender.sendMessage(HEADERS, "one");
+		batchingSender.sendMessage(HEADERS, "two");
+		try {
+			batchingSender.sendMessage(HEADERS, "three");
+			fail("Exception should have been thrown");
+		} catch (RuntimeException e) {
+			assertEquals(e.getMessage(), "send failed");
+		}
+		messageSender.exceptionToThrow = null;
+
+		batchingSender.sendMessage(HEADERS, "four");
+
+		assertEquals(messageSender.sentBatches.size(), 2);
+		assertBatchContains(messageSender.sentBatches.get(0), "one", "two", "three");
+		assertBatchContains(messageSender.sentBatches.get(1), "four");
+	}
+
+	@Test
+	public void testMessagesPutBackAreSentInBatchesWithinMaxBytes() {
+		batchingSender = new BatchingMessageSender(messageSender, 100, 6, Duration.ofHours(1));
+		messageSender.exceptionToThrow = new RuntimeException("send failed");
+		sendMessageAndIgnoreException("abc");
+		sendMessageAndIgnoreException("def");
+		messageSender.exceptionToThrow = null;
+
+		batchingSender.sendMessage(HEADERS, "ghi");
+
+		assertEquals(messageSender.sentBatches.size(), 2);
+		assertBatchContains(messageSender.sentBatches.get(0), "abc", "def");
+		assertBatchContains(messageSender.sentBatches.get(1), "ghi");
+	}
+
+	private void sendMessageAndIgnoreException(String message) {
+		try {
+			batchingSender.sendMessage(HEADERS, message);
+		} catch (RuntimeException e) {
+			// held again, sent later
+		}
+	}
+
+	@Test
+	public void testMessageIsNotAddedWhenMaxHeldMessagesAreHeld() {
+		batchingSender = new BatchingMessageSender(messageSender, 2, 1000, Duration.ofHours(1),
+				3);
+		messageSender.exceptionToThrow = new RuntimeException("send failed");
+		sendMessageAndIgnoreException("one");
+		sendMessageAndIgnoreException("two");
+		sendMessageAndIgnoreException("three");
+		try {
+			batchingSender.sendMessage(HEADERS, "four");
+			fail("Exception should have been thrown");
+		} catch (MessagingException e) {
+			assertEquals(e.getMessage(), "BatchingMessageSender holds the maximum number of "
+					+ "messages, 3, message not added");
+		}
+		messageSender.exceptionToThrow = null;
+
+		batchingSender.flush();
+
+		assertEquals(messageSender.sentMessages.size(), 3);
+		assertEquals(batchingSender.getNumberOfRejectedMessages(), 1);
+		assertBatchContains(messageSender.sentBatches.get(0), "one", "two");
+		assertBatchContains(messageSender.sentBatches.get(1), "three");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxHeldMessages must be at least 3, was 2")
+	public void testMaxHeldMessagesMustHoldABatch() {
+		new BatchingMessageSender(messageSender, 3, 1000, Duration.ofHours(1), 2);
+	}
+
+	@Test
+	public void testSendBinaryMessageSendsCollectedMessagesFirst() {
+		batchingSender.sendMessage(HEADERS, "one");
+
+		batchingSender.sendBinaryMessage(HEADERS,
+				ByteBuffer.wrap("two".getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(messageSender.sentMessages.size(), 2);
+		assertEquals(messageSender.sentMessages.get(0).message, "one");
+		assertEquals(messageSender.sentMessages.get(1).message, "two");
+	}
+
+	@Test
+	public void testAddingMessagesIsNotBlockedWhileBatchIsSent() throws Exception {
+		messageSender.blockSendingUntilCountedDown = new CountDownLatch(1);
+		Thread sendingThread = Thread.ofPlatform().start(() -> batchingSender
+				.sendMessages(List.of(new OutgoingMessage(HEADERS, "1"),
+						new OutgoingMessage(HEADERS, "2"), new OutgoingMessage(HEADERS, "3"))));
+		waitUntilWaiting(sendingThread);
+
+		batchingSender.sendMessage(HEADERS, "4");
+
+		messageSender.blockSendingUntilCountedDown.countDown();
+		sendingThread.join();
+		assertEquals(messageSender.sentBatches.size(), 1);
+		assertBatchContains(messageSender.sentBatches.get(0), "1", "2", "3");
+		batchingSender.flush();
+		assertBatchContains(messageSender.sentBatches.get(1), "4");
+	}
+
+	private void waitUntilWaiting(Thread thread) throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (thread.getState() != Thread.State.WAITING
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+		assertEquals(thread.getState(), Thread.State.WAITING);
+	}
+}
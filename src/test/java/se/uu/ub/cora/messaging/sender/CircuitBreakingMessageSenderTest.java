@@ -0,0 +1,328 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+import se.uu.ub.cora.messaging.sender.CircuitBreakingMessageSender.State;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class CircuitBreakingMessageSenderTest {
+	private static final long SECOND = 1_000_000_000L;
+	private volatile long now;
+	private SlowSenderSpy senderSpy;
+	private MessageSenderSpy fallbackSpy;
+	private CircuitBreakingMessageSender sender;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		now = 100 * SECOND;
+		senderSpy = new SlowSenderSpy();
+		fallbackSpy = new MessageSenderSpy();
+		sender = createSender(fallbackSpy);
+	}
+
+	private CircuitBreakingMessageSender createSender(MessageSender fallbackSender) {
+		return new CircuitBreakingMessageSender(senderSpy, fallbackSender, Duration.ofSeconds(10),
+				4, 50, Duration.ofSeconds(1), Duration.ofSeconds(30), () -> now);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "minimumNumberOfCalls must be at least 1, was 0")
+	public void testMinimumNumberOfCallsMustBePositive() {
+		new CircuitBreakingMessageSender(senderSpy, null, Duration.ofSeconds(10), 0, 50,
+				Duration.ofSeconds(1), Duration.ofSeconds(30));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "failureRatePercent must be between 1 and 100, was 101")
+	public void testFailureRatePercentMustBeAPercentage() {
+		new CircuitBreakingMessageSender(senderSpy, null, Duration.ofSeconds(10), 4, 101,
+				Duration.ofSeconds(1), Duration.ofSeconds(30));
+	}
+
+	@Test
+	public void testMessagesAreSentWhileClosed() {
+		sender.sendMessage(Map.of("action", "UPDATE"), "message");
+
+		assertEquals(senderSpy.sentMessages.size(), 1);
+		assertEquals(sender.getState(), State.CLOSED);
+	}
+
+	@Test
+	public void testFailuresAreThrownToCaller() {
+		senderSpy.exceptionToThrow = new MessagingException("broker down");
+
+		try {
+			sender.sendMessage(Map.of(), "message");
+			fail("exception expected");
+		} catch (MessagingException e) {
+			assertEquals(e.getMessage(), "broker down");
+		}
+	}
+
+	@Test
+	public void testCircuitStaysClosedBelowMinimumNumberOfCalls() {
+		failSends(3);
+
+		assertEquals(sender.getState(), State.CLOSED);
+	}
+
+	private void failSends(int numberOfSends) {
+		senderSpy.exceptionToThrow = new MessagingException("broker down");
+		for (int i = 0; i < numberOfSends; i++) {
+			try {
+				sender.sendMessage(Map.of(), "failing");
+			} catch (MessagingException e) {
+				// expected
+			}
+		}
+		senderSpy.exceptionToThrow = null;
+	}
+
+	@Test
+	public void testCircuitStaysClosedBelowFailureRate() {
+		sendSuccessfully(3);
+		failSends(2);
+
+		assertEquals(sender.getState(), State.CLOSED);
+	}
+
+	private void sendSuccessfully(int numberOfSends) {
+		for (int i = 0; i < numberOfSends; i++) {
+			sender.sendMessage(Map.of(), "message");
+		}
+	}
+
+	@Test
+	public void testCircuitOpensAtFailureRate() {
+		sendSuccessfully(2);
+		failSends(2);
+
+		assertEquals(sender.getState(), State.OPEN);
+	}
+
+	@Test
+	public void testFailuresOutsideWindowAreForgotten() {
+		failSends(3);
+		now += 11 * SECOND;
+		sendSuccessfully(3);
+
+		failSends(1);
+
+		assertEquals(sender.getState(), State.CLOSED);
+	}
+
+	@Test
+	public void testSlowSendsCountAsFailures() {
+		senderSpy.nanosPerSend = 2 * SECOND;
+
+		sendSuccessfully(4);
+
+		assertEquals(senderSpy.sentMessages.size(), 4);
+		assertEquals(sender.getState(), State.OPEN);
+	}
+
+	@Test
+	public void testOpenCircuitSendsToFallback() {
+		failSends(4);
+
+		sender.sendMessage(Map.of("action", "UPDATE"), "message");
+
+		assertEquals(fallbackSpy.sentMessages.size(), 1);
+		assertEquals(fallbackSpy.sentMessages.get(0).headers, Map.of("action", "UPDATE"));
+		assertEquals(senderSpy.sentMessages.size(), 0);
+		assertEquals(sender.getNumberOfRejectedMessages(), 1);
+	}
+
+	@Test(expectedExceptions = MessagingException.class, expectedExceptionsMessageRegExp = ""
+			+ "Circuit is open, message is not sent")
+	public void testOpenCircuitWithoutFallbackFailsFast() {
+		sender = createSender(null);
+		failSends(4);
+
+		sender.sendMessage(Map.of(), "message");
+	}
+
+	@Test
+	public void testSupportsBinaryMessagesWithoutFallback() {
+		MessageSender binarySender = new MessageSenderSpy() {
+			@Override
+			public boolean supportsBinaryMessages() {
+				return true;
+			}
+		};
+
+		assertTrue(new CircuitBreakingMessageSender(binarySender, null, Duration.ofSeconds(10), 4,
+				50, Duration.ofSeconds(1), Duration.ofSeconds(30)).supportsBinaryMessages());
+		assertFalse(createSender(null).supportsBinaryMessages());
+	}
+
+	@Test
+	public void testBinaryMessagesAndBatchesGoToFallbackWhenOpen() {
+		failSends(4);
+
+		sender.sendBinaryMessage(Map.of(),
+				ByteBuffer.wrap("binary".getBytes(StandardCharsets.UTF_8)));
+		sender.sendMessages(List.of(new OutgoingMessage(Map.of(), "batched")));
+
+		assertEquals(fallbackSpy.sentMessages.get(0).message, "binary");
+		assertEquals(fallbackSpy.sentBatches.size(), 1);
+		assertEquals(sender.getNumberOfRejectedMessages(), 2);
+	}
+
+	@Test
+	public void testCircuitIsHalfOpenAfterOpenDuration() {
+		failSends(4);
+		now += 30 * SECOND;
+
+		assertEquals(sender.getState(), State.HALF_OPEN);
+	}
+
+	@Test
+	public void testSuccessfulProbesCloseCircuit() {
+		failSends(4);
+		now += 30 * SECOND;
+
+		sendSuccessfully(CircuitBreakingMessageSender.SUCCESSFUL_PROBES_TO_CLOSE - 1);
+		assertEquals(sender.getState(), State.HALF_OPEN);
+		sendSuccessfully(1);
+
+		assertEquals(sender.getState(), State.CLOSED);
+		assertEquals(senderSpy.sentMessages.size(),
+				CircuitBreakingMessageSender.SUCCESSFUL_PROBES_TO_CLOSE);
+		failSends(1);
+		assertEquals(sender.getState(), State.CLOSED);
+	}
+
+	@Test
+	public void testFailedProbeOpensCircuitAgain() {
+		failSends(4);
+		now += 30 * SECOND;
+		sendSuccessfully(1);
+
+		failSends(1);
+
+		assertEquals(sender.getState(), State.OPEN);
+		sender.sendMessage(Map.of(), "message");
+		assertEquals(fallbackSpy.sentMessages.size(), 1);
+		now += 30 * SECOND;
+		assertEquals(sender.getState(), State.HALF_OPEN);
+	}
+
+	@Test
+	public void testErrorThrownByProbeOpensCircuitAgain() {
+		failSends(4);
+		now += 30 * SECOND;
+		Error probeError = new Error("probe error");
+		senderSpy.errorToThrow = probeError;
+
+		try {
+			sender.sendMessage(Map.of(), "probe");
+			fail("Expected error from probe");
+		} catch (Error e) {
+			assertSame(e, probeError);
+		}
+
+		assertEquals(sender.getState(), State.OPEN);
+		now += 30 * SECOND;
+		assertEquals(sender.getState(), State.HALF_OPEN);
+	}
+
+	@Test
+	public void testOnlyOneProbeAtATime() throws Exception {
+		failSends(4);
+		now += 30 * SECOND;
+		senderSpy.blockSending = true;
+		Thread probe = Thread.ofPlatform().start(() -> sender.sendMessage(Map.of(), "probe"));
+		senderSpy.waitUntilBlocked();
+
+		sender.sendMessage(Map.of(), "duringProbe");
+
+		assertEquals(fallbackSpy.sentMessages.size(), 1);
+		senderSpy.release();
+		probe.join(5000);
+		assertEquals(senderSpy.sentMessages.get(0).message, "probe");
+	}
+
+	@Test
+	public void testCloseClosesOnlyDecoratedSender() {
+		sender.close();
+
+		assertTrue(senderSpy.closeWasCalled);
+		assertFalse(fallbackSpy.closeWasCalled);
+	}
+
+	private class SlowSenderSpy extends MessageSenderSpy {
+		volatile long nanosPerSend = 0;
+		volatile boolean blockSending = false;
+		volatile Error errorToThrow;
+		private final CountDownLatch blocked = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		@Override
+		public void sendMessage(Map<String, Object> headers, String message) {
+			if (blockSending) {
+				blocked.countDown();
+				awaitRelease();
+			}
+			now += nanosPerSend;
+			if (null != errorToThrow) {
+				throw errorToThrow;
+			}
+			super.sendMessage(headers, message);
+		}
+
+		private void awaitRelease() {
+			try {
+				released.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void waitUntilBlocked() throws InterruptedException {
+			blocked.await();
+		}
+
+		void release() {
+			released.countDown();
+		}
+	}
+}
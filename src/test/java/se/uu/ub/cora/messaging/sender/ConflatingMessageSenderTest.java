@@ -0,0 +1,247 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.OutgoingMessage;
+import se.uu.ub.cora.messaging.spy.MessageSenderSpy;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class ConflatingMessageSenderTest {
+	private static final List<String> KEY = List.of(MessageHeaders.RECORD_TYPE,
+			MessageHeaders.RECORD_ID);
+	private MessageSenderSpy messageSender;
+	private ConflatingMessageSender conflatingSender;
+
+	@BeforeMethod
+	public void beforeMethod() {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		messageSender = new MessageSenderSpy();
+		conflatingSender = new ConflatingMessageSender(messageSender, KEY, 100,
+				Duration.ofHours(1));
+	}
+
+	private Map<String, Object> recordHeaders(String recordId) {
+		return Map.of(MessageHeaders.RECORD_TYPE, "book", MessageHeaders.RECORD_ID, recordId);
+	}
+
+	private void assertSent(String... messages) {
+		List<String> sent = messageSender.sentMessages.stream()
+				.map(outgoingMessage -> outgoingMessage.message).toList();
+		assertEquals(sent, List.of(messages));
+	}
+
+	@Test
+	public void testLaterMessageWithSameKeyReplacesHeldMessageInPlace() {
+		conflatingSender.sendMessage(recordHeaders("1"), "book1 v1");
+		conflatingSender.sendMessage(recordHeaders("2"), "book2 v1");
+		conflatingSender.sendMessage(recordHeaders("1"), "book1 v2");
+
+		assertEquals(messageSender.sentMessages.size(), 0);
+		conflatingSender.flush();
+
+		assertSent("book1 v2", "book2 v1");
+		assertEquals(messageSender.sentBatches.size(), 1);
+		assertEquals(conflatingSender.getNumberOfReceivedMessages(), 3);
+		assertEquals(conflatingSender.getNumberOfConflatedMessages(), 1);
+		assertEquals(conflatingSender.getConflationRate(), 1.0 / 3);
+	}
+
+	@Test
+	public void testMessagesWithoutKeyAreNotReplaced() {
+		conflatingSender.sendMessage(Map.of(MessageHeaders.RECORD_TYPE, "book"), "one");
+		conflatingSender.sendMessage(Map.of(MessageHeaders.RECORD_TYPE, "book"), "two");
+		conflatingSender.sendMessage(null, "three");
+
+		conflatingSender.flush();
+
+		assertSent("one", "two", "three");
+		assertEquals(conflatingSender.getNumberOfConflatedMessages(), 0);
+	}
+
+	@Test
+	public void testHeldMessagesAreSentWhenMaxPendingIsReached() {
+		conflatingSender = new ConflatingMessageSender(messageSender, KEY, 2,
+				Duration.ofHours(1));
+
+		conflatingSender.sendMessages(List.of(new OutgoingMessage(recordHeaders("1"), "1"),
+				new OutgoingMessage(recordHeaders("1"), "1 v2"),
+				new OutgoingMessage(recordHeaders("2"), "2"),
+				new OutgoingMessage(recordHeaders("3"), "3")));
+
+		assertSent("1 v2", "2");
+		conflatingSender.flush();
+		assertSent("1 v2", "2", "3");
+	}
+
+	@Test
+	public void testHeldMessagesAreSentAfterWindow() throws Exception {
+		conflatingSender = new ConflatingMessageSender(messageSender, KEY, 100,
+				Duration.ofMillis(10));
+
+		conflatingSender.sendMessage(recordHeaders("1"), "one");
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (messageSender.sentBatches.isEmpty() && System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+
+		assertSent("one");
+	}
+
+	@Test
+	public void testBinaryMessageIsSentAfterHeldMessages() {
+		conflatingSender.sendMessage(recordHeaders("1"), "held");
+
+		conflatingSender.sendBinaryMessage(recordHeaders("1"),
+				ByteBuffer.wrap("binary".getBytes(StandardCharsets.UTF_8)));
+
+		assertSent("held", "binary");
+	}
+
+	@Test
+	public void testFailedMessagesAreHeldAgainAndConflatedWithLaterMessages() {
+		messageSender.exceptionToThrow = new RuntimeException("send failed");
+		conflatingSender.sendMessage(recordHeaders("1"), "one");
+		conflatingSender.sendMessage(recordHeaders("2"), "two");
+		try {
+			conflatingSender.flush();
+			fail("Exception should have been thrown");
+		} catch (RuntimeException e) {
+			assertEquals(e.getMessage(), "send failed");
+		}
+		messageSender.exceptionToThrow = null;
+
+		conflatingSender.sendMessage(recordHeaders("3"), "three");
+		conflatingSender.sendMessage(recordHeaders("1"), "one updated");
+		conflatingSender.flush();
+
+		assertSent("one updated", "two", "three");
+		assertEquals(conflatingSender.getNumberOfConflatedMessages(), 1);
+	}
+
+	@Test
+	public void testMessagesWithoutKeyAreRefusedWhenMaxHeldMessagesAreHeld() {
+		conflatingSender = new ConflatingMessageSender(messageSender, KEY, 2,
+				Duration.ofHours(1), 3);
+		messageSender.exceptionToThrow = new RuntimeException("send failed");
+		sendMessageAndIgnoreException(null, "one");
+		sendMessageAndIgnoreException(null, "two");
+		sendMessageAndIgnoreException(null, "three");
+		try {
+			conflatingSender.sendMessage(null, "four");
+			fail("Exception should have been thrown");
+		} catch (MessagingException e) {
+			assertEquals(e.getMessage(), "ConflatingMessageSender holds the maximum number of "
+					+ "messages, 3, message not added");
+		}
+		messageSender.exceptionToThrow = null;
+
+		conflatingSender.flush();
+
+		assertSent("one", "two", "three");
+		assertEquals(messageSender.sentBatches.size(), 2);
+		assertEquals(conflatingSender.getNumberOfRejectedMessages(), 1);
+	}
+
+	private void sendMessageAndIgnoreException(Map<String, Object> headers, String message) {
+		try {
+			conflatingSender.sendMessage(headers, message);
+		} catch (RuntimeException e) {
+			// held again, sent later
+		}
+	}
+
+	@Test
+	public void testMessageReplacingHeldMessageIsHeldWhenMaxHeldMessagesAreHeld() {
+		conflatingSender = new ConflatingMessageSender(messageSender, KEY, 1,
+				Duration.ofHours(1), 1);
+		messageSender.exceptionToThrow = new RuntimeException("send failed");
+		sendMessageAndIgnoreException(recordHeaders("1"), "one");
+		sendMessageAndIgnoreException(recordHeaders("1"), "one updated");
+		messageSender.exceptionToThrow = null;
+
+		conflatingSender.flush();
+
+		assertSent("one updated");
+		assertEquals(conflatingSender.getNumberOfRejectedMessages(), 0);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxHeldMessages must be at least 2, was 1")
+	public void testMaxHeldMessagesMustHoldABatch() {
+		new ConflatingMessageSender(messageSender, KEY, 2, Duration.ofHours(1), 1);
+	}
+
+	@Test
+	public void testMessagesAreHeldWhileEarlierMessagesAreSent() throws Exception {
+		messageSender.blockSendingUntilCountedDown = new CountDownLatch(1);
+		conflatingSender.sendMessage(recordHeaders("1"), "one");
+		Thread flushingThread = Thread.ofPlatform().start(conflatingSender::flush);
+		waitUntilWaiting(flushingThread);
+
+		conflatingSender.sendMessage(recordHeaders("2"), "two");
+
+		messageSender.blockSendingUntilCountedDown.countDown();
+		flushingThread.join();
+		assertSent("one");
+		conflatingSender.flush();
+		assertSent("one", "two");
+	}
+
+	private void waitUntilWaiting(Thread thread) throws InterruptedException {
+		long giveUpAt = System.currentTimeMillis() + 5000;
+		while (thread.getState() != Thread.State.WAITING
+				&& System.currentTimeMillis() < giveUpAt) {
+			Thread.sleep(5);
+		}
+		assertEquals(thread.getState(), Thread.State.WAITING);
+	}
+
+	@Test
+	public void testCloseFlushesAndClosesDecoratedSender() {
+		conflatingSender.sendMessage(recordHeaders("1"), "one");
+
+		conflatingSender.close();
+
+		assertSent("one");
+		assertTrue(messageSender.closeWasCalled);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxPendingMessages must be at least 1, was 0")
+	public void testMaxPendingMessagesMustBePositive() {
+		new ConflatingMessageSender(messageSender, KEY, 0, Duration.ofHours(1));
+	}
+}
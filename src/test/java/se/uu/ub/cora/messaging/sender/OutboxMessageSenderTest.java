@@ -0,0 +1,382 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.MessageHeaders;
+import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.MessagingException;
+import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
+
+public class OutboxMessageSenderTest {
+	private static final Duration RETRY_DELAY = Duration.ofMillis(1);
+	private Path directory;
+	private RecordingSender recordingSender;
+	private RecordingSender deadLetterSender;
+	private OutboxMessageSender outbox;
+
+	@BeforeMethod
+	public void beforeMethod() throws IOException {
+		LoggerProvider.setLoggerFactory(LoggerFactorySpy.getInstance());
+		directory = Files.createTempDirectory("outbox");
+		recordingSender = new RecordingSender();
+		deadLetterSender = new RecordingSender();
+		outbox = createOutbox(1024, Duration.ofMillis(10));
+	}
+
+	private OutboxMessageSender createOutbox(int segmentSize, Duration syncInterval) {
+		return new OutboxMessageSender(recordingSender, deadLetterSender, directory, segmentSize,
+				syncInterval, RETRY_DELAY, Integer.MAX_VALUE, 1000);
+	}
+
+	private OutboxMessageSender createOutboxWithLimits(MessageSender deadLetterSender,
+			int maxSendAttempts, int maxUnsentMessages) {
+		return new OutboxMessageSender(recordingSender, deadLetterSender, directory, 1024,
+				Duration.ofMillis(10), RETRY_DELAY, maxSendAttempts, maxUnsentMessages);
+	}
+
+	@AfterMethod
+	public void afterMethod() throws IOException {
+		outbox.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	@Test
+	public void testMessagesAreSentInOrder() throws Exception {
+		outbox.sendMessage(Map.of("action", "create"), "one");
+		outbox.sendMessage(Map.of(), "two");
+		outbox.sendMessage(Map.of(), "three");
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 3);
+
+		assertEquals(recordingSender.getSentMessages(), List.of("one", "two", "three"));
+		assertEquals(recordingSender.sentHeaders.get(0), Map.of("action", "create"));
+		waitUntil(() -> outbox.getNumberOfUnsentMessages() == 0);
+	}
+
+	private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		assertTrue(condition.getAsBoolean());
+	}
+
+	@Test
+	public void testHeaderTypesAndBinaryBodiesAreKept() throws Exception {
+		Map<String, Object> headers = new LinkedHashMap<>();
+		headers.put("text", "value");
+		headers.put("int", 1);
+		headers.put("long", 2L);
+		headers.put("double", 3.5);
+		headers.put("boolean", true);
+		headers.put("bytes", new byte[] { 4 });
+
+		outbox.sendBinaryMessage(headers, ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+		outbox.sendMessage(null, null);
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 2);
+		Map<String, Object> sentHeaders = recordingSender.sentHeaders.get(0);
+		assertEquals(sentHeaders.get("text"), "value");
+		assertEquals(sentHeaders.get("int"), 1);
+		assertEquals(sentHeaders.get("long"), 2L);
+		assertEquals(sentHeaders.get("double"), 3.5);
+		assertEquals(sentHeaders.get("boolean"), true);
+		assertEquals((byte[]) sentHeaders.get("bytes"), new byte[] { 4 });
+		assertEquals(recordingSender.getSentMessages().get(0), "binary:3");
+		assertEquals(recordingSender.sentHeaders.get(1), null);
+		assertEquals(recordingSender.getSentMessages().get(1), null);
+	}
+
+	@Test
+	public void testSendReturnsWhileServerIsUnavailable() throws Exception {
+		recordingSender.available = false;
+
+		outbox.sendMessage(Map.of(), "one");
+		outbox.sendMessage(Map.of(), "two");
+
+		assertEquals(outbox.getNumberOfUnsentMessages(), 2);
+		recordingSender.available = true;
+		waitUntil(() -> recordingSender.getSentMessages().size() == 2);
+		assertEquals(recordingSender.getSentMessages(), List.of("one", "two"));
+	}
+
+	@Test
+	public void testFailedMessageIsRetriedBeforeLaterMessages() throws Exception {
+		recordingSender.numberOfCallsToFail = 3;
+
+		outbox.sendMessage(Map.of(), "one");
+		outbox.sendMessage(Map.of(), "two");
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 2);
+		assertEquals(recordingSender.getSentMessages(), List.of("one", "two"));
+		assertEquals(recordingSender.numberOfCalls, 5);
+	}
+
+	@Test
+	public void testMessageIsSentToDeadLetterAfterMaxSendAttempts() throws Exception {
+		outbox.close();
+		outbox = createOutboxWithLimits(deadLetterSender, 3, 1000);
+		recordingSender.numberOfCallsToFail = 3;
+
+		outbox.sendMessage(Map.of("action", "create"), "one");
+		outbox.sendMessage(Map.of(), "two");
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 1);
+		assertEquals(recordingSender.getSentMessages(), List.of("two"));
+		assertEquals(deadLetterSender.getSentMessages(), List.of("one"));
+		Map<String, Object> deadLetterHeaders = deadLetterSender.sentHeaders.get(0);
+		assertEquals(deadLetterHeaders.get("action"), "create");
+		assertEquals(deadLetterHeaders.get(MessageHeaders.RETRY_ATTEMPT), 2);
+		assertEquals(deadLetterHeaders.get(MessageHeaders.LAST_ERROR), "unavailable");
+		assertEquals(deadLetterHeaders.get(MessageHeaders.DEAD_LETTER_REASON),
+				OutboxMessageSender.MAX_ATTEMPTS_REACHED);
+		waitUntil(() -> outbox.getNumberOfUnsentMessages() == 0);
+	}
+
+	@Test
+	public void testMessageIsSkippedAfterMaxSendAttemptsWithoutDeadLetterSender()
+			throws Exception {
+		outbox.close();
+		outbox = createOutboxWithLimits(null, 2, 1000);
+		recordingSender.numberOfCallsToFail = 2;
+
+		outbox.sendMessage(Map.of(), "one");
+		outbox.sendMessage(Map.of(), "two");
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 1);
+		assertEquals(recordingSender.getSentMessages(), List.of("two"));
+		assertEquals(recordingSender.numberOfCalls, 3);
+	}
+
+	@Test
+	public void testSendFailsWhenOutboxIsFull() {
+		outbox.close();
+		outbox = createOutboxWithLimits(deadLetterSender, Integer.MAX_VALUE, 2);
+		recordingSender.available = false;
+		outbox.sendMessage(Map.of(), "one");
+		outbox.sendMessage(Map.of(), "two");
+
+		try {
+			outbox.sendMessage(Map.of(), "three");
+			fail("Expected the outbox to be full");
+		} catch (MessagingException e) {
+			assertEquals(e.getMessage(),
+					"Outbox in " + directory + " is full, 2 messages are not yet sent");
+		}
+		assertEquals(outbox.getNumberOfUnsentMessages(), 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxSendAttempts must be at least 1, was 0")
+	public void testMaxSendAttemptsMustBePositive() {
+		createOutboxWithLimits(deadLetterSender, 0, 1000);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "maxUnsentMessages must be at least 1, was 0")
+	public void testMaxUnsentMessagesMustBePositive() {
+		createOutboxWithLimits(deadLetterSender, 1, 0);
+	}
+
+	@Test
+	public void testSentSegmentsAreDeleted() throws Exception {
+		outbox.close();
+		outbox = createOutbox(64, Duration.ZERO);
+
+		for (int i = 0; i < 10; i++) {
+			outbox.sendMessage(Map.of(), "message" + i);
+		}
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 10);
+		outbox.sendMessage(Map.of(), "last");
+		waitUntil(() -> recordingSender.getSentMessages().size() == 11);
+		assertEquals(listSegmentFiles().size(), 1);
+	}
+
+	private List<Path> listSegmentFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(OutboxSegment::isSegmentFile).sorted().toList();
+		}
+	}
+
+	@Test
+	public void testUnsentMessagesAreSentByNextOutboxUsingDirectory() throws Exception {
+		recordingSender.available = false;
+		for (int i = 0; i < 5; i++) {
+			outbox.sendMessage(Map.of(), "message" + i);
+		}
+		outbox.close();
+		recordingSender = new RecordingSender();
+
+		outbox = createOutbox(1024, Duration.ofMillis(10));
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 5);
+		assertEquals(recordingSender.getSentMessages(),
+				List.of("message0", "message1", "message2", "message3", "message4"));
+	}
+
+	@Test
+	public void testSentMessagesAreNotSentAgainByNextOutbox() throws Exception {
+		outbox.sendMessage(Map.of(), "one");
+		waitUntil(() -> recordingSender.getSentMessages().size() == 1);
+		outbox.close();
+		recordingSender = new RecordingSender();
+
+		outbox = createOutbox(1024, Duration.ofMillis(10));
+		outbox.sendMessage(Map.of(), "two");
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 1);
+		assertEquals(recordingSender.getSentMessages(), List.of("two"));
+	}
+
+	@Test
+	public void testDamagedMessageIsSkipped() throws Exception {
+		recordingSender.available = false;
+		outbox.sendMessage(Map.of(), "one");
+		outbox.sendMessage(Map.of(), "two");
+		outbox.close();
+		damageFirstMessage(listSegmentFiles().get(0));
+		recordingSender = new RecordingSender();
+
+		outbox = createOutbox(1024, Duration.ofMillis(10));
+
+		waitUntil(() -> recordingSender.getSentMessages().size() == 1);
+		assertEquals(recordingSender.getSentMessages(), List.of("two"));
+	}
+
+	private void damageFirstMessage(Path segmentFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 42 }),
+					OutboxSegment.RECORD_HEADER_SIZE + 8);
+		}
+	}
+
+	@Test
+	public void testDirectoryCanOnlyBeUsedByOneOutbox() {
+		try {
+			createOutbox(1024, Duration.ZERO);
+			fail("Expected the directory to be locked");
+		} catch (MessagingException e) {
+			assertEquals(e.getMessage(),
+					"Outbox in " + directory + " is used by another OutboxMessageSender");
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "Message of \\d+ bytes does not fit in outbox segment of 1024 bytes")
+	public void testMessageLargerThanSegment() {
+		outbox.sendMessage(Map.of(), "x".repeat(2000));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "Header created with value of type java.lang.Object can not be stored in outbox")
+	public void testUnsupportedHeaderValue() {
+		outbox.sendMessage(Map.of("created", new Object()), "one");
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ""
+			+ "segmentSize must be at least 10, was 9")
+	public void testSegmentSizeMustHoldARecord() {
+		createOutbox(9, Duration.ZERO);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ""
+			+ "OutboxMessageSender is closed")
+	public void testSendAfterClose() {
+		outbox.close();
+
+		outbox.sendMessage(Map.of(), "one");
+	}
+
+	@Test
+	public void testCloseClosesDecoratedSender() {
+		outbox.close();
+
+		assertTrue(recordingSender.closeWasCalled);
+	}
+
+	private static class RecordingSender implements MessageSender {
+		volatile boolean available = true;
+		volatile boolean closeWasCalled = false;
+		int numberOfCallsToFail = 0;
+		int numberOfCalls = 0;
+		List<Map<String, Object>> sentHeaders = new ArrayList<>();
+		private List<String> sentMessages = new ArrayList<>();
+
+		@Override
+		public synchronized void sendMessage(Map<String, Object> headers, String message) {
+			failIfUnavailable();
+			sentHeaders.add(headers);
+			sentMessages.add(message);
+		}
+
+		private void failIfUnavailable() {
+			numberOfCalls++;
+			if (!available || numberOfCalls <= numberOfCallsToFail) {
+				throw new RuntimeException("unavailable");
+			}
+		}
+
+		@Override
+		public synchronized void sendBinaryMessage(Map<String, Object> headers,
+				ByteBuffer message) {
+			failIfUnavailable();
+			sentHeaders.add(headers);
+			sentMessages.add("binary:" + message.remaining());
+		}
+
+		synchronized List<String> getSentMessages() {
+			return new ArrayList<>(sentMessages);
+		}
+
+		@Override
+		public void close() {
+			closeWasCalled = true;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.sender;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+public class SlidingFailureWindowTest {
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	public void testCallsAndFailuresAreCounted() {
+		SlidingFailureWindow window = new SlidingFailureWindow(10 * SECOND);
+
+		window.recordSuccess(SECOND);
+		window.recordFailure(2 * SECOND);
+		window.recordFailure(3 * SECOND);
+
+		assertEquals(window.getNumberOfCalls(3 * SECOND), 3);
+		assertEquals(window.getNumberOfFailures(3 * SECOND), 2);
+	}
+
+	@Test
+	public void testCallsOutsideWindowAreNotCounted() {
+		SlidingFailureWindow window = new SlidingFailureWindow(10 * SECOND);
+		window.recordFailure(SECOND);
+		window.recordSuccess(5 * SECOND);
+
+		assertEquals(window.getNumberOfCalls(10 * SECOND), 2);
+		assertEquals(window.getNumberOfCalls(11 * SECOND), 1);
+		assertEquals(window.getNumberOfFailures(11 * SECOND), 0);
+		assertEquals(window.getNumberOfCalls(15 * SECOND), 0);
+	}
+
+	@Test
+	public void testReusedBucketStartsOverFromZero() {
+		SlidingFailureWindow window = new SlidingFailureWindow(10 * SECOND);
+		window.recordFailure(SECOND);
+
+		window.recordSuccess(11 * SECOND);
+
+		assertEquals(window.getNumberOfCalls(11 * SECOND), 1);
+		assertEquals(window.getNumberOfFailures(11 * SECOND), 0);
+	}
+
+	@Test
+	public void testResetForgetsAllCalls() {
+		SlidingFailureWindow window = new SlidingFailureWindow(10 * SECOND);
+		window.recordFailure(SECOND);
+		window.recordSuccess(2 * SECOND);
+
+		window.reset();
+
+		assertEquals(window.getNumberOfCalls(2 * SECOND), 0);
+		assertEquals(window.getNumberOfFailures(2 * SECOND), 0);
+	}
+
+	@Test
+	public void testConcurrentRecordsAreAllCounted() throws Exception {
+		SlidingFailureWindow window = new SlidingFailureWindow(10 * SECOND);
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = Thread.ofPlatform().start(() -> {
+				for (int j = 0; j < 10_000; j++) {
+					window.recordSuccess(SECOND);
+					window.recordFailure(SECOND);
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(window.getNumberOfCalls(SECOND), 80_000);
+		assertEquals(window.getNumberOfFailures(SECOND), 40_000);
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.spy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.uu.ub.cora.messaging.BatchMessageReceiver;
+import se.uu.ub.cora.messaging.ReceivedMessage;
+
+public class BatchMessageReceiverSpy implements BatchMessageReceiver {
+
+	public List<List<ReceivedMessage>> receivedBatches = new ArrayList<>();
+	public RuntimeException exceptionToThrow;
+	public int maxBatchSize = 3;
+	public Duration maxBatchWait = Duration.ofHours(1);
+
+	@Override
+	public synchronized void receiveMessages(List<ReceivedMessage> messages) {
+		receivedBatches.add(messages);
+		if (null != exceptionToThrow) {
+			throw exceptionToThrow;
+		}
+	}
+
+	@Override
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	@Override
+	public Duration getMaxBatchWait() {
+		return maxBatchWait;
+	}
+
+	@Override
+	public void topicClosed() {
+		// not used in tests
+	}
+
+	public synchronized int getNumberOfReceivedBatches() {
+		return receivedBatches.size();
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.spy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import se.uu.ub.cora.messaging.MessageAcknowledger;
+
+public class MessageAcknowledgerSpy implements MessageAcknowledger {
+
+	public List<String> calls = new ArrayList<>();
+
+	@Override
+	public synchronized void acknowledge(long deliveryTag) {
+		calls.add("acknowledge " + deliveryTag);
+	}
+
+	@Override
+	public synchronized void acknowledgeUpTo(long deliveryTag) {
+		calls.add("acknowledgeUpTo " + deliveryTag);
+	}
+
+	@Override
+	public synchronized void reject(long deliveryTag, boolean requeue) {
+		calls.add("reject " + deliveryTag + " " + requeue);
+	}
+
+	public synchronized List<String> getCalls() {
+		return new ArrayList<>(calls);
+	}
+
+}
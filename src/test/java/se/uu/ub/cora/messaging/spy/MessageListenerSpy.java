@@ -5,10 +5,21 @@ import se.uu.ub.cora.messaging.MessageReceiver;
 
 public class MessageListenerSpy implements MessageListener {
 
+	public boolean closeWasCalled = false;
+	public MessageReceiver messageReceiver;
+	public RuntimeException exceptionToThrow;
+
 	@Override
 	public void listen(MessageReceiver messageReceiver) {
-		// TODO Auto-generated method stub
-		
+		if (null != exceptionToThrow) {
+			throw exceptionToThrow;
+		}
+		this.messageReceiver = messageReceiver;
+	}
+
+	@Override
+	public void close() {
+		closeWasCalled = true;
 	}
 
 }
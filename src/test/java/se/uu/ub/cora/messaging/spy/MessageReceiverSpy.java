@@ -0,0 +1,48 @@
+/*
+ * Copyright 2026 Uppsala University Library
+ *
+ * This file is part of Cora.
+ *
+ *     Cora is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     (at your option) any later version.
+ *
+ *     Cora is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with Cora.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package se.uu.ub.cora.messaging.spy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import se.uu.ub.cora.messaging.MessageReceiver;
+
+public class MessageReceiverSpy implements MessageReceiver {
+
+	public List<Map<String, String>> receivedHeaders = new ArrayList<>();
+	public List<String> receivedMessages = new ArrayList<>();
+	public boolean topicClosedWasCalled = false;
+	public RuntimeException exceptionToThrow;
+
+	@Override
+	public synchronized void receiveMessage(Map<String, String> headers, String message) {
+		if (null != exceptionToThrow) {
+			throw exceptionToThrow;
+		}
+		receivedHeaders.add(headers);
+		receivedMessages.add(message);
+	}
+
+	@Override
+	public void topicClosed() {
+		topicClosedWasCalled = true;
+	}
+
+}
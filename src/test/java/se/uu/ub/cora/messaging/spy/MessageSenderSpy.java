@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -19,16 +19,58 @@
 
 package se.uu.ub.cora.messaging.spy;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import se.uu.ub.cora.messaging.MessageSender;
+import se.uu.ub.cora.messaging.OutgoingMessage;
 
 public class MessageSenderSpy implements MessageSender {
 
+	public boolean closeWasCalled = false;
+	public List<OutgoingMessage> sentMessages = new ArrayList<>();
+	public List<List<OutgoingMessage>> sentBatches = new ArrayList<>();
+	public RuntimeException exceptionToThrow;
+	public CountDownLatch blockSendingUntilCountedDown;
+
 	@Override
 	public void sendMessage(Map<String, Object> headers, String message) {
-		// TODO Auto-generated method stub
+		blockIfRequested();
+		if (null != exceptionToThrow) {
+			throw exceptionToThrow;
+		}
+		synchronized (this) {
+			sentMessages.add(new OutgoingMessage(headers, message));
+		}
+	}
+
+	private void blockIfRequested() {
+		if (null != blockSendingUntilCountedDown) {
+			try {
+				blockSendingUntilCountedDown.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 
+	@Override
+	public void sendMessages(List<OutgoingMessage> messages) {
+		blockIfRequested();
+		if (null != exceptionToThrow) {
+			throw exceptionToThrow;
+		}
+		synchronized (this) {
+			sentBatches.add(messages);
+			sentMessages.addAll(messages);
+		}
+	}
+
+	@Override
+	public void close() {
+		closeWasCalled = true;
 	}
 
 }
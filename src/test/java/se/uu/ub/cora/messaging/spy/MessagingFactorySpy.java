@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -29,12 +29,30 @@ public class MessagingFactorySpy implements MessagingFactory {
 	public MessageRoutingInfo messagingRoutingInfo;
 	public MessageSender messageSender;
 	public MessageListener messageListener;
+	public int numberOfFactoredSenders = 0;
+	public int numberOfFactoredListeners = 0;
+	public RuntimeException exceptionToThrow;
+	public String transportName;
+	public int priority = 0;
+	public Class<? extends MessageRoutingInfo> supportedRoutingInfoType = MessageRoutingInfo.class;
+
+	public MessagingFactorySpy() {
+	}
+
+	public MessagingFactorySpy(String transportName, int priority) {
+		this.transportName = transportName;
+		this.priority = priority;
+	}
 
 	@Override
 	public MessageSender factorTopicMessageSender(MessageRoutingInfo messagingRoutingInfo) {
+		if (null != exceptionToThrow) {
+			throw exceptionToThrow;
+		}
 
 		this.messagingRoutingInfo = messagingRoutingInfo;
 		this.messageSender = new MessageSenderSpy();
+		numberOfFactoredSenders++;
 
 		return messageSender;
 	}
@@ -43,8 +61,26 @@ public class MessagingFactorySpy implements MessagingFactory {
 	public MessageListener factorTopicMessageListener(MessageRoutingInfo messagingRoutingInfo) {
 		this.messagingRoutingInfo = messagingRoutingInfo;
 		this.messageListener = new MessageListenerSpy();
+		numberOfFactoredListeners++;
 
 		return messageListener;
 	}
 
+	@Override
+	public String getTransportName() {
+		if (null == transportName) {
+			return MessagingFactory.super.getTransportName();
+		}
+		return transportName;
+	}
+
+	@Override
+	public int getPriority() {
+		return priority;
+	}
+
+	@Override
+	public boolean supportsRoutingInfoType(Class<? extends MessageRoutingInfo> routingInfoType) {
+		return supportedRoutingInfoType.isAssignableFrom(routingInfoType);
+	}
 }
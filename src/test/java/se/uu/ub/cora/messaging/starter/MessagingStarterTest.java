@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Uppsala University Library
+ * Copyright 2019, 2026 Uppsala University Library
  *
  * This file is part of Cora.
  *
@@ -20,6 +20,7 @@
 package se.uu.ub.cora.messaging.starter;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -28,8 +29,11 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import se.uu.ub.cora.logger.LoggerProvider;
+import se.uu.ub.cora.messaging.AmqpMessageSenderRoutingInfo;
 import se.uu.ub.cora.messaging.MessagingFactory;
+import se.uu.ub.cora.messaging.MessagingFactoryRegistry;
 import se.uu.ub.cora.messaging.MessagingInitializationException;
+import se.uu.ub.cora.messaging.memory.InMemoryMessagingFactory;
 import se.uu.ub.cora.messaging.spy.MessagingFactorySpy;
 import se.uu.ub.cora.messaging.spy.log.LoggerFactorySpy;
 
@@ -66,8 +70,9 @@ public class MessagingStarterTest {
 	}
 
 	@Test(expectedExceptions = MessagingInitializationException.class, expectedExceptionsMessageRegExp = ""
-			+ "More than one implementations found for MessagingFactory")
-	public void testMoreThanOneImplementationThrowException() throws Exception {
+			+ "More than one implementations found for MessagingFactory with transport name "
+			+ "MessagingFactorySpy")
+	public void testSameTransportNameThrowException() throws Exception {
 		messagingFactoryImplementations.add(new MessagingFactorySpy());
 		messagingFactoryImplementations.add(new MessagingFactorySpy());
 
@@ -75,7 +80,7 @@ public class MessagingStarterTest {
 	}
 
 	@Test
-	public void testErrorIsLoggedWhenMoreThanOneImplementations() throws Exception {
+	public void testErrorIsLoggedWhenSameTransportName() throws Exception {
 		try {
 			messagingFactoryImplementations.add(new MessagingFactorySpy());
 			messagingFactoryImplementations.add(new MessagingFactorySpy());
@@ -88,7 +93,8 @@ public class MessagingStarterTest {
 		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 1),
 				"MessagingFactorySpy found as implemetation for MessagingFactory");
 		assertEquals(loggerFactorySpy.getFatalLogMessageUsingClassNameAndNo(testedClassName, 0),
-				"More than one implementations found for MessagingFactory");
+				"More than one implementations found for MessagingFactory with transport name "
+						+ "MessagingFactorySpy");
 	}
 
 	@Test
@@ -114,4 +120,48 @@ public class MessagingStarterTest {
 		assertEquals(loggerFactorySpy.getNoOfInfoLogMessagesUsingClassName(testedClassName), 1);
 	}
 
+	@Test
+	public void testOtherImplementationPreferredOverBuiltIn() throws Exception {
+		MessagingFactorySpy messagingFactorySpy = new MessagingFactorySpy();
+		InMemoryMessagingFactory builtInFactory = new InMemoryMessagingFactory();
+		messagingFactoryImplementations.add(builtInFactory);
+		messagingFactoryImplementations.add(messagingFactorySpy);
+
+		MessagingFactoryRegistry registry = (MessagingFactoryRegistry) starter
+				.startUsingMessagingFactoryImplementations(messagingFactoryImplementations);
+
+		assertEquals(registry.getFactories(), List.of(messagingFactorySpy, builtInFactory));
+		assertSame(registry.getFactoryForRoutingInfo(createSenderRoutingInfo()),
+				messagingFactorySpy);
+	}
+
+	private AmqpMessageSenderRoutingInfo createSenderRoutingInfo() {
+		return new AmqpMessageSenderRoutingInfo("localhost", 5672, "alvin", "index", "key");
+	}
+
+	@Test
+	public void testMoreThanOneImplementationUsesRegistry() throws Exception {
+		MessagingFactorySpy lowPriority = new MessagingFactorySpy("low", 1);
+		MessagingFactorySpy highPriority = new MessagingFactorySpy("high", 2);
+		messagingFactoryImplementations.add(lowPriority);
+		messagingFactoryImplementations.add(highPriority);
+
+		MessagingFactoryRegistry registry = (MessagingFactoryRegistry) starter
+				.startUsingMessagingFactoryImplementations(messagingFactoryImplementations);
+
+		assertEquals(registry.getFactories(), List.of(highPriority, lowPriority));
+		assertEquals(loggerFactorySpy.getInfoLogMessageUsingClassNameAndNo(testedClassName, 2),
+				"Using MessagingFactoryRegistry with transports high, low");
+	}
+
+	@Test(expectedExceptions = MessagingInitializationException.class, expectedExceptionsMessageRegExp = ""
+			+ "More than one implementations found for MessagingFactory with transport name "
+			+ "MessagingFactorySpy")
+	public void testSameTransportNameThrowsAlsoWithBuiltIn() throws Exception {
+		messagingFactoryImplementations.add(new InMemoryMessagingFactory());
+		messagingFactoryImplementations.add(new MessagingFactorySpy());
+		messagingFactoryImplementations.add(new MessagingFactorySpy());
+
+		starter.startUsingMessagingFactoryImplementations(messagingFactoryImplementations);
+	}
 }